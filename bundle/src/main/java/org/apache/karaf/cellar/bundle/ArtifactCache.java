@@ -0,0 +1,311 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Local store of bundle artifacts, addressed by the SHA-256 checksum of their content.
+ * The artifacts are files named by their checksum in the cache directory; the location each artifact has been
+ * downloaded from is kept in an index file, so the cache is reused after a restart.
+ * The total size of the artifacts is bounded: above the maximum size, the least recently used artifacts are evicted.
+ */
+public class ArtifactCache {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+    public static final String ALGORITHM = "SHA-256";
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+    private static final String INDEX = "index.properties";
+    private static final String TEMP_PREFIX = "download";
+
+    private final File directory;
+    // checksum to location in access order, and location to the checksum of its last download
+    private final Map<String, String> locations = new LinkedHashMap<String, String>(16, 0.75f, true);
+    private final Map<String, String> checksums = new HashMap<String, String>();
+    private long maxSize = DEFAULT_MAX_SIZE;
+    private long size;
+
+    public ArtifactCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load the index of the cached artifacts, and remove the incomplete downloads.
+     *
+     * @throws IOException in case of cache directory failure.
+     */
+    public synchronized void init() throws IOException {
+        maxSize = Long.getLong(ArtifactCache.class.getName() + ".maxSize", maxSize);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create artifact cache directory " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(TEMP_PREFIX)) {
+                    file.delete();
+                }
+            }
+        }
+        File index = new File(directory, INDEX);
+        if (index.exists()) {
+            Properties properties = new Properties();
+            try (InputStream is = new FileInputStream(index)) {
+                properties.load(is);
+            }
+            for (String checksum : properties.stringPropertyNames()) {
+                File file = getFile(checksum);
+                if (file.exists()) {
+                    String location = properties.getProperty(checksum);
+                    locations.put(checksum, location);
+                    checksums.put(location, checksum);
+                    size += file.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Store an artifact from its content.
+     *
+     * @param location the artifact location.
+     * @param content the artifact content, closed by the caller.
+     * @param expectedChecksum the expected checksum, or null to accept any content.
+     * @return the checksum of the artifact.
+     * @throws IOException in case of write failure or if the content doesn't match the expected checksum.
+     */
+    public String store(String location, InputStream content, String expectedChecksum) throws IOException {
+        File file = createTempFile();
+        try {
+            copy(content, file);
+            return add(location, file, expectedChecksum);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Copy a content to a file, stopping if the thread is interrupted, for instance when a fetch times out.
+     */
+    private static void copy(InputStream content, File file) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (OutputStream os = new FileOutputStream(file)) {
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while storing artifact");
+                }
+                os.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Move a downloaded file to the cache, after checking its checksum.
+     *
+     * @param location the artifact location.
+     * @param file the file, created by {@link #createTempFile()}.
+     * @param expectedChecksum the expected checksum, or null to accept any content.
+     * @return the checksum of the artifact.
+     * @throws IOException in case of write failure or if the content doesn't match the expected checksum.
+     */
+    public String add(String location, File file, String expectedChecksum) throws IOException {
+        String checksum = checksum(file);
+        if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(checksum)) {
+            file.delete();
+            throw new IOException("Checksum mismatch for artifact " + location + ": expected " + expectedChecksum + ", got " + checksum);
+        }
+        File target = getFile(checksum);
+        synchronized (this) {
+            if (!locations.containsKey(checksum)) {
+                Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                size += target.length();
+            } else {
+                file.delete();
+            }
+            locations.put(checksum, location);
+            checksums.put(location, checksum);
+            saveIndex();
+        }
+        return checksum;
+    }
+
+    /**
+     * Create a temporary file in the cache directory, removed at next start if it's not added to the cache.
+     *
+     * @return the temporary file.
+     * @throws IOException in case of creation failure.
+     */
+    public File createTempFile() throws IOException {
+        return File.createTempFile(TEMP_PREFIX, ".jar", directory);
+    }
+
+    /**
+     * Check if an artifact is cached, marking it as recently used.
+     *
+     * @param checksum the artifact checksum.
+     * @return true if the artifact is cached, false else.
+     */
+    public synchronized boolean contains(String checksum) {
+        return checksum != null && locations.get(checksum.toLowerCase()) != null;
+    }
+
+    /**
+     * Get the checksum of the last artifact stored for a location.
+     *
+     * @param location the artifact location.
+     * @return the checksum, or null if no artifact has been stored for the location.
+     */
+    public synchronized String getChecksum(String location) {
+        return checksums.get(location);
+    }
+
+    /**
+     * Get the cached artifacts.
+     *
+     * @return the artifact locations, by checksum.
+     */
+    public synchronized Map<String, String> getArtifacts() {
+        return new HashMap<String, String>(locations);
+    }
+
+    /**
+     * Evict the least recently used artifacts until the total size is under the maximum size.
+     * The most recently used artifact is kept, even if it's larger than the maximum size.
+     *
+     * @return the checksums of the evicted artifacts.
+     */
+    public synchronized List<String> evict() {
+        List<String> evicted = new ArrayList<String>();
+        Iterator<Map.Entry<String, String>> iterator = locations.entrySet().iterator();
+        while (size > maxSize && locations.size() > 1) {
+            Map.Entry<String, String> eldest = iterator.next();
+            String checksum = eldest.getKey();
+            File file = getFile(checksum);
+            size -= file.length();
+            file.delete();
+            if (checksum.equals(checksums.get(eldest.getValue()))) {
+                checksums.remove(eldest.getValue());
+            }
+            iterator.remove();
+            evicted.add(checksum);
+        }
+        if (!evicted.isEmpty()) {
+            LOGGER.debug("CELLAR BUNDLE: evicted {} artifacts from the artifact cache", evicted.size());
+            saveIndex();
+        }
+        return evicted;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public File getFile(String checksum) {
+        return new File(directory, checksum.toLowerCase());
+    }
+
+    /**
+     * Read a chunk of a cached artifact.
+     *
+     * @param checksum the artifact checksum.
+     * @param offset the chunk offset.
+     * @param length the maximum chunk length.
+     * @return the chunk, shorter than the length at the end of the artifact, or null if the artifact is not cached.
+     * @throws IOException in case of read failure.
+     */
+    public byte[] read(String checksum, long offset, int length) throws IOException {
+        if (!contains(checksum)) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(getFile(checksum), "r")) {
+            long remaining = Math.max(0, file.length() - offset);
+            byte[] chunk = new byte[(int) Math.min(length, remaining)];
+            file.seek(offset);
+            file.readFully(chunk);
+            return chunk;
+        }
+    }
+
+    private void saveIndex() {
+        Properties properties = new Properties();
+        properties.putAll(locations);
+        File index = new File(directory, INDEX);
+        try (OutputStream os = new FileOutputStream(index)) {
+            properties.store(os, "Cellar bundle artifacts");
+        } catch (IOException e) {
+            LOGGER.warn("CELLAR BUNDLE: can't write artifact cache index {}", index, e);
+        }
+    }
+
+    /**
+     * Compute the checksum of a file.
+     *
+     * @param file the file.
+     * @return the hexadecimal SHA-256 checksum.
+     * @throws IOException in case of read failure.
+     */
+    public static String checksum(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder checksum = new StringBuilder();
+        for (byte b : digest.digest()) {
+            checksum.append(String.format("%02x", b));
+        }
+        return checksum.toString();
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.MapQuery;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+
+/**
+ * Fetch the bundle artifacts from the cluster nodes holding them, instead of downloading them from their location.
+ * The artifacts held by each node are registered in the cluster artifacts map, with the key {@code checksum/node ID}
+ * and the artifact location as value. An artifact is transferred by chunks, then checked against its checksum; when
+ * no node holds the artifact or the transfer fails, the artifact is downloaded from its location. The timeout applies
+ * to each chunk transfer, and to the connection and each read of a download from the location.
+ */
+public class ArtifactFetcher {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ArtifactFetcher.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private ClusterManager clusterManager;
+    private ExecutionContext executionContext;
+    private ArtifactCache artifactCache;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Register the cached artifacts in the cluster.
+     */
+    public void init() {
+        String prefix = ArtifactFetcher.class.getName();
+        chunkSize = Integer.getInteger(prefix + ".chunkSize", chunkSize);
+        timeout = Long.getLong(prefix + ".timeout", timeout);
+
+        Map<String, String> artifacts = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : artifactCache.getArtifacts().entrySet()) {
+            artifacts.put(getKey(entry.getKey(), clusterManager.getNode()), entry.getValue());
+        }
+        if (!artifacts.isEmpty()) {
+            getArtifacts().putAll(artifacts);
+        }
+    }
+
+    /**
+     * Unregister the cached artifacts from the cluster.
+     */
+    public void destroy() {
+        Map<String, String> artifacts = getArtifacts();
+        for (String checksum : artifactCache.getArtifacts().keySet()) {
+            artifacts.remove(getKey(checksum, clusterManager.getNode()));
+        }
+    }
+
+    /**
+     * Get the local file of an artifact, fetching the artifact if it's not cached yet.
+     *
+     * @param location the artifact location.
+     * @param checksum the artifact checksum if known, else the checksum is looked for in the cluster by location.
+     * @return the artifact file, in the artifact cache.
+     * @throws IOException if the artifact can't be fetched from the cluster nodes nor from its location.
+     */
+    public File fetch(String location, String checksum) throws IOException {
+        if (checksum == null) {
+            checksum = lookup(location);
+        }
+        if (checksum != null) {
+            if (artifactCache.contains(checksum)) {
+                return artifactCache.getFile(checksum);
+            }
+            for (Node node : getHolders(checksum)) {
+                try {
+                    long start = System.currentTimeMillis();
+                    fetch(location, checksum, node);
+                    LOGGER.debug("CELLAR BUNDLE: fetched artifact {} from node {} in {} ms", location, node.getId(), System.currentTimeMillis() - start);
+                    register(checksum, location);
+                    return artifactCache.getFile(checksum);
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (IOException e) {
+                    LOGGER.debug("CELLAR BUNDLE: can't fetch artifact {} from node {}", location, node.getId(), e);
+                }
+            }
+        }
+
+        // no node holds the artifact, download it from its location
+        String stored;
+        try (InputStream is = openStream(location)) {
+            stored = artifactCache.store(location, is, null);
+        }
+        if (checksum != null && !checksum.equalsIgnoreCase(stored)) {
+            LOGGER.warn("CELLAR BUNDLE: artifact downloaded from {} doesn't match the cluster checksum {}", location, checksum);
+        }
+        register(stored, location);
+        return artifactCache.getFile(stored);
+    }
+
+    /**
+     * Store the artifact of a location in the cache, if it's not already cached, so the other nodes can fetch it
+     * from this node. This is used for the bundles installed locally.
+     *
+     * @param location the artifact location.
+     * @return the artifact checksum.
+     * @throws IOException if the artifact can't be read from its location.
+     */
+    public String cache(String location) throws IOException {
+        String checksum = artifactCache.getChecksum(location);
+        if (checksum == null || !artifactCache.contains(checksum)) {
+            try (InputStream is = openStream(location)) {
+                checksum = artifactCache.store(location, is, null);
+            }
+            register(checksum, location);
+        }
+        return checksum;
+    }
+
+    /**
+     * Store the content of a bundle installed locally in the cache, if it's not already cached, so the other nodes
+     * can fetch it from this node without downloading the location again.
+     *
+     * @param location the artifact location.
+     * @param content the local file holding the artifact content, for instance in the framework bundle cache.
+     * @return the artifact checksum.
+     * @throws IOException if the content can't be read.
+     */
+    public String cache(String location, File content) throws IOException {
+        String checksum = ArtifactCache.checksum(content);
+        if (!checksum.equalsIgnoreCase(artifactCache.getChecksum(location)) || !artifactCache.contains(checksum)) {
+            try (InputStream is = new FileInputStream(content)) {
+                artifactCache.store(location, is, checksum);
+            }
+            register(checksum, location);
+        }
+        return checksum;
+    }
+
+    /**
+     * Get the checksum of the artifact cached for a location.
+     *
+     * @param location the artifact location.
+     * @return the checksum, or null if the artifact has not been fetched by this node.
+     */
+    public String getChecksum(String location) {
+        return artifactCache.getChecksum(location);
+    }
+
+    /**
+     * Open the artifact location, with the fetch timeout as connect and read timeouts, so a stalled download fails
+     * instead of holding the fetching thread.
+     */
+    private InputStream openStream(String location) throws IOException {
+        URLConnection connection = new URL(location).openConnection();
+        connection.setConnectTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+        connection.setReadTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+        return connection.getInputStream();
+    }
+
+    private void fetch(String location, String checksum, Node node) throws IOException {
+        File file = artifactCache.createTempFile();
+        try {
+            try (OutputStream os = new FileOutputStream(file)) {
+                long offset = 0;
+                long size;
+                do {
+                    GetArtifactCommand command = new GetArtifactCommand(clusterManager.generateId(), checksum, offset, chunkSize);
+                    command.setDestination(Collections.singleton(node));
+                    command.setTimeout(timeout);
+                    Map<Node, GetArtifactResult> results = executionContext.execute(command);
+                    GetArtifactResult result = (results == null || results.isEmpty()) ? null : results.values().iterator().next();
+                    if (result == null || result.getData() == null) {
+                        throw new IOException("Artifact " + checksum + " is not available on node " + node.getId());
+                    }
+                    os.write(result.getData());
+                    offset += result.getData().length;
+                    size = result.getSize();
+                    if (result.getData().length == 0 && offset < size) {
+                        throw new IOException("Artifact " + checksum + " is truncated on node " + node.getId());
+                    }
+                } while (offset < size);
+            }
+            artifactCache.add(location, file, checksum);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching artifact " + checksum);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Can't fetch artifact " + checksum + " from node " + node.getId(), e);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Look for the checksum of the artifact registered in the cluster for a location.
+     *
+     * @param location the artifact location.
+     * @return the checksum, or null if no artifact or several different artifacts are registered for the location.
+     */
+    private String lookup(String location) {
+        Set<String> checksums = new HashSet<String>();
+        for (Map.Entry<String, String> entry : clusterManager.queryMap(Constants.ARTIFACT_MAP, new MapQuery<String, String>().equal(MapQuery.VALUE, location))) {
+            String key = entry.getKey();
+            checksums.add(key.substring(0, key.indexOf('/')));
+        }
+        return checksums.size() == 1 ? checksums.iterator().next() : null;
+    }
+
+    /**
+     * Get the cluster nodes holding an artifact, in random order to spread the transfers.
+     *
+     * @param checksum the artifact checksum.
+     * @return the nodes holding the artifact, except the local node.
+     */
+    private List<Node> getHolders(String checksum) {
+        Map<String, String> artifacts = getArtifacts();
+        String localId = clusterManager.getNode().getId();
+        List<Node> holders = new ArrayList<Node>();
+        for (Node node : clusterManager.listNodes()) {
+            if (!node.getId().equals(localId) && artifacts.containsKey(getKey(checksum, node))) {
+                holders.add(node);
+            }
+        }
+        Collections.shuffle(holders);
+        return holders;
+    }
+
+    private void register(String checksum, String location) {
+        Map<String, String> artifacts = getArtifacts();
+        artifacts.put(getKey(checksum, clusterManager.getNode()), location);
+        for (String evicted : artifactCache.evict()) {
+            artifacts.remove(getKey(evicted, clusterManager.getNode()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> getArtifacts() {
+        return clusterManager.getMap(Constants.ARTIFACT_MAP);
+    }
+
+    private static String getKey(String checksum, Node node) {
+        return checksum.toLowerCase() + "/" + node.getId();
+    }
+
+    public ClusterManager getClusterManager() {
+        return clusterManager;
+    }
+
+    public void setClusterManager(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+    }
+
+    public ExecutionContext getExecutionContext() {
+        return executionContext;
+    }
+
+    public void setExecutionContext(ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+}
@@ -14,7 +14,6 @@
 package org.apache.karaf.cellar.bundle;
 
 import org.apache.karaf.cellar.core.Configurations;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
@@ -23,7 +22,6 @@ import org.apache.karaf.features.Feature;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.wiring.FrameworkWiring;
-import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +38,6 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.bundle.handler";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     /**
      * Handle received bundle cluster events.
      *
@@ -85,14 +81,14 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
                     }
                 }
                 if (event.getType() == Bundle.INSTALLED) {
-                    installBundleFromLocation(event.getLocation(), event.getStartLevel());
+                    installBundle(event.getLocation(), getChecksum(event), event.getStartLevel());
                     LOGGER.debug("CELLAR BUNDLE: installing {}/{}", event.getSymbolicName(), event.getVersion());
                 } else if (event.getType() == Bundle.UNINSTALLED) {
                     uninstallBundle(event.getSymbolicName(), event.getVersion());
                     LOGGER.debug("CELLAR BUNDLE: uninstalling {}/{}", event.getSymbolicName(), event.getVersion());
                 } else if (event.getType() == Bundle.ACTIVE) {
                     if (!isInstalled(event.getLocation())) {
-                        installBundleFromLocation(event.getLocation(), event.getStartLevel());
+                        installBundle(event.getLocation(), getChecksum(event), event.getStartLevel());
                     }
                     try {
                         startBundle(event.getSymbolicName(), event.getVersion());
@@ -108,7 +104,7 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
                     }
                 } else if (event.getType() == Bundle.RESOLVED) {
                     if (!isInstalled(event.getLocation())) {
-                        installBundleFromLocation(event.getLocation(), event.getStartLevel());
+                        installBundle(event.getLocation(), getChecksum(event), event.getStartLevel());
                         LOGGER.debug("CELLAR BUNDLE: installing {}/{}", event.getSymbolicName(), event.getVersion());
                     }
                     Bundle b = findBundle(event.getLocation());
@@ -135,6 +131,21 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
         }
     }
 
+    /**
+     * Get the artifact checksum of the bundle of an event, from the cluster group bundles.
+     *
+     * @param event the cluster bundle event.
+     * @return the checksum, or null if unknown.
+     */
+    private String getChecksum(ClusterBundleEvent event) {
+        if (artifactFetcher == null) {
+            return null;
+        }
+        Map<String, BundleState> clusterBundles = clusterManager.getMap(Constants.BUNDLE_MAP + Configurations.SEPARATOR + event.getSourceGroup().getName());
+        BundleState state = clusterBundles.get(event.getSymbolicName() + "/" + event.getVersion());
+        return state != null ? state.getChecksum() : null;
+    }
+
     public void init() {
         // nothing to do
     }
@@ -150,21 +161,7 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
      */
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
     /**
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.util.tracker.BundleTracker;
+import org.osgi.util.tracker.BundleTrackerCustomizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the local bundles by location and by Cellar bundle ID (symbolic name/version).
+ * The index is maintained by a {@link BundleTracker}, so the bundle headers are read once per installed or updated
+ * bundle instead of on every lookup.
+ */
+public class BundleIndex implements BundleTrackerCustomizer<Bundle> {
+
+    private static final int STATES = Bundle.INSTALLED | Bundle.RESOLVED | Bundle.STARTING | Bundle.STOPPING | Bundle.ACTIVE;
+
+    private final ConcurrentMap<String, Bundle> bundlesByLocation = new ConcurrentHashMap<String, Bundle>();
+    private final ConcurrentMap<String, Bundle> bundlesById = new ConcurrentHashMap<String, Bundle>();
+    // the indexed Cellar ID of each bundle, the headers may have changed when the bundle is updated or removed
+    private final ConcurrentMap<Long, String> ids = new ConcurrentHashMap<Long, String>();
+
+    private BundleTracker<Bundle> tracker;
+
+    public void init(BundleContext bundleContext) {
+        tracker = new BundleTracker<Bundle>(bundleContext, STATES, this);
+        tracker.open();
+    }
+
+    public void destroy() {
+        if (tracker != null) {
+            tracker.close();
+            tracker = null;
+        }
+    }
+
+    @Override
+    public Bundle addingBundle(Bundle bundle, BundleEvent event) {
+        index(bundle);
+        return bundle;
+    }
+
+    @Override
+    public void modifiedBundle(Bundle bundle, BundleEvent event, Bundle object) {
+        if (event != null && event.getType() == BundleEvent.UPDATED) {
+            // the version may have changed
+            unindex(bundle);
+            index(bundle);
+        }
+    }
+
+    @Override
+    public void removedBundle(Bundle bundle, BundleEvent event, Bundle object) {
+        unindex(bundle);
+    }
+
+    private synchronized void index(Bundle bundle) {
+        String id = getId(bundle);
+        ids.put(bundle.getBundleId(), id);
+        bundlesById.put(id, bundle);
+        bundlesByLocation.put(bundle.getLocation(), bundle);
+    }
+
+    private synchronized void unindex(Bundle bundle) {
+        String id = ids.remove(bundle.getBundleId());
+        if (id != null) {
+            bundlesById.remove(id, bundle);
+        }
+        bundlesByLocation.remove(bundle.getLocation(), bundle);
+    }
+
+    /**
+     * Get a local bundle by location.
+     *
+     * @param location the bundle location.
+     * @return the bundle, or null if no bundle is installed from this location.
+     */
+    public Bundle getBundle(String location) {
+        return bundlesByLocation.get(location);
+    }
+
+    /**
+     * Get a local bundle by symbolic name and version.
+     *
+     * @param symbolicName the bundle symbolic name.
+     * @param version the bundle version (as in the Bundle-Version header).
+     * @return the bundle, or null if no such bundle is installed.
+     */
+    public Bundle getBundle(String symbolicName, String version) {
+        return bundlesById.get(symbolicName + "/" + version);
+    }
+
+    /**
+     * Get a local bundle by Cellar bundle ID.
+     *
+     * @param id the Cellar bundle ID (symbolic name/version).
+     * @return the bundle, or null if no such bundle is installed.
+     */
+    public Bundle getBundleById(String id) {
+        return bundlesById.get(id);
+    }
+
+    /**
+     * Get the Cellar bundle ID of a local bundle, from the index if the bundle is indexed.
+     *
+     * @param bundle the bundle.
+     * @return the Cellar bundle ID (symbolic name/version).
+     */
+    public String getIndexedId(Bundle bundle) {
+        String id = ids.get(bundle.getBundleId());
+        return id != null ? id : getId(bundle);
+    }
+
+    /**
+     * @return the indexed local bundles.
+     */
+    public Collection<Bundle> getBundles() {
+        return new ArrayList<Bundle>(bundlesByLocation.values());
+    }
+
+    /**
+     * Return the Cellar bundle ID for a given bundle, reading the bundle headers.
+     *
+     * @param bundle the bundle.
+     * @return the Cellar bundle ID (symbolic name/version).
+     */
+    public static String getId(Bundle bundle) {
+        return bundle.getSymbolicName() + "/" + bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
+    }
+
+}
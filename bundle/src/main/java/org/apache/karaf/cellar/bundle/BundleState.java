@@ -13,17 +13,25 @@
  */
 package org.apache.karaf.cellar.bundle;
 
-import java.io.Serializable;
+import org.apache.karaf.cellar.core.CompactSerializable;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Serializable wrapper to store and transport bundle state.
  */
-public class BundleState implements Serializable {
+public class BundleState implements CompactSerializable {
 
     public static final int UPDATE = 555;
 
     private static final long serialVersionUID = 5933673686648413918L;
 
+    // version of the compact form, written first as a negative number, so the states written before the version
+    // (starting with the bundle ID) are still readable. The fields added in a new version are written at the end.
+    private static final int COMPACT_VERSION = 1;
+
     private long id;
     private String name;
     private String symbolicName;
@@ -32,6 +40,7 @@ public class BundleState implements Serializable {
     private Integer startLevel;
     private int status;
     private byte[] data;
+    private String checksum;
 
     public long getId() {
         return id;
@@ -97,4 +106,49 @@ public class BundleState implements Serializable {
         this.data = data.clone();
     }
 
+    /**
+     * @return the SHA-256 checksum of the bundle artifact, used to fetch the artifact from the nodes holding it, or null if unknown.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeLong(-COMPACT_VERSION);
+        out.writeLong(id);
+        out.writeObject(name);
+        out.writeObject(symbolicName);
+        out.writeObject(version);
+        out.writeObject(location);
+        out.writeObject(startLevel);
+        out.writeInt(status);
+        out.writeObject(data);
+        out.writeObject(checksum);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        long compactVersion = 0;
+        id = in.readLong();
+        if (id < 0) {
+            compactVersion = -id;
+            id = in.readLong();
+        }
+        name = (String) in.readObject();
+        symbolicName = (String) in.readObject();
+        version = (String) in.readObject();
+        location = (String) in.readObject();
+        startLevel = (Integer) in.readObject();
+        status = in.readInt();
+        data = (byte[]) in.readObject();
+        if (compactVersion >= 1) {
+            checksum = (String) in.readObject();
+        }
+    }
+
 }
@@ -27,6 +27,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -35,6 +37,8 @@ import java.util.List;
 public class BundleSupport extends CellarSupport {
 
     protected BundleContext bundleContext;
+    protected BundleIndex bundleIndex;
+    protected ArtifactFetcher artifactFetcher;
 	private FeaturesService featuresService;
 
     /**
@@ -51,18 +55,57 @@ public class BundleSupport extends CellarSupport {
         }
     }
 
+    /**
+     * Locally install a bundle from its content.
+     *
+     * @param location the bundle location.
+     * @param content the bundle content, for instance downloaded before from the location.
+     * @param level optional bundle start level.
+     * @throws BundleException in case of installation failure.
+     */
+    public void installBundleFromLocation(String location, InputStream content, Integer level) throws BundleException {
+        Bundle bundle = getBundleContext().installBundle(location, content);
+        if (level != null) {
+            bundle.adapt(BundleStartLevel.class).setStartLevel(level);
+        }
+    }
+
+    /**
+     * Locally install a bundle, fetching its artifact from the cluster nodes holding it when possible.
+     *
+     * @param location the bundle location.
+     * @param checksum the bundle artifact checksum, or null if unknown.
+     * @param level optional bundle start level.
+     * @throws BundleException in case of installation failure.
+     */
+    public void installBundle(String location, String checksum, Integer level) throws BundleException {
+        if (artifactFetcher != null) {
+            File artifact;
+            try {
+                artifact = artifactFetcher.fetch(location, checksum);
+            } catch (IOException e) {
+                LOGGER.debug("CELLAR BUNDLE: can't fetch artifact {}, installing from the location", location, e);
+                artifact = null;
+            }
+            if (artifact != null) {
+                try (InputStream is = new FileInputStream(artifact)) {
+                    installBundleFromLocation(location, is, level);
+                    return;
+                } catch (IOException e) {
+                    throw new BundleException("Can't read artifact " + artifact, e);
+                }
+            }
+        }
+        installBundleFromLocation(location, level);
+    }
+
     public boolean isInstalled(String location) {
         return findBundle(location) != null;
     }
 
     public boolean isStarted(String location) {
-        Bundle[] bundles = getBundleContext().getBundles();
-        for (Bundle bundle : bundles) {
-            if (bundle.getLocation().equals(location) && (bundle.getState() == Bundle.ACTIVE)) {
-                return true;
-            }
-        }
-        return false;
+        Bundle bundle = findBundle(location);
+        return bundle != null && bundle.getState() == Bundle.ACTIVE;
     }
 
     /**
@@ -73,13 +116,9 @@ public class BundleSupport extends CellarSupport {
      * @throws BundleException in case of un-installation failure.
      */
     public void uninstallBundle(String symbolicName, String version) throws BundleException {
-        Bundle[] bundles = getBundleContext().getBundles();
-        if (bundles != null) {
-            for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
-                    bundle.uninstall();
-                }
-            }
+        Bundle bundle = findBundle(symbolicName, version);
+        if (bundle != null) {
+            bundle.uninstall();
         }
     }
 
@@ -91,13 +130,9 @@ public class BundleSupport extends CellarSupport {
      * @throws BundleException in case of start failure.
      */
     public void startBundle(String symbolicName, String version) throws BundleException {
-        Bundle[] bundles = getBundleContext().getBundles();
-        if (bundles != null) {
-            for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
-                    bundle.start();
-                }
-            }
+        Bundle bundle = findBundle(symbolicName, version);
+        if (bundle != null) {
+            bundle.start();
         }
     }
 
@@ -109,13 +144,9 @@ public class BundleSupport extends CellarSupport {
      * @throws BundleException in case of stop failure.
      */
     public void stopBundle(String symbolicName, String version) throws BundleException {
-        Bundle[] bundles = getBundleContext().getBundles();
-        if (bundles != null) {
-            for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
-                    bundle.stop();
-                }
-            }
+        Bundle bundle = findBundle(symbolicName, version);
+        if (bundle != null) {
+            bundle.stop();
         }
     }
 
@@ -128,28 +159,24 @@ public class BundleSupport extends CellarSupport {
      * @throws BundleException in case of update failure.
      */
     public void updateBundle(String symbolicName, String version, String location) throws BundleException {
-        Bundle[] bundles = getBundleContext().getBundles();
-        if (bundles != null) {
-            for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
-                    if (location != null) {
-                        try {
-                            update(bundle, new URL(location));
-                        } catch (Exception e) {
-                            throw new BundleException("Can't update bundle", e);
-                        }
-                    } else {
-                        String loc = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_UPDATELOCATION);
-                        if (loc != null && !loc.equals(bundle.getLocation())) {
-                            try {
-                                update(bundle, new URL(loc));
-                            } catch (Exception e) {
-                                throw new BundleException("Can't update bundle", e);
-                            }
-                        } else {
-                            bundle.update();
-                        }
+        Bundle bundle = findBundle(symbolicName, version);
+        if (bundle != null) {
+            if (location != null) {
+                try {
+                    update(bundle, new URL(location));
+                } catch (Exception e) {
+                    throw new BundleException("Can't update bundle", e);
+                }
+            } else {
+                String loc = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_UPDATELOCATION);
+                if (loc != null && !loc.equals(bundle.getLocation())) {
+                    try {
+                        update(bundle, new URL(loc));
+                    } catch (Exception e) {
+                        throw new BundleException("Can't update bundle", e);
                     }
+                } else {
+                    bundle.update();
                 }
             }
         }
@@ -196,6 +223,22 @@ public class BundleSupport extends CellarSupport {
         this.bundleContext = bundleContext;
     }
 
+    public ArtifactFetcher getArtifactFetcher() {
+        return artifactFetcher;
+    }
+
+    public void setArtifactFetcher(ArtifactFetcher artifactFetcher) {
+        this.artifactFetcher = artifactFetcher;
+    }
+
+    public BundleIndex getBundleIndex() {
+        return bundleIndex;
+    }
+
+    public void setBundleIndex(BundleIndex bundleIndex) {
+        this.bundleIndex = bundleIndex;
+    }
+
 	public FeaturesService getFeaturesService() {
 		return featuresService;
 	}
@@ -212,6 +255,9 @@ public class BundleSupport extends CellarSupport {
      * @return locally installed bundle for the specified location or <code>null</code> if there is no matching bundle installed
      */
     protected Bundle findBundle(String location) {
+        if (bundleIndex != null) {
+            return bundleIndex.getBundle(location);
+        }
         Bundle[] bundles = getBundleContext().getBundles();
         for (Bundle bundle : bundles) {
             if (bundle.getLocation().equals(location)) {
@@ -221,4 +267,45 @@ public class BundleSupport extends CellarSupport {
         return null;
     }
 
+    /**
+     * Finds locally installed bundle by its symbolic name and version.
+     *
+     * @param symbolicName the bundle symbolic name.
+     * @param version the bundle version.
+     * @return locally installed bundle with the specified symbolic name and version or <code>null</code> if there is no matching bundle installed
+     */
+    protected Bundle findBundle(String symbolicName, String version) {
+        if (bundleIndex != null) {
+            return bundleIndex.getBundle(symbolicName, version);
+        }
+        for (Bundle bundle : getBundleContext().getBundles()) {
+            if (symbolicName.equals(bundle.getSymbolicName()) && version.equals(bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION))) {
+                return bundle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the local bundles, from the index if available.
+     *
+     * @return the local bundles.
+     */
+    protected Collection<Bundle> getBundles() {
+        if (bundleIndex != null) {
+            return bundleIndex.getBundles();
+        }
+        return Arrays.asList(getBundleContext().getBundles());
+    }
+
+    /**
+     * Return the Cellar bundle ID for a given bundle.
+     *
+     * @param bundle The bundle.
+     * @return The Cellar bundle ID.
+     */
+    protected String getId(Bundle bundle) {
+        return bundleIndex != null ? bundleIndex.getIndexedId(bundle) : BundleIndex.getId(bundle);
+    }
+
 }
@@ -17,6 +17,8 @@ import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Group;
 import org.apache.karaf.cellar.core.Synchronizer;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
+import org.apache.karaf.cellar.core.event.Event;
+import org.apache.karaf.cellar.core.event.EventBatch;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.core.event.EventType;
 import org.apache.karaf.cellar.core.utils.CellarUtils;
@@ -24,7 +26,6 @@ import org.apache.karaf.features.BootFinished;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
-import org.osgi.framework.BundleReference;
 import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.framework.wiring.FrameworkWiring;
 import org.osgi.service.cm.Configuration;
@@ -32,8 +33,15 @@ import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The BundleSynchronizer is called when Cellar starts or a node joins a cluster group.
@@ -43,13 +51,40 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(BundleSynchronizer.class);
 
+    public static final int DEFAULT_PREFETCH_THREADS = 8;
+    public static final long DEFAULT_PREFETCH_TIMEOUT = 300;
+
     private EventProducer eventProducer;
+    private int prefetchThreads = DEFAULT_PREFETCH_THREADS;
+    private long prefetchTimeout = DEFAULT_PREFETCH_TIMEOUT;
 
     public void setEventProducer(EventProducer eventProducer) {
         this.eventProducer = eventProducer;
     }
 
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    /**
+     * @return the maximum time to fetch the bundles of a pull, in seconds.
+     */
+    public long getPrefetchTimeout() {
+        return prefetchTimeout;
+    }
+
+    public void setPrefetchTimeout(long prefetchTimeout) {
+        this.prefetchTimeout = prefetchTimeout;
+    }
+
     public void init(BundleContext bundleContext) {
+        String prefix = BundleSynchronizer.class.getName();
+        prefetchThreads = Integer.getInteger(prefix + ".prefetch.threads", prefetchThreads);
+        prefetchTimeout = Long.getLong(prefix + ".prefetch.timeout", prefetchTimeout);
         // wait the end of Karaf boot process
         ServiceTracker tracker = new ServiceTracker(bundleContext, BootFinished.class, null);
         try {
@@ -127,64 +162,110 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
                 // get the bundles on the cluster to update local bundles
                 Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
-                List<String> bundleToStart = new ArrayList<String>();
+                long start = System.currentTimeMillis();
+
+                // plan the changes on the local bundles
+                Map<String, BundleState> bundlesToInstall = new LinkedHashMap<String, BundleState>();
+                Map<String, BundleState> bundlesToStart = new LinkedHashMap<String, BundleState>();
+                Map<String, BundleState> bundlesToResolve = new LinkedHashMap<String, BundleState>();
                 for (Map.Entry<String, BundleState> entry : clusterBundles.entrySet()) {
                     String id = entry.getKey();
                     BundleState state = entry.getValue();
 
                     String[] tokens = id.split("/");
-                    if (tokens.length == 2) {
-                        String symbolicName = tokens[0];
-                        String version = tokens[1];
-                        if (state != null) {
-                            String bundleLocation = state.getLocation();
-                            if (isAllowed(group, Constants.CATEGORY, bundleLocation, EventType.INBOUND)) {
-                                try {
-                                    if (state.getStatus() == Bundle.INSTALLED) {
-                                        if (!isInstalled(state.getLocation())) {
-                                            LOGGER.debug("CELLAR BUNDLE: installing bundle located {} on node", state.getLocation());
-                                            installBundleFromLocation(state.getLocation(), state.getStartLevel());
-                                        } else {
-                                            LOGGER.debug("CELLAR BUNDLE: bundle located {} already installed on node", state.getLocation());
-                                        }
-                                    } else if (state.getStatus() == Bundle.ACTIVE) {
-                                        if (!isInstalled(state.getLocation())) {
-                                            LOGGER.debug("CELLAR BUNDLE: installing bundle located {} on node", state.getLocation());
-                                            installBundleFromLocation(state.getLocation(), state.getStartLevel());
-                                        }
-                                        if (!isStarted(state.getLocation())) {
-                                            // Store the id in a list so we can install all bundles before trying to start them,
-                                            // this way if a bundle depend on another one that is not install yet but is part of the same update, the start won't fail.
-                                            bundleToStart.add(id);
-                                        } else {
-                                            LOGGER.debug("CELLAR BUNDLE: bundle located {} already started on node", state.getLocation());
-                                        }
-                                    } else if (state.getStatus() == Bundle.RESOLVED) {
-                                        if (!isInstalled(state.getLocation())) {
-                                            LOGGER.debug("CELLAR BUNDLE: installing bundle located {} on node", state.getLocation());
-                                            installBundleFromLocation(state.getLocation(), state.getStartLevel());
-                                        }
-                                        Bundle b = findBundle(state.getLocation());
-                                        if (b != null) {
-                                            if (b.getState() == Bundle.ACTIVE) {
-                                                LOGGER.debug("CELLAR BUNDLE: stopping bundle {}/{} on node", symbolicName, version);
-                                                stopBundle(symbolicName, version);
-                                            } else if (b.getState() == Bundle.INSTALLED) {
-                                                LOGGER.debug("CELLAR BUNDLE: resolving bundle {}/{} on node", symbolicName, version);
-                                                getBundleContext().getBundle(0).adapt(FrameworkWiring.class).resolveBundles(Collections.singleton(b));
-                                            }
-                                        } else {
-                                            LOGGER.warn("CELLAR BUNDLE: unable to find bundle located {} on node", state.getLocation());
-                                        }
-                                    }
-                                } catch (BundleException e) {
-                                    resolveBundleException(id, e);
+                    if (tokens.length == 2 && state != null) {
+                        String bundleLocation = state.getLocation();
+                        if (isAllowed(group, Constants.CATEGORY, bundleLocation, EventType.INBOUND)) {
+                            if (state.getStatus() == Bundle.INSTALLED || state.getStatus() == Bundle.ACTIVE || state.getStatus() == Bundle.RESOLVED) {
+                                if (!isInstalled(bundleLocation)) {
+                                    bundlesToInstall.put(id, state);
+                                } else {
+                                    LOGGER.debug("CELLAR BUNDLE: bundle located {} already installed on node", bundleLocation);
+                                }
+                            }
+                            if (state.getStatus() == Bundle.ACTIVE) {
+                                if (!isStarted(bundleLocation)) {
+                                    // all bundles are installed before trying to start them, this way if a bundle depends on
+                                    // another one that is not installed yet but is part of the same update, the start won't fail.
+                                    bundlesToStart.put(id, state);
+                                } else {
+                                    LOGGER.debug("CELLAR BUNDLE: bundle located {} already started on node", bundleLocation);
                                 }
-                            } else LOGGER.trace("CELLAR BUNDLE: bundle {} is marked BLOCKED INBOUND for cluster group {}", bundleLocation, groupName);
+                            } else if (state.getStatus() == Bundle.RESOLVED) {
+                                bundlesToResolve.put(id, state);
+                            }
+                        } else LOGGER.trace("CELLAR BUNDLE: bundle {} is marked BLOCKED INBOUND for cluster group {}", bundleLocation, groupName);
+                    }
+                }
+
+                // first stage: fetch the missing bundles in parallel, from the cluster nodes or from their location
+                Map<String, File> fetchedBundles = prefetch(bundlesToInstall.values());
+                long fetched = System.currentTimeMillis();
+
+                // second stage: install the missing bundles
+                for (Map.Entry<String, BundleState> entry : bundlesToInstall.entrySet()) {
+                    BundleState state = entry.getValue();
+                    File artifact = fetchedBundles.get(state.getLocation());
+                    try {
+                        LOGGER.debug("CELLAR BUNDLE: installing bundle located {} on node", state.getLocation());
+                        // the artifact may have been evicted from the cache since it has been fetched
+                        if (artifact != null && artifact.exists()) {
+                            try (InputStream is = new FileInputStream(artifact)) {
+                                installBundleFromLocation(state.getLocation(), is, state.getStartLevel());
+                            }
+                        } else {
+                            installBundleFromLocation(state.getLocation(), state.getStartLevel());
+                        }
+                    } catch (BundleException e) {
+                        resolveBundleException(entry.getKey(), e);
+                    } catch (IOException e) {
+                        LOGGER.error("CELLAR BUNDLE: failed to pull bundle {}", entry.getKey(), e);
+                    }
+                }
+                long installed = System.currentTimeMillis();
+
+                // third stage: resolve the bundles at once, then start them in start level order
+                List<Bundle> bundlesToWire = new ArrayList<Bundle>();
+                for (Map.Entry<String, BundleState> entry : bundlesToResolve.entrySet()) {
+                    String[] tokens = entry.getKey().split("/");
+                    Bundle b = findBundle(entry.getValue().getLocation());
+                    if (b == null) {
+                        LOGGER.warn("CELLAR BUNDLE: unable to find bundle located {} on node", entry.getValue().getLocation());
+                    } else if (b.getState() == Bundle.ACTIVE) {
+                        try {
+                            LOGGER.debug("CELLAR BUNDLE: stopping bundle {}/{} on node", tokens[0], tokens[1]);
+                            stopBundle(tokens[0], tokens[1]);
+                        } catch (BundleException e) {
+                            resolveBundleException(entry.getKey(), e);
+                        }
+                    } else if (b.getState() == Bundle.INSTALLED) {
+                        LOGGER.debug("CELLAR BUNDLE: resolving bundle {}/{} on node", tokens[0], tokens[1]);
+                        bundlesToWire.add(b);
+                    }
+                }
+                final Map<String, Integer> startLevels = new HashMap<String, Integer>();
+                for (Map.Entry<String, BundleState> entry : bundlesToStart.entrySet()) {
+                    Bundle b = findBundle(entry.getValue().getLocation());
+                    if (b != null) {
+                        startLevels.put(entry.getKey(), b.adapt(BundleStartLevel.class).getStartLevel());
+                        if (b.getState() == Bundle.INSTALLED) {
+                            bundlesToWire.add(b);
                         }
                     }
                 }
+                if (!bundlesToWire.isEmpty()) {
+                    getBundleContext().getBundle(0).adapt(FrameworkWiring.class).resolveBundles(bundlesToWire);
+                }
 
+                List<String> bundleToStart = new ArrayList<String>(bundlesToStart.keySet());
+                Collections.sort(bundleToStart, new Comparator<String>() {
+                    @Override
+                    public int compare(String id1, String id2) {
+                        Integer level1 = startLevels.get(id1);
+                        Integer level2 = startLevels.get(id2);
+                        return Integer.compare(level1 != null ? level1 : 0, level2 != null ? level2 : 0);
+                    }
+                });
                 for (String id : bundleToStart) {
                     String[] tokens = id.split("/");
                     String symbolicName = tokens[0];
@@ -197,10 +278,14 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
                         resolveBundleException(id, e);
                     }
                 }
+                long started = System.currentTimeMillis();
+
+                LOGGER.info("CELLAR BUNDLE: pulled bundles from cluster group {}: {} fetched in {} ms, installed in {} ms, {} resolved and {} started in {} ms",
+                        groupName, fetchedBundles.size(), fetched - start, installed - fetched, bundlesToWire.size(), bundleToStart.size(), started - installed);
 
                 // cleanup the local bundles not present on the cluster if the node is not the first one in the cluster group
                 if (CellarUtils.doCleanupResourcesNotPresentInCluster(configurationAdmin) && getSynchronizerMap().containsKey(Constants.BUNDLE_MAP + Configurations.SEPARATOR + groupName)) {
-                    for (Bundle bundle : bundleContext.getBundles()) {
+                    for (Bundle bundle : getBundles()) {
                         String id = getId(bundle);
                         if (!clusterBundles.containsKey(id) && isAllowed(group, Constants.CATEGORY, bundle.getLocation(), EventType.INBOUND)) {
                             // the bundle is not present on the cluster, so it has to be uninstalled locally
@@ -219,6 +304,50 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
         }
     }
 
+    /**
+     * Fetch bundle artifacts in parallel to the artifact cache, with at most {@code prefetchThreads} concurrent fetches.
+     * The artifacts are fetched from the nodes holding them, else from their location. The bundles which can't be
+     * fetched are not returned, they are installed from their location.
+     *
+     * @param states the bundles to fetch.
+     * @return the cached artifact files, by bundle location.
+     */
+    private Map<String, File> prefetch(Collection<BundleState> states) {
+        final Map<String, File> fetched = new ConcurrentHashMap<String, File>();
+        if (states.isEmpty() || prefetchThreads < 1 || artifactFetcher == null) {
+            return fetched;
+        }
+        Map<String, String> checksums = new LinkedHashMap<String, String>();
+        for (BundleState state : states) {
+            checksums.put(state.getLocation(), state.getChecksum());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(prefetchThreads, checksums.size()));
+        try {
+            for (final Map.Entry<String, String> entry : checksums.entrySet()) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            fetched.put(entry.getKey(), artifactFetcher.fetch(entry.getKey(), entry.getValue()));
+                        } catch (Exception e) {
+                            LOGGER.debug("CELLAR BUNDLE: unable to fetch bundle {}, it will be installed from its location", entry.getKey(), e);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(prefetchTimeout, TimeUnit.SECONDS)) {
+                LOGGER.warn("CELLAR BUNDLE: bundles fetch timed out, the remaining bundles will be installed from their location");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        // copy, the fetches still running after the timeout are interrupted and ignored
+        return new HashMap<String, File>(fetched);
+    }
+
     /**
      * Push local bundles states to a cluster group.
      *
@@ -235,107 +364,115 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
         if (group != null) {
             String groupName = group.getName();
             LOGGER.debug("CELLAR BUNDLE: pushing bundles to cluster group {}", groupName);
+            long start = System.currentTimeMillis();
+            int remoteCalls = 0;
             Map<String, BundleState> clusterBundles = clusterManager.getMap(Constants.BUNDLE_MAP + Configurations.SEPARATOR + groupName);
 
             ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
             try {
                 Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
-                Bundle[] bundles;
-                BundleContext bundleContext = ((BundleReference) getClass().getClassLoader()).getBundle().getBundleContext();
 
-                bundles = bundleContext.getBundles();
-                // push local bundles to the cluster
-                for (Bundle bundle : bundles) {
-                    long bundleId = bundle.getBundleId();
-                    String symbolicName = bundle.getSymbolicName();
-                    String version = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-                    String bundleLocation = bundle.getLocation();
-                    int status = bundle.getState();
-                    int level = bundle.adapt(BundleStartLevel.class).getStartLevel();
+                // snapshot of the cluster bundles, read at once
+                Map<String, BundleState> clusterSnapshot = new HashMap<String, BundleState>(clusterBundles);
+                remoteCalls++;
 
+                // compare the local bundles with the snapshot
+                Map<String, BundleState> changes = new HashMap<String, BundleState>();
+                List<Event> events = new ArrayList<Event>();
+                Set<String> localIds = new HashSet<String>();
+                for (Bundle bundle : getBundles()) {
                     String id = getId(bundle);
+                    localIds.add(id);
+                    String bundleLocation = bundle.getLocation();
 
                     // check if the pid is marked as local.
-                    if (isAllowed(group, Constants.CATEGORY, bundleLocation, EventType.OUTBOUND)) {
-                        if (!clusterBundles.containsKey(id)) {
-                            LOGGER.debug("CELLAR BUNDLE: deploying bundle {} on the cluster", id);
-                            BundleState bundleState = new BundleState();
-                            // get the bundle name or location.
-                            String name = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
-                            // if there is no name, then default to symbolic name.
-                            name = (name == null) ? symbolicName : name;
-                            // if there is no symbolic name, resort to location.
-                            name = (name == null) ? bundle.getLocation() : name;
-                            bundleState.setId(bundleId);
-                            bundleState.setName(name);
-                            bundleState.setStartLevel(level);
-                            bundleState.setSymbolicName(symbolicName);
-                            bundleState.setVersion(version);
-                            bundleState.setLocation(bundleLocation);
-                            bundleState.setStatus(status);
-                            // update cluster state
-                            clusterBundles.put(id, bundleState);
-                            // send cluster event
-                            ClusterBundleEvent clusterEvent = new ClusterBundleEvent(symbolicName, version, bundleLocation, level, status);
-                            clusterEvent.setSourceGroup(group);
-                            clusterEvent.setSourceNode(clusterManager.getNode());
-                            clusterEvent.setLocal(clusterManager.getNode());
-                            eventProducer.produce(clusterEvent);
-                        } else {
-                            BundleState bundleState = clusterBundles.get(id);
-                            if (bundleState.getStatus() != status) {
-                                LOGGER.debug("CELLAR BUNDLE: updating bundle id: {}, name: {}, location: {} status: {} on the cluster", id, symbolicName, bundleLocation, status);
-                                // update cluster state
-                                bundleState.setStatus(status);
-                                clusterBundles.put(id, bundleState);
-                                // send cluster event
-                                ClusterBundleEvent clusterEvent = new ClusterBundleEvent(symbolicName, version, bundleLocation, level, status);
-                                clusterEvent.setSourceGroup(group);
-                                clusterEvent.setSourceNode(clusterManager.getNode());
-                                clusterEvent.setLocal(clusterManager.getNode());
-                                eventProducer.produce(clusterEvent);
-                            }
-                        }
+                    if (!isAllowed(group, Constants.CATEGORY, bundleLocation, EventType.OUTBOUND)) {
+                        LOGGER.trace("CELLAR BUNDLE: bundle {} is marked BLOCKED OUTBOUND for cluster group {}", bundleLocation, groupName);
+                        continue;
+                    }
 
-                    } else LOGGER.trace("CELLAR BUNDLE: bundle {} is marked BLOCKED OUTBOUND for cluster group {}", bundleLocation, groupName);
+                    String symbolicName = bundle.getSymbolicName();
+                    int status = bundle.getState();
+                    BundleState bundleState = clusterSnapshot.get(id);
+                    if (bundleState != null && bundleState.getStatus() == status) {
+                        continue;
+                    }
+                    String version = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
+                    int level = bundle.adapt(BundleStartLevel.class).getStartLevel();
+                    if (bundleState == null) {
+                        LOGGER.debug("CELLAR BUNDLE: deploying bundle {} on the cluster", id);
+                        bundleState = new BundleState();
+                        // get the bundle name or location.
+                        String name = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
+                        // if there is no name, then default to symbolic name.
+                        name = (name == null) ? symbolicName : name;
+                        // if there is no symbolic name, resort to location.
+                        name = (name == null) ? bundle.getLocation() : name;
+                        bundleState.setId(bundle.getBundleId());
+                        bundleState.setName(name);
+                        bundleState.setStartLevel(level);
+                        bundleState.setSymbolicName(symbolicName);
+                        bundleState.setVersion(version);
+                        bundleState.setLocation(bundleLocation);
+                        bundleState.setStatus(status);
+                        if (artifactFetcher != null) {
+                            bundleState.setChecksum(artifactFetcher.getChecksum(bundleLocation));
+                        }
+                    } else {
+                        LOGGER.debug("CELLAR BUNDLE: updating bundle id: {}, name: {}, location: {} status: {} on the cluster", id, symbolicName, bundleLocation, status);
+                        bundleState.setStatus(status);
+                    }
+                    changes.put(id, bundleState);
+                    ClusterBundleEvent clusterEvent = new ClusterBundleEvent(symbolicName, version, bundleLocation, level, status);
+                    clusterEvent.setSourceGroup(group);
+                    clusterEvent.setSourceNode(clusterManager.getNode());
+                    clusterEvent.setLocal(clusterManager.getNode());
+                    events.add(clusterEvent);
                 }
-                // clean bundles on the cluster not present locally
-                for (Map.Entry<String, BundleState> entry : clusterBundles.entrySet()) {
-                    String id = entry.getKey();
+
+                // the bundles on the cluster not present locally
+                List<String> removed = new ArrayList<String>();
+                for (Map.Entry<String, BundleState> entry : clusterSnapshot.entrySet()) {
                     BundleState state = entry.getValue();
-                    if (state != null && isAllowed(group, Constants.CATEGORY, state.getLocation(), EventType.OUTBOUND)) {
-                        boolean found = false;
-                        for (Bundle bundle : bundleContext.getBundles()) {
-                            String localBundleId = getId(bundle);
-                            if (id.equals(localBundleId)) {
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (!found) {
-                            clusterBundles.remove(id);
-                        }
+                    if (state != null && !localIds.contains(entry.getKey())
+                            && isAllowed(group, Constants.CATEGORY, state.getLocation(), EventType.OUTBOUND)) {
+                        removed.add(entry.getKey());
+                    }
+                }
+
+                // apply only the differences
+                if (!changes.isEmpty()) {
+                    clusterBundles.putAll(changes);
+                    remoteCalls++;
+                }
+                for (String id : removed) {
+                    clusterBundles.remove(id);
+                    remoteCalls++;
+                }
+                if (events.size() > 1) {
+                    // send the changes as a single cluster event
+                    EventBatch batch = new EventBatch(groupName + "/bundles-" + start, events);
+                    batch.setSourceGroup(group);
+                    batch.setSourceNode(clusterManager.getNode());
+                    eventProducer.produce(batch);
+                    remoteCalls++;
+                } else {
+                    for (Event event : events) {
+                        eventProducer.produce(event);
+                        remoteCalls++;
                     }
                 }
                 getSynchronizerMap().putIfAbsent(Constants.BUNDLE_MAP + Configurations.SEPARATOR + groupName, true);
+                remoteCalls++;
+
+                LOGGER.debug("CELLAR BUNDLE: pushed {} changed and {} removed bundles to cluster group {} in {} ms ({} cluster calls)",
+                        changes.size(), removed.size(), groupName, System.currentTimeMillis() - start, remoteCalls);
             } finally {
                 Thread.currentThread().setContextClassLoader(originalClassLoader);
             }
         }
     }
 
-    /**
-     * Return the Cellar bundle ID for a given bundle.
-     *
-     * @param bundle The bundle.
-     * @return The Cellar bundle ID.
-     */
-    private String getId(Bundle bundle) {
-        String symbolicName = bundle.getSymbolicName();
-        String version = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-        return symbolicName + "/" + version;
-    }
-
     /**
      * Get the bundle sync policy for the given cluster group.
      *
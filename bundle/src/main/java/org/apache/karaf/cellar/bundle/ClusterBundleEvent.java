@@ -13,13 +13,20 @@
  */
 package org.apache.karaf.cellar.bundle;
 
+import org.apache.karaf.cellar.core.CompactSerializable;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.event.Event;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 /**
  * Cluster bundle event.
  */
-public class ClusterBundleEvent extends Event {
+public class ClusterBundleEvent extends Event implements CompactSerializable {
+
+    private static final long serialVersionUID = 3667777268087475388L;
 
     private String symbolicName;
     private String version;
@@ -37,6 +44,10 @@ public class ClusterBundleEvent extends Event {
         this.type = type;
     }
 
+    protected ClusterBundleEvent() {
+        // used by the compact serialization
+    }
+
     public String getSymbolicName() {
         return symbolicName;
     }
@@ -84,4 +95,27 @@ public class ClusterBundleEvent extends Event {
     public void setLocal(Node local) {
         this.local = local;
     }
+
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        writeEvent(out);
+        out.writeObject(symbolicName);
+        out.writeObject(version);
+        out.writeObject(location);
+        out.writeObject(startLevel);
+        out.writeInt(type);
+        out.writeObject(local);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        readEvent(in);
+        symbolicName = (String) in.readObject();
+        version = (String) in.readObject();
+        location = (String) in.readObject();
+        startLevel = (Integer) in.readObject();
+        type = in.readInt();
+        local = (Node) in.readObject();
+    }
+
 }
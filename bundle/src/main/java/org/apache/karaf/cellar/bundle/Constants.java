@@ -20,5 +20,6 @@ public class Constants {
 
     public static final String CATEGORY = "bundle";
     public static final String BUNDLE_MAP = "org.apache.karaf.cellar.bundle.map";
+    public static final String ARTIFACT_MAP = "org.apache.karaf.cellar.bundle.artifacts";
 
 }
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.command.Command;
+
+/**
+ * Request a chunk of a bundle artifact to a node holding it in its artifact cache.
+ */
+public class GetArtifactCommand extends Command<GetArtifactResult> {
+
+    private String checksum;
+    private long offset;
+    private int length;
+
+    public GetArtifactCommand(String id) {
+        super(id);
+    }
+
+    public GetArtifactCommand(String id, String checksum, long offset, int length) {
+        super(id);
+        this.checksum = checksum;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.command.CommandHandler;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Serve the chunks of the artifacts held in the local artifact cache.
+ */
+public class GetArtifactCommandHandler extends CommandHandler<GetArtifactCommand, GetArtifactResult> {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(GetArtifactCommandHandler.class);
+
+    public static final String SWITCH_ID = "org.apache.karaf.cellar.bundle.artifact.switch";
+
+    private SwitchRegistry switchRegistry;
+    private ArtifactCache artifactCache;
+
+    @Override
+    public GetArtifactResult execute(GetArtifactCommand command) {
+        GetArtifactResult result = new GetArtifactResult(command.getId());
+        try {
+            byte[] data = artifactCache.read(command.getChecksum(), command.getOffset(), command.getLength());
+            if (data != null) {
+                result.setSize(artifactCache.getFile(command.getChecksum()).length());
+                result.setData(data);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("CELLAR BUNDLE: can't read artifact {}", command.getChecksum(), e);
+        }
+        return result;
+    }
+
+    @Override
+    public Class<GetArtifactCommand> getType() {
+        return GetArtifactCommand.class;
+    }
+
+    @Override
+    public Switch getSwitch() {
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
+    }
+
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
+    }
+
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
+    }
+
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+}
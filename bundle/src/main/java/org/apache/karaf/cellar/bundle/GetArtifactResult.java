@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.command.Result;
+
+/**
+ * Chunk of a bundle artifact. The data is null when the node doesn't hold the artifact.
+ */
+public class GetArtifactResult extends Result {
+
+    private long size;
+    private byte[] data;
+
+    public GetArtifactResult(String id) {
+        super(id);
+    }
+
+    public GetArtifactResult(String id, long size, byte[] data) {
+        super(id);
+        this.size = size;
+        this.data = data;
+    }
+
+    /**
+     * @return the total size of the artifact.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+}
@@ -19,6 +19,7 @@ import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.core.event.EventType;
 import org.apache.karaf.features.Feature;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.framework.startlevel.BundleStartLevel;
@@ -26,20 +27,28 @@ import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * LocalBundleListener is listening for local bundles changes.
  * When a local bundle change occurs, this listener updates the cluster and broadcasts a cluster bundle event.
+ * The artifact of a bundle installed locally is stored in the artifact cache by a background thread, from the
+ * framework bundle cache, so the other nodes can fetch it from this node.
  */
 public class LocalBundleListener extends BundleSupport implements SynchronousBundleListener {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(LocalBundleListener.class);
 
     private EventProducer eventProducer;
+    private ExecutorService cacheExecutor;
 
     /**
      * Callback method called when a local bundle status change.
@@ -79,6 +88,14 @@ public class LocalBundleListener extends BundleSupport implements SynchronousBun
             }
 
             if (groups != null && !groups.isEmpty()) {
+                String checksum = null;
+                if (artifactFetcher != null) {
+                    if (event.getType() == BundleEvent.INSTALLED) {
+                        cache(event.getBundle(), groups);
+                    } else {
+                        checksum = artifactFetcher.getChecksum(event.getBundle().getLocation());
+                    }
+                }
                 for (Group group : groups) {
 
                     // get the bundle name or location.
@@ -115,6 +132,9 @@ public class LocalBundleListener extends BundleSupport implements SynchronousBun
                                 state.setStatus(status);
                                 state.setStartLevel(startLevel);
                                 state.setLocation(bundleLocation);
+                                if (checksum != null) {
+                                    state.setChecksum(checksum);
+                                }
                                 clusterBundles.put(symbolicName + "/" + version, state);
                             }
 
@@ -145,6 +165,74 @@ public class LocalBundleListener extends BundleSupport implements SynchronousBun
         }
     }
 
+    /**
+     * Store the artifact of a bundle installed locally in the artifact cache, in the background, if the bundle is
+     * allowed outbound in at least one cluster group.
+     *
+     * @param bundle the installed bundle.
+     * @param groups the local cluster groups.
+     */
+    private void cache(final Bundle bundle, Set<Group> groups) {
+        final String location = bundle.getLocation();
+        boolean allowed = false;
+        for (Group group : groups) {
+            if (isAllowed(group, Constants.CATEGORY, location, EventType.OUTBOUND)) {
+                allowed = true;
+                break;
+            }
+        }
+        if (!allowed || cacheExecutor == null) {
+            return;
+        }
+        try {
+            cacheExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    File content = getBundleFile(bundle);
+                    if (content == null) {
+                        LOGGER.debug("CELLAR BUNDLE: no content found in the framework cache for bundle {}", location);
+                        return;
+                    }
+                    try {
+                        artifactFetcher.cache(location, content);
+                    } catch (Exception e) {
+                        LOGGER.debug("CELLAR BUNDLE: can't store artifact {} in the artifact cache", location, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("CELLAR BUNDLE: local listener is stopped, artifact {} is not cached", location);
+        }
+    }
+
+    /**
+     * Get the file holding the content of a bundle in the framework bundle cache. The framework stores each revision
+     * of a bundle in a {@code bundle<id>/version<generation>.<revision>/bundle.jar} file of its storage directory.
+     *
+     * @param bundle the bundle.
+     * @return the content of the last revision of the bundle, or null if it's not found (for instance for a bundle
+     * installed by reference).
+     */
+    private File getBundleFile(Bundle bundle) {
+        String storage = bundleContext.getProperty(org.osgi.framework.Constants.FRAMEWORK_STORAGE);
+        if (storage == null) {
+            return null;
+        }
+        File[] revisions = new File(storage, "bundle" + bundle.getBundleId()).listFiles();
+        if (revisions == null) {
+            return null;
+        }
+        File content = null;
+        for (File revision : revisions) {
+            File file = new File(revision, "bundle.jar");
+            if (revision.getName().startsWith("version") && file.isFile()
+                    && (content == null || file.lastModified() >= content.lastModified())) {
+                content = file;
+            }
+        }
+        return content;
+    }
+
     /**
      * Check if the local bundle listener is enabled in the etc/org.apache.karaf.cellar.groups.cfg.
      *
@@ -165,11 +253,22 @@ public class LocalBundleListener extends BundleSupport implements SynchronousBun
     }
 
     public void init() {
+        cacheExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Cellar bundle artifact cache");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
         getBundleContext().addBundleListener(this);
     }
 
     public void destroy() {
         bundleContext.removeBundleListener(this);
+        if (cacheExecutor != null) {
+            cacheExecutor.shutdown();
+        }
     }
 
     public EventProducer getEventProducer() {
@@ -13,14 +13,23 @@
  */
 package org.apache.karaf.cellar.bundle.internal.osgi;
 
+import org.apache.karaf.cellar.bundle.ArtifactCache;
+import org.apache.karaf.cellar.bundle.ArtifactFetcher;
 import org.apache.karaf.cellar.bundle.BundleEventHandler;
+import org.apache.karaf.cellar.bundle.BundleIndex;
 import org.apache.karaf.cellar.bundle.BundleSynchronizer;
+import org.apache.karaf.cellar.bundle.GetArtifactCommandHandler;
+import org.apache.karaf.cellar.bundle.GetArtifactResultHandler;
 import org.apache.karaf.cellar.bundle.LocalBundleListener;
 import org.apache.karaf.cellar.bundle.management.CellarBundleMBean;
 import org.apache.karaf.cellar.bundle.management.internal.CellarBundleMBeanImpl;
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.GroupFilterIndex;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.command.CommandStore;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.features.FeaturesService;
@@ -45,7 +54,11 @@ import java.util.Hashtable;
                 @RequireService(ClusterManager.class),
                 @RequireService(GroupManager.class),
                 @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class),
+                @RequireService(GroupFilterIndex.class),
                 @RequireService(EventProducer.class),
+                @RequireService(CommandStore.class),
+                @RequireService(ExecutionContext.class),
                 @RequireService(FeaturesService.class)
         }
 )
@@ -53,6 +66,8 @@ public class Activator extends BaseActivator {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
+    private BundleIndex bundleIndex;
+    private ArtifactFetcher artifactFetcher;
     private LocalBundleListener localBundleListener;
     private BundleSynchronizer synchronizer;
     private BundleEventHandler eventHandler;
@@ -70,19 +85,66 @@ public class Activator extends BaseActivator {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null)
             return;
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null)
+            return;
+        GroupFilterIndex groupFilterIndex = getTrackedService(GroupFilterIndex.class);
+        if (groupFilterIndex == null)
+            return;
         EventProducer eventProducer = getTrackedService(EventProducer.class);
         if (eventProducer == null)
             return;
+        CommandStore commandStore = getTrackedService(CommandStore.class);
+        if (commandStore == null)
+            return;
+        ExecutionContext executionContext = getTrackedService(ExecutionContext.class);
+        if (executionContext == null)
+            return;
         FeaturesService featuresService = getTrackedService(FeaturesService.class);
         if (featuresService == null)
             return;
 
+        LOGGER.debug("CELLAR BUNDLE: init local bundles index");
+        bundleIndex = new BundleIndex();
+        bundleIndex.init(bundleContext);
+
+        LOGGER.debug("CELLAR BUNDLE: init artifact cache");
+        ArtifactCache artifactCache = new ArtifactCache(bundleContext.getDataFile("artifacts"));
+        try {
+            artifactCache.init();
+            artifactFetcher = new ArtifactFetcher();
+            artifactFetcher.setClusterManager(clusterManager);
+            artifactFetcher.setExecutionContext(executionContext);
+            artifactFetcher.setArtifactCache(artifactCache);
+            artifactFetcher.init();
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR BUNDLE: artifact cache is not available, the bundles will be installed from their location", e);
+            artifactFetcher = null;
+        }
+
+        LOGGER.debug("CELLAR BUNDLE: register get artifact command handler");
+        GetArtifactCommandHandler getArtifactCommandHandler = new GetArtifactCommandHandler();
+        getArtifactCommandHandler.setProducer(eventProducer);
+        getArtifactCommandHandler.setConfigurationAdmin(configurationAdmin);
+        getArtifactCommandHandler.setSwitchRegistry(switchRegistry);
+        getArtifactCommandHandler.setArtifactCache(artifactCache);
+        register(EventHandler.class, getArtifactCommandHandler);
+
+        LOGGER.debug("CELLAR BUNDLE: register get artifact result handler");
+        GetArtifactResultHandler getArtifactResultHandler = new GetArtifactResultHandler();
+        getArtifactResultHandler.setCommandStore(commandStore);
+        register(EventHandler.class, getArtifactResultHandler);
+
         LOGGER.debug("CELLAR BUNDLE: init even handler");
         eventHandler = new BundleEventHandler();
         eventHandler.setConfigurationAdmin(configurationAdmin);
+        eventHandler.setGroupFilterIndex(groupFilterIndex);
+        eventHandler.setSwitchRegistry(switchRegistry);
         eventHandler.setClusterManager(clusterManager);
         eventHandler.setGroupManager(groupManager);
         eventHandler.setBundleContext(bundleContext);
+        eventHandler.setBundleIndex(bundleIndex);
+        eventHandler.setArtifactFetcher(artifactFetcher);
         eventHandler.setFeaturesService(featuresService);
         eventHandler.init();
         Hashtable props = new Hashtable();
@@ -94,17 +156,22 @@ public class Activator extends BaseActivator {
         localBundleListener.setClusterManager(clusterManager);
         localBundleListener.setGroupManager(groupManager);
         localBundleListener.setConfigurationAdmin(configurationAdmin);
+        localBundleListener.setGroupFilterIndex(groupFilterIndex);
         localBundleListener.setEventProducer(eventProducer);
         localBundleListener.setFeaturesService(featuresService);
         localBundleListener.setBundleContext(bundleContext);
+        localBundleListener.setArtifactFetcher(artifactFetcher);
         localBundleListener.init();
 
         LOGGER.debug("CELLAR BUNDLE: init synchronizer");
         synchronizer = new BundleSynchronizer();
         synchronizer.setConfigurationAdmin(configurationAdmin);
+        synchronizer.setGroupFilterIndex(groupFilterIndex);
         synchronizer.setGroupManager(groupManager);
         synchronizer.setClusterManager(clusterManager);
         synchronizer.setBundleContext(bundleContext);
+        synchronizer.setBundleIndex(bundleIndex);
+        synchronizer.setArtifactFetcher(artifactFetcher);
         synchronizer.setEventProducer(eventProducer);
         synchronizer.init(bundleContext);
         props = new Hashtable();
@@ -118,6 +185,7 @@ public class Activator extends BaseActivator {
         mbean.setGroupManager(groupManager);
         mbean.setEventProducer(eventProducer);
         mbean.setBundleContext(bundleContext);
+        mbean.setBundleIndex(bundleIndex);
         props = new Hashtable();
         props.put("jmx.objectname", "org.apache.karaf.cellar:type=bundle,name=" + System.getProperty("karaf.name"));
         mbeanRegistration = bundleContext.registerService(getInterfaceNames(mbean), mbean, props);
@@ -144,6 +212,14 @@ public class Activator extends BaseActivator {
             eventHandler.destroy();
             eventHandler = null;
         }
+        if (artifactFetcher != null) {
+            artifactFetcher.destroy();
+            artifactFetcher = null;
+        }
+        if (bundleIndex != null) {
+            bundleIndex.destroy();
+            bundleIndex = null;
+        }
     }
 
 }
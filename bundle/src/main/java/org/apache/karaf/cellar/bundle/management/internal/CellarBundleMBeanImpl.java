@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.bundle.management.internal;
 
+import org.apache.karaf.cellar.bundle.BundleIndex;
 import org.apache.karaf.cellar.bundle.BundleState;
 import org.apache.karaf.cellar.bundle.ClusterBundleEvent;
 import org.apache.karaf.cellar.bundle.Constants;
@@ -45,6 +46,7 @@ public class CellarBundleMBeanImpl extends StandardMBean implements CellarBundle
     private ConfigurationAdmin configurationAdmin;
     private EventProducer eventProducer;
     private BundleContext bundleContext;
+    private BundleIndex bundleIndex;
 
     public CellarBundleMBeanImpl() throws NotCompliantMBeanException {
         super(CellarBundleMBean.class);
@@ -90,6 +92,14 @@ public class CellarBundleMBeanImpl extends StandardMBean implements CellarBundle
         this.bundleContext = bundleContext;
     }
 
+    public BundleIndex getBundleIndex() {
+        return bundleIndex;
+    }
+
+    public void setBundleIndex(BundleIndex bundleIndex) {
+        this.bundleIndex = bundleIndex;
+    }
+
     @Override
     public void install(String groupName, String location) throws Exception {
         this.install(groupName, location, null,false);
@@ -682,10 +692,10 @@ public class CellarBundleMBeanImpl extends StandardMBean implements CellarBundle
         }
 
         // retrieve local bundles
-        for (Bundle bundle : bundleContext.getBundles()) {
-            String version = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
+        Collection<Bundle> localBundles = bundleIndex != null ? bundleIndex.getBundles() : Arrays.asList(bundleContext.getBundles());
+        for (Bundle bundle : localBundles) {
             String symbolicName = bundle.getSymbolicName();
-            String key = symbolicName + "/" + version;
+            String key = bundleIndex != null ? bundleIndex.getIndexedId(bundle) : BundleIndex.getId(bundle);
             if (bundles.containsKey(key)) {
                 ExtendedBundleState extendedState = bundles.get(key);
                 extendedState.setLocal(true);
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ArtifactCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ArtifactCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ArtifactCache(folder.getRoot());
+        cache.init();
+    }
+
+    @Test
+    public void testStore() throws Exception {
+        String checksum = store("mvn:org/foo/foo/1.0.0", 10);
+
+        Assert.assertEquals(64, checksum.length());
+        Assert.assertTrue(cache.contains(checksum));
+        Assert.assertTrue(cache.contains(checksum.toUpperCase()));
+        Assert.assertEquals(checksum, cache.getChecksum("mvn:org/foo/foo/1.0.0"));
+        Assert.assertEquals(10, cache.getSize());
+        Assert.assertArrayEquals(new byte[]{2, 3, 4}, cache.read(checksum, 2, 3));
+        Assert.assertArrayEquals(new byte[]{8, 9}, cache.read(checksum, 8, 3));
+
+        // the same content is stored once
+        Assert.assertEquals(checksum, store("mvn:org/foo/foo/1.0.0", 10));
+        Assert.assertEquals(10, cache.getSize());
+    }
+
+    @Test(expected = IOException.class)
+    public void testStoreChecksumMismatch() throws Exception {
+        cache.store("mvn:org/foo/foo/1.0.0", new ByteArrayInputStream(content(10)), "0000");
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        String checksum = store("mvn:org/foo/foo/1.0.0", 10);
+
+        ArtifactCache reloaded = new ArtifactCache(folder.getRoot());
+        reloaded.init();
+        Assert.assertTrue(reloaded.contains(checksum));
+        Assert.assertEquals(checksum, reloaded.getChecksum("mvn:org/foo/foo/1.0.0"));
+        Assert.assertEquals(10, reloaded.getSize());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        cache.setMaxSize(25);
+        String first = store("mvn:org/foo/first/1.0.0", 10);
+        String second = store("mvn:org/foo/second/1.0.0", 11);
+        Assert.assertTrue(cache.evict().isEmpty());
+
+        // the first artifact is used, the second one is now the least recently used
+        Assert.assertTrue(cache.contains(first));
+        String third = store("mvn:org/foo/third/1.0.0", 12);
+        List<String> evicted = cache.evict();
+
+        Assert.assertEquals(Collections.singletonList(second), evicted);
+        Assert.assertFalse(cache.contains(second));
+        Assert.assertNull(cache.getChecksum("mvn:org/foo/second/1.0.0"));
+        Assert.assertFalse(cache.getFile(second).exists());
+        Assert.assertEquals(22, cache.getSize());
+        Assert.assertTrue(cache.contains(first));
+        Assert.assertTrue(cache.contains(third));
+    }
+
+    @Test
+    public void testEvictKeepsLastArtifact() throws Exception {
+        cache.setMaxSize(5);
+        String first = store("mvn:org/foo/first/1.0.0", 10);
+        String second = store("mvn:org/foo/second/1.0.0", 11);
+
+        Assert.assertEquals(Arrays.asList(first), cache.evict());
+        Assert.assertTrue(cache.contains(second));
+        Assert.assertEquals(11, cache.getSize());
+    }
+
+    private String store(String location, int length) throws IOException {
+        return cache.store(location, new ByteArrayInputStream(content(length)), null);
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ArtifactFetcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<String, String> artifacts = new HashMap<String, String>();
+    private ArtifactCache cache;
+    private ArtifactFetcher fetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        Node node = EasyMock.createMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn("node1").anyTimes();
+        ClusterManager clusterManager = EasyMock.createMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getMap(Constants.ARTIFACT_MAP)).andReturn((Map) artifacts).anyTimes();
+        EasyMock.expect(clusterManager.getNode()).andReturn(node).anyTimes();
+        EasyMock.replay(node, clusterManager);
+
+        cache = new ArtifactCache(folder.newFolder("cache"));
+        cache.init();
+        fetcher = new ArtifactFetcher();
+        fetcher.setClusterManager(clusterManager);
+        fetcher.setArtifactCache(cache);
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        String location = artifact("foo.jar", 10);
+
+        String checksum = fetcher.cache(location);
+
+        Assert.assertEquals(checksum, fetcher.getChecksum(location));
+        Assert.assertTrue(cache.contains(checksum));
+        Assert.assertEquals(location, artifacts.get(checksum + "/node1"));
+        // already cached
+        Assert.assertEquals(checksum, fetcher.cache(location));
+        Assert.assertEquals(1, artifacts.size());
+    }
+
+    @Test
+    public void testCacheContent() throws Exception {
+        // the location is not opened, the content is read from the local file
+        String location = "mvn:org/foo/foo/1.0.0";
+        File content = new File(new URI(artifact("bundle.jar", 10)));
+
+        String checksum = fetcher.cache(location, content);
+
+        Assert.assertEquals(ArtifactCache.checksum(content), checksum);
+        Assert.assertEquals(checksum, fetcher.getChecksum(location));
+        Assert.assertTrue(cache.contains(checksum));
+        Assert.assertEquals(location, artifacts.get(checksum + "/node1"));
+        // already cached
+        Assert.assertEquals(checksum, fetcher.cache(location, content));
+        Assert.assertEquals(1, artifacts.size());
+    }
+
+    @Test
+    public void testCacheUnregistersEvictedArtifacts() throws Exception {
+        cache.setMaxSize(15);
+        String first = fetcher.cache(artifact("first.jar", 10));
+        String second = fetcher.cache(artifact("second.jar", 11));
+
+        Assert.assertFalse(artifacts.containsKey(first + "/node1"));
+        Assert.assertTrue(artifacts.containsKey(second + "/node1"));
+        Assert.assertFalse(cache.contains(first));
+    }
+
+    @Test
+    public void testDownloadTimeout() throws Exception {
+        // the server accepts the connection but never answers
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            fetcher.setTimeout(200);
+            long start = System.currentTimeMillis();
+            try {
+                fetcher.cache("http://127.0.0.1:" + server.getLocalPort() + "/foo.jar");
+                Assert.fail("the download should time out");
+            } catch (SocketTimeoutException e) {
+                // expected
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+            Assert.assertTrue(artifacts.isEmpty());
+        }
+    }
+
+    private String artifact(String name, int length) throws Exception {
+        File file = folder.newFile(name);
+        byte[] content = new byte[length];
+        content[0] = (byte) name.hashCode();
+        Files.write(file.toPath(), content);
+        return file.toURI().toString();
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+
+import java.util.Hashtable;
+
+public class BundleIndexTest {
+
+    private BundleIndex index = new BundleIndex();
+
+    @Test
+    public void testLookups() {
+        Bundle foo = bundle(1, "foo", "mvn:org/foo/foo/1.0.0", headers("1.0.0"));
+        Bundle bar = bundle(2, "bar", "mvn:org/foo/bar/1.0.0", headers("2.0.0"));
+        index.addingBundle(foo, null);
+        index.addingBundle(bar, null);
+
+        Assert.assertSame(foo, index.getBundle("mvn:org/foo/foo/1.0.0"));
+        Assert.assertSame(foo, index.getBundle("foo", "1.0.0"));
+        Assert.assertSame(foo, index.getBundleById("foo/1.0.0"));
+        Assert.assertSame(bar, index.getBundle("bar", "2.0.0"));
+        Assert.assertEquals("bar/2.0.0", index.getIndexedId(bar));
+        Assert.assertEquals(2, index.getBundles().size());
+
+        Assert.assertNull(index.getBundle("mvn:org/foo/unknown/1.0.0"));
+        Assert.assertNull(index.getBundle("foo", "2.0.0"));
+    }
+
+    @Test
+    public void testUpdate() {
+        Hashtable<String, String> headers = headers("1.0.0");
+        Bundle foo = bundle(1, "foo", "mvn:org/foo/foo/1.0.0", headers);
+        index.addingBundle(foo, null);
+
+        headers.put(org.osgi.framework.Constants.BUNDLE_VERSION, "1.1.0");
+        // a state change doesn't read the headers again
+        index.modifiedBundle(foo, new BundleEvent(BundleEvent.STARTED, foo), foo);
+        Assert.assertSame(foo, index.getBundle("foo", "1.0.0"));
+
+        index.modifiedBundle(foo, new BundleEvent(BundleEvent.UPDATED, foo), foo);
+        Assert.assertNull(index.getBundle("foo", "1.0.0"));
+        Assert.assertSame(foo, index.getBundle("foo", "1.1.0"));
+        Assert.assertEquals("foo/1.1.0", index.getIndexedId(foo));
+        Assert.assertSame(foo, index.getBundle("mvn:org/foo/foo/1.0.0"));
+    }
+
+    @Test
+    public void testRemove() {
+        Hashtable<String, String> headers = headers("1.0.0");
+        Bundle foo = bundle(1, "foo", "mvn:org/foo/foo/1.0.0", headers);
+        index.addingBundle(foo, null);
+
+        // the headers changed before the removal, the bundle is removed with its indexed ID
+        headers.put(org.osgi.framework.Constants.BUNDLE_VERSION, "1.1.0");
+        index.removedBundle(foo, new BundleEvent(BundleEvent.UNINSTALLED, foo), foo);
+        Assert.assertNull(index.getBundle("mvn:org/foo/foo/1.0.0"));
+        Assert.assertNull(index.getBundle("foo", "1.0.0"));
+        Assert.assertTrue(index.getBundles().isEmpty());
+        // not indexed anymore, the ID is read from the headers
+        Assert.assertEquals("foo/1.1.0", index.getIndexedId(foo));
+    }
+
+    @Test
+    public void testRemoveKeepsReinstalledBundle() {
+        Bundle old = bundle(1, "foo", "mvn:org/foo/foo/1.0.0", headers("1.0.0"));
+        Bundle reinstalled = bundle(2, "foo", "mvn:org/foo/foo/1.0.0", headers("1.0.0"));
+        index.addingBundle(old, null);
+        index.addingBundle(reinstalled, null);
+
+        // the removal of the old bundle doesn't drop the bundle installed again from the same location
+        index.removedBundle(old, null, old);
+        Assert.assertSame(reinstalled, index.getBundle("mvn:org/foo/foo/1.0.0"));
+        Assert.assertSame(reinstalled, index.getBundle("foo", "1.0.0"));
+    }
+
+    private static Hashtable<String, String> headers(String version) {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put(org.osgi.framework.Constants.BUNDLE_VERSION, version);
+        return headers;
+    }
+
+    private static Bundle bundle(long bundleId, String symbolicName, String location, Hashtable<String, String> headers) {
+        Bundle bundle = EasyMock.createMock(Bundle.class);
+        EasyMock.expect(bundle.getBundleId()).andReturn(bundleId).anyTimes();
+        EasyMock.expect(bundle.getSymbolicName()).andReturn(symbolicName).anyTimes();
+        EasyMock.expect(bundle.getLocation()).andReturn(location).anyTimes();
+        EasyMock.expect(bundle.getHeaders()).andReturn(headers).anyTimes();
+        EasyMock.replay(bundle);
+        return bundle;
+    }
+
+}
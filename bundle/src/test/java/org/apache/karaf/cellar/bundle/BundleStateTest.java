@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class BundleStateTest {
+
+    @Test
+    public void testCompact() throws Exception {
+        BundleState state = state();
+        state.setChecksum("abcd");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        state.writeCompact(out);
+        out.close();
+
+        BundleState read = read(bytes.toByteArray());
+        Assert.assertEquals(12, read.getId());
+        Assert.assertEquals("foo", read.getSymbolicName());
+        Assert.assertEquals("mvn:org/foo/foo/1.0.0", read.getLocation());
+        Assert.assertEquals(Integer.valueOf(80), read.getStartLevel());
+        Assert.assertEquals(Bundle.ACTIVE, read.getStatus());
+        Assert.assertEquals("abcd", read.getChecksum());
+    }
+
+    @Test
+    public void testCompactWithoutVersion() throws Exception {
+        // the form written without version, starting with the bundle ID and without checksum
+        BundleState state = state();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeLong(state.getId());
+        out.writeObject(state.getName());
+        out.writeObject(state.getSymbolicName());
+        out.writeObject(state.getVersion());
+        out.writeObject(state.getLocation());
+        out.writeObject(state.getStartLevel());
+        out.writeInt(state.getStatus());
+        out.writeObject(state.getData());
+        out.close();
+
+        BundleState read = read(bytes.toByteArray());
+        Assert.assertEquals(12, read.getId());
+        Assert.assertEquals("1.0.0", read.getVersion());
+        Assert.assertEquals(Bundle.ACTIVE, read.getStatus());
+        Assert.assertNull(read.getChecksum());
+    }
+
+    private static BundleState state() {
+        BundleState state = new BundleState();
+        state.setId(12);
+        state.setName("Foo");
+        state.setSymbolicName("foo");
+        state.setVersion("1.0.0");
+        state.setLocation("mvn:org/foo/foo/1.0.0");
+        state.setStartLevel(80);
+        state.setStatus(Bundle.ACTIVE);
+        return state;
+    }
+
+    private static BundleState read(byte[] bytes) throws Exception {
+        BundleState state = new BundleState();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            state.readCompact(in);
+        }
+        return state;
+    }
+
+}
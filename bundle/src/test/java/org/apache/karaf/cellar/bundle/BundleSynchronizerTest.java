@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.event.Event;
+import org.apache.karaf.cellar.core.event.EventBatch;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BundleSynchronizerTest {
+
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Group group = new Group("default");
+
+    private Map<String, BundleState> clusterBundles = new HashMap<String, BundleState>();
+    private Map<String, Boolean> synchronizers = new HashMap<String, Boolean>();
+    private List<Event> produced = new ArrayList<Event>();
+
+    private BundleContext bundleContext;
+    private BundleSynchronizer synchronizer;
+
+    @Before
+    public void setUp() throws Exception {
+        Hashtable<String, Object> groups = new Hashtable<String, Object>();
+        groups.put("default.bundle.whitelist.inbound", "*");
+        groups.put("default.bundle.blacklist.inbound", "mvn:org/blocked/*");
+        groups.put("default.bundle.whitelist.outbound", "*");
+        groups.put("default.bundle.blacklist.outbound", "mvn:org/blocked/*");
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andReturn(groups).anyTimes();
+        Configuration node = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(node.getProperties()).andReturn(null).anyTimes();
+        ConfigurationAdmin configurationAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.GROUP, null)).andReturn(configuration).anyTimes();
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.NODE, null)).andReturn(node).anyTimes();
+
+        ClusterManager clusterManager = EasyMock.createMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getMap(Constants.BUNDLE_MAP + Configurations.SEPARATOR + "default")).andReturn((Map) clusterBundles).anyTimes();
+        EasyMock.expect(clusterManager.getMap("org.apache.karaf.cellar.synchronizers")).andReturn((Map) synchronizers).anyTimes();
+        EasyMock.expect(clusterManager.getNode()).andReturn(null).anyTimes();
+        EasyMock.replay(configuration, node, configurationAdmin, clusterManager);
+
+        bundleContext = EasyMock.createMock(BundleContext.class);
+
+        synchronizer = new BundleSynchronizer();
+        synchronizer.setConfigurationAdmin(configurationAdmin);
+        synchronizer.setClusterManager(clusterManager);
+        synchronizer.setBundleContext(bundleContext);
+        synchronizer.setEventProducer(new EventProducer<Event>() {
+            @Override
+            public void produce(Event event) {
+                produced.add(event);
+            }
+
+            @Override
+            public Switch getSwitch() {
+                return new BasicSwitch("test");
+            }
+        });
+    }
+
+    @Test
+    public void testPushSendsEvents() throws Exception {
+        clusterBundles.put("unchanged/1.0.0", state("mvn:org/foo/unchanged/1.0.0", Bundle.ACTIVE));
+        clusterBundles.put("updated/1.0.0", state("mvn:org/foo/updated/1.0.0", Bundle.RESOLVED));
+        clusterBundles.put("removed/1.0.0", state("mvn:org/foo/removed/1.0.0", Bundle.ACTIVE));
+        clusterBundles.put("blocked/1.0.0", state("mvn:org/blocked/blocked/1.0.0", Bundle.ACTIVE));
+        EasyMock.expect(bundleContext.getBundles()).andReturn(new Bundle[]{
+                bundle("unchanged", "mvn:org/foo/unchanged/1.0.0", Bundle.ACTIVE),
+                bundle("updated", "mvn:org/foo/updated/1.0.0", Bundle.ACTIVE),
+                bundle("added", "mvn:org/foo/added/1.0.0", Bundle.INSTALLED)}).anyTimes();
+        EasyMock.replay(bundleContext);
+
+        synchronizer.push(group);
+
+        // only the differences are applied to the cluster
+        Assert.assertEquals(Bundle.ACTIVE, clusterBundles.get("updated/1.0.0").getStatus());
+        Assert.assertEquals("mvn:org/foo/added/1.0.0", clusterBundles.get("added/1.0.0").getLocation());
+        Assert.assertFalse(clusterBundles.containsKey("removed/1.0.0"));
+        Assert.assertTrue(clusterBundles.containsKey("blocked/1.0.0"));
+        Assert.assertTrue(synchronizers.containsKey(Constants.BUNDLE_MAP + Configurations.SEPARATOR + "default"));
+
+        // the changed bundles are sent as a single event
+        Assert.assertEquals(1, produced.size());
+        EventBatch batch = (EventBatch) produced.get(0);
+        Assert.assertEquals(2, batch.getEvents().size());
+        for (Event event : batch.getEvents()) {
+            Assert.assertTrue(event instanceof ClusterBundleEvent);
+        }
+    }
+
+    @Test
+    public void testPushBatchesEvents() throws Exception {
+        EasyMock.expect(bundleContext.getBundles()).andReturn(new Bundle[]{
+                bundle("first", "mvn:org/foo/first/1.0.0", Bundle.ACTIVE),
+                bundle("second", "mvn:org/foo/second/1.0.0", Bundle.ACTIVE)}).anyTimes();
+        EasyMock.replay(bundleContext);
+
+        synchronizer.push(group);
+
+        Assert.assertEquals(1, produced.size());
+        EventBatch batch = (EventBatch) produced.get(0);
+        Assert.assertEquals(2, batch.getEvents().size());
+        Assert.assertEquals(group, batch.getSourceGroup());
+    }
+
+    @Test
+    public void testPushSingleChange() throws Exception {
+        EasyMock.expect(bundleContext.getBundles()).andReturn(new Bundle[]{
+                bundle("first", "mvn:org/foo/first/1.0.0", Bundle.ACTIVE)}).anyTimes();
+        EasyMock.replay(bundleContext);
+
+        synchronizer.push(group);
+
+        Assert.assertEquals(1, produced.size());
+        Assert.assertTrue(produced.get(0) instanceof ClusterBundleEvent);
+    }
+
+    @Test
+    public void testPullInstallsPrefetchedArtifacts() throws Exception {
+        clusterBundles.put("fetched/1.0.0", state("mvn:org/foo/fetched/1.0.0", Bundle.INSTALLED));
+        clusterBundles.put("failed/1.0.0", state("mvn:org/foo/failed/1.0.0", Bundle.INSTALLED));
+        final File artifact = folder.newFile("fetched.jar");
+        final List<String> fetched = new CopyOnWriteArrayList<String>();
+        synchronizer.setArtifactFetcher(new ArtifactFetcher() {
+            @Override
+            public File fetch(String location, String checksum) throws IOException {
+                fetched.add(location);
+                if (location.contains("failed")) {
+                    throw new IOException("not available");
+                }
+                return artifact;
+            }
+        });
+        Bundle installed = bundle("installed", "mvn:org/foo/installed/1.0.0", Bundle.INSTALLED);
+        EasyMock.expect(bundleContext.getBundles()).andReturn(new Bundle[0]).anyTimes();
+        // the fetched artifact is installed from the cache, the other one from its location
+        EasyMock.expect(bundleContext.installBundle(EasyMock.eq("mvn:org/foo/fetched/1.0.0"), EasyMock.anyObject(InputStream.class))).andReturn(installed);
+        EasyMock.expect(bundleContext.installBundle("mvn:org/foo/failed/1.0.0")).andReturn(installed);
+        EasyMock.replay(bundleContext);
+
+        synchronizer.pull(group);
+
+        EasyMock.verify(bundleContext);
+        Assert.assertEquals(2, fetched.size());
+    }
+
+    @Test
+    public void testPullStopsPrefetchOnTimeout() throws Exception {
+        clusterBundles.put("stalled/1.0.0", state("mvn:org/foo/stalled/1.0.0", Bundle.INSTALLED));
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        synchronizer.setPrefetchTimeout(1);
+        synchronizer.setArtifactFetcher(new ArtifactFetcher() {
+            @Override
+            public File fetch(String location, String checksum) throws IOException {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                throw new InterruptedIOException();
+            }
+        });
+        Bundle installed = bundle("installed", "mvn:org/foo/installed/1.0.0", Bundle.INSTALLED);
+        EasyMock.expect(bundleContext.getBundles()).andReturn(new Bundle[0]).anyTimes();
+        EasyMock.expect(bundleContext.installBundle("mvn:org/foo/stalled/1.0.0")).andReturn(installed);
+        EasyMock.replay(bundleContext);
+
+        long start = System.currentTimeMillis();
+        synchronizer.pull(group);
+
+        Assert.assertTrue(System.currentTimeMillis() - start < 30000);
+        EasyMock.verify(bundleContext);
+        // the stalled fetch has been stopped
+        Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    static BundleState state(String location, int status) {
+        BundleState state = new BundleState();
+        state.setLocation(location);
+        state.setStatus(status);
+        return state;
+    }
+
+    static Bundle bundle(String symbolicName, String location, int state) {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put(org.osgi.framework.Constants.BUNDLE_VERSION, "1.0.0");
+        BundleStartLevel startLevel = EasyMock.createMock(BundleStartLevel.class);
+        EasyMock.expect(startLevel.getStartLevel()).andReturn(80).anyTimes();
+        Bundle bundle = EasyMock.createMock(Bundle.class);
+        EasyMock.expect(bundle.getSymbolicName()).andReturn(symbolicName).anyTimes();
+        EasyMock.expect(bundle.getLocation()).andReturn(location).anyTimes();
+        EasyMock.expect(bundle.getState()).andReturn(state).anyTimes();
+        EasyMock.expect(bundle.getBundleId()).andReturn(1L).anyTimes();
+        EasyMock.expect(bundle.getHeaders()).andReturn(headers).anyTimes();
+        EasyMock.expect(bundle.adapt(BundleStartLevel.class)).andReturn(startLevel).anyTimes();
+        EasyMock.replay(startLevel, bundle);
+        return bundle;
+    }
+
+}
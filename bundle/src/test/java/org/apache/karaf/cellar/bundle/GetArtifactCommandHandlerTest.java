@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.apache.karaf.cellar.core.control.SwitchStatus;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+
+public class GetArtifactCommandHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ArtifactCache cache;
+    private GetArtifactCommandHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ArtifactCache(folder.getRoot());
+        cache.init();
+        handler = new GetArtifactCommandHandler();
+        handler.setArtifactCache(cache);
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        String checksum = cache.store("mvn:org/foo/foo/1.0.0", new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}), null);
+
+        GetArtifactResult result = handler.execute(new GetArtifactCommand("1", checksum, 3, 4));
+        Assert.assertEquals("1", result.getId());
+        Assert.assertEquals(5, result.getSize());
+        Assert.assertArrayEquals(new byte[]{4, 5}, result.getData());
+    }
+
+    @Test
+    public void testExecuteUnknownArtifact() {
+        GetArtifactResult result = handler.execute(new GetArtifactCommand("1", "0000", 0, 4));
+        Assert.assertNull(result.getData());
+    }
+
+    @Test
+    public void testSwitchFromRegistry() {
+        Switch registeredSwitch = new BasicSwitch(GetArtifactCommandHandler.SWITCH_ID, SwitchStatus.OFF);
+        SwitchRegistry switchRegistry = EasyMock.createMock(SwitchRegistry.class);
+        EasyMock.expect(switchRegistry.getHandlerSwitch(GetArtifactCommandHandler.SWITCH_ID, handler)).andReturn(registeredSwitch);
+        EasyMock.replay(switchRegistry);
+        handler.setSwitchRegistry(switchRegistry);
+
+        Assert.assertSame(registeredSwitch, handler.getSwitch());
+        EasyMock.verify(switchRegistry);
+    }
+
+}
@@ -16,13 +16,26 @@ package org.apache.karaf.cellar.config;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.event.Event;
 
+import java.util.Properties;
+import java.util.Set;
+
 /**
  * Cluster configuration event.
+ * An update event can carry the properties changed from a version of the cluster configuration to the next one:
+ * the nodes at the base version apply only these changes, the other nodes read the whole cluster configuration.
  */
 public class ClusterConfigurationEvent extends Event {
 
+    // the version of the class without changes, so the nodes running it can still read the events
+    private static final long serialVersionUID = -1778745807457261918L;
+
 	private Integer type;
     private Node local;
+    private Long baseVersion;
+    private Long version;
+    private Properties changes;
+    private Set<String> removals;
+    private String filename;
 
     public ClusterConfigurationEvent(String id) {
         super(id);
@@ -44,9 +57,60 @@ public class ClusterConfigurationEvent extends Event {
         this.local = local;
     }
 
+    /**
+     * Set the changes of the cluster configuration.
+     *
+     * @param baseVersion the version of the cluster configuration the changes apply to.
+     * @param version the version of the cluster configuration after the changes.
+     * @param changes the added or updated properties.
+     * @param removals the removed properties.
+     */
+    public void setChanges(long baseVersion, long version, Properties changes, Set<String> removals) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.changes = changes;
+        this.removals = removals;
+    }
+
+    /**
+     * @return true if the event carries the changes of the cluster configuration, false if the nodes have to read
+     * the whole cluster configuration.
+     */
+    public boolean hasChanges() {
+        return version != null && changes != null && removals != null;
+    }
+
+    public Long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Properties getChanges() {
+        return changes;
+    }
+
+    public Set<String> getRemovals() {
+        return removals;
+    }
+
+    /**
+     * @return the configuration file name, used to find the local configuration of a factory configuration.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
     @Override
 	public String toString() {
 		return "ClusterConfigurationEvent [type=" + type + ", id=" + id
+				+ ", baseVersion=" + baseVersion + ", version=" + version
 				+ ", sourceNode=" + sourceNode + ", sourceGroup=" + sourceGroup
 				+ ", destination=" + destination + ", force=" + force
 				+ ", postPublish=" + postPublish + "]";
@@ -15,7 +15,6 @@ package org.apache.karaf.cellar.config;
 
 import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Group;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
@@ -26,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Dictionary;
+import java.util.Enumeration;
 import java.util.Map;
 import java.util.Properties;
 
@@ -38,8 +38,6 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.configuration.handler";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     @Override
     public void handle(ClusterConfigurationEvent event) {
 
@@ -70,17 +68,25 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
         Group group = event.getSourceGroup();
         String groupName = group.getName();
 
-        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
-
         String pid = event.getId();
 
         if (isAllowed(event.getSourceGroup(), Constants.CATEGORY, pid, EventType.INBOUND)) {
-            Dictionary clusterDictionary = clusterConfigurations.get(pid);
             try {
+                if (event.getType() == null || event.getType() != ConfigurationEvent.CM_DELETED) {
+                    // the node is at the base version of the changes, it doesn't need the whole cluster configuration
+                    if (event.hasChanges() && applyChanges(groupName, pid, event)) {
+                        return;
+                    }
+                }
+
+                Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+                Dictionary clusterDictionary = clusterConfigurations.get(pid);
+
                 // update the local configuration
                 Configuration localConfiguration = findLocalConfiguration(pid, clusterDictionary);
 
                 if (event.getType() != null && event.getType() == ConfigurationEvent.CM_DELETED) {
+                    setLocalVersion(groupName, pid, 0, null);
                     // delete the configuration
                     if (localConfiguration != null) {
                         deleteConfiguration(localConfiguration);
@@ -101,6 +107,7 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
                             localConfiguration.update(convertedDictionary);
                             persistConfiguration(localConfiguration, clusterDictionary);
                         }
+                        setLocalVersion(groupName, pid, getVersion(clusterDictionary), filter(localConfiguration.getProperties()));
                     }
                 }
             } catch (Exception ex) {
@@ -109,6 +116,52 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
         } else LOGGER.trace("CELLAR CONFIG: configuration PID {} is marked BLOCKED INBOUND for cluster group {}", pid, groupName);
     }
 
+    /**
+     * Apply the changed properties of a cluster event on the local configuration, if the local configuration is at
+     * the base version of the changes.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param event the cluster configuration event, carrying the changes.
+     * @return true if the changes have been applied, false if the whole cluster configuration has to be read.
+     * @throws Exception in case of update failure.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean applyChanges(String groupName, String pid, ClusterConfigurationEvent event) throws Exception {
+        Properties lookup = new Properties();
+        if (event.getFilename() != null) {
+            lookup.put(KARAF_CELLAR_FILENAME, event.getFilename());
+        }
+        Configuration localConfiguration = findLocalConfiguration(pid, lookup);
+        if (localConfiguration == null || localConfiguration.getProperties() == null) {
+            return false;
+        }
+        Dictionary localDictionary = localConfiguration.getProperties();
+        Dictionary filteredDictionary = filter(localDictionary);
+        Long version = getLocalVersion(groupName, pid, filteredDictionary);
+        if (version == null || !version.equals(event.getBaseVersion())) {
+            return false;
+        }
+        if (!canDistributeConfig(filteredDictionary)) {
+            setLocalVersion(groupName, pid, event.getVersion(), filteredDictionary);
+            return true;
+        }
+        Enumeration keys = event.getChanges().keys();
+        while (keys.hasMoreElements()) {
+            Object key = keys.nextElement();
+            localDictionary.put(key, event.getChanges().get(key));
+        }
+        for (String key : event.getRemovals()) {
+            localDictionary.remove(key);
+        }
+        LOGGER.debug("CELLAR CONFIG: applying {} changed and {} removed properties of configuration {} version {}",
+                event.getChanges().size(), event.getRemovals().size(), pid, event.getVersion());
+        localConfiguration.update(localDictionary);
+        persistChanges(localConfiguration, event.getChanges(), event.getRemovals());
+        setLocalVersion(groupName, pid, event.getVersion(), filter(localConfiguration.getProperties()));
+        return true;
+    }
+
     public void init() {
         // nothing to do
     }
@@ -124,21 +177,7 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
      */
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // nothing to do
-        }
-        return eventSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
     /**
@@ -14,6 +14,7 @@
 package org.apache.karaf.cellar.config;
 
 import org.apache.karaf.cellar.core.CellarSupport;
+import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.Configurations;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
@@ -23,6 +24,7 @@ import java.io.*;
 import java.net.URI;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Generic configuration support.
@@ -33,8 +35,12 @@ public class ConfigurationSupport extends CellarSupport {
     public static final String KARAF_CELLAR_FILENAME = "karaf.cellar.filename";
     public static final String KARAF_CELLAR_CONTENT = "karaf.cellar.content";
     public static final String KARAF_CELLAR_REMOVED = "karaf.cellar.removed";
+    public static final String KARAF_CELLAR_VERSION = "karaf.cellar.version";
+
+    private static volatile boolean deltaEnabled = Boolean.parseBoolean(System.getProperty(ConfigurationSupport.class.getName() + ".delta", "true"));
 
     protected File storage;
+    protected ConfigurationVersions configurationVersions;
 
     /**
      * Read a {@code Dictionary} and create a corresponding {@code Properties}.
@@ -70,16 +76,20 @@ public class ConfigurationSupport extends CellarSupport {
         if (source == null || target == null)
             return false;
 
-        if (source.isEmpty() && target.isEmpty())
+        // the version of the cluster configuration is not a configuration property
+        int sourceSize = source.size() - (source.get(KARAF_CELLAR_VERSION) != null ? 1 : 0);
+        int targetSize = target.size() - (target.get(KARAF_CELLAR_VERSION) != null ? 1 : 0);
+
+        if (sourceSize == 0 && targetSize == 0)
             return true;
 
-        if (source.size() != target.size())
+        if (sourceSize != targetSize)
             return false;
 
         Enumeration sourceKeys = source.keys();
         while (sourceKeys.hasMoreElements()) {
             Object key = sourceKeys.nextElement();
-            if (!key.equals(org.osgi.framework.Constants.SERVICE_PID)) {
+            if (!key.equals(org.osgi.framework.Constants.SERVICE_PID) && !key.equals(KARAF_CELLAR_VERSION)) {
                 Object sourceValue = source.get(key);
                 Object targetValue = target.get(key);
                 if (sourceValue != null && targetValue == null)
@@ -94,6 +104,157 @@ public class ConfigurationSupport extends CellarSupport {
         return true;
     }
 
+    /**
+     * Check if the configurations are replicated as changes between versions.
+     * The delta replication is enabled by default, and disabled by setting the
+     * {@code org.apache.karaf.cellar.config.ConfigurationSupport.delta} system property to {@code false}, for instance
+     * while older nodes, which would store the version as a configuration property, are in the cluster.
+     *
+     * @return true if the delta replication is enabled, false else.
+     */
+    public static boolean isDeltaEnabled() {
+        return deltaEnabled;
+    }
+
+    static void setDeltaEnabled(boolean enabled) {
+        deltaEnabled = enabled;
+    }
+
+    /**
+     * Get the version of a cluster configuration, incremented each time the configuration is updated on the cluster.
+     *
+     * @param dictionary the cluster configuration.
+     * @return the version, 0 if the configuration is not versioned.
+     */
+    public static long getVersion(Dictionary dictionary) {
+        Object version = dictionary != null ? dictionary.get(KARAF_CELLAR_VERSION) : null;
+        return (version instanceof Number) ? ((Number) version).longValue() : 0;
+    }
+
+    /**
+     * Store a configuration in a cluster group. The file content is not stored: each node writes its own file from the
+     * properties.
+     * When the delta replication is enabled, the configuration gets the next version of the PID, claimed with a
+     * compare-and-set on the versions map of the cluster group. If this version directly follows the version of the
+     * previous configuration, the changes are set in the cluster event. Else another node updated the configuration
+     * concurrently: the event doesn't carry changes, and the nodes read the whole configuration from the cluster.
+     *
+     * @param clusterManager the cluster manager.
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param previous the cluster configuration read before the update, or null.
+     * @param configuration the new cluster configuration (not the previous instance updated in place).
+     * @param event the cluster event to send, or null.
+     * @return the version of the stored configuration, 0 if the delta replication is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    public static long storeClusterConfiguration(ClusterManager clusterManager, String groupName, String pid, Properties previous, Properties configuration, ClusterConfigurationEvent event) {
+        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+        configuration.remove(KARAF_CELLAR_CONTENT);
+        if (!deltaEnabled) {
+            configuration.remove(KARAF_CELLAR_VERSION);
+            clusterConfigurations.put(pid, configuration);
+            return 0;
+        }
+        ConcurrentMap<String, Long> versions = (ConcurrentMap<String, Long>) clusterManager.getMap(Constants.VERSION_MAP + Configurations.SEPARATOR + groupName);
+        long base = getVersion(previous);
+        long version = base + 1;
+        boolean claimed = versions.putIfAbsent(pid, version) == null || versions.replace(pid, base, version);
+        boolean next = claimed;
+        while (!claimed) {
+            // the configuration has been updated concurrently, take the version following the current one
+            Long current = versions.get(pid);
+            version = Math.max(current != null ? current : 0, base) + 1;
+            claimed = (current == null) ? versions.putIfAbsent(pid, version) == null : versions.replace(pid, current, version);
+        }
+        configuration.put(KARAF_CELLAR_VERSION, version);
+        clusterConfigurations.put(pid, configuration);
+        if (event != null) {
+            if (next) {
+                setChanges(event, previous, configuration);
+            } else {
+                LOGGER.debug("CELLAR CONFIG: configuration {} updated concurrently in cluster group {}, sending version {} without changes", pid, groupName, version);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Get the version of the cluster configuration the local configuration is at.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param localDictionary the current filtered local configuration.
+     * @return the version, or null if unknown or if the local configuration changed since.
+     */
+    protected Long getLocalVersion(String groupName, String pid, Dictionary localDictionary) {
+        return configurationVersions != null ? configurationVersions.get(groupName, pid, localDictionary) : null;
+    }
+
+    /**
+     * Set the version of the cluster configuration the local configuration is at, each time the local configuration
+     * is written from the cluster configuration or pushed to the cluster.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param version the version, 0 if the configuration is not versioned.
+     * @param localDictionary the filtered local configuration, as written or pushed.
+     */
+    protected void setLocalVersion(String groupName, String pid, long version, Dictionary localDictionary) {
+        if (configurationVersions != null) {
+            configurationVersions.set(groupName, pid, version, localDictionary);
+        }
+    }
+
+    /**
+     * Set the changes between the previous and the new cluster configuration in a cluster event, so the nodes
+     * at the previous version only apply the changed properties.
+     * The event doesn't carry changes when the configuration is new, removed or moved to another file: the nodes
+     * read the whole configuration from the cluster.
+     *
+     * @param event the cluster configuration event.
+     * @param previous the previous cluster configuration.
+     * @param dictionary the new cluster configuration.
+     */
+    static void setChanges(ClusterConfigurationEvent event, Dictionary previous, Dictionary dictionary) {
+        if (previous == null || previous.get(KARAF_CELLAR_REMOVED) != null || dictionary.get(KARAF_CELLAR_REMOVED) != null) {
+            return;
+        }
+        Object filename = dictionary.get(KARAF_CELLAR_FILENAME);
+        if (filename == null ? previous.get(KARAF_CELLAR_FILENAME) != null : !filename.equals(previous.get(KARAF_CELLAR_FILENAME))) {
+            return;
+        }
+        Properties changes = new Properties();
+        Set<String> removals = new HashSet<String>();
+        Enumeration keys = dictionary.keys();
+        while (keys.hasMoreElements()) {
+            Object key = keys.nextElement();
+            if (!isVersionedProperty(key)) {
+                Object value = dictionary.get(key);
+                if (!value.equals(previous.get(key))) {
+                    changes.put(key, value);
+                }
+            }
+        }
+        keys = previous.keys();
+        while (keys.hasMoreElements()) {
+            Object key = keys.nextElement();
+            if (!isVersionedProperty(key) && dictionary.get(key) == null) {
+                removals.add(key.toString());
+            }
+        }
+        event.setChanges(getVersion(previous), getVersion(dictionary), changes, removals);
+        event.setFilename(filename != null ? filename.toString() : null);
+    }
+
+    /**
+     * Check if a cluster property is handled by the configuration versioning instead of being sent as a change:
+     * the version itself, the file content (the nodes update their own file) and the file name.
+     */
+    private static boolean isVersionedProperty(Object key) {
+        return KARAF_CELLAR_VERSION.equals(key) || KARAF_CELLAR_CONTENT.equals(key) || KARAF_CELLAR_FILENAME.equals(key);
+    }
+
     public boolean canDistributeConfig(Dictionary dictionary) {
         if (dictionary.get(ConfigurationAdmin.SERVICE_FACTORYPID) != null) {
             return dictionary.get(KARAF_CELLAR_FILENAME) != null;
@@ -121,12 +282,7 @@ public class ConfigurationSupport extends CellarSupport {
                     String value = dictionary.get(key).toString();
                     value = value.substring(value.lastIndexOf("/") + 1);
                     result.put(KARAF_CELLAR_FILENAME, value);
-                    try {
-                        result.put(KARAF_CELLAR_CONTENT, readFile(new File(storage, value)));
-                    } catch (IOException e) {
-                        // Cannot read file
-                    }
-                } else if (!isExcludedProperty(key)) {
+                } else if (!key.equals(KARAF_CELLAR_VERSION) && !isExcludedProperty(key)) {
                     Object value = dictionary.get(key);
                     result.put(key, value);
                 }
@@ -178,7 +334,7 @@ public class ConfigurationSupport extends CellarSupport {
                 if (key.equals(KARAF_CELLAR_FILENAME)) {
                     String value = dictionary.get(key).toString();
                     result.put(FELIX_FILEINSTALL_FILENAME, new File(storage, value).toURI().toString());
-                } else if (key.equals(KARAF_CELLAR_CONTENT)) {
+                } else if (key.equals(KARAF_CELLAR_CONTENT) || key.equals(KARAF_CELLAR_VERSION)) {
                     // skip
                 } else {
                     Object value = dictionary.get(key);
@@ -272,6 +428,41 @@ public class ConfigurationSupport extends CellarSupport {
         }
     }
 
+    /**
+     * Persist the changed properties of a configuration in its storage file, keeping the other lines of the file
+     * (comments, layout). The whole configuration is persisted if the file doesn't exist yet.
+     *
+     * @param cfg the configuration to store.
+     * @param changes the added or updated properties.
+     * @param removals the removed properties.
+     */
+    protected void persistChanges(Configuration cfg, Dictionary changes, Set<String> removals) {
+        try {
+            File storageFile = getStorageFile(cfg.getProperties());
+            if (storageFile == null || !storageFile.exists()) {
+                persistConfiguration(cfg, null);
+                return;
+            }
+            org.apache.felix.utils.properties.Properties p = new org.apache.felix.utils.properties.Properties(storageFile);
+            for (Enumeration keys = changes.keys(); keys.hasMoreElements(); ) {
+                Object key = keys.nextElement();
+                Object value = changes.get(key);
+                if (!(value instanceof String)) {
+                    // the file can't hold the typed value as is
+                    persistConfiguration(cfg, null);
+                    return;
+                }
+                p.put(key.toString(), (String) value);
+            }
+            for (String key : removals) {
+                p.remove(key);
+            }
+            p.save();
+        } catch (Exception e) {
+            LOGGER.error("CELLAR CONFIG: Issue when trying to persist configuration file", e);
+        }
+    }
+
     private File getStorageFile(Dictionary properties) throws IOException {
         File storageFile = null;
         Object val = properties.get(FELIX_FILEINSTALL_FILENAME);
@@ -309,6 +500,14 @@ public class ConfigurationSupport extends CellarSupport {
         }
     }
 
+    public ConfigurationVersions getConfigurationVersions() {
+        return configurationVersions;
+    }
+
+    public void setConfigurationVersions(ConfigurationVersions configurationVersions) {
+        this.configurationVersions = configurationVersions;
+    }
+
     public File getStorage() {
         return storage;
     }
@@ -317,22 +516,6 @@ public class ConfigurationSupport extends CellarSupport {
         this.storage = storage;
     }
 
-    private String readFile(File file) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-
-        try {
-            String line = reader.readLine();
-            StringBuilder sb = new StringBuilder();
-
-            while(line != null){
-                sb.append(line).append("\n");
-                line = reader.readLine();
-            }
-            return sb.toString();
-        } finally {
-            reader.close();
-        }
-    }
     private void writeFile(File file, String content) throws IOException {
         BufferedWriter writer = new BufferedWriter(new FileWriter(file));
         try {
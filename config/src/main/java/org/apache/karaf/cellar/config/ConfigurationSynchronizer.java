@@ -125,6 +125,7 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                 for (String pid : clusterConfigurations.keySet()) {
                     if (isAllowed(group, Constants.CATEGORY, pid, EventType.INBOUND) && shouldReplicateConfig(clusterConfigurations.get(pid))) {
                         Dictionary clusterDictionary = clusterConfigurations.get(pid);
+                        long version = getVersion(clusterDictionary);
                         try {
                             // update the local configuration if needed
                             Configuration localConfiguration = findLocalConfiguration(pid, clusterDictionary);
@@ -143,6 +144,7 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                                 localConfiguration.update((Dictionary) clusterDictionary);
                                 persistConfiguration(localConfiguration, clusterDictionary);
                             }
+                            setLocalVersion(groupName, pid, version, filter(localConfiguration.getProperties()));
                         } catch (IOException ex) {
                             LOGGER.error("CELLAR CONFIG: failed to read local configuration", ex);
                         }
@@ -210,7 +212,8 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                             if (!clusterConfigurations.containsKey(pid)) {
                                 LOGGER.debug("CELLAR CONFIG: creating configuration pid {} on the cluster", pid);
                                 // update cluster configurations
-                                clusterConfigurations.put(pid, dictionaryToProperties(localDictionary));
+                                long version = storeClusterConfiguration(clusterManager, groupName, pid, null, dictionaryToProperties(localDictionary), null);
+                                setLocalVersion(groupName, pid, version, localDictionary);
                                 // send cluster event
                                 ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
                                 event.setSourceGroup(group);
@@ -218,13 +221,14 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                                 event.setLocal(clusterManager.getNode());
                                 eventProducer.produce(event);
                             } else {
-                                Dictionary clusterDictionary = clusterConfigurations.get(pid);
+                                Properties clusterDictionary = clusterConfigurations.get(pid);
                                 if (!equals(clusterDictionary, localDictionary) && canDistributeConfig(localDictionary)) {
                                     LOGGER.debug("CELLAR CONFIG: updating configuration pid {} on the cluster", pid);
                                     // update cluster configurations
-                                    clusterConfigurations.put(pid, dictionaryToProperties(localDictionary));
-                                    // send cluster event
+                                    // send cluster event, with the changed properties
                                     ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                                    long version = storeClusterConfiguration(clusterManager, groupName, pid, clusterDictionary, dictionaryToProperties(localDictionary), event);
+                                    setLocalVersion(groupName, pid, version, localDictionary);
                                     event.setSourceGroup(group);
                                     event.setLocal(clusterManager.getNode());
                                     event.setSourceNode(clusterManager.getNode());
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Versions of the cluster configurations the local configurations are at, by PID and cluster group.
+ * A version is recorded with the local configuration it has been written to, or pushed from: it only stands as long
+ * as the local configuration is unchanged, and is cleared when the local configuration changes without being pushed.
+ */
+public class ConfigurationVersions {
+
+    private final ConcurrentMap<String, Map<String, LocalVersion>> versions = new ConcurrentHashMap<String, Map<String, LocalVersion>>();
+
+    /**
+     * Get the version of the cluster configuration the local configuration is at.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param localDictionary the current filtered local configuration.
+     * @return the version, or null if unknown or if the local configuration changed since the version was recorded.
+     */
+    public Long get(String groupName, String pid, Dictionary localDictionary) {
+        Map<String, LocalVersion> groups = versions.get(pid);
+        LocalVersion version = groups != null ? groups.get(groupName) : null;
+        if (version == null) {
+            return null;
+        }
+        if (!version.properties.equals(normalize(localDictionary))) {
+            groups.remove(groupName);
+            return null;
+        }
+        return version.version;
+    }
+
+    /**
+     * Record the version of the cluster configuration the local configuration is at, each time the local
+     * configuration is written from the cluster configuration or pushed to the cluster.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param version the version, 0 if the configuration is not versioned.
+     * @param localDictionary the filtered local configuration, as written or pushed.
+     */
+    public void set(String groupName, String pid, long version, Dictionary localDictionary) {
+        if (version > 0 && localDictionary != null) {
+            Map<String, LocalVersion> groups = versions.get(pid);
+            if (groups == null) {
+                groups = new ConcurrentHashMap<String, LocalVersion>();
+                Map<String, LocalVersion> existing = versions.putIfAbsent(pid, groups);
+                groups = existing != null ? existing : groups;
+            }
+            groups.put(groupName, new LocalVersion(version, normalize(localDictionary)));
+        } else {
+            remove(groupName, pid);
+        }
+    }
+
+    /**
+     * Clear the version of a configuration in a cluster group.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     */
+    public void remove(String groupName, String pid) {
+        Map<String, LocalVersion> groups = versions.get(pid);
+        if (groups != null) {
+            groups.remove(groupName);
+        }
+    }
+
+    /**
+     * Clear the versions of a local configuration which changed since they were recorded.
+     *
+     * @param pid the configuration PID.
+     * @param localDictionary the current filtered local configuration, or null if it has been deleted.
+     */
+    public void invalidate(String pid, Dictionary localDictionary) {
+        Map<String, LocalVersion> groups = versions.get(pid);
+        if (groups == null) {
+            return;
+        }
+        if (localDictionary == null) {
+            groups.clear();
+            return;
+        }
+        Map<Object, Object> properties = normalize(localDictionary);
+        for (Iterator<LocalVersion> iterator = groups.values().iterator(); iterator.hasNext(); ) {
+            if (!iterator.next().properties.equals(properties)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Check if versions are recorded for a configuration.
+     *
+     * @param pid the configuration PID.
+     * @return true if at least one cluster group has a version for the configuration, false else.
+     */
+    public boolean contains(String pid) {
+        Map<String, LocalVersion> groups = versions.get(pid);
+        return groups != null && !groups.isEmpty();
+    }
+
+    /**
+     * Copy the configuration properties compared to detect local changes, leaving out the properties which are not
+     * part of the configuration.
+     */
+    private static Map<Object, Object> normalize(Dictionary dictionary) {
+        Map<Object, Object> properties = new HashMap<Object, Object>();
+        if (dictionary != null) {
+            Enumeration keys = dictionary.keys();
+            while (keys.hasMoreElements()) {
+                Object key = keys.nextElement();
+                if (!key.equals(org.osgi.framework.Constants.SERVICE_PID)
+                        && !key.equals(ConfigurationSupport.KARAF_CELLAR_VERSION)
+                        && !key.equals(ConfigurationSupport.KARAF_CELLAR_CONTENT)) {
+                    properties.put(key, normalizeValue(dictionary.get(key)));
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Wrap an array value, so it's compared by content.
+     */
+    private static Object normalizeValue(Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        if (value != null && value.getClass().isArray()) {
+            return Arrays.deepToString(new Object[]{value});
+        }
+        return value;
+    }
+
+    private static class LocalVersion {
+
+        private final long version;
+        private final Map<Object, Object> properties;
+
+        private LocalVersion(long version, Map<Object, Object> properties) {
+            this.version = version;
+            this.properties = properties;
+        }
+
+    }
+
+}
@@ -44,6 +44,9 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
     @Override
     public void configurationEvent(ConfigurationEvent event) {
 
+        // the local configuration may change without being pushed, the versions it was at don't stand anymore
+        invalidateLocalVersions(event);
+
         if (!isEnabled()) {
             LOGGER.trace("CELLAR CONFIG: local listener is disabled");
             return;
@@ -79,7 +82,9 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
                                 }
                                 for (String matchingPid : matchingPids) {
                                     // update the configurations in the cluster group
-                                    clusterConfigurations.put(matchingPid, getDeletedConfigurationMarker(clusterConfigurations.get(matchingPid)));
+                                    Properties clusterDictionary = clusterConfigurations.get(matchingPid);
+                                    storeClusterConfiguration(clusterManager, group.getName(), matchingPid, clusterDictionary, getDeletedConfigurationMarker(clusterDictionary), null);
+                                    setLocalVersion(group.getName(), matchingPid, 0, null);
                                 }
                                 // send the cluster event
                                 ClusterConfigurationEvent clusterConfigurationEvent = new ClusterConfigurationEvent(pid);
@@ -99,9 +104,10 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
 
                             if (!equals(localDictionary, distributedDictionary) && canDistributeConfig(localDictionary)) {
                                 // update the configurations in the cluster group
-                                clusterConfigurations.put(pid, dictionaryToProperties(localDictionary));
-                                // send the cluster event
+                                // send the cluster event, with the changed properties
                                 ClusterConfigurationEvent clusterConfigurationEvent = new ClusterConfigurationEvent(pid);
+                                long version = storeClusterConfiguration(clusterManager, group.getName(), pid, distributedDictionary, dictionaryToProperties(localDictionary), clusterConfigurationEvent);
+                                setLocalVersion(group.getName(), pid, version, localDictionary);
                                 clusterConfigurationEvent.setSourceGroup(group);
                                 clusterConfigurationEvent.setSourceNode(clusterManager.getNode());
                                 clusterConfigurationEvent.setLocal(clusterManager.getNode());
@@ -116,6 +122,30 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
         }
     }
 
+    /**
+     * Clear the versions of the cluster configurations recorded for a local configuration, if it changed since they
+     * were recorded. The versions recorded when the configuration has been written from the cluster stand.
+     *
+     * @param event the local configuration event.
+     */
+    private void invalidateLocalVersions(ConfigurationEvent event) {
+        if (configurationVersions == null || !configurationVersions.contains(event.getPid())) {
+            return;
+        }
+        Dictionary localDictionary = null;
+        if (event.getType() != ConfigurationEvent.CM_DELETED) {
+            try {
+                Configuration localConfiguration = findLocalConfiguration(event.getPid(), null);
+                if (localConfiguration != null) {
+                    localDictionary = filter(localConfiguration.getProperties());
+                }
+            } catch (Exception e) {
+                LOGGER.debug("CELLAR CONFIG: can't read local configuration {}", event.getPid(), e);
+            }
+        }
+        configurationVersions.invalidate(event.getPid(), localDictionary);
+    }
+
     /**
      * Check if the local config listener is enabled in the etc/org.apache.karaf.cellar.groups.cfg.
      *
@@ -15,12 +15,15 @@ package org.apache.karaf.cellar.config.internal.osgi;
 
 import org.apache.karaf.cellar.config.ConfigurationEventHandler;
 import org.apache.karaf.cellar.config.ConfigurationSynchronizer;
+import org.apache.karaf.cellar.config.ConfigurationVersions;
 import org.apache.karaf.cellar.config.LocalConfigurationListener;
 import org.apache.karaf.cellar.config.management.CellarConfigMBean;
 import org.apache.karaf.cellar.config.management.internal.CellarConfigMBeanImpl;
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.GroupFilterIndex;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.util.tracker.BaseActivator;
@@ -43,6 +46,8 @@ import java.util.Hashtable;
                 @RequireService(ClusterManager.class),
                 @RequireService(GroupManager.class),
                 @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class),
+                @RequireService(GroupFilterIndex.class),
                 @RequireService(EventProducer.class)
         },
         provides = {
@@ -74,18 +79,29 @@ public class Activator extends BaseActivator implements ManagedService {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null)
             return;
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null)
+            return;
+        GroupFilterIndex groupFilterIndex = getTrackedService(GroupFilterIndex.class);
+        if (groupFilterIndex == null)
+            return;
         EventProducer eventProducer = getTrackedService(EventProducer.class);
         if (eventProducer == null)
             return;
 
         File storage = new File(getString("storage", System.getProperty("karaf.etc")));
 
+        ConfigurationVersions configurationVersions = new ConfigurationVersions();
+
         LOGGER.debug("CELLAR CONFIG: init event handler");
         configurationEventHandler = new ConfigurationEventHandler();
         configurationEventHandler.setConfigurationAdmin(configurationAdmin);
+        configurationEventHandler.setGroupFilterIndex(groupFilterIndex);
+        configurationEventHandler.setSwitchRegistry(switchRegistry);
         configurationEventHandler.setGroupManager(groupManager);
         configurationEventHandler.setClusterManager(clusterManager);
         configurationEventHandler.setStorage(storage);
+        configurationEventHandler.setConfigurationVersions(configurationVersions);
         configurationEventHandler.init();
         Hashtable props = new Hashtable();
         props.put("managed", "true");
@@ -96,18 +112,22 @@ public class Activator extends BaseActivator implements ManagedService {
         localConfigurationListener.setClusterManager(clusterManager);
         localConfigurationListener.setGroupManager(groupManager);
         localConfigurationListener.setConfigurationAdmin(configurationAdmin);
+        localConfigurationListener.setGroupFilterIndex(groupFilterIndex);
         localConfigurationListener.setEventProducer(eventProducer);
         localConfigurationListener.setStorage(storage);
+        localConfigurationListener.setConfigurationVersions(configurationVersions);
         localConfigurationListener.init();
         register(ConfigurationListener.class, localConfigurationListener);
 
         LOGGER.debug("CELLAR CONFIG: init synchronizer");
         configurationSynchronizer = new ConfigurationSynchronizer();
         configurationSynchronizer.setConfigurationAdmin(configurationAdmin);
+        configurationSynchronizer.setGroupFilterIndex(groupFilterIndex);
         configurationSynchronizer.setGroupManager(groupManager);
         configurationSynchronizer.setClusterManager(clusterManager);
         configurationSynchronizer.setEventProducer(eventProducer);
         configurationSynchronizer.setStorage(storage);
+        configurationSynchronizer.setConfigurationVersions(configurationVersions);
         configurationSynchronizer.init(bundleContext);
         props = new Hashtable();
         props.put("resource", "config");
@@ -14,6 +14,7 @@
 package org.apache.karaf.cellar.config.management.internal;
 
 import org.apache.karaf.cellar.config.ClusterConfigurationEvent;
+import org.apache.karaf.cellar.config.ConfigurationSupport;
 import org.apache.karaf.cellar.config.Constants;
 import org.apache.karaf.cellar.core.*;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
@@ -141,15 +142,16 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
         Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
         if (clusterConfigurations != null) {
             // update the cluster group
-            Properties clusterProperties = clusterConfigurations.get(pid);
-            if (clusterProperties == null) {
-                clusterProperties = new Properties();
+            Properties previous = clusterConfigurations.get(pid);
+            Properties clusterProperties = new Properties();
+            if (previous != null) {
+                clusterProperties.putAll(previous);
             }
             clusterProperties.put(key, value);
-            clusterConfigurations.put(pid, clusterProperties);
+            ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            ConfigurationSupport.storeClusterConfiguration(clusterManager, groupName, pid, previous, clusterProperties, event);
 
             // broadcast the cluster event
-            ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
@@ -183,9 +185,10 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
         Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
         if (clusterConfigurations != null) {
             // update the cluster group
-            Properties clusterProperties = clusterConfigurations.get(pid);
-            if (clusterProperties == null) {
-                clusterProperties = new Properties();
+            Properties previous = clusterConfigurations.get(pid);
+            Properties clusterProperties = new Properties();
+            if (previous != null) {
+                clusterProperties.putAll(previous);
             }
             Object currentValue = clusterProperties.get(key);
             if (currentValue == null) {
@@ -195,10 +198,10 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
             } else {
                 throw new IllegalStateException("Append failed: current value is not a String");
             }
-            clusterConfigurations.put(pid, clusterProperties);
+            ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            ConfigurationSupport.storeClusterConfiguration(clusterManager, groupName, pid, previous, clusterProperties, event);
 
             // broadcast the cluster event
-            ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
@@ -234,10 +237,12 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
             // update the cluster group
             Properties clusterDictionary = clusterConfigurations.get(pid);
             if (clusterDictionary != null) {
-                clusterDictionary.remove(key);
-                clusterConfigurations.put(pid, clusterDictionary);
-                // broadcast the cluster event
+                Properties clusterProperties = new Properties();
+                clusterProperties.putAll(clusterDictionary);
+                clusterProperties.remove(key);
                 ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                ConfigurationSupport.storeClusterConfiguration(clusterManager, groupName, pid, clusterDictionary, clusterProperties, event);
+                // broadcast the cluster event
                 event.setSourceGroup(group);
                 event.setSourceNode(clusterManager.getNode());
                 eventProducer.produce(event);
@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.config.shell;
 
+import org.apache.karaf.cellar.config.ConfigurationSupport;
 import org.apache.karaf.cellar.config.Constants;
 import org.apache.karaf.cellar.config.ClusterConfigurationEvent;
 import org.apache.karaf.cellar.config.shell.completers.ClusterConfigCompleter;
@@ -75,11 +76,13 @@ public class PropDelCommand extends ConfigCommandSupport {
             // update the configurations in the cluster group
             Properties distributedDictionary = clusterConfigurations.get(pid);
             if (distributedDictionary != null) {
-                distributedDictionary.remove(key);
-                clusterConfigurations.put(pid, distributedDictionary);
+                Properties properties = new Properties();
+                properties.putAll(distributedDictionary);
+                properties.remove(key);
+                ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                ConfigurationSupport.storeClusterConfiguration(clusterManager, groupName, pid, distributedDictionary, properties, event);
 
                 // broadcast the cluster event
-                ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
                 event.setSourceGroup(group);
                 event.setSourceNode(clusterManager.getNode());
                 eventProducer.produce(event);
@@ -14,6 +14,7 @@
 package org.apache.karaf.cellar.config.shell;
 
 import org.apache.karaf.cellar.config.ClusterConfigurationEvent;
+import org.apache.karaf.cellar.config.ConfigurationSupport;
 import org.apache.karaf.cellar.config.Constants;
 import org.apache.karaf.cellar.config.shell.completers.ClusterConfigCompleter;
 import org.apache.karaf.cellar.core.Configurations;
@@ -76,15 +77,16 @@ public class PropSetCommand extends ConfigCommandSupport {
         Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
         if (clusterConfigurations != null) {
             // update the configurations in the cluster group
-            Properties properties = clusterConfigurations.get(pid);
-            if (properties == null) {
-                properties = new Properties();
+            Properties previous = clusterConfigurations.get(pid);
+            Properties properties = new Properties();
+            if (previous != null) {
+                properties.putAll(previous);
             }
             properties.put(key, value);
-            clusterConfigurations.put(pid, properties);
+            ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            ConfigurationSupport.storeClusterConfiguration(clusterManager, groupName, pid, previous, properties, event);
 
             // broadcast the cluster event
-            ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
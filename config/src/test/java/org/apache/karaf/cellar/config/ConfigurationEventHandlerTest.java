@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.GroupManager;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.apache.karaf.cellar.core.control.SwitchStatus;
+import org.apache.karaf.cellar.core.event.EventHandler;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Properties;
+
+public class ConfigurationEventHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Group group = new Group("default");
+    private Map<String, Properties> clusterConfigurations = new HashMap<String, Properties>();
+    private Hashtable<String, Object> localProperties = new Hashtable<String, Object>();
+    private File file;
+
+    private ClusterManager clusterManager;
+    private ConfigurationVersions versions = new ConfigurationVersions();
+    private ConfigurationEventHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.newFile("foo.cfg");
+        Files.write(file.toPath(), "# foo settings\na = 1\n# the b setting\nb = 2\n".getBytes(StandardCharsets.UTF_8));
+        localProperties.put(org.osgi.framework.Constants.SERVICE_PID, "foo");
+        localProperties.put(ConfigurationSupport.FELIX_FILEINSTALL_FILENAME, file.toURI().toString());
+        localProperties.put("a", "1");
+        localProperties.put("b", "2");
+
+        Configuration localConfiguration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(localConfiguration.getPid()).andReturn("foo").anyTimes();
+        EasyMock.expect(localConfiguration.getProperties()).andAnswer(new IAnswer<Dictionary<String, Object>>() {
+            @Override
+            public Dictionary<String, Object> answer() {
+                return new Hashtable<String, Object>(localProperties);
+            }
+        }).anyTimes();
+        localConfiguration.update(EasyMock.<Dictionary<String, ?>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() {
+                Dictionary<?, ?> properties = (Dictionary<?, ?>) EasyMock.getCurrentArguments()[0];
+                localProperties.clear();
+                for (Object key : Collections.list(properties.keys())) {
+                    localProperties.put(key.toString(), properties.get(key));
+                }
+                return null;
+            }
+        }).anyTimes();
+
+        Hashtable<String, Object> groups = new Hashtable<String, Object>();
+        groups.put("default.config.whitelist.inbound", "*");
+        groups.put("default.config.blacklist.inbound", "org.apache.karaf.shell");
+        Configuration groupConfiguration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(groupConfiguration.getProperties()).andReturn(groups).anyTimes();
+        Configuration nodeConfiguration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(nodeConfiguration.getProperties()).andReturn(null).anyTimes();
+        ConfigurationAdmin configurationAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.GROUP, null)).andReturn(groupConfiguration).anyTimes();
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.NODE, null)).andReturn(nodeConfiguration).anyTimes();
+        EasyMock.expect(configurationAdmin.listConfigurations(EasyMock.anyString())).andReturn(new Configuration[]{localConfiguration}).anyTimes();
+
+        GroupManager groupManager = EasyMock.createMock(GroupManager.class);
+        EasyMock.expect(groupManager.isLocalGroup("default")).andReturn(true).anyTimes();
+        SwitchRegistry switchRegistry = EasyMock.createMock(SwitchRegistry.class);
+        EasyMock.expect(switchRegistry.getHandlerSwitch(EasyMock.eq(ConfigurationEventHandler.SWITCH_ID), EasyMock.<EventHandler>anyObject()))
+                .andReturn(new BasicSwitch(ConfigurationEventHandler.SWITCH_ID, SwitchStatus.ON)).anyTimes();
+        clusterManager = EasyMock.createMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + "default")).andReturn((Map) clusterConfigurations).anyTimes();
+        EasyMock.replay(localConfiguration, groupConfiguration, nodeConfiguration, configurationAdmin, groupManager, switchRegistry, clusterManager);
+
+        handler = new ConfigurationEventHandler();
+        handler.setConfigurationAdmin(configurationAdmin);
+        handler.setGroupManager(groupManager);
+        handler.setSwitchRegistry(switchRegistry);
+        handler.setClusterManager(clusterManager);
+        handler.setStorage(folder.getRoot());
+        handler.setConfigurationVersions(versions);
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception {
+        versions.set("default", "foo", 4, handler.filter(localProperties));
+        // the cluster configuration is not read: it would revert the changes
+        clusterConfigurations.put("foo", ConfigurationSupportTest.properties("a", "0"));
+
+        handler.handle(event(4, 5, ConfigurationSupportTest.properties("a", "3"), "b"));
+
+        Assert.assertEquals("3", localProperties.get("a"));
+        Assert.assertFalse(localProperties.containsKey("b"));
+        Assert.assertEquals(Long.valueOf(5), localVersion());
+        // the file keeps its comments
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(content, content.contains("# foo settings"));
+        Assert.assertTrue(content, content.contains("a = 3"));
+        Assert.assertFalse(content, content.contains("b = 2"));
+    }
+
+    @Test
+    public void testReadConfigurationOnVersionMismatch() throws Exception {
+        versions.set("default", "foo", 3, handler.filter(localProperties));
+        Properties clusterConfiguration = ConfigurationSupportTest.properties("a", "3", "c", "4", org.osgi.framework.Constants.SERVICE_PID, "foo");
+        clusterConfiguration.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 6L);
+        clusterConfigurations.put("foo", clusterConfiguration);
+
+        handler.handle(event(4, 5, ConfigurationSupportTest.properties("a", "3"), "b"));
+
+        Assert.assertEquals("3", localProperties.get("a"));
+        Assert.assertEquals("4", localProperties.get("c"));
+        Assert.assertFalse(localProperties.containsKey("b"));
+        Assert.assertFalse(localProperties.containsKey(ConfigurationSupport.KARAF_CELLAR_VERSION));
+        Assert.assertEquals(Long.valueOf(6), localVersion());
+    }
+
+    @Test
+    public void testReadConfigurationWithoutLocalVersion() throws Exception {
+        Properties clusterConfiguration = ConfigurationSupportTest.properties("a", "5", org.osgi.framework.Constants.SERVICE_PID, "foo");
+        clusterConfiguration.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 5L);
+        clusterConfigurations.put("foo", clusterConfiguration);
+
+        handler.handle(event(4, 5, ConfigurationSupportTest.properties("a", "3"), "b"));
+
+        Assert.assertEquals("5", localProperties.get("a"));
+        Assert.assertEquals(Long.valueOf(5), localVersion());
+
+        // the next changes are applied
+        handler.handle(event(5, 6, ConfigurationSupportTest.properties("a", "6")));
+        Assert.assertEquals("6", localProperties.get("a"));
+        Assert.assertEquals(Long.valueOf(6), localVersion());
+    }
+
+    @Test
+    public void testReadConfigurationOnLocalChange() throws Exception {
+        versions.set("default", "foo", 4, handler.filter(localProperties));
+        // the local configuration changed without being pushed
+        localProperties.put("a", "2");
+        Properties clusterConfiguration = ConfigurationSupportTest.properties("a", "3", "b", "2", org.osgi.framework.Constants.SERVICE_PID, "foo");
+        clusterConfiguration.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 5L);
+        clusterConfigurations.put("foo", clusterConfiguration);
+
+        handler.handle(event(4, 5, ConfigurationSupportTest.properties("a", "3")));
+
+        Assert.assertEquals("3", localProperties.get("a"));
+        Assert.assertEquals(Long.valueOf(5), localVersion());
+    }
+
+    private Long localVersion() {
+        return versions.get("default", "foo", handler.filter(localProperties));
+    }
+
+    private ClusterConfigurationEvent event(long baseVersion, long version, Properties changes, String... removals) {
+        ClusterConfigurationEvent event = new ClusterConfigurationEvent("foo");
+        event.setSourceGroup(group);
+        event.setChanges(baseVersion, version, changes, new HashSet<String>(Arrays.asList(removals)));
+        event.setFilename("foo.cfg");
+        return event;
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class ConfigurationSupportTest {
+
+    private Map<String, Properties> clusterConfigurations = new HashMap<String, Properties>();
+    private ConcurrentMap<String, Long> versions = new ConcurrentHashMap<String, Long>();
+    private ClusterManager clusterManager;
+
+    @Before
+    public void setUp() {
+        clusterManager = EasyMock.createMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + "default")).andReturn((Map) clusterConfigurations).anyTimes();
+        EasyMock.expect(clusterManager.getMap(Constants.VERSION_MAP + Configurations.SEPARATOR + "default")).andReturn((Map) versions).anyTimes();
+        EasyMock.replay(clusterManager);
+        ConfigurationSupport.setDeltaEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationSupport.setDeltaEnabled(true);
+    }
+
+    @Test
+    public void testEqualsIgnoresVersion() {
+        ConfigurationSupport support = new ConfigurationSupport();
+        Properties source = properties("a", "1", "b", "2");
+        Properties target = properties("a", "1", "b", "2");
+        source.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 3L);
+        Assert.assertTrue(support.equals(source, target));
+        Assert.assertTrue(support.equals(target, source));
+
+        target.put("b", "3");
+        Assert.assertFalse(support.equals(source, target));
+        target.remove("b");
+        Assert.assertFalse(support.equals(source, target));
+
+        Properties versionOnly = new Properties();
+        versionOnly.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 1L);
+        Assert.assertTrue(support.equals(versionOnly, new Properties()));
+    }
+
+    @Test
+    public void testSetChanges() {
+        Properties previous = properties("a", "1", "b", "2", ConfigurationSupport.KARAF_CELLAR_FILENAME, "foo.cfg", ConfigurationSupport.KARAF_CELLAR_CONTENT, "a=1\nb=2");
+        previous.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 4L);
+        Properties updated = properties("a", "1", "c", "3", ConfigurationSupport.KARAF_CELLAR_FILENAME, "foo.cfg", ConfigurationSupport.KARAF_CELLAR_CONTENT, "a=1\nc=3");
+        updated.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 5L);
+
+        ClusterConfigurationEvent event = new ClusterConfigurationEvent("foo");
+        ConfigurationSupport.setChanges(event, previous, updated);
+        Assert.assertTrue(event.hasChanges());
+        Assert.assertEquals(Long.valueOf(4), event.getBaseVersion());
+        Assert.assertEquals(Long.valueOf(5), event.getVersion());
+        Assert.assertEquals(properties("c", "3"), event.getChanges());
+        Assert.assertEquals(Collections.singleton("b"), event.getRemovals());
+        Assert.assertEquals("foo.cfg", event.getFilename());
+    }
+
+    @Test
+    public void testSetChangesWithoutDelta() {
+        Properties updated = properties("a", "1");
+        ClusterConfigurationEvent event = new ClusterConfigurationEvent("foo");
+        ConfigurationSupport.setChanges(event, null, updated);
+        Assert.assertFalse(event.hasChanges());
+
+        // moved to another file
+        ConfigurationSupport.setChanges(event, properties("a", "1", ConfigurationSupport.KARAF_CELLAR_FILENAME, "foo.cfg"), updated);
+        Assert.assertFalse(event.hasChanges());
+
+        // removed
+        Properties removed = properties("a", "1");
+        removed.put(ConfigurationSupport.KARAF_CELLAR_REMOVED, true);
+        ConfigurationSupport.setChanges(event, properties("a", "1"), removed);
+        Assert.assertFalse(event.hasChanges());
+    }
+
+    @Test
+    public void testStoreWithoutDelta() {
+        ConfigurationSupport.setDeltaEnabled(false);
+        Properties configuration = properties("a", "1");
+        configuration.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 2L);
+        ClusterConfigurationEvent event = new ClusterConfigurationEvent("foo");
+
+        Assert.assertEquals(0, ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", null, configuration, event));
+        Assert.assertEquals(properties("a", "1"), clusterConfigurations.get("foo"));
+        Assert.assertTrue(versions.isEmpty());
+        Assert.assertFalse(event.hasChanges());
+    }
+
+    @Test
+    public void testStoreWithoutContent() {
+        Properties configuration = properties("a", "1", ConfigurationSupport.KARAF_CELLAR_FILENAME, "foo.cfg", ConfigurationSupport.KARAF_CELLAR_CONTENT, "a=1");
+
+        ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", null, configuration, null);
+
+        Assert.assertFalse(clusterConfigurations.get("foo").containsKey(ConfigurationSupport.KARAF_CELLAR_CONTENT));
+        Assert.assertEquals("foo.cfg", clusterConfigurations.get("foo").get(ConfigurationSupport.KARAF_CELLAR_FILENAME));
+    }
+
+    @Test
+    public void testStoreNextVersion() {
+        Assert.assertEquals(1, ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", null, properties("a", "1"), new ClusterConfigurationEvent("foo")));
+        Properties previous = clusterConfigurations.get("foo");
+        Assert.assertEquals(1, ConfigurationSupport.getVersion(previous));
+
+        ClusterConfigurationEvent event = new ClusterConfigurationEvent("foo");
+        Assert.assertEquals(2, ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", previous, properties("a", "2"), event));
+        Assert.assertEquals(Long.valueOf(2), versions.get("foo"));
+        Assert.assertEquals(2, ConfigurationSupport.getVersion(clusterConfigurations.get("foo")));
+        Assert.assertTrue(event.hasChanges());
+        Assert.assertEquals(Long.valueOf(1), event.getBaseVersion());
+        Assert.assertEquals(properties("a", "2"), event.getChanges());
+    }
+
+    @Test
+    public void testStoreConcurrentUpdate() {
+        ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", null, properties("a", "1"), null);
+        Properties previous = clusterConfigurations.get("foo");
+
+        // two nodes update the configuration from the same version
+        ClusterConfigurationEvent first = new ClusterConfigurationEvent("foo");
+        ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", previous, properties("a", "2"), first);
+        ClusterConfigurationEvent second = new ClusterConfigurationEvent("foo");
+        long version = ConfigurationSupport.storeClusterConfiguration(clusterManager, "default", "foo", previous, properties("a", "3"), second);
+
+        Assert.assertTrue(first.hasChanges());
+        Assert.assertEquals(Long.valueOf(2), first.getVersion());
+        // the second update gets the next version, without changes so the nodes read the whole configuration
+        Assert.assertEquals(3, version);
+        Assert.assertFalse(second.hasChanges());
+        Assert.assertEquals(3, ConfigurationSupport.getVersion(clusterConfigurations.get("foo")));
+    }
+
+    static Properties properties(String... entries) {
+        Properties properties = new Properties();
+        for (int i = 0; i < entries.length; i += 2) {
+            properties.put(entries[i], entries[i + 1]);
+        }
+        return properties;
+    }
+
+}
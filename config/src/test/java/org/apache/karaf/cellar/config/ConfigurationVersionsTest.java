@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Properties;
+
+public class ConfigurationVersionsTest {
+
+    private ConfigurationVersions versions = new ConfigurationVersions();
+
+    @Test
+    public void testGet() {
+        Properties local = ConfigurationSupportTest.properties("a", "1", org.osgi.framework.Constants.SERVICE_PID, "foo");
+        local.put("list", new String[]{"x", "y"});
+        versions.set("default", "foo", 3, local);
+
+        Properties same = ConfigurationSupportTest.properties("a", "1");
+        same.put("list", new String[]{"x", "y"});
+        same.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 3L);
+        Assert.assertEquals(Long.valueOf(3), versions.get("default", "foo", same));
+        Assert.assertNull(versions.get("other", "foo", same));
+
+        // the local configuration changed since the version was recorded
+        Assert.assertNull(versions.get("default", "foo", ConfigurationSupportTest.properties("a", "2")));
+        Assert.assertNull(versions.get("default", "foo", same));
+    }
+
+    @Test
+    public void testInvalidate() {
+        versions.set("default", "foo", 3, ConfigurationSupportTest.properties("a", "1"));
+        versions.set("other", "foo", 5, ConfigurationSupportTest.properties("a", "2"));
+
+        versions.invalidate("foo", ConfigurationSupportTest.properties("a", "1"));
+        Assert.assertEquals(Long.valueOf(3), versions.get("default", "foo", ConfigurationSupportTest.properties("a", "1")));
+        Assert.assertNull(versions.get("other", "foo", ConfigurationSupportTest.properties("a", "2")));
+
+        // the configuration has been deleted
+        versions.invalidate("foo", null);
+        Assert.assertFalse(versions.contains("foo"));
+    }
+
+    @Test
+    public void testSetWithoutVersion() {
+        versions.set("default", "foo", 3, ConfigurationSupportTest.properties("a", "1"));
+        versions.set("default", "foo", 0, null);
+        Assert.assertFalse(versions.contains("foo"));
+    }
+
+}
@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.core;
 
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventType;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
@@ -34,6 +35,8 @@ public class CellarSupport {
     protected ClusterManager clusterManager;
     protected GroupManager groupManager;
     protected ConfigurationAdmin configurationAdmin;
+    protected SwitchRegistry switchRegistry;
+    protected GroupFilterIndex groupFilterIndex;
 
     /**
      * If the entry is not present in the list, add it. If the entry is present in the list, remove it.
@@ -84,33 +87,48 @@ public class CellarSupport {
         if (group != null) {
             try {
                 Configuration configuration = configurationAdmin.getConfiguration(Configurations.GROUP, null);
-                Dictionary<String, Object> dictionary = configuration.getProperties();
-                if (dictionary != null) {
-                    String parent = (String) dictionary.get(group + Configurations.SEPARATOR + Configurations.PARENT);
-                    if (parent != null) {
-                        result = getListEntries(listType, parent, category, type);
-                    }
+                result = getListEntries(configuration.getProperties(), listType, group, category, type);
+            } catch (IOException e) {
+                LOGGER.error("Error looking up for clustering group configuration cfg");
+            }
+        }
+        return result;
+    }
 
-                    String propertyName = group + Configurations.SEPARATOR + category + Configurations.SEPARATOR + listType + Configurations.SEPARATOR + type.name().toLowerCase();
-                    String propertyValue = (String) dictionary.get(propertyName);
-                    if (propertyValue != null) {
-                        propertyValue = propertyValue.replaceAll("\n","");
-                        String[] itemList = propertyValue.split(Configurations.DELIMETER);
+    /**
+     * Get a set of resources in the given Cellar cluster groups configuration, including the parent groups resources.
+     *
+     * @param dictionary the Cellar cluster groups configuration.
+     * @param listType the comma separated list of resources.
+     * @param group the cluster group name.
+     * @param category the resource category name.
+     * @param type the event type (inbound, outbound).
+     * @return the set of resources.
+     */
+    static Set<String> getListEntries(Dictionary<String, Object> dictionary, String listType, String group, String category, EventType type) {
+        Set<String> result = null;
+        if (group != null && dictionary != null) {
+            String parent = (String) dictionary.get(group + Configurations.SEPARATOR + Configurations.PARENT);
+            if (parent != null) {
+                result = getListEntries(dictionary, listType, parent, category, type);
+            }
+
+            String propertyName = group + Configurations.SEPARATOR + category + Configurations.SEPARATOR + listType + Configurations.SEPARATOR + type.name().toLowerCase();
+            String propertyValue = (String) dictionary.get(propertyName);
+            if (propertyValue != null) {
+                propertyValue = propertyValue.replaceAll("\n","");
+                String[] itemList = propertyValue.split(Configurations.DELIMETER);
 
-                        if (itemList != null && itemList.length > 0) {
-                            if (result == null) {
-                                result = new HashSet<String>();
-                            }
-                            for (String item : itemList) {
-                                if (item != null) {
-                                    result.add(item.trim());
-                                }
-                            }
+                if (itemList != null && itemList.length > 0) {
+                    if (result == null) {
+                        result = new HashSet<String>();
+                    }
+                    for (String item : itemList) {
+                        if (item != null) {
+                            result.add(item.trim());
                         }
                     }
                 }
-            } catch (IOException e) {
-                LOGGER.error("Error looking up for clustering group configuration cfg");
             }
         }
         return result;
@@ -165,6 +183,8 @@ public class CellarSupport {
 
     /**
      * Check if a resource is allowed for a type of cluster event.
+     * With a group filter index, the whitelist and blacklist are compiled once and cached until the cluster groups
+     * configuration changes. Without (shell commands, MBeans), they are read from the configuration on each call.
      *
      * @param group the cluster group.
      * @param category the resource category name.
@@ -172,38 +192,12 @@ public class CellarSupport {
      * @param type the event type (inbound, outbound).
      */
     public Boolean isAllowed(Group group, String category, String event, EventType type) {
-        Set<String> whiteList = getListEntries(Configurations.WHITELIST, group, category, type);
-        Set<String> blackList = getListEntries(Configurations.BLACKLIST, group, category, type);
-
-        if (blackList == null || whiteList == null) {
-            // If one list is missing, we probably have a configuration issue - do not synchronize anything
-            LOGGER.warn("No whitelist/blacklist found for " + group.getName() + ", check your configuration !");
-            return false;
-        }
-
-        // if no white listed items we assume all are accepted.
-        Boolean result = true;
-        if (!whiteList.isEmpty()) {
-            result = false;
-            for (String whiteListItem : whiteList) {
-                if (wildCardMatch(event, whiteListItem)) {
-                    result = true;
-                    break;
-                }
-            }
-        }
-
-        if (result) {
-            // we passed whitelist, now check the blacklist
-            // if any blackList item matched, then false is returned.
-            for (String blackListItem : blackList) {
-                if (wildCardMatch(event, blackListItem)) {
-                    return false;
-                }
-            }
+        GroupFilterIndex index = groupFilterIndex;
+        if (index == null) {
+            index = new GroupFilterIndex();
+            index.setConfigurationAdmin(configurationAdmin);
         }
-
-        return result;
+        return index.isAllowed(group, category, event, type);
     }
 
     /**
@@ -233,6 +227,22 @@ public class CellarSupport {
         this.configurationAdmin = configurationAdmin;
     }
 
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
+    }
+
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
+    }
+
+    public GroupFilterIndex getGroupFilterIndex() {
+        return groupFilterIndex;
+    }
+
+    public void setGroupFilterIndex(GroupFilterIndex groupFilterIndex) {
+        this.groupFilterIndex = groupFilterIndex;
+    }
+
     public ClusterManager getClusterManager() {
         return clusterManager;
     }
@@ -31,6 +31,42 @@ public interface ClusterManager {
      */
     public Map getMap(String mapName);
 
+    /**
+     * Register a listener notified of the changes of a map in the cluster.
+     *
+     * @param mapName the map name in the cluster.
+     * @param listener the listener.
+     * @return the listener registration ID.
+     */
+    public String addMapListener(String mapName, ClusterMapListener listener);
+
+    /**
+     * Unregister a listener of a map in the cluster.
+     *
+     * @param mapName the map name in the cluster.
+     * @param registrationId the listener registration ID.
+     */
+    public void removeMapListener(String mapName, String registrationId);
+
+    /**
+     * Get the entries of a map in the cluster matching a query.
+     * The query is evaluated by the cluster members owning the entries, only the requested page is returned.
+     *
+     * @param mapName the map name in the cluster.
+     * @param query the query.
+     * @return the matching entries, sorted by the query comparator.
+     */
+    public <K, V> List<Map.Entry<K, V>> queryMap(String mapName, MapQuery<K, V> query);
+
+    /**
+     * Index an attribute of a map in the cluster, to speed up the queries on this attribute.
+     *
+     * @param mapName the map name in the cluster.
+     * @param attribute the attribute name, see {@link MapQuery}.
+     * @param ordered true if the attribute is used in range queries, false if it is only used in equality queries.
+     */
+    public void addMapIndex(String mapName, String attribute, boolean ordered);
+
     /**
      * Get a list in the cluster.
      *
@@ -110,6 +146,7 @@ public interface ClusterManager {
 
     /**
      * Generate an unique ID across the cluster.
+     * The ID is generated locally, without cluster coordination, it can be used on hot paths (commands, events).
      *
      * @return a unique ID across the cluster.
      */
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+/**
+ * Listener notified of the changes of a map in the cluster.
+ * Only the keys are provided, the listener reads the values it needs from the map.
+ */
+public interface ClusterMapListener<K> {
+
+    /**
+     * Invoked when an entry is added to the map.
+     *
+     * @param key the entry key.
+     */
+    public void entryAdded(K key);
+
+    /**
+     * Invoked when an entry of the map is updated.
+     *
+     * @param key the entry key.
+     */
+    public void entryUpdated(K key);
+
+    /**
+     * Invoked when an entry is removed (or evicted) from the map.
+     *
+     * @param key the entry key.
+     */
+    public void entryRemoved(K key);
+
+    /**
+     * Invoked when the map is cleared.
+     */
+    public void mapCleared();
+
+}
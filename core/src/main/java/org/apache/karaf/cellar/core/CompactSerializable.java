@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+
+/**
+ * Object able to write and read its state without Java serialization, for instance a cluster event or a cluster
+ * resource state.
+ * The cluster provider uses these methods when it supports a compact serialization (the Hazelcast provider registers
+ * a serializer for this interface), Java serialization is used else.
+ * The implementations need a no-arg constructor (not necessarily public). A subclass of an implementation which
+ * doesn't declare these methods is serialized with Java serialization.
+ */
+public interface CompactSerializable extends Serializable {
+
+    /**
+     * Write the state of the object.
+     *
+     * @param out the output to write to.
+     * @throws IOException in case of write failure.
+     */
+    void writeCompact(ObjectOutput out) throws IOException;
+
+    /**
+     * Read the state of the object.
+     *
+     * @param in the input to read from.
+     * @throws IOException in case of read failure.
+     * @throws ClassNotFoundException if the class of a nested object is not found.
+     */
+    void readCompact(ObjectInput in) throws IOException, ClassNotFoundException;
+
+}
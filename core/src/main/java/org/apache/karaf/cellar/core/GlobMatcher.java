@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled set of whitelist/blacklist patterns.
+ * The patterns have the same semantic as {@link CellarSupport#wildCardMatch(String, String)}: {@code *} is replaced
+ * by {@code .*} and the result is a regex.
+ * Literal patterns and patterns ending with {@code *} (using only {@code .} as regex wildcard) are stored in a trie
+ * and matched without allocation, the other patterns fall back to a precompiled regex.
+ */
+public final class GlobMatcher {
+
+    private static final String REGEX_CHARS = "\\[](){}+?^$|";
+
+    private final Node root = new Node();
+    private final Pattern[] regexes;
+    private final boolean empty;
+
+    private GlobMatcher(Collection<String> patterns) {
+        List<Pattern> regexList = new ArrayList<Pattern>();
+        for (String pattern : patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            if (isSimple(pattern)) {
+                add(pattern);
+            } else {
+                regexList.add(Pattern.compile(pattern.replace("*", ".*")));
+            }
+        }
+        this.regexes = regexList.toArray(new Pattern[regexList.size()]);
+        this.empty = patterns.isEmpty();
+    }
+
+    /**
+     * Compile a collection of patterns.
+     *
+     * @param patterns the patterns.
+     * @return the compiled matcher.
+     */
+    public static GlobMatcher compile(Collection<String> patterns) {
+        return new GlobMatcher(patterns);
+    }
+
+    /**
+     * Check if the matcher doesn't contain any pattern.
+     *
+     * @return true if no pattern has been compiled, false else.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Check if an item matches at least one of the patterns.
+     *
+     * @param item the item to check.
+     * @return true if the item matches one of the patterns, false else.
+     */
+    public boolean matches(String item) {
+        if (item == null) {
+            return false;
+        }
+        if (match(root, item, 0)) {
+            return true;
+        }
+        for (Pattern regex : regexes) {
+            if (regex.matcher(item).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A pattern is simple if it doesn't use other regex constructs than {@code .} and trailing {@code *}.
+     */
+    private static boolean isSimple(String pattern) {
+        int star = pattern.indexOf('*');
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (REGEX_CHARS.indexOf(c) >= 0) {
+                return false;
+            }
+            if (star >= 0 && i >= star && c != '*') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(String pattern) {
+        int star = pattern.indexOf('*');
+        int length = star >= 0 ? star : pattern.length();
+        Node node = root;
+        for (int i = 0; i < length; i++) {
+            node = node.add(pattern.charAt(i));
+        }
+        if (star >= 0) {
+            node.prefix = true;
+        } else {
+            node.literal = true;
+        }
+    }
+
+    private static boolean match(Node node, String item, int index) {
+        if (node.prefix && !containsLineTerminator(item, index)) {
+            return true;
+        }
+        if (index == item.length()) {
+            return node.literal;
+        }
+        char c = item.charAt(index);
+        Node child = node.get(c);
+        if (child != null && match(child, item, index + 1)) {
+            return true;
+        }
+        return node.any != null && !isLineTerminator(c) && match(node.any, item, index + 1);
+    }
+
+    private static boolean containsLineTerminator(String item, int from) {
+        for (int i = from; i < item.length(); i++) {
+            if (isLineTerminator(item.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Characters not matched by the regex {@code .}.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Trie node, the children are sorted by character.
+     */
+    private static final class Node {
+
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private Node any;
+        private boolean literal;
+        private boolean prefix;
+
+        Node get(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node add(char c) {
+            if (c == '.') {
+                if (any == null) {
+                    any = new Node();
+                }
+                return any;
+            }
+            int index = Arrays.binarySearch(chars, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insert = -index - 1;
+            char[] newChars = new char[chars.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newChars[insert] = c;
+            newChildren[insert] = new Node();
+            System.arraycopy(chars, insert, newChars, insert + 1, chars.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            chars = newChars;
+            children = newChildren;
+            return newChildren[insert];
+        }
+
+    }
+
+}
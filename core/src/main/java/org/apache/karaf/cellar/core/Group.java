@@ -13,13 +13,20 @@
  */
 package org.apache.karaf.cellar.core;
 
+import org.apache.karaf.cellar.core.utils.SerializationUtils;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Cellar cluster group.
  */
-public class Group implements MultiNode {
+public class Group implements MultiNode, CompactSerializable {
+
+    private static final long serialVersionUID = 5188879748390448173L;
 
     private String name;
     private Set<Node> nodes = new HashSet<Node>();
@@ -28,6 +35,10 @@ public class Group implements MultiNode {
         this.name = name;
     }
 
+    protected Group() {
+        // used by the compact serialization
+    }
+
     public String getName() {
         return name;
     }
@@ -46,6 +57,18 @@ public class Group implements MultiNode {
         this.nodes = nodes;
     }
 
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeObject(name);
+        SerializationUtils.writeCollection(out, nodes);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        name = (String) in.readObject();
+        nodes = SerializationUtils.readSet(in);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import org.apache.karaf.cellar.core.event.EventType;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the compiled whitelist/blacklist filters per cluster group, resource category and event type.
+ * The filters are built from the Cellar groups configuration on first use and dropped when this configuration changes,
+ * so the index has to be registered as {@code ConfigurationListener}.
+ */
+public class GroupFilterIndex implements ConfigurationListener {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(GroupFilterIndex.class);
+
+    private ConfigurationAdmin configurationAdmin;
+
+    /**
+     * The filters built from the current groups configuration, null until first use or after a configuration change.
+     */
+    private volatile Filters filters;
+
+    /**
+     * Check if a resource is allowed for a type of cluster event.
+     *
+     * @param group the cluster group.
+     * @param category the resource category name.
+     * @param event the resource name.
+     * @param type the event type (inbound, outbound).
+     * @return true if the resource is allowed, false else.
+     */
+    public Boolean isAllowed(Group group, String category, String event, EventType type) {
+        Filters current = filters;
+        if (current == null) {
+            current = load();
+        }
+        Filter filter = current.get(group.getName(), category, type);
+        if (filter.whitelist == null || filter.blacklist == null) {
+            // If one list is missing, we probably have a configuration issue - do not synchronize anything
+            LOGGER.warn("No whitelist/blacklist found for " + group.getName() + ", check your configuration !");
+            return false;
+        }
+        // if no white listed items we assume all are accepted.
+        if (!filter.whitelist.isEmpty() && !filter.whitelist.matches(event)) {
+            return false;
+        }
+        // we passed whitelist, now check the blacklist
+        return !filter.blacklist.matches(event);
+    }
+
+    @Override
+    public void configurationEvent(ConfigurationEvent event) {
+        if (Configurations.GROUP.equals(event.getPid())) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Drop the filters, they are built again from the groups configuration on next use.
+     */
+    public synchronized void invalidate() {
+        filters = null;
+    }
+
+    private synchronized Filters load() {
+        Filters current = filters;
+        if (current == null) {
+            try {
+                Configuration configuration = configurationAdmin.getConfiguration(Configurations.GROUP, null);
+                current = new Filters(configuration.getProperties());
+                filters = current;
+            } catch (IOException e) {
+                LOGGER.error("Error looking up for clustering group configuration cfg");
+                // don't cache the failure
+                current = new Filters(null);
+            }
+        }
+        return current;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    /**
+     * The filters built from a snapshot of the groups configuration.
+     */
+    private static class Filters {
+
+        private final Dictionary<String, Object> properties;
+        private final ConcurrentMap<String, ConcurrentMap<String, Filter[]>> groups = new ConcurrentHashMap<String, ConcurrentMap<String, Filter[]>>();
+
+        Filters(Dictionary<String, Object> properties) {
+            this.properties = properties;
+        }
+
+        Filter get(String group, String category, EventType type) {
+            ConcurrentMap<String, Filter[]> categories = groups.get(group);
+            if (categories == null) {
+                groups.putIfAbsent(group, new ConcurrentHashMap<String, Filter[]>());
+                categories = groups.get(group);
+            }
+            Filter[] types = categories.get(category);
+            if (types == null) {
+                categories.putIfAbsent(category, new Filter[EventType.values().length]);
+                types = categories.get(category);
+            }
+            Filter filter = types[type.ordinal()];
+            if (filter == null) {
+                // concurrent builds produce equivalent filters
+                filter = new Filter(
+                        compile(Configurations.WHITELIST, group, category, type),
+                        compile(Configurations.BLACKLIST, group, category, type));
+                types[type.ordinal()] = filter;
+            }
+            return filter;
+        }
+
+        private GlobMatcher compile(String listType, String group, String category, EventType type) {
+            Set<String> entries = CellarSupport.getListEntries(properties, listType, group, category, type);
+            return entries != null ? GlobMatcher.compile(entries) : null;
+        }
+
+    }
+
+    /**
+     * Compiled whitelist and blacklist, a list is null when missing in the configuration.
+     */
+    private static class Filter {
+
+        private final GlobMatcher whitelist;
+        private final GlobMatcher blacklist;
+
+        Filter(GlobMatcher whitelist, GlobMatcher blacklist) {
+            this.whitelist = whitelist;
+            this.blacklist = blacklist;
+        }
+
+    }
+
+}
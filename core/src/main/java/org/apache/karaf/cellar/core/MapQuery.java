@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query on the entries of a map in the cluster, evaluated by the cluster members owning the entries.
+ * The attributes are the properties of the map values, or of the keys when prefixed by {@link #KEY_PREFIX}, or
+ * {@link #VALUE} for the value itself.
+ * The criteria are combined with a logical and; the matching entries are sorted by the comparator and returned by page.
+ */
+public class MapQuery<K, V> {
+
+    public static final String KEY_PREFIX = "__key.";
+    // attribute designating the map value itself, for maps of simple values
+    public static final String VALUE = "this";
+
+    public enum Operator {
+        EQUAL, IN, BETWEEN, LIKE
+    }
+
+    private final List<Criterion> criteria = new ArrayList<Criterion>();
+    private Comparator<Map.Entry<K, V>> comparator;
+    private int pageSize;
+    private int page;
+    private Object cursor;
+
+    /**
+     * Require an attribute to be equal to a value.
+     *
+     * @param attribute the attribute name.
+     * @param value the value.
+     * @return this query.
+     */
+    public MapQuery<K, V> equal(String attribute, Comparable value) {
+        criteria.add(new Criterion(Operator.EQUAL, attribute, value));
+        cursor = null;
+        return this;
+    }
+
+    /**
+     * Require an attribute to be equal to one of the values.
+     *
+     * @param attribute the attribute name.
+     * @param values the values.
+     * @return this query.
+     */
+    public MapQuery<K, V> in(String attribute, Comparable... values) {
+        criteria.add(new Criterion(Operator.IN, attribute, values));
+        cursor = null;
+        return this;
+    }
+
+    /**
+     * Require an attribute to be in a range.
+     *
+     * @param attribute the attribute name.
+     * @param from the lower bound (inclusive), or null for no lower bound.
+     * @param to the upper bound (inclusive), or null for no upper bound.
+     * @return this query.
+     */
+    public MapQuery<K, V> between(String attribute, Comparable from, Comparable to) {
+        if (from != null || to != null) {
+            criteria.add(new Criterion(Operator.BETWEEN, attribute, from, to));
+            cursor = null;
+        }
+        return this;
+    }
+
+    /**
+     * Require a string attribute to match a pattern, where {@code %} matches any characters and {@code _} any
+     * single character. A backslash before {@code %} or {@code _} matches the character itself, see
+     * {@link #escapeLike(String)}.
+     *
+     * @param attribute the attribute name.
+     * @param pattern the pattern.
+     * @return this query.
+     */
+    public MapQuery<K, V> like(String attribute, String pattern) {
+        criteria.add(new Criterion(Operator.LIKE, attribute, pattern));
+        cursor = null;
+        return this;
+    }
+
+    /**
+     * Escape the wildcards of a value, to match it literally in a {@link #like(String, String)} pattern.
+     *
+     * @param value the value.
+     * @return the escaped value.
+     */
+    public static String escapeLike(String value) {
+        return value.replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Sort the matching entries. As the comparator is sent to the cluster members, it has to be serializable.
+     *
+     * @param comparator the entry comparator.
+     * @return this query.
+     */
+    public MapQuery<K, V> orderBy(Comparator<Map.Entry<K, V>> comparator) {
+        this.comparator = comparator;
+        cursor = null;
+        return this;
+    }
+
+    /**
+     * Return only a page of the matching entries.
+     *
+     * @param pageSize the number of entries in a page (0 means all the entries).
+     * @param page the page index, starting from 0.
+     * @return this query.
+     */
+    public MapQuery<K, V> page(int pageSize, int page) {
+        if (pageSize != this.pageSize) {
+            cursor = null;
+        }
+        this.pageSize = pageSize;
+        this.page = page;
+        return this;
+    }
+
+    /**
+     * Move to the next page.
+     *
+     * @return this query.
+     */
+    public MapQuery<K, V> nextPage() {
+        page++;
+        return this;
+    }
+
+    public List<Criterion> getCriteria() {
+        return Collections.unmodifiableList(criteria);
+    }
+
+    public Comparator<Map.Entry<K, V>> getComparator() {
+        return comparator;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * @return the state kept by the cluster manager between the pages of the query, or null.
+     */
+    public Object getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Object cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Criterion on an attribute.
+     */
+    public static class Criterion {
+
+        private final Operator operator;
+        private final String attribute;
+        private final Comparable[] values;
+
+        public Criterion(Operator operator, String attribute, Comparable... values) {
+            this.operator = operator;
+            this.attribute = attribute;
+            this.values = values;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public Comparable[] getValues() {
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return attribute + " " + operator + " " + Arrays.toString(values);
+        }
+
+    }
+
+}
@@ -13,15 +13,24 @@
  */
 package org.apache.karaf.cellar.core.command;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Basic command store.
+ * The pending commands are expired using the shared {@link HashedWheelTimer}.
  */
 public class BasicCommandStore implements CommandStore {
 
     private ConcurrentMap<String, Command> pending = new ConcurrentHashMap<String, Command>();
+    private final ConcurrentMap<String, HashedWheelTimer.Timeout> timeouts = new ConcurrentHashMap<String, HashedWheelTimer.Timeout>();
+    private final ConcurrentMap<String, AtomicLong> expired = new ConcurrentHashMap<String, AtomicLong>();
+
+    private HashedWheelTimer timer;
 
     @Override
     public ConcurrentMap<String, Command> getPending() {
@@ -33,4 +42,62 @@ public class BasicCommandStore implements CommandStore {
         this.pending = pending;
     }
 
+    @Override
+    public void addPending(Command command) {
+        pending.put(command.getId(), command);
+        HashedWheelTimer.Timeout timeout = getTimer().newTimeout(new TimeoutTask(command, this), command.getTimeout(), TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Timeout previous = timeouts.put(command.getId(), timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    @Override
+    public Command removePending(String id) {
+        HashedWheelTimer.Timeout timeout = timeouts.remove(id);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return pending.remove(id);
+    }
+
+    @Override
+    public void expirePending(Command command) {
+        String id = command.getId();
+        HashedWheelTimer.Timeout timeout = timeouts.get(id);
+        if (timeout != null && timeout.isExpired()) {
+            timeouts.remove(id, timeout);
+        }
+        if (pending.remove(id, command)) {
+            String type = command.getClass().getName();
+            AtomicLong counter = expired.get(type);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = expired.putIfAbsent(type, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            counter.incrementAndGet();
+            command.onTimeout();
+        }
+    }
+
+    @Override
+    public Map<String, Long> getExpired() {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : expired.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    public HashedWheelTimer getTimer() {
+        return timer != null ? timer : HashedWheelTimer.getSharedTimer();
+    }
+
+    public void setTimer(HashedWheelTimer timer) {
+        this.timer = timer;
+    }
+
 }
@@ -19,9 +19,6 @@ import org.apache.karaf.cellar.core.exception.ProducerNotFoundException;
 import org.apache.karaf.cellar.core.exception.StoreNotFoundException;
 
 import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Clustered execution context.
@@ -31,8 +28,6 @@ public class ClusteredExecutionContext implements ExecutionContext {
     private Producer producer;
     private CommandStore commandStore;
 
-    private ScheduledExecutorService timeoutScheduler = new ScheduledThreadPoolExecutor(10);
-
     public ClusteredExecutionContext() {
         // nothing to do
     }
@@ -44,20 +39,43 @@ public class ClusteredExecutionContext implements ExecutionContext {
 
     @Override
     public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws StoreNotFoundException, ProducerNotFoundException, InterruptedException {
+        executeAsync(command);
+        return command.getResult();
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command) throws StoreNotFoundException, ProducerNotFoundException {
+        return executeAsync(command, null);
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command, CommandListener<R> listener) throws StoreNotFoundException, ProducerNotFoundException {
         if (command == null) {
             throw new StoreNotFoundException("Command store not found");
-        } else {
-            commandStore.getPending().put(command.getId(), command);
-            TimeoutTask timeoutTask = new TimeoutTask(command, commandStore);
-            timeoutScheduler.schedule(timeoutTask, command.getTimeout(), TimeUnit.MILLISECONDS);
+        }
+        if (producer == null) {
+            throw new ProducerNotFoundException("Command producer not found");
         }
 
-        if (producer != null) {
-            producer.produce(command);
-            return command.getResult();
-        } else {
+        CommandFuture<R> future = command.getFuture();
+        if (listener != null) {
+            future.addListener(listener);
+        }
+        commandStore.addPending(command);
+        producer.produce(command);
+        return future;
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> void executeOneWay(C command) throws StoreNotFoundException, ProducerNotFoundException {
+        if (command == null) {
+            throw new StoreNotFoundException("Command store not found");
+        }
+        if (producer == null) {
             throw new ProducerNotFoundException("Command producer not found");
         }
+
+        producer.produce(command);
     }
 
     public Producer getProducer() {
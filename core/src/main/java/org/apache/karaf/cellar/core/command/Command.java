@@ -20,9 +20,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Command.
@@ -33,8 +32,8 @@ public class Command<R extends Result> extends Event {
     protected static final long DEFAULT_TIMEOUT = 30000;
 
     protected long timeout;
-    protected final BlockingQueue<Map<Node, R>> resultQueue = new LinkedBlockingQueue<Map<Node, R>>();
     protected final Map<Node, R> nodeResults = new HashMap<Node, R>();
+    protected transient CommandFuture<R> future;
 
     public Command(String id) {
         super(id);
@@ -56,50 +55,73 @@ public class Command<R extends Result> extends Event {
     }
 
     /**
-     * Process the event of timeout.
+     * Get the future of the command results.
+     *
+     * @return the future completed when the results are received or when the timeout is reached.
      */
-    public void onTimeout() {
-        try {
-            resultQueue.put(nodeResults);
-        } catch (InterruptedException e) {
-            LOGGER.error("Error adding result to result queue", e);
+    public synchronized CommandFuture<R> getFuture() {
+        if (future == null) {
+            future = new CommandFuture<R>();
         }
+        return future;
     }
 
     /**
-     * Add {@code Results} to the result queue.
+     * Process the event of timeout, completing the command future with the results received so far.
+     */
+    public synchronized void onTimeout() {
+        getFuture().complete(new HashMap<Node, R>(nodeResults), true);
+    }
+
+    /**
+     * Add {@code Results} to the command, completing the command future once the command is completed (see
+     * {@link #isCompleted()}). The results can be added by several threads, for instance by a hedged call.
      *
-     * @param results the results in the queue.
+     * @param results the results.
      */
-    public void addResults(R... results) {
+    @SafeVarargs
+    public final synchronized void addResults(R... results) {
         if (results != null && results.length > 0) {
+            CommandFuture<R> future = getFuture();
             for (R result : results) {
                 nodeResults.put(result.getSourceNode(), result);
+                future.fireResult(result);
             }
 
-            if (getDestination() == null || (nodeResults.size() == getDestination().size())) {
-                try {
-                    resultQueue.put(nodeResults);
-                } catch (InterruptedException e) {
-                    LOGGER.error("Error adding result to result queue", e);
-                }
+            if (isCompleted()) {
+                future.complete(new HashMap<Node, R>(nodeResults), false);
             }
         }
     }
 
     /**
-     * Return the responses.
-     * If no result is found, it returns an empty map.
+     * Check if all the destination nodes sent their result.
+     * A command without destination is completed by its first result.
+     *
+     * @return true if the expected results have been received, false else.
+     */
+    public synchronized boolean isCompleted() {
+        if (getDestination() == null) {
+            return !nodeResults.isEmpty();
+        }
+        return nodeResults.size() >= getDestination().size();
+    }
+
+    /**
+     * Return the responses, waiting for them at most the command timeout.
+     * If the timeout is reached, it returns the results received so far, the nodes which didn't answer are missing.
      *
      * @return a map of results.
      * @throws InterruptedException in case of interruption.
      */
     public Map<Node, R> getResult() throws InterruptedException {
-        Map<Node, R> nodeResults = null;
-        if (this.resultQueue != null) {
-            nodeResults = resultQueue.poll(timeout, TimeUnit.MILLISECONDS);
+        try {
+            return getFuture().get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            synchronized (this) {
+                return new HashMap<Node, R>(nodeResults);
+            }
         }
-        return nodeResults;
     }
 
     public long getTimeout() {
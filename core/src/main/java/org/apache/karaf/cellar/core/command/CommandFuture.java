@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.apache.karaf.cellar.core.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of the results of a {@link Command}.
+ * The future completes when the command is completed, see {@link Command#isCompleted()}: when all destination nodes
+ * sent their result, or on the first result for a command without destination. Otherwise, it completes when the
+ * command timeout is reached, with the results received so far.
+ * {@link CommandListener}s can be added to be notified of the results as they arrive, without blocking a thread.
+ */
+public class CommandFuture<R extends Result> implements Future<Map<Node, R>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandFuture.class);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<CommandListener<R>> listeners = new ArrayList<CommandListener<R>>();
+
+    private volatile Map<Node, R> results;
+    private volatile boolean timedOut;
+
+    /**
+     * Add a listener notified of the next results and of the completion.
+     * If the future is already completed, the listener is notified of the completion immediately.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(CommandListener<R> listener) {
+        synchronized (listeners) {
+            if (!isDone()) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        notifyComplete(listener);
+    }
+
+    /**
+     * Notify the listeners of a result received from a node.
+     *
+     * @param result the received result.
+     */
+    void fireResult(R result) {
+        for (CommandListener<R> listener : getListeners()) {
+            try {
+                listener.onResult(result);
+            } catch (Exception e) {
+                LOGGER.warn("CELLAR: error notifying command listener", e);
+            }
+        }
+    }
+
+    /**
+     * Complete the future, if not already completed.
+     *
+     * @param results the results received per node.
+     * @param timedOut true if the command timeout has been reached.
+     * @return true if the future has been completed by this call, false if it was already completed.
+     */
+    boolean complete(Map<Node, R> results, boolean timedOut) {
+        List<CommandListener<R>> toNotify;
+        synchronized (listeners) {
+            if (isDone()) {
+                return false;
+            }
+            this.results = results;
+            this.timedOut = timedOut;
+            done.countDown();
+            toNotify = new ArrayList<CommandListener<R>>(listeners);
+            listeners.clear();
+        }
+        for (CommandListener<R> listener : toNotify) {
+            notifyComplete(listener);
+        }
+        return true;
+    }
+
+    private List<CommandListener<R>> getListeners() {
+        synchronized (listeners) {
+            return new ArrayList<CommandListener<R>>(listeners);
+        }
+    }
+
+    private void notifyComplete(CommandListener<R> listener) {
+        try {
+            listener.onComplete(results, timedOut);
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR: error notifying command listener", e);
+        }
+    }
+
+    /**
+     * Check if the future has been completed because the command timeout has been reached.
+     *
+     * @return true if the command timed out, false else.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * A command sent to the cluster can't be cancelled.
+     *
+     * @param mayInterruptIfRunning ignored.
+     * @return false.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public Map<Node, R> get() throws InterruptedException {
+        done.await();
+        return results;
+    }
+
+    @Override
+    public Map<Node, R> get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("Command results not received in time");
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.apache.karaf.cellar.core.Node;
+
+import java.util.Map;
+
+/**
+ * Listener notified of the results of a {@link Command} as they arrive.
+ * The listener is called by the thread handling the result, it must not block.
+ */
+public interface CommandListener<R extends Result> {
+
+    /**
+     * Called for each result received from a node.
+     *
+     * @param result the result, its source node is the node which sent it.
+     */
+    public void onResult(R result);
+
+    /**
+     * Called once, when all destination nodes sent their result or when the command timeout is reached.
+     *
+     * @param results the results received per node.
+     * @param timedOut true if the command timeout has been reached before receiving all results.
+     */
+    public void onComplete(Map<Node, R> results, boolean timedOut);
+
+}
@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.core.command;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -24,4 +25,33 @@ public interface CommandStore {
 
     public void setPending(ConcurrentMap<String, Command> pending);
 
+    /**
+     * Add a pending command, expired once its timeout is reached.
+     *
+     * @param command the pending command.
+     */
+    public void addPending(Command command);
+
+    /**
+     * Remove a completed command from the pending commands, cancelling its timeout.
+     *
+     * @param id the command ID.
+     * @return the removed command, or null if the command is not pending anymore.
+     */
+    public Command removePending(String id);
+
+    /**
+     * Remove a command from the pending commands as its timeout is reached.
+     *
+     * @param command the expired command.
+     */
+    public void expirePending(Command command);
+
+    /**
+     * Get the number of commands expired before completion, per command type.
+     *
+     * @return the number of expired commands per command class name.
+     */
+    public Map<String, Long> getExpired();
+
 }
@@ -33,4 +33,38 @@ public interface ExecutionContext {
      */
     public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws Exception;
 
+    /**
+     * Execute {@link Command} without waiting for the {@link Result}s.
+     *
+     * @param command the command to execute.
+     * @param <R> the result type.
+     * @param <C> the command type.
+     * @return the future completed when all destination nodes answered or when the command timeout is reached.
+     * @throws Exception in case of execution failure.
+     */
+    public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command) throws Exception;
+
+    /**
+     * Execute {@link Command}, notifying the listener of the {@link Result}s as they arrive.
+     *
+     * @param command the command to execute.
+     * @param listener the listener notified of each node result and of the completion.
+     * @param <R> the result type.
+     * @param <C> the command type.
+     * @return the future completed when all destination nodes answered or when the command timeout is reached.
+     * @throws Exception in case of execution failure.
+     */
+    public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command, CommandListener<R> listener) throws Exception;
+
+    /**
+     * Execute {@link Command} without expecting any {@link Result}.
+     * The command is sent to the cluster but is not kept as pending, the results sent back, if any, are ignored.
+     *
+     * @param command the command to execute.
+     * @param <R> the result type.
+     * @param <C> the command type.
+     * @throws Exception in case of execution failure.
+     */
+    public <R extends Result, C extends Command<R>> void executeOneWay(C command) throws Exception;
+
 }
@@ -0,0 +1,271 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timeout service backed by a hashed wheel.
+ * A single thread advances the wheel every tick and runs the expired tasks, whatever the number of scheduled timeouts.
+ * The accuracy of the timeouts is the tick duration, which is fine for command timeouts. The deadlines are based on
+ * {@link System#nanoTime()}, so wall clock changes don't make the timeouts expire early or late.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    public static final long DEFAULT_TICK_DURATION = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static HashedWheelTimer sharedTimer;
+
+    private final long tickNanos;
+    private final LinkedList<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong expired = new AtomicLong();
+    private final Object lifecycleLock = new Object();
+
+    private volatile long startTime;
+    private Thread worker;
+    private volatile boolean stopped;
+
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(long tickDuration, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be greater than 0");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("Wheel size must be greater than 0");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size = size << 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.wheel = new LinkedList[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<Timeout>();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the timer shared by the command stores of the local node.
+     *
+     * @return the shared timer.
+     */
+    public static synchronized HashedWheelTimer getSharedTimer() {
+        if (sharedTimer == null) {
+            sharedTimer = new HashedWheelTimer();
+        }
+        return sharedTimer;
+    }
+
+    /**
+     * Stop the shared timer, a new one is created on the next use.
+     */
+    public static synchronized void stopSharedTimer() {
+        if (sharedTimer != null) {
+            sharedTimer.stop();
+            sharedTimer = null;
+        }
+    }
+
+    /**
+     * Schedule a task executed once the given delay expired, unless the returned timeout is cancelled before.
+     *
+     * @param task the task to execute.
+     * @param delay the delay before the execution of the task.
+     * @param unit the unit of the delay.
+     * @return the scheduled timeout.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new IllegalArgumentException("Timeout task is null");
+        }
+        start();
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    private void start() {
+        synchronized (lifecycleLock) {
+            if (stopped) {
+                throw new IllegalStateException("Timer is stopped");
+            }
+            if (worker == null) {
+                startTime = System.nanoTime();
+                worker = new Thread(new Worker(), "Cellar Timeout Timer");
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Stop the timer. The pending timeouts are discarded.
+     */
+    public void stop() {
+        synchronized (lifecycleLock) {
+            stopped = true;
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get the number of scheduled timeouts, not yet expired or cancelled.
+     *
+     * @return the number of pending timeouts.
+     */
+    public int getPendingTimeouts() {
+        return pending.get();
+    }
+
+    /**
+     * Get the number of timeouts which expired since the timer creation.
+     *
+     * @return the number of expired timeouts.
+     */
+    public long getExpiredTimeouts() {
+        return expired.get();
+    }
+
+    /**
+     * A scheduled task, which can be cancelled before its expiration.
+     */
+    public class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger();
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the timeout, the task won't be executed.
+         *
+         * @return true if the timeout has been cancelled, false if it already expired or was already cancelled.
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(0, 1)) {
+                pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == 1;
+        }
+
+        public boolean isExpired() {
+            return state.get() == 2;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(0, 2)) {
+                pending.decrementAndGet();
+                expired.incrementAndGet();
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOGGER.warn("CELLAR: error executing timeout task", e);
+                }
+            }
+        }
+
+    }
+
+    private class Worker implements Runnable {
+
+        private long tick;
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                long deadline = startTime + (tick + 1) * tickNanos;
+                long sleep = deadline - System.nanoTime();
+                if (sleep > 0) {
+                    try {
+                        // round up to not wake up before the end of the tick
+                        Thread.sleep((sleep + 999999) / 1000000);
+                    } catch (InterruptedException e) {
+                        if (stopped) {
+                            break;
+                        }
+                        continue;
+                    }
+                }
+                transferScheduled();
+                expireBucket(wheel[(int) (tick & mask)]);
+                tick++;
+            }
+        }
+
+        private void transferScheduled() {
+            Timeout timeout;
+            while ((timeout = scheduled.poll()) != null) {
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                long ticks = (timeout.deadline - startTime) / tickNanos;
+                if (ticks < tick) {
+                    ticks = tick;
+                }
+                timeout.remainingRounds = (ticks - tick) / wheel.length;
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void expireBucket(LinkedList<Timeout> bucket) {
+            Iterator<Timeout> iterator = bucket.iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                if (timeout.isCancelled()) {
+                    iterator.remove();
+                } else if (timeout.remainingRounds <= 0) {
+                    iterator.remove();
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+            }
+        }
+
+    }
+
+}
@@ -37,14 +37,29 @@ public class ResultHandler<R extends Result> implements EventHandler<R> {
     public void handle(R result) {
         if (commandStore != null && commandStore.getPending() != null) {
             String id = result.getId();
-            Command command = commandStore.getPending().get(id);
+            Command<R> command = getPendingCommand(id);
 
             if (command != null && handlerSwitch.getStatus().equals(SwitchStatus.ON)) {
                 command.addResults(result);
+                if (command.isCompleted()) {
+                    commandStore.removePending(id);
+                }
             }
         }
     }
 
+    /**
+     * Get the pending command correlated with a result.
+     * The result is sent in response to the command with the same ID, so its type is the command result type.
+     *
+     * @param id the command ID.
+     * @return the pending command or null if the command is not pending anymore.
+     */
+    @SuppressWarnings("unchecked")
+    private Command<R> getPendingCommand(String id) {
+        return commandStore.getPending().get(id);
+    }
+
     /**
      * Get the type of result.
      *
@@ -31,11 +31,7 @@ public class TimeoutTask implements Runnable {
      */
     @Override
     public void run() {
-        // check if command is still pending
-        Boolean pending = store.getPending().containsKey(command.getId());
-        if (pending) {
-            store.getPending().remove(command.getId());
-        }
+        store.expirePending(command);
     }
 
 }
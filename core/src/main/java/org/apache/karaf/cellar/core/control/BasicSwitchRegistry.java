@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.control;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Handler;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Dictionary;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Switch registry caching the switch status of the node configuration.
+ * The status is only reloaded when the node configuration changes, not each time a switch is checked.
+ */
+public class BasicSwitchRegistry implements SwitchRegistry, ConfigurationListener {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BasicSwitchRegistry.class);
+
+    private final ConcurrentMap<String, RegisteredSwitch> switches = new ConcurrentHashMap<String, RegisteredSwitch>();
+
+    private ConfigurationAdmin configurationAdmin;
+    private volatile Dictionary<String, Object> properties;
+
+    public void init() {
+        reload();
+    }
+
+    public void destroy() {
+        switches.clear();
+    }
+
+    @Override
+    public Switch getSwitch(String name, String property) {
+        RegisteredSwitch registeredSwitch = switches.get(name);
+        if (registeredSwitch == null) {
+            registeredSwitch = register(name, property);
+        }
+        return registeredSwitch;
+    }
+
+    @Override
+    public Switch getHandlerSwitch(String name, Handler handler) {
+        RegisteredSwitch registeredSwitch = switches.get(name);
+        if (registeredSwitch == null) {
+            registeredSwitch = register(name, Configurations.HANDLER + Configurations.SEPARATOR + handler.getClass().getName());
+        }
+        return registeredSwitch;
+    }
+
+    private synchronized RegisteredSwitch register(String name, String property) {
+        RegisteredSwitch registeredSwitch = switches.get(name);
+        if (registeredSwitch == null) {
+            registeredSwitch = new RegisteredSwitch(name, property);
+            registeredSwitch.update(properties);
+            switches.put(name, registeredSwitch);
+        }
+        return registeredSwitch;
+    }
+
+    @Override
+    public void configurationEvent(ConfigurationEvent event) {
+        if (Configurations.NODE.equals(event.getPid()) && event.getType() == ConfigurationEvent.CM_UPDATED) {
+            reload();
+        }
+    }
+
+    /**
+     * Reload the node configuration and update the status of all registered switches.
+     */
+    public synchronized void reload() {
+        try {
+            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
+            if (configuration != null) {
+                properties = configuration.getProperties();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR: can't load the switches status from the node configuration", e);
+        }
+        for (RegisteredSwitch registeredSwitch : switches.values()) {
+            registeredSwitch.update(properties);
+        }
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    /**
+     * Switch bound to a node configuration property.
+     */
+    private static class RegisteredSwitch extends BasicSwitch {
+
+        private final String property;
+
+        RegisteredSwitch(String name, String property) {
+            super(name);
+            this.property = property;
+        }
+
+        void update(Dictionary<String, Object> properties) {
+            if (properties == null) {
+                return;
+            }
+            Object value = properties.get(property);
+            if (value != null && Boolean.parseBoolean(value.toString())) {
+                turnOn();
+            } else {
+                turnOff();
+            }
+        }
+
+    }
+
+}
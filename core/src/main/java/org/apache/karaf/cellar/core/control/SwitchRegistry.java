@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.control;
+
+import org.apache.karaf.cellar.core.Handler;
+
+/**
+ * Registry of the {@code Switch}es backed by the Cellar node configuration.
+ */
+public interface SwitchRegistry {
+
+    /**
+     * Get the shared switch with the given name, creating it if required.
+     * The switch status follows the given property of the node configuration.
+     *
+     * @param name the switch name.
+     * @param property the node configuration property holding the switch status.
+     * @return the shared switch.
+     */
+    public Switch getSwitch(String name, String property);
+
+    /**
+     * Get the shared switch of an event handler, creating it if required.
+     * The switch status follows the handler property of the node configuration.
+     *
+     * @param name the switch name.
+     * @param handler the event handler.
+     * @return the shared switch.
+     */
+    public Switch getHandlerSwitch(String name, Handler handler);
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+/**
+ * Behaviour of the cluster event dispatcher when its queue is full.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * The thread dispatching the event waits for room in the queue. The thread receiving the cluster events is
+     * blocked meanwhile. This is the default policy.
+     */
+    BLOCK,
+
+    /**
+     * The dispatched event is dropped. A dropped synchronization event (bundle, configuration, feature...) is lost:
+     * the nodes stay out of sync until the next synchronization of the cluster group.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest pending event of the same lane (cluster group and event type) is dropped to make room for the
+     * dispatched event. If the lane doesn't have pending event, the dispatched event is dropped.
+     */
+    DROP_OLDEST
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster event producer collecting the events during a window (or up to a number of events) and producing them
+ * as a single {@link EventBatch}.
+ * For the event types to coalesce, an event replaces the pending event with the same type, cluster group and id
+ * (for instance the same bundle or configuration PID).
+ * The commands, results, forced events and events with a destination are not batched: the pending events are
+ * produced first, then the event is produced as is.
+ */
+public class BatchingEventProducer<E extends Event> implements EventProducer<E> {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BatchingEventProducer.class);
+
+    public static final long DEFAULT_WINDOW = 0;
+    public static final int DEFAULT_SIZE = 100;
+    public static final String DEFAULT_COALESCE = "org.apache.karaf.cellar.bundle.ClusterBundleEvent,org.apache.karaf.cellar.config.ClusterConfigurationEvent";
+
+    private EventProducer<Event> producer;
+    private long window = DEFAULT_WINDOW;
+    private int size = DEFAULT_SIZE;
+    private Set<String> coalescedTypes = new HashSet<String>(Arrays.asList(DEFAULT_COALESCE.split(",")));
+
+    private final Map<Object, Event> pending = new LinkedHashMap<Object, Event>();
+    private ScheduledExecutorService flushScheduler;
+    private ScheduledFuture flushTask;
+    private long sequence;
+
+    /**
+     * Read the batching settings from the system properties prefixed by the class name.
+     *
+     * @return true if batching is enabled (window greater than 0), false else.
+     */
+    public static boolean isEnabled() {
+        return Long.getLong(BatchingEventProducer.class.getName() + ".window", DEFAULT_WINDOW) > 0;
+    }
+
+    public void init() {
+        String prefix = BatchingEventProducer.class.getName();
+        window = Long.getLong(prefix + ".window", window);
+        size = Integer.getInteger(prefix + ".size", size);
+        String coalesce = System.getProperty(prefix + ".coalesce");
+        if (coalesce != null) {
+            coalescedTypes = new HashSet<String>();
+            for (String type : coalesce.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    coalescedTypes.add(type.trim());
+                }
+            }
+        }
+        flushScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public void destroy() {
+        flush();
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+        }
+    }
+
+    @Override
+    public synchronized void produce(E event) {
+        if (event instanceof Command || event instanceof Result || event.getForce()
+                || (event.getDestination() != null && !event.getDestination().isEmpty())) {
+            flush();
+            producer.produce(event);
+            return;
+        }
+        Object key;
+        if (coalescedTypes.contains(event.getClass().getName())) {
+            String group = event.getSourceGroup() != null ? event.getSourceGroup().getName() : null;
+            key = Arrays.asList(event.getClass().getName(), group, event.getId());
+            if (pending.remove(key) != null) {
+                LOGGER.trace("CELLAR BATCH: cluster event {} {} coalesced", event.getClass().getName(), event.getId());
+            }
+        } else {
+            key = sequence++;
+        }
+        pending.put(key, event);
+        if (pending.size() >= size) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = flushScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Produce the pending events.
+     */
+    public synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Event> events = new ArrayList<Event>(pending.values());
+        pending.clear();
+        try {
+            if (events.size() == 1) {
+                producer.produce(events.get(0));
+            } else {
+                producer.produce(new EventBatch("batch-" + sequence++, events));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR BATCH: can't produce {} cluster events", events.size(), e);
+        }
+    }
+
+    @Override
+    public Switch getSwitch() {
+        return producer.getSwitch();
+    }
+
+    public EventProducer<Event> getProducer() {
+        return producer;
+    }
+
+    public void setProducer(EventProducer<Event> producer) {
+        this.producer = producer;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public Set<String> getCoalescedTypes() {
+        return coalescedTypes;
+    }
+
+    public void setCoalescedTypes(Set<String> coalescedTypes) {
+        this.coalescedTypes = coalescedTypes;
+    }
+
+}
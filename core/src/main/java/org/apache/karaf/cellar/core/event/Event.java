@@ -15,7 +15,11 @@ package org.apache.karaf.cellar.core.event;
 
 import org.apache.karaf.cellar.core.Group;
 import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.utils.SerializationUtils;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.Set;
 
@@ -25,6 +29,8 @@ import java.util.Set;
  */
 public class Event implements Serializable {
 
+    private static final long serialVersionUID = -7364724071557903902L;
+
     protected String id;
     protected Node sourceNode;
     protected Group sourceGroup;
@@ -36,6 +42,13 @@ public class Event implements Serializable {
         this.id = id;
     }
 
+    /**
+     * Constructor used by the compact serialization of the subclasses.
+     */
+    protected Event() {
+        // nothing to do
+    }
+
     public String getId() {
         return id;
     }
@@ -84,4 +97,35 @@ public class Event implements Serializable {
         this.postPublish = postPublish;
     }
 
+    /**
+     * Write the event fields, for the subclasses implementing {@link org.apache.karaf.cellar.core.CompactSerializable}.
+     *
+     * @param out the output to write to.
+     * @throws IOException in case of write failure.
+     */
+    protected void writeEvent(ObjectOutput out) throws IOException {
+        out.writeObject(id);
+        out.writeObject(sourceNode);
+        out.writeObject(sourceGroup);
+        SerializationUtils.writeCollection(out, destination);
+        out.writeObject(force);
+        out.writeObject(postPublish);
+    }
+
+    /**
+     * Read the event fields written by {@link #writeEvent(ObjectOutput)}.
+     *
+     * @param in the input to read from.
+     * @throws IOException in case of read failure.
+     * @throws ClassNotFoundException if the class of a field is not found.
+     */
+    protected void readEvent(ObjectInput in) throws IOException, ClassNotFoundException {
+        id = (String) in.readObject();
+        sourceNode = (Node) in.readObject();
+        sourceGroup = (Group) in.readObject();
+        destination = SerializationUtils.readSet(in);
+        force = (Boolean) in.readObject();
+        postPublish = (Boolean) in.readObject();
+    }
+
 }
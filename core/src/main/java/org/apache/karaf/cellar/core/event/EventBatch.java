@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster event carrying several cluster events, published at once by the {@link BatchingEventProducer}.
+ * The dispatcher unpacks the batch and dispatches each event.
+ */
+public class EventBatch extends Event {
+
+    private List<Event> events;
+
+    public EventBatch(String id, List<Event> events) {
+        super(id);
+        this.events = new ArrayList<Event>(events);
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<Event> events) {
+        this.events = events;
+    }
+
+}
@@ -13,11 +13,16 @@
  */
 package org.apache.karaf.cellar.core.event;
 
+import org.apache.karaf.cellar.core.Dispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Event dispatcher task.
+ * If no handler is registered for the event, or if events of the same type are still waiting for their handler, the
+ * event is kept in the {@code EventHandlerRegistry} (without holding the thread) and released in order when the
+ * handler is registered, or dropped after the timeout.
+ * The timeout is defined by the {@code cellar.timeout.<event class name>} or {@code cellar.timeout} system properties.
  */
 public class EventDispatchTask<E extends Event> implements Runnable {
 
@@ -26,21 +31,14 @@ public class EventDispatchTask<E extends Event> implements Runnable {
 
     private E event;
     private EventHandlerRegistry handlerRegistry;
+    private Dispatcher<E> dispatcher;
     private long timeout;
     private long interval = 1000;
+    private EventHandlerRegistryDispatcher.Lane lane;
+    private volatile boolean released;
 
     public EventDispatchTask(E event, EventHandlerRegistry handlerRegistry) {
-        this.event = event;
-        this.handlerRegistry = handlerRegistry;
-        if (System.getProperty("cellar.timeout") != null) {
-            try {
-                this.timeout = Long.parseLong(System.getProperty("cellar.timeout"));
-            } catch (Exception e) {
-                this.timeout = DEFAULT_TIMEOUT;
-            }
-        } else {
-            this.timeout = DEFAULT_TIMEOUT;
-        }
+        this(event, handlerRegistry, getTimeout(event.getClass()));
     }
 
     public EventDispatchTask(E event, EventHandlerRegistry handlerRegistry, long timeout) {
@@ -56,25 +54,53 @@ public class EventDispatchTask<E extends Event> implements Runnable {
         this.event = event;
     }
 
+    /**
+     * Get the time to wait for the handler of a cluster event type.
+     *
+     * @param type the cluster event type.
+     * @return the timeout in milliseconds.
+     */
+    static long getTimeout(Class type) {
+        String value = System.getProperty("cellar.timeout." + type.getName());
+        if (value == null) {
+            value = System.getProperty("cellar.timeout");
+        }
+        return getTimeout(value, DEFAULT_TIMEOUT);
+    }
+
+    private static long getTimeout(String value, long defaultTimeout) {
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (Exception e) {
+                // use the default timeout
+            }
+        }
+        return defaultTimeout;
+    }
+
     @Override
     public void run() {
         try {
-            boolean dispatched = false;
-
-            for (long delay = 0; delay < timeout && !dispatched; delay += interval) {
-                EventHandler handler = handlerRegistry.getHandler(event);
-                if (handler != null) {
-                    handler.handle(event);
-                    dispatched = true;
-                } else {
-                    try {
-                        Thread.sleep(interval);
-                    } catch (InterruptedException e) {
-                        LOGGER.warn("Interrupted while waiting for cluster event handler", e);
+            if (!released) {
+                if (handlerRegistry.await(event, timeout, new Runnable() {
+                    @Override
+                    public void run() {
+                        release();
                     }
+                })) {
+                    // the event is dispatched again when the handler is registered
+                    return;
+                }
+                if (lane != null && lane.defer(this)) {
+                    // events released before this one are still queued in the lane
+                    return;
                 }
             }
-            if (!dispatched) {
+            EventHandler handler = handlerRegistry.getHandler(event);
+            if (handler != null) {
+                handler.handle(event);
+            } else {
                 LOGGER.warn("Failed to retrieve handler for cluster event {}", event.getClass());
             }
         } catch (Exception ex) {
@@ -82,6 +108,21 @@ public class EventDispatchTask<E extends Event> implements Runnable {
         }
     }
 
+    /**
+     * Dispatch the event again once its handler is registered.
+     * The event goes back to its lane ahead of the events received after it, to keep the order of the lane.
+     */
+    private void release() {
+        released = true;
+        if (lane != null) {
+            lane.release(this);
+        } else if (dispatcher != null) {
+            dispatcher.dispatch(event);
+        } else {
+            run();
+        }
+    }
+
     public long getTimeout() {
         return timeout;
     }
@@ -90,12 +131,32 @@ public class EventDispatchTask<E extends Event> implements Runnable {
         this.timeout = timeout;
     }
 
+    /**
+     * @deprecated the registry is no longer polled, the task waits for the handler registration.
+     */
+    @Deprecated
     public long getInterval() {
         return interval;
     }
 
+    /**
+     * @deprecated the registry is no longer polled, the task waits for the handler registration.
+     */
+    @Deprecated
     public void setInterval(long interval) {
         this.interval = interval;
     }
 
+    public Dispatcher<E> getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(Dispatcher<E> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    void setLane(EventHandlerRegistryDispatcher.Lane lane) {
+        this.lane = lane;
+    }
+
 }
@@ -16,6 +16,8 @@ package org.apache.karaf.cellar.core.event;
 import org.apache.karaf.cellar.core.Handler;
 import org.apache.karaf.cellar.core.HandlerRegistry;
 
+import java.util.Map;
+
 public interface EventHandlerRegistry<E extends Event> extends HandlerRegistry<E, Handler<E>> {
 
     /**
@@ -27,4 +29,32 @@ public interface EventHandlerRegistry<E extends Event> extends HandlerRegistry<E
     @Override
     public EventHandler<E> getHandler(E event);
 
+    /**
+     * Keep a cluster {@code Event} without handler until a cluster {@code EventHandler} for its type is registered.
+     * The event also waits if events of the same type received before are still waiting, so the events are released
+     * in order. The release task is called by the thread registering the handler. If no handler is registered before
+     * the timeout, or if too many events are waiting, the event is dropped.
+     *
+     * @param event the cluster event waiting for a handler.
+     * @param timeout the maximum time to wait for a handler, in milliseconds.
+     * @param release the task to call when a handler is registered for the event type.
+     * @return true if the event is kept waiting for a handler (or dropped), false if it can be handled now.
+     */
+    public boolean await(E event, long timeout, Runnable release);
+
+    /**
+     * Get the number of cluster events waiting for a handler, per event type.
+     *
+     * @return the number of waiting events per event type.
+     */
+    public Map<String, Integer> getAwaitingEvents();
+
+    /**
+     * Get the number of cluster events dropped because no handler has been registered in time, or because too many
+     * events were waiting, per event type.
+     *
+     * @return the number of dropped events per event type.
+     */
+    public Map<String, Long> getExpiredEvents();
+
 }
@@ -13,41 +13,209 @@
  */
 package org.apache.karaf.cellar.core.event;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Event handler service registry dispatcher.
+ * The events are queued in lanes, one lane per cluster group and event type: the events of a lane are handled in
+ * order, the lanes are handled in parallel by a bounded pool of threads. The number of pending events is bounded,
+ * the {@link BackpressurePolicy} defines what happens when the limit is reached: by default, the thread receiving the
+ * cluster events waits for room. With a drop policy, the commands, results and forced events are never dropped, they
+ * wait for room as well.
  */
 public class EventHandlerRegistryDispatcher<E extends Event> implements EventDispatcher<E> {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(EventHandlerRegistryDispatcher.class);
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Minimum interval between two warnings about dropped events in a lane, in milliseconds.
+     */
+    private static final long DROP_WARNING_INTERVAL = 10000;
+
+    /**
+     * Maximum number of events handled by a lane before giving back its thread to the other lanes.
+     */
+    private static final int LANE_BATCH = 32;
+
     private ExecutorService threadPool;
     private EventHandlerRegistry handlerRegistry;
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private int capacity = DEFAULT_CAPACITY;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<String, Lane>();
+    private Semaphore permits;
 
     public void init() {
+        String prefix = this.getClass().getName();
+        poolSize = Math.max(1, Integer.getInteger(prefix + ".threadPool.size", poolSize));
+        capacity = Math.max(1, Integer.getInteger(prefix + ".capacity", capacity));
+        String policy = System.getProperty(prefix + ".backpressure");
+        if (policy != null) {
+            try {
+                backpressurePolicy = BackpressurePolicy.valueOf(policy.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("CELLAR DISPATCHER: unknown backpressure policy {}, using {}", policy, backpressurePolicy);
+            }
+        }
         if (threadPool == null) {
-            if (Boolean.getBoolean(this.getClass().getName() + ".threadPool.singleThreadExecutor")) {
+            if (Boolean.getBoolean(prefix + ".threadPool.singleThreadExecutor")) {
                 LOGGER.info("Will use an Executor that uses a single worker thread");
+                poolSize = 1;
                 threadPool = Executors.newSingleThreadExecutor();
             } else {
-                LOGGER.info("Will use an Executor with a pool of threads");
-                threadPool = Executors.newCachedThreadPool();
+                LOGGER.info("Will use an Executor with a pool of {} threads", poolSize);
+                threadPool = Executors.newFixedThreadPool(poolSize);
             }
         }
+        permits = new Semaphore(capacity);
     }
 
     /**
      * Dispatch a cluster {@code Event} to the appropriate cluster {@code EventHandler}.
+     * The events of an {@code EventBatch} are dispatched one by one.
      *
      * @param event the cluster event to dispatch.
      */
+    @SuppressWarnings("unchecked")
     public void dispatch(E event) {
-        EventDispatchTask task = new EventDispatchTask(event, handlerRegistry);
-        threadPool.execute(task);
+        if (event instanceof EventBatch) {
+            for (Event batchedEvent : ((EventBatch) event).getEvents()) {
+                dispatch((E) batchedEvent);
+            }
+            return;
+        }
+        Lane lane = getLane(event);
+        boolean droppable = isDroppable(event);
+        if (!permits.tryAcquire()) {
+            switch (droppable ? backpressurePolicy : BackpressurePolicy.BLOCK) {
+                case BLOCK:
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        lane.drop("interrupted while waiting to dispatch");
+                        return;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    // the permit of the dropped event is given to the new one
+                    if (lane.dropOldest()) {
+                        lane.drop("dispatcher queue is full, oldest pending");
+                        break;
+                    }
+                    // nothing to drop in this lane, drop the new event
+                default:
+                    lane.drop("dispatcher queue is full");
+                    return;
+            }
+        }
+        EventDispatchTask<E> task = new EventDispatchTask<E>(event, handlerRegistry, lane.timeout);
+        task.setDispatcher(this);
+        task.setLane(lane);
+        lane.queue.offer(new PendingEvent(task, droppable));
+        lane.schedule();
+    }
+
+    /**
+     * Check if an event can be dropped when the dispatcher queue is full. A dropped command or result would only show
+     * up as a command timeout, and a forced event is expected to be applied, so they are never dropped.
+     */
+    private static boolean isDroppable(Event event) {
+        return !(event instanceof Command) && !(event instanceof Result) && !Boolean.TRUE.equals(event.getForce());
+    }
+
+    /**
+     * Dispatch a cluster {@code Event} in the calling thread, without going through the lane queue.
+     * This is used by the consumers running their own pool of threads, for the events which don't need to be
+     * handled in order, like the requests taken from a queue by competing consumers. The event is still accounted
+     * in the metrics of its lane.
+     *
+     * @param event the cluster event to dispatch.
+     */
+    @SuppressWarnings("unchecked")
+    public void dispatchNow(E event) {
+        if (event instanceof EventBatch) {
+            for (Event batchedEvent : ((EventBatch) event).getEvents()) {
+                dispatchNow((E) batchedEvent);
+            }
+            return;
+        }
+        Lane lane = getLane(event);
+        EventDispatchTask<E> task = new EventDispatchTask<E>(event, handlerRegistry, lane.timeout);
+        task.setDispatcher(this);
+        task.setLane(lane);
+        long start = System.nanoTime();
+        lane.pending.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            lane.pending.decrementAndGet();
+            lane.record(System.nanoTime() - start);
+        }
+    }
+
+    private Lane getLane(E event) {
+        String group = event.getSourceGroup() != null ? event.getSourceGroup().getName() : "";
+        String type = event.getClass().getName();
+        String key = group + "/" + type;
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lanes.putIfAbsent(key, new Lane(this, group, type, EventDispatchTask.getTimeout(event.getClass())));
+            lane = lanes.get(key);
+        }
+        return lane;
+    }
+
+    /**
+     * Get the dispatcher lanes.
+     *
+     * @return the lanes, one per cluster group and event type.
+     */
+    public Collection<Lane> getLanes() {
+        return new ArrayList<Lane>(lanes.values());
+    }
+
+    /**
+     * Get the number of events waiting to be handled.
+     *
+     * @return the number of pending events.
+     */
+    public int getPending() {
+        return permits != null ? capacity - permits.availablePermits() : 0;
+    }
+
+    /**
+     * Get the number of events dropped because the dispatcher queue was full.
+     *
+     * @return the number of dropped events.
+     */
+    public long getDropped() {
+        long dropped = 0;
+        for (Lane lane : lanes.values()) {
+            dropped += lane.getDropped();
+        }
+        return dropped;
     }
 
     public EventHandlerRegistry getHandlerRegistry() {
@@ -66,10 +234,216 @@ public class EventHandlerRegistryDispatcher<E extends Event> implements EventDis
         this.threadPool = threadPool;
     }
 
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    public void setBackpressurePolicy(BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
     public void destroy() {
         if (threadPool != null) {
             threadPool.shutdown();
         }
     }
 
+    /**
+     * Event waiting in a lane.
+     */
+    private static class PendingEvent {
+
+        private final EventDispatchTask task;
+        private final boolean droppable;
+        private final long queued = System.nanoTime();
+
+        PendingEvent(EventDispatchTask task, boolean droppable) {
+            this.task = task;
+            this.droppable = droppable;
+        }
+
+    }
+
+    /**
+     * Ordered queue of the events of a cluster group and event type, with its metrics.
+     * The events released by the {@link EventHandlerRegistry} once their handler is registered are handled before the
+     * events queued after them.
+     */
+    public static class Lane implements Runnable {
+
+        private final EventHandlerRegistryDispatcher dispatcher;
+        private final String group;
+        private final String type;
+        private final long timeout;
+        private final Queue<PendingEvent> queue = new ConcurrentLinkedQueue<PendingEvent>();
+        private final Queue<PendingEvent> released = new ConcurrentLinkedQueue<PendingEvent>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong lastDropWarning = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        Lane(EventHandlerRegistryDispatcher dispatcher, String group, String type, long timeout) {
+            this.dispatcher = dispatcher;
+            this.group = group;
+            this.type = type;
+            this.timeout = timeout;
+        }
+
+        /**
+         * Queue an event released by the handler registry, ahead of the events dispatched after it.
+         */
+        void release(EventDispatchTask task) {
+            released.offer(new PendingEvent(task, false));
+            schedule();
+        }
+
+        /**
+         * Queue an event behind the released events not handled yet.
+         *
+         * @return true if the event has been queued, false if there are no released events to wait for.
+         */
+        boolean defer(EventDispatchTask task) {
+            if (released.isEmpty()) {
+                return false;
+            }
+            release(task);
+            return true;
+        }
+
+        /**
+         * Remove the oldest pending event which can be dropped.
+         *
+         * @return true if an event has been removed, false if the lane has no droppable pending event.
+         */
+        boolean dropOldest() {
+            for (PendingEvent pendingEvent : queue) {
+                if (pendingEvent.droppable && queue.remove(pendingEvent)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.threadPool.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    LOGGER.warn("CELLAR DISPATCHER: dispatcher is stopped, cluster event {} not dispatched", type);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < LANE_BATCH; i++) {
+                    PendingEvent pendingEvent = released.poll();
+                    if (pendingEvent == null) {
+                        pendingEvent = queue.poll();
+                        if (pendingEvent == null) {
+                            break;
+                        }
+                        dispatcher.permits.release();
+                    }
+                    pending.incrementAndGet();
+                    try {
+                        pendingEvent.task.run();
+                    } finally {
+                        pending.decrementAndGet();
+                        record(System.nanoTime() - pendingEvent.queued);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            if (!released.isEmpty() || !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        /**
+         * Count a dropped event. The warnings are logged at most once per interval, with the number of events
+         * dropped so far, to not flood the log when the node is overloaded.
+         */
+        private void drop(String reason) {
+            long count = dropped.incrementAndGet();
+            long now = System.nanoTime();
+            long last = lastDropWarning.get();
+            if ((last == 0 || now - last >= DROP_WARNING_INTERVAL * 1000000L) && lastDropWarning.compareAndSet(last, now)) {
+                LOGGER.warn("CELLAR DISPATCHER: {}, cluster event {} of cluster group {} dropped ({} dropped in this lane)", reason, type, group, count);
+            } else {
+                LOGGER.debug("CELLAR DISPATCHER: {}, cluster event {} of cluster group {} dropped", reason, type, group);
+            }
+        }
+
+        private void record(long latency) {
+            dispatched.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            long max = maxLatency.get();
+            while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                max = maxLatency.get();
+            }
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the number of events queued or being handled in this lane.
+         */
+        public int getPending() {
+            return released.size() + queue.size() + pending.get();
+        }
+
+        public long getDispatched() {
+            return dispatched.get();
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * @return the average time between the dispatch and the end of the handling of the events, in milliseconds.
+         */
+        public double getAverageLatency() {
+            long count = dispatched.get();
+            return count > 0 ? totalLatency.get() / (count * 1000000.0) : 0;
+        }
+
+        /**
+         * @return the maximum time between the dispatch and the end of the handling of the events, in milliseconds.
+         */
+        public double getMaxLatency() {
+            return maxLatency.get() / 1000000.0;
+        }
+
+    }
+
 }
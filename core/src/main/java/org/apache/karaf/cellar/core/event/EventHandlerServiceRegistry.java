@@ -13,16 +13,44 @@
  */
 package org.apache.karaf.cellar.core.event;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Event handler service registry.
+ * The cluster events received before the registration of their handler are kept in a bounded pending buffer, per
+ * event type, and released in order when the handler is bound. When the buffer is full, the new events are dropped.
  */
 public class EventHandlerServiceRegistry<E extends Event> implements EventHandlerRegistry<E> {
 
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(EventHandlerServiceRegistry.class);
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
     private Map<Class,EventHandler> eventHandlerMap = new ConcurrentHashMap<Class,EventHandler>();
 
+    private final ConcurrentMap<Class, Queue<AwaitingEvent>> awaitingEvents = new ConcurrentHashMap<Class, Queue<AwaitingEvent>>();
+    private final ConcurrentMap<Class, AtomicLong> expiredEvents = new ConcurrentHashMap<Class, AtomicLong>();
+    private final ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1);
+    private int capacity = Math.max(1, Integer.getInteger(EventHandlerServiceRegistry.class.getName() + ".capacity", DEFAULT_CAPACITY));
+
+    public EventHandlerServiceRegistry() {
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+    }
+
     /**
      * Return the appropriate cluster {@code EventHandler} found inside the cluster {@code HandlerRegistry}.
      *
@@ -38,9 +66,115 @@ public class EventHandlerServiceRegistry<E extends Event> implements EventHandle
         return null;
     }
 
+    @Override
+    public boolean await(E event, long timeout, Runnable release) {
+        if (event == null) {
+            return false;
+        }
+        final Class type = event.getClass();
+        Queue<AwaitingEvent> queue = awaitingEvents.get(type);
+        if (eventHandlerMap.containsKey(type) && (queue == null || queue.isEmpty())) {
+            return false;
+        }
+        if (queue == null) {
+            awaitingEvents.putIfAbsent(type, new LinkedBlockingQueue<AwaitingEvent>(capacity));
+            queue = awaitingEvents.get(type);
+        }
+        final AwaitingEvent awaitingEvent = new AwaitingEvent(release);
+        if (!queue.offer(awaitingEvent)) {
+            awaitingEvent.done.set(true);
+            drop(type, "too many cluster events waiting for their handler");
+            return true;
+        }
+        try {
+            awaitingEvent.timeout = timeoutScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire(type, awaitingEvent);
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the registry is stopped
+            expire(type, awaitingEvent);
+        }
+        // the handler may have been bound meanwhile
+        if (eventHandlerMap.containsKey(type)) {
+            release(type);
+        }
+        return true;
+    }
+
+    private void expire(Class type, AwaitingEvent awaitingEvent) {
+        if (awaitingEvent.done.compareAndSet(false, true)) {
+            Queue<AwaitingEvent> queue = awaitingEvents.get(type);
+            if (queue != null) {
+                queue.remove(awaitingEvent);
+            }
+            drop(type, "Failed to retrieve handler for cluster event");
+        }
+    }
+
+    private void drop(Class type, String reason) {
+        AtomicLong expired = expiredEvents.get(type);
+        if (expired == null) {
+            expiredEvents.putIfAbsent(type, new AtomicLong());
+            expired = expiredEvents.get(type);
+        }
+        expired.incrementAndGet();
+        LOGGER.warn("{} {}", reason, type);
+    }
+
+    /**
+     * Release the events waiting for the handler of a type, in the order they have been received.
+     * An event is removed from the pending buffer only once released, so an event of the same type received
+     * meanwhile still sees it and waits behind it.
+     */
+    private void release(Class type) {
+        Queue<AwaitingEvent> queue = awaitingEvents.get(type);
+        if (queue == null) {
+            return;
+        }
+        synchronized (queue) {
+            AwaitingEvent awaitingEvent;
+            while ((awaitingEvent = queue.peek()) != null) {
+                if (awaitingEvent.done.compareAndSet(false, true)) {
+                    ScheduledFuture timeout = awaitingEvent.timeout;
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                    try {
+                        awaitingEvent.release.run();
+                    } catch (Exception e) {
+                        LOGGER.warn("Can't release cluster event {}", type, e);
+                    }
+                }
+                queue.remove(awaitingEvent);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getAwaitingEvents() {
+        Map<String, Integer> result = new HashMap<String, Integer>();
+        for (Map.Entry<Class, Queue<AwaitingEvent>> entry : awaitingEvents.entrySet()) {
+            result.put(entry.getKey().getName(), entry.getValue().size());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getExpiredEvents() {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (Map.Entry<Class, AtomicLong> entry : expiredEvents.entrySet()) {
+            result.put(entry.getKey().getName(), entry.getValue().get());
+        }
+        return result;
+    }
+
     public void bind(EventHandler handler) {
         if(handler != null && handler.getType() != null) {
             eventHandlerMap.put(handler.getType(),handler);
+            release(handler.getType());
         }
     }
 
@@ -50,4 +184,31 @@ public class EventHandlerServiceRegistry<E extends Event> implements EventHandle
         }
     }
 
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void destroy() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * Cluster event waiting for its handler.
+     */
+    private static class AwaitingEvent {
+
+        private final Runnable release;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile ScheduledFuture timeout;
+
+        AwaitingEvent(Runnable release) {
+            this.release = release;
+        }
+
+    }
+
 }
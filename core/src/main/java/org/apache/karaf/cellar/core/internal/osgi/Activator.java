@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.core.internal.osgi;
 
+import org.apache.karaf.cellar.core.command.HashedWheelTimer;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventHandlerRegistry;
 import org.apache.karaf.cellar.core.event.EventHandlerServiceRegistry;
@@ -33,12 +34,13 @@ public class Activator extends BaseActivator {
     private final static Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
     private ServiceTracker<EventHandler, EventHandler> eventHandlerServiceTracker;
+    private EventHandlerServiceRegistry registry;
 
     @Override
     public void doStart() throws Exception {
 
         LOGGER.debug("CELLAR CORE: register event handler service registry");
-        final EventHandlerServiceRegistry registry = new EventHandlerServiceRegistry();
+        registry = new EventHandlerServiceRegistry();
         register(EventHandlerRegistry.class, registry);
 
         LOGGER.debug("CELLAR CORE: starting event handler service tracker");
@@ -72,6 +74,11 @@ public class Activator extends BaseActivator {
             eventHandlerServiceTracker.close();
             eventHandlerServiceTracker = null;
         }
+        if (registry != null) {
+            registry.destroy();
+            registry = null;
+        }
+        HashedWheelTimer.stopSharedTimer();
     }
 
 }
@@ -112,4 +112,31 @@ public interface CellarMBean {
      */
     void producerStop(String nodeIdOrAlias) throws Exception;
 
+    /**
+     * Get the status of the local cluster event dispatcher: pending and dropped events, and handling latency
+     * per cluster group and event type.
+     *
+     * @return the status of the local cluster event dispatcher lanes.
+     * @throws Exception in case of retrieval failure.
+     */
+    TabularData dispatcherStatus() throws Exception;
+
+    /**
+     * Get the cluster events waiting for the registration of their handler on the local node, and the number of
+     * events dropped because no handler has been registered in time, per event type.
+     *
+     * @return the status of the cluster events waiting for a handler.
+     * @throws Exception in case of retrieval failure.
+     */
+    TabularData awaitingEventStatus() throws Exception;
+
+    /**
+     * Get the cluster commands waiting for their results on the local node, and the number of commands expired
+     * before all results have been received, per command type.
+     *
+     * @return the status of the pending cluster commands.
+     * @throws Exception in case of retrieval failure.
+     */
+    TabularData commandStatus() throws Exception;
+
 }
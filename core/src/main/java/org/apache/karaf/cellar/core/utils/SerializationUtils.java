@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.utils;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers to write and read collections in {@link org.apache.karaf.cellar.core.CompactSerializable} implementations.
+ */
+public class SerializationUtils {
+
+    private SerializationUtils() {
+        // utility class
+    }
+
+    /**
+     * Write a collection, each element with {@code writeObject}.
+     *
+     * @param out the output to write to.
+     * @param collection the collection to write (may be null).
+     * @throws IOException in case of write failure.
+     */
+    public static void writeCollection(ObjectOutput out, Collection<?> collection) throws IOException {
+        if (collection == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(collection.size());
+        for (Object element : collection) {
+            out.writeObject(element);
+        }
+    }
+
+    /**
+     * Read the elements of a collection written by {@link #writeCollection(ObjectOutput, Collection)}.
+     *
+     * @param in the input to read from.
+     * @param collection the collection to fill.
+     * @return the filled collection, or null if a null collection has been written.
+     * @throws IOException in case of read failure.
+     * @throws ClassNotFoundException if the class of an element is not found.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, C extends Collection<T>> C readCollection(ObjectInput in, C collection) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        for (int i = 0; i < size; i++) {
+            collection.add((T) in.readObject());
+        }
+        return collection;
+    }
+
+    /**
+     * Read a set written by {@link #writeCollection(ObjectOutput, Collection)}.
+     *
+     * @param in the input to read from.
+     * @return the set, or null if a null collection has been written.
+     * @throws IOException in case of read failure.
+     * @throws ClassNotFoundException if the class of an element is not found.
+     */
+    public static <T> Set<T> readSet(ObjectInput in) throws IOException, ClassNotFoundException {
+        return readCollection(in, new HashSet<T>());
+    }
+
+    /**
+     * Write a map, each key and value with {@code writeObject}.
+     *
+     * @param out the output to write to.
+     * @param map the map to write (may be null).
+     * @throws IOException in case of write failure.
+     */
+    public static void writeMap(ObjectOutput out, Map<?, ?> map) throws IOException {
+        if (map == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Read the entries of a map written by {@link #writeMap(ObjectOutput, Map)}.
+     *
+     * @param in the input to read from.
+     * @param map the map to fill.
+     * @return the filled map, or null if a null map has been written.
+     * @throws IOException in case of read failure.
+     * @throws ClassNotFoundException if the class of a key or value is not found.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V, M extends Map<K, V>> M readMap(ObjectInput in, M map) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        for (int i = 0; i < size; i++) {
+            K key = (K) in.readObject();
+            V value = (V) in.readObject();
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * Read a map written by {@link #writeMap(ObjectOutput, Map)}.
+     *
+     * @param in the input to read from.
+     * @return the map, or null if a null map has been written.
+     * @throws IOException in case of read failure.
+     * @throws ClassNotFoundException if the class of a key or value is not found.
+     */
+    public static <K, V> Map<K, V> readMap(ObjectInput in) throws IOException, ClassNotFoundException {
+        return readMap(in, new HashMap<K, V>());
+    }
+
+}
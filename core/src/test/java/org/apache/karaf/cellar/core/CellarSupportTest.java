@@ -22,7 +22,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.osgi.service.cm.Configuration;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
 
 
 import static junit.framework.TestCase.assertTrue;
@@ -81,6 +83,30 @@ public class CellarSupportTest {
         assertEquals("Instance config should be allowed",expectedResult,result);
     }
 
+    @Test
+    public void testFiltersInvalidatedOnConfigurationEvent() throws Exception {
+        GroupFilterIndex index = new GroupFilterIndex();
+        index.setConfigurationAdmin(configurationAdmin);
+        CellarSupport support = new CellarSupport();
+        support.setConfigurationAdmin(configurationAdmin);
+        support.setGroupFilterIndex(index);
+        assertFalse(support.isAllowed(defaultGroup, "config", "org.apache.karaf.shell", EventType.INBOUND));
+
+        props.put("default.config.blacklist.inbound", "org.apache.karaf.management");
+        // the filters are cached by the index until the groups configuration event
+        assertFalse(support.isAllowed(defaultGroup, "config", "org.apache.karaf.shell", EventType.INBOUND));
+        // without index, the lists are read from the configuration on each call
+        CellarSupport other = new CellarSupport();
+        other.setConfigurationAdmin(configurationAdmin);
+        assertTrue(other.isAllowed(defaultGroup, "config", "org.apache.karaf.shell", EventType.INBOUND));
+
+        ServiceReference<ConfigurationAdmin> reference = reference();
+        index.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, Configurations.NODE));
+        assertFalse(support.isAllowed(defaultGroup, "config", "org.apache.karaf.shell", EventType.INBOUND));
+        index.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, Configurations.GROUP));
+        assertTrue(support.isAllowed(defaultGroup, "config", "org.apache.karaf.shell", EventType.INBOUND));
+    }
+
     @Test
     public void testBundleWildcard() {
         CellarSupport support = new CellarSupport();
@@ -98,4 +124,9 @@ public class CellarSupportTest {
         assertFalse(test);
     }
 
+    @SuppressWarnings("unchecked")
+    private static ServiceReference<ConfigurationAdmin> reference() {
+        return createMock(ServiceReference.class);
+    }
+
 }
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GlobMatcherTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            "org.apache.karaf.cellar*",
+            "org.apache.karaf.shell",
+            "mvn:org.apache.karaf/*",
+            "*bar",
+            "a.c",
+            "[0-9]+/1.0",
+            "");
+
+    private static final List<String> ITEMS = Arrays.asList(
+            "org.apache.karaf.cellar",
+            "org.apache.karaf.cellar.node",
+            "org.apache.karaf.cellar\nnode",
+            "org.apache.karaf.shell",
+            "org.apache.karaf.shell.core",
+            "orgXapacheXkarafXshell",
+            "mvn:org.apache.karaf/org.apache.karaf.util/4.2.2",
+            "mvn:org.apache.felix/org.apache.felix.scr/2.1.0",
+            "foo_bar",
+            "abc",
+            "a\nc",
+            "ac",
+            "123/1.0",
+            "",
+            "other");
+
+    @Test
+    public void testSameResultAsWildCardMatch() {
+        CellarSupport support = new CellarSupport();
+        GlobMatcher matcher = GlobMatcher.compile(PATTERNS);
+        for (String item : ITEMS) {
+            boolean expected = false;
+            for (String pattern : PATTERNS) {
+                expected = expected || support.wildCardMatch(item, pattern);
+            }
+            assertEquals("Unexpected result for " + item, expected, matcher.matches(item));
+        }
+    }
+
+    @Test
+    public void testSinglePattern() {
+        assertTrue(GlobMatcher.compile(Collections.singleton("*")).matches("this_is_a_test/1.0"));
+        assertTrue(GlobMatcher.compile(Collections.singleton("foo*")).matches("foo_bar"));
+        assertTrue(GlobMatcher.compile(Collections.singleton("*bar")).matches("foo_bar"));
+        assertFalse(GlobMatcher.compile(Collections.singleton("hell*")).matches("foo_bar"));
+    }
+
+    @Test
+    public void testEmpty() {
+        GlobMatcher matcher = GlobMatcher.compile(Collections.<String>emptySet());
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("foo"));
+        assertFalse(GlobMatcher.compile(Collections.singleton("foo")).isEmpty());
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import org.apache.karaf.cellar.core.event.EventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the whitelist/blacklist check with the compiled group filters and with the previous behaviour,
+ * reading the groups configuration and compiling the regex of each list item on each check.
+ * Run the {@code main} method with the module test classpath, the GC profiler reports the allocation per check
+ * ({@code gc.alloc.rate.norm}), expected to be zero with the compiled filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupFilterBenchmark {
+
+    @Param({"org.apache.karaf.cellar.group", "org.apache.karaf.shell", "org.apache.felix.fileinstall"})
+    public String resource;
+
+    private final Group group = new Group("default");
+    private ConfigurationAdmin configurationAdmin;
+    private CellarSupport support;
+
+    @Setup
+    public void setup() throws Exception {
+        final Properties properties = new Properties();
+        InputStream is = GroupFilterBenchmark.class.getResourceAsStream("groups.properties");
+        properties.load(is);
+        is.close();
+        final Configuration configuration = (Configuration) Proxy.newProxyInstance(Configuration.class.getClassLoader(), new Class[]{Configuration.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getProperties".equals(method.getName())) {
+                    return properties;
+                }
+                return null;
+            }
+        });
+        configurationAdmin = (ConfigurationAdmin) Proxy.newProxyInstance(ConfigurationAdmin.class.getClassLoader(), new Class[]{ConfigurationAdmin.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                if ("getConfiguration".equals(method.getName())) {
+                    return configuration;
+                }
+                if (method.getDeclaringClass() == Object.class) {
+                    // hashCode/equals used by the filter index
+                    return method.invoke(this, args);
+                }
+                return null;
+            }
+        });
+        support = new CellarSupport();
+        support.setConfigurationAdmin(configurationAdmin);
+    }
+
+    @Benchmark
+    public Boolean compiled() {
+        return support.isAllowed(group, "config", resource, EventType.INBOUND);
+    }
+
+    @Benchmark
+    public Boolean uncompiled() {
+        return isAllowed(group, "config", resource, EventType.INBOUND);
+    }
+
+    /**
+     * Previous behaviour of {@link CellarSupport#isAllowed(Group, String, String, EventType)}.
+     */
+    private Boolean isAllowed(Group group, String category, String event, EventType type) {
+        Set<String> whiteList = support.getListEntries(Configurations.WHITELIST, group.getName(), category, type);
+        Set<String> blackList = support.getListEntries(Configurations.BLACKLIST, group.getName(), category, type);
+        if (blackList == null || whiteList == null) {
+            return false;
+        }
+        Boolean result = true;
+        if (!whiteList.isEmpty()) {
+            result = false;
+            for (String whiteListItem : whiteList) {
+                if (support.wildCardMatch(event, whiteListItem)) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+        if (result) {
+            for (String blackListItem : blackList) {
+                if (support.wildCardMatch(event, blackListItem)) {
+                    return false;
+                }
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GroupFilterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.apache.karaf.cellar.core.Node;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BasicCommandStoreTest {
+
+    HashedWheelTimer timer;
+    BasicCommandStore store;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(10, 8);
+        store = new BasicCommandStore();
+        store.setTimer(timer);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        Command<Result> command = new Command<Result>("1");
+        command.setTimeout(50);
+        store.addPending(command);
+        assertTrue(store.getPending().containsKey("1"));
+        assertEquals(1, timer.getPendingTimeouts());
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (store.getPending().containsKey("1") && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertFalse(store.getPending().containsKey("1"));
+        assertEquals(Long.valueOf(1), store.getExpired().get(Command.class.getName()));
+        assertEquals(0, timer.getPendingTimeouts());
+        assertEquals(1, timer.getExpiredTimeouts());
+    }
+
+    @Test
+    public void testExpireAfterSeveralRounds() throws Exception {
+        // the wheel covers 80ms, the timeout needs several rounds
+        Command<Result> command = new Command<Result>("1");
+        command.setTimeout(300);
+        long start = System.currentTimeMillis();
+        store.addPending(command);
+
+        while (store.getPending().containsKey("1") && System.currentTimeMillis() < start + 5000) {
+            Thread.sleep(5);
+        }
+        assertFalse(store.getPending().containsKey("1"));
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+
+    @Test
+    public void testCompleted() throws Exception {
+        Node node = new TestNode();
+        Command<Result> command = new Command<Result>("1");
+        command.setTimeout(50);
+        command.setDestination(Collections.singleton(node));
+        store.addPending(command);
+        assertFalse(command.isCompleted());
+
+        ResultHandler<Result> handler = new ResultHandler<Result>();
+        handler.setCommandStore(store);
+        Result result = new Result("1");
+        result.setSourceNode(node);
+        handler.handle(result);
+
+        assertTrue(command.isCompleted());
+        assertFalse(store.getPending().containsKey("1"));
+        assertEquals(0, timer.getPendingTimeouts());
+        assertNull(store.removePending("1"));
+
+        Thread.sleep(200);
+        assertEquals(0, timer.getExpiredTimeouts());
+        assertTrue(store.getExpired().isEmpty());
+    }
+
+    @Test
+    public void testCompletedWithoutDestination() throws Exception {
+        Command<Result> command = new Command<Result>("1");
+        command.setTimeout(50);
+        store.addPending(command);
+        assertFalse(command.isCompleted());
+
+        ResultHandler<Result> handler = new ResultHandler<Result>();
+        handler.setCommandStore(store);
+        Result result = new Result("1");
+        result.setSourceNode(new TestNode());
+        handler.handle(result);
+
+        // the first result completes the command, it doesn't wait for its timeout in the store
+        assertTrue(command.isCompleted());
+        assertTrue(command.getFuture().isDone());
+        assertFalse(command.getFuture().isTimedOut());
+        assertFalse(store.getPending().containsKey("1"));
+        assertEquals(0, timer.getPendingTimeouts());
+
+        Thread.sleep(200);
+        assertTrue(store.getExpired().isEmpty());
+    }
+
+    static class TestNode implements Node {
+
+        @Override
+        public String getId() {
+            return "node";
+        }
+
+        @Override
+        public String getHost() {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort() {
+            return 5701;
+        }
+
+        @Override
+        public String getAlias() {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.Producer;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClusteredExecutionContextTest {
+
+    HashedWheelTimer timer;
+    BasicCommandStore store;
+    List<Serializable> produced = new ArrayList<Serializable>();
+    ClusteredExecutionContext executionContext;
+    ResultHandler<Result> resultHandler;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(10, 8);
+        store = new BasicCommandStore();
+        store.setTimer(timer);
+        executionContext = new ClusteredExecutionContext(new Producer<Serializable>() {
+            @Override
+            public void produce(Serializable obj) {
+                produced.add(obj);
+            }
+
+            @Override
+            public Switch getSwitch() {
+                return new BasicSwitch("test");
+            }
+        }, store);
+        resultHandler = new ResultHandler<Result>();
+        resultHandler.setCommandStore(store);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        Node node1 = new BasicCommandStoreTest.TestNode();
+        Node node2 = new OtherNode();
+        Set<Node> destination = new HashSet<Node>();
+        destination.add(node1);
+        destination.add(node2);
+        Command<Result> command = new Command<Result>("1");
+        command.setDestination(destination);
+
+        final List<Result> streamed = new ArrayList<Result>();
+        final List<Boolean> completions = new ArrayList<Boolean>();
+        CommandFuture<Result> future = executionContext.executeAsync(command, new CommandListener<Result>() {
+            @Override
+            public void onResult(Result result) {
+                streamed.add(result);
+            }
+
+            @Override
+            public void onComplete(Map<Node, Result> results, boolean timedOut) {
+                completions.add(timedOut);
+            }
+        });
+        assertEquals(1, produced.size());
+        assertFalse(future.isDone());
+
+        resultHandler.handle(result("1", node1));
+        assertEquals(1, streamed.size());
+        assertFalse(future.isDone());
+
+        resultHandler.handle(result("1", node2));
+        assertEquals(2, streamed.size());
+        assertTrue(future.isDone());
+        assertFalse(future.isTimedOut());
+        assertEquals(1, completions.size());
+        assertEquals(Boolean.FALSE, completions.get(0));
+        assertEquals(2, future.get().size());
+        assertSame(streamed.get(0), future.get().get(node1));
+        assertFalse(store.getPending().containsKey("1"));
+    }
+
+    @Test
+    public void testExecuteAsyncTimeout() throws Exception {
+        Node node1 = new BasicCommandStoreTest.TestNode();
+        Set<Node> destination = new HashSet<Node>();
+        destination.add(node1);
+        destination.add(new OtherNode());
+        Command<Result> command = new Command<Result>("1");
+        command.setTimeout(50);
+        command.setDestination(destination);
+
+        CommandFuture<Result> future = executionContext.executeAsync(command);
+        resultHandler.handle(result("1", node1));
+
+        Map<Node, Result> results = future.get(5, TimeUnit.SECONDS);
+        assertTrue(future.isTimedOut());
+        assertEquals(1, results.size());
+        // the synchronous API returns the partial results as well
+        assertEquals(results, command.getResult());
+        assertSame(results.get(node1), command.getResult().get(node1));
+        // a late result doesn't change the results handed out
+        command.addResults(result("1", new OtherNode()));
+        assertEquals(1, results.size());
+    }
+
+    private Result result(String id, Node node) {
+        Result result = new Result(id);
+        result.setSourceNode(node);
+        return result;
+    }
+
+    static class OtherNode extends BasicCommandStoreTest.TestNode {
+
+        @Override
+        public String getId() {
+            return "other";
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.control;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BasicSwitchRegistryTest {
+
+    ConfigurationAdmin configurationAdmin = createMock(ConfigurationAdmin.class);
+    Configuration configuration = createMock(Configuration.class);
+    Dictionary<String, Object> properties = new Hashtable<String, Object>();
+
+    BasicSwitchRegistry registry = new BasicSwitchRegistry();
+
+    @Before
+    public void setUp() throws Exception {
+        properties.put(Configurations.PRODUCER, "true");
+        properties.put(Configurations.CONSUMER, "false");
+        expect(configurationAdmin.getConfiguration(EasyMock.<String>anyObject(), EasyMock.<String>anyObject())).andReturn(configuration).anyTimes();
+        expect(configuration.getProperties()).andReturn(properties).anyTimes();
+        replay(configuration);
+        replay(configurationAdmin);
+        registry.setConfigurationAdmin(configurationAdmin);
+        registry.init();
+    }
+
+    @Test
+    public void testSwitchStatus() {
+        assertEquals(SwitchStatus.ON, registry.getSwitch("producer", Configurations.PRODUCER).getStatus());
+        assertEquals(SwitchStatus.OFF, registry.getSwitch("consumer", Configurations.CONSUMER).getStatus());
+        assertEquals(SwitchStatus.OFF, registry.getSwitch("missing", "missing").getStatus());
+        assertSame(registry.getSwitch("producer", Configurations.PRODUCER), registry.getSwitch("producer", Configurations.PRODUCER));
+    }
+
+    @Test
+    public void testConfigurationUpdate() {
+        Switch producerSwitch = registry.getSwitch("producer", Configurations.PRODUCER);
+        properties.put(Configurations.PRODUCER, "false");
+        // the status is cached until the node configuration is updated
+        assertEquals(SwitchStatus.ON, producerSwitch.getStatus());
+
+        ServiceReference<ConfigurationAdmin> reference = reference();
+        registry.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, Configurations.GROUP));
+        assertEquals(SwitchStatus.ON, producerSwitch.getStatus());
+        registry.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, Configurations.NODE));
+        assertEquals(SwitchStatus.OFF, producerSwitch.getStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServiceReference<ConfigurationAdmin> reference() {
+        return createMock(ServiceReference.class);
+    }
+
+}
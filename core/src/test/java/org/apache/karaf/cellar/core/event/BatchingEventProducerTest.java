@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchingEventProducerTest {
+
+    List<Event> produced = new CopyOnWriteArrayList<Event>();
+    BatchingEventProducer<Event> batchingProducer = new BatchingEventProducer<Event>();
+
+    @Before
+    public void setUp() {
+        batchingProducer.setProducer(new EventProducer<Event>() {
+            @Override
+            public void produce(Event event) {
+                produced.add(event);
+            }
+
+            @Override
+            public Switch getSwitch() {
+                return new BasicSwitch("test");
+            }
+        });
+        batchingProducer.setWindow(60000);
+        batchingProducer.setSize(10);
+        batchingProducer.setCoalescedTypes(Collections.singleton(Event.class.getName()));
+        batchingProducer.init();
+    }
+
+    @After
+    public void tearDown() {
+        batchingProducer.destroy();
+    }
+
+    @Test
+    public void testCoalesce() {
+        batchingProducer.produce(event("a"));
+        batchingProducer.produce(event("b"));
+        batchingProducer.produce(event("a"));
+        assertTrue(produced.isEmpty());
+
+        batchingProducer.flush();
+        assertEquals(1, produced.size());
+        EventBatch batch = (EventBatch) produced.get(0);
+        assertEquals(2, batch.getEvents().size());
+        assertEquals("b", batch.getEvents().get(0).getId());
+        assertEquals("a", batch.getEvents().get(1).getId());
+    }
+
+    @Test
+    public void testSize() {
+        for (int i = 0; i < 25; i++) {
+            batchingProducer.produce(event(Integer.toString(i)));
+        }
+        assertEquals(2, produced.size());
+        assertEquals(10, ((EventBatch) produced.get(1)).getEvents().size());
+        batchingProducer.flush();
+        assertEquals(3, produced.size());
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        batchingProducer.destroy();
+        batchingProducer.setWindow(10);
+        batchingProducer.init();
+        batchingProducer.produce(event("a"));
+        long timeout = System.currentTimeMillis() + 10000;
+        while (produced.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        // a single event is not wrapped in a batch
+        assertEquals("a", produced.get(0).getId());
+    }
+
+    @Test
+    public void testResultNotBatched() {
+        batchingProducer.produce(event("a"));
+        Result result = new Result("result");
+        batchingProducer.produce(result);
+        assertEquals(2, produced.size());
+        assertEquals("a", produced.get(0).getId());
+        assertEquals(result, produced.get(1));
+    }
+
+    private Event event(String id) {
+        Event event = new Event(id);
+        event.setSourceGroup(new Group("default"));
+        return event;
+    }
+
+}
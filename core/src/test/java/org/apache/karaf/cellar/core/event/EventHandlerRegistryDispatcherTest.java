@@ -0,0 +1,245 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventHandlerRegistryDispatcherTest {
+
+    EventHandlerServiceRegistry<Event> registry = new EventHandlerServiceRegistry<Event>();
+    EventHandlerRegistryDispatcher<Event> dispatcher = new EventHandlerRegistryDispatcher<Event>();
+
+    @After
+    public void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Test
+    public void testOrderPerLane() throws Exception {
+        TestHandler handler = new TestHandler(null);
+        registry.bind(handler);
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.setPoolSize(4);
+        dispatcher.init();
+
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.dispatch(event(Integer.toString(i), "default"));
+        }
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (handler.handled.size() < 1000 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(1000, handler.handled.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.toString(i), handler.handled.get(i));
+        }
+        assertEquals(1, dispatcher.getLanes().size());
+        EventHandlerRegistryDispatcher.Lane lane = dispatcher.getLanes().iterator().next();
+        assertEquals("default", lane.getGroup());
+        assertEquals(1000, lane.getDispatched());
+        assertEquals(0, lane.getDropped());
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        TestHandler handler = new TestHandler(latch);
+        registry.bind(handler);
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.setPoolSize(1);
+        dispatcher.setCapacity(2);
+        dispatcher.setBackpressurePolicy(BackpressurePolicy.DROP_NEWEST);
+        dispatcher.init();
+
+        // the first event blocks the lane, the two next ones fill the queue
+        dispatcher.dispatch(event("0", "default"));
+        long timeout = System.currentTimeMillis() + 10000;
+        while (dispatcher.getPending() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        dispatcher.dispatch(event("1", "default"));
+        dispatcher.dispatch(event("2", "default"));
+        dispatcher.dispatch(event("3", "default"));
+        assertEquals(2, dispatcher.getPending());
+        assertEquals(1, dispatcher.getDropped());
+
+        latch.countDown();
+        while (handler.handled.size() < 3 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals("[0, 1, 2]", handler.handled.toString());
+    }
+
+    @Test
+    public void testForcedEventNotDropped() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        TestHandler handler = new TestHandler(latch);
+        registry.bind(handler);
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.setPoolSize(1);
+        dispatcher.setCapacity(2);
+        dispatcher.setBackpressurePolicy(BackpressurePolicy.DROP_OLDEST);
+        dispatcher.init();
+
+        dispatcher.dispatch(event("0", "default"));
+        long timeout = System.currentTimeMillis() + 10000;
+        while (dispatcher.getPending() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        final Event forced = event("1", "default");
+        forced.setForce(true);
+        dispatcher.dispatch(forced);
+        dispatcher.dispatch(event("2", "default"));
+        // the forced event is kept, the droppable one is dropped for the next event
+        dispatcher.dispatch(event("3", "default"));
+        assertEquals(1, dispatcher.getDropped());
+
+        // a forced event waits for room when the queue is full
+        Thread dispatching = new Thread() {
+            @Override
+            public void run() {
+                Event event = event("4", "default");
+                event.setForce(true);
+                dispatcher.dispatch(event);
+            }
+        };
+        dispatching.start();
+        dispatching.join(100);
+        assertTrue(dispatching.isAlive());
+
+        latch.countDown();
+        dispatching.join(10000);
+        while (handler.handled.size() < 4 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals("[0, 1, 3, 4]", handler.handled.toString());
+        assertEquals(1, dispatcher.getDropped());
+    }
+
+    @Test
+    public void testSettings() throws Exception {
+        assertEquals(BackpressurePolicy.BLOCK, dispatcher.getBackpressurePolicy());
+        String prefix = EventHandlerRegistryDispatcher.class.getName();
+        System.setProperty(prefix + ".threadPool.size", "3");
+        System.setProperty(prefix + ".backpressure", "drop_oldest");
+        try {
+            dispatcher.init();
+        } finally {
+            System.clearProperty(prefix + ".threadPool.size");
+            System.clearProperty(prefix + ".backpressure");
+        }
+        assertEquals(3, dispatcher.getPoolSize());
+        assertEquals(BackpressurePolicy.DROP_OLDEST, dispatcher.getBackpressurePolicy());
+        assertEquals(EventHandlerRegistryDispatcher.DEFAULT_CAPACITY, dispatcher.getCapacity());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        TestHandler handler = new TestHandler(latch);
+        registry.bind(handler);
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.setPoolSize(1);
+        dispatcher.setCapacity(2);
+        dispatcher.setBackpressurePolicy(BackpressurePolicy.DROP_OLDEST);
+        dispatcher.init();
+
+        dispatcher.dispatch(event("0", "default"));
+        long timeout = System.currentTimeMillis() + 10000;
+        while (dispatcher.getPending() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        dispatcher.dispatch(event("1", "default"));
+        dispatcher.dispatch(event("2", "default"));
+        dispatcher.dispatch(event("3", "default"));
+        assertEquals(1, dispatcher.getDropped());
+
+        latch.countDown();
+        while (handler.handled.size() < 3 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals("[0, 2, 3]", handler.handled.toString());
+        assertTrue(dispatcher.getLanes().iterator().next().getMaxLatency() > 0);
+    }
+
+    @Test
+    public void testEventBatch() throws Exception {
+        TestHandler handler = new TestHandler(null);
+        registry.bind(handler);
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.init();
+
+        dispatcher.dispatch(new EventBatch("batch", Arrays.asList(event("0", "default"), event("1", "default"))));
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (handler.handled.size() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals("[0, 1]", handler.handled.toString());
+    }
+
+    private Event event(String id, String group) {
+        Event event = new Event(id);
+        event.setSourceGroup(new Group(group));
+        return event;
+    }
+
+    static class TestHandler implements EventHandler<Event> {
+
+        private final CountDownLatch latch;
+        final List<String> handled = new CopyOnWriteArrayList<String>();
+
+        TestHandler(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void handle(Event event) {
+            if (latch != null) {
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            handled.add(event.getId());
+        }
+
+        @Override
+        public Class<Event> getType() {
+            return Event.class;
+        }
+
+        @Override
+        public Switch getSwitch() {
+            return new BasicSwitch("test");
+        }
+
+    }
+
+}
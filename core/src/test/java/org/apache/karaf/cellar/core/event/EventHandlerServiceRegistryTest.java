@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventHandlerServiceRegistryTest {
+
+    EventHandlerServiceRegistry<Event> registry = new EventHandlerServiceRegistry<Event>();
+
+    @After
+    public void tearDown() {
+        registry.destroy();
+    }
+
+    @Test
+    public void testReleaseOnBind() {
+        final AtomicInteger released = new AtomicInteger();
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                released.incrementAndGet();
+            }
+        };
+        assertTrue(registry.await(new Event("1"), 10000, release));
+        assertTrue(registry.await(new Event("2"), 10000, release));
+        assertEquals(Integer.valueOf(2), registry.getAwaitingEvents().get(Event.class.getName()));
+        assertEquals(0, released.get());
+
+        registry.bind(new EventHandlerRegistryDispatcherTest.TestHandler(null));
+        assertEquals(2, released.get());
+        assertEquals(Integer.valueOf(0), registry.getAwaitingEvents().get(Event.class.getName()));
+        // the handler is there, no need to wait
+        assertFalse(registry.await(new Event("3"), 10000, release));
+    }
+
+    @Test
+    public void testWaitBehindAwaitingEvents() {
+        final List<String> released = new ArrayList<String>();
+        registry.await(new Event("1"), 10000, new Runnable() {
+            @Override
+            public void run() {
+                released.add("1");
+                // an event received while the awaiting events are released waits behind them
+                assertTrue(registry.await(new Event("3"), 10000, new Runnable() {
+                    @Override
+                    public void run() {
+                        released.add("3");
+                    }
+                }));
+            }
+        });
+        registry.await(new Event("2"), 10000, new Runnable() {
+            @Override
+            public void run() {
+                released.add("2");
+            }
+        });
+
+        registry.bind(new EventHandlerRegistryDispatcherTest.TestHandler(null));
+        assertEquals(Arrays.asList("1", "2", "3"), released);
+        assertEquals(Integer.valueOf(0), registry.getAwaitingEvents().get(Event.class.getName()));
+    }
+
+    @Test
+    public void testCapacity() {
+        registry.setCapacity(2);
+        final AtomicInteger released = new AtomicInteger();
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                released.incrementAndGet();
+            }
+        };
+        assertTrue(registry.await(new Event("1"), 10000, release));
+        assertTrue(registry.await(new Event("2"), 10000, release));
+        // the buffer is full, the event is dropped
+        assertTrue(registry.await(new Event("3"), 10000, release));
+        assertEquals(Integer.valueOf(2), registry.getAwaitingEvents().get(Event.class.getName()));
+        assertEquals(Long.valueOf(1), registry.getExpiredEvents().get(Event.class.getName()));
+
+        registry.bind(new EventHandlerRegistryDispatcherTest.TestHandler(null));
+        assertEquals(2, released.get());
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        final AtomicInteger released = new AtomicInteger();
+        registry.await(new Event("1"), 10, new Runnable() {
+            @Override
+            public void run() {
+                released.incrementAndGet();
+            }
+        });
+        long timeout = System.currentTimeMillis() + 10000;
+        while (registry.getExpiredEvents().get(Event.class.getName()) == null && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(Long.valueOf(1), registry.getExpiredEvents().get(Event.class.getName()));
+        registry.bind(new EventHandlerRegistryDispatcherTest.TestHandler(null));
+        assertEquals(0, released.get());
+    }
+
+    @Test
+    public void testDispatchBeforeBind() throws Exception {
+        EventHandlerRegistryDispatcher<Event> dispatcher = new EventHandlerRegistryDispatcher<Event>();
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.init();
+        try {
+            for (int i = 0; i < 100; i++) {
+                dispatcher.dispatch(new Event(Integer.toString(i)));
+            }
+            long timeout = System.currentTimeMillis() + 10000;
+            while (registry.getAwaitingEvents().get(Event.class.getName()) == null || registry.getAwaitingEvents().get(Event.class.getName()) < 100) {
+                assertTrue(System.currentTimeMillis() < timeout);
+                Thread.sleep(10);
+            }
+            EventHandlerRegistryDispatcherTest.TestHandler handler = new EventHandlerRegistryDispatcherTest.TestHandler(null);
+            registry.bind(handler);
+            while (handler.handled.size() < 100) {
+                assertTrue(System.currentTimeMillis() < timeout);
+                Thread.sleep(10);
+            }
+            assertEquals("0", handler.handled.get(0));
+            assertEquals("99", handler.handled.get(99));
+        } finally {
+            dispatcher.destroy();
+        }
+    }
+
+    @Test
+    public void testDispatchWhileReleasing() throws Exception {
+        final EventHandlerRegistryDispatcher<Event> dispatcher = new EventHandlerRegistryDispatcher<Event>();
+        dispatcher.setHandlerRegistry(registry);
+        dispatcher.setPoolSize(4);
+        dispatcher.init();
+        try {
+            for (int i = 0; i < 500; i++) {
+                dispatcher.dispatch(new Event(Integer.toString(i)));
+            }
+            long timeout = System.currentTimeMillis() + 10000;
+            while (registry.getAwaitingEvents().get(Event.class.getName()) == null || registry.getAwaitingEvents().get(Event.class.getName()) < 500) {
+                assertTrue(System.currentTimeMillis() < timeout);
+                Thread.sleep(10);
+            }
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 500; i < 1000; i++) {
+                        dispatcher.dispatch(new Event(Integer.toString(i)));
+                    }
+                }
+            };
+            producer.start();
+            EventHandlerRegistryDispatcherTest.TestHandler handler = new EventHandlerRegistryDispatcherTest.TestHandler(null);
+            registry.bind(handler);
+            producer.join();
+            while (handler.handled.size() < 1000) {
+                assertTrue(System.currentTimeMillis() < timeout);
+                Thread.sleep(10);
+            }
+            // the released events are handled before the events received after them
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(Integer.toString(i), handler.handled.get(i));
+            }
+        } finally {
+            dispatcher.destroy();
+        }
+    }
+
+}
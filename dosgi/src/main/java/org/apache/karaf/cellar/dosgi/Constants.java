@@ -27,5 +27,11 @@ public abstract class Constants {
     public static final String REMOTE_ENDPOINTS = "org.apache.karaf.cellar.dosgi.endpoints";
     public static final String EXPORTED_INTERFACES = "service.exported.interfaces";
     public static final String ENDPOINT_FRAMEWORK_UUID = "frameworkUUID";
+    public static final String ONE_WAY = "org.apache.karaf.cellar.dosgi.oneway";
+    public static final String ASYNC = "org.apache.karaf.cellar.dosgi.async";
+    public static final String ROUTING = "org.apache.karaf.cellar.dosgi.routing";
+    public static final String TIMEOUT = "org.apache.karaf.cellar.dosgi.timeout";
+    public static final String HEDGE = "org.apache.karaf.cellar.dosgi.hedge";
+    public static final String HEDGE_PERCENTILE = "org.apache.karaf.cellar.dosgi.hedge.percentile";
 
 }
@@ -13,25 +13,30 @@
  */
 package org.apache.karaf.cellar.dosgi;
 
+import org.apache.karaf.cellar.core.CompactSerializable;
 import org.apache.karaf.cellar.core.MultiNode;
 import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.utils.SerializationUtils;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 
-import java.util.Dictionary;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
 
 /**
  * Description of an endpoint.
  */
-public class EndpointDescription implements MultiNode {
+public class EndpointDescription implements MultiNode, CompactSerializable {
 
-    private final String id;
+    private static final long serialVersionUID = -5717867849377895588L;
+
+    private String id;
     private final Set<Node> nodes = new LinkedHashSet<Node>();
     private final Map<String, Object> properties = new HashMap<String, Object>();
 
@@ -47,6 +52,10 @@ public class EndpointDescription implements MultiNode {
         properties.put(org.osgi.framework.Constants.OBJECTCLASS,getServiceClass());
     }
 
+    protected EndpointDescription() {
+        // used by the compact serialization
+    }
+
 
     /**
      * Tests the properties of this <code>EndpointDescription</code> against
@@ -69,17 +78,20 @@ public class EndpointDescription implements MultiNode {
             throw iae;
         }
 
-        Dictionary dictionary = new Properties();
-        for (Map.Entry<String, Object> entry : properties.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            dictionary.put(key, value);
-        }
-        /*
-           * we can use matchCase here since properties already supports case
-           * insensitive key lookup.
-           */
-        return f.matchCase(dictionary);
+        return matches(f);
+    }
+
+    /**
+     * Tests the properties of this <code>EndpointDescription</code> against
+     * the given compiled filter.
+     *
+     * @param filter The filter to test.
+     * @return <code>true</code> If the properties of this
+     *         <code>EndpointDescription</code> match the filter,
+     *         <code>false</code> otherwise.
+     */
+    public boolean matches(Filter filter) {
+        return filter.matches(properties);
     }
 
     public String getId() {
@@ -114,6 +126,20 @@ public class EndpointDescription implements MultiNode {
         return result;
     }
 
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeObject(id);
+        SerializationUtils.writeCollection(out, nodes);
+        SerializationUtils.writeMap(out, properties);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        id = (String) in.readObject();
+        SerializationUtils.readCollection(in, nodes);
+        SerializationUtils.readMap(in, properties);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
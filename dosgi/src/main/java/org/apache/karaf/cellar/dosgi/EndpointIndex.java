@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.osgi.framework.Filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local copy of the remote endpoints, indexed by service class.
+ * The index is kept current from the changes of the cluster endpoints map, so the service listeners are matched
+ * without reading the cluster map.
+ */
+public class EndpointIndex {
+
+    private static final String OBJECT_CLASS_PREFIX = "(" + org.osgi.framework.Constants.OBJECTCLASS.toLowerCase() + "=";
+
+    private final ConcurrentMap<String, EndpointDescription> endpoints = new ConcurrentHashMap<String, EndpointDescription>();
+    private final ConcurrentMap<String, Set<String>> endpointsByClass = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * Replace the content of the index with the given endpoints.
+     *
+     * @param remoteEndpoints the endpoints, by endpoint ID.
+     */
+    public synchronized void load(Map<String, EndpointDescription> remoteEndpoints) {
+        endpoints.clear();
+        endpointsByClass.clear();
+        for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
+            put(entry.getValue());
+        }
+    }
+
+    /**
+     * Add or update an endpoint.
+     *
+     * @param endpoint the endpoint.
+     */
+    public synchronized void put(EndpointDescription endpoint) {
+        endpoints.put(endpoint.getId(), endpoint);
+        String serviceClass = endpoint.getServiceClass();
+        Set<String> ids = endpointsByClass.get(serviceClass);
+        if (ids == null) {
+            ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            endpointsByClass.put(serviceClass, ids);
+        }
+        ids.add(endpoint.getId());
+    }
+
+    /**
+     * Remove an endpoint.
+     *
+     * @param endpointId the endpoint ID.
+     * @return the removed endpoint, or null if the endpoint was not indexed.
+     */
+    public synchronized EndpointDescription remove(String endpointId) {
+        EndpointDescription endpoint = endpoints.remove(endpointId);
+        if (endpoint != null) {
+            Set<String> ids = endpointsByClass.get(endpoint.getServiceClass());
+            if (ids != null) {
+                ids.remove(endpointId);
+                if (ids.isEmpty()) {
+                    endpointsByClass.remove(endpoint.getServiceClass());
+                }
+            }
+        }
+        return endpoint;
+    }
+
+    public EndpointDescription get(String endpointId) {
+        return endpoints.get(endpointId);
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    /**
+     * Get the endpoints matching a filter.
+     * When the filter requires a service class, only the endpoints of this class are tested.
+     *
+     * @param filter the filter string, used to look for the service class.
+     * @param compiled the compiled filter.
+     * @return the matching endpoints.
+     */
+    public List<EndpointDescription> match(String filter, Filter compiled) {
+        Collection<EndpointDescription> candidates;
+        String serviceClass = getObjectClass(filter);
+        if (serviceClass != null) {
+            Set<String> ids = endpointsByClass.get(serviceClass);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            candidates = new ArrayList<EndpointDescription>(ids.size());
+            for (String id : ids) {
+                EndpointDescription endpoint = endpoints.get(id);
+                if (endpoint != null) {
+                    candidates.add(endpoint);
+                }
+            }
+        } else {
+            candidates = endpoints.values();
+        }
+        List<EndpointDescription> matches = new ArrayList<EndpointDescription>();
+        for (EndpointDescription endpoint : candidates) {
+            if (endpoint.matches(compiled)) {
+                matches.add(endpoint);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Get the service class required by a filter, either a simple {@code (objectClass=...)} filter or a
+     * conjunction containing such a filter.
+     *
+     * @param filter the filter string.
+     * @return the required service class, or null if the filter doesn't require a single service class.
+     */
+    static String getObjectClass(String filter) {
+        if (filter == null) {
+            return null;
+        }
+        String trimmed = filter.trim();
+        if (!trimmed.startsWith("(&")) {
+            return getSimpleObjectClass(trimmed);
+        }
+        // look for an objectClass operand of the conjunction
+        int depth = 0;
+        int start = -1;
+        for (int i = 2; i < trimmed.length() - 1; i++) {
+            char c = trimmed.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '(') {
+                if (depth == 0) {
+                    start = i;
+                }
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0 && start >= 0) {
+                    String objectClass = getSimpleObjectClass(trimmed.substring(start, i + 1));
+                    if (objectClass != null) {
+                        return objectClass;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String getSimpleObjectClass(String filter) {
+        if (!filter.toLowerCase().startsWith(OBJECT_CLASS_PREFIX) || !filter.endsWith(")")) {
+            return null;
+        }
+        String value = filter.substring(OBJECT_CLASS_PREFIX.length(), filter.length() - 1).trim();
+        if (value.isEmpty() || value.indexOf('*') >= 0 || value.indexOf('\\') >= 0 || value.indexOf('(') >= 0 || value.indexOf(')') >= 0) {
+            return null;
+        }
+        return value;
+    }
+
+}
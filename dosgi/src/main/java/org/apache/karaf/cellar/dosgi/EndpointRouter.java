@@ -0,0 +1,379 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.ClusteredExecutionContext;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.CommandStore;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.command.HashedWheelTimer;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Router of the remote service calls.
+ * Each call is sent to the queue of one node exporting the endpoint, chosen using the {@link RoutingStrategy} of the
+ * endpoint and the calls in flight and latency of the nodes. When the endpoint is exported by the local node, the
+ * call is executed in-process.
+ * The router also keeps the latency histograms of the calls per endpoint and method, and schedules the hedged calls.
+ */
+public class EndpointRouter {
+
+    public static final String STRATEGY = EndpointRouter.class.getName() + ".strategy";
+    public static final String HISTOGRAM_SEPARATOR = "#";
+
+    // weight of the last sample in the latency average
+    static final double EWMA_WEIGHT = 0.2;
+    // the endpoint nodes are read from the cluster map at most once per interval
+    static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    // the hedged calls need a finer accuracy than the command timeouts
+    static final long HEDGE_TICK_DURATION = 5;
+
+    private final ClusterManager clusterManager;
+    private final EventTransportFactory eventTransportFactory;
+    private final CommandStore commandStore;
+    private final Map<String, EndpointDescription> remoteEndpoints;
+    private final RoutingStrategy defaultStrategy;
+
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+    private final ConcurrentMap<String, ExecutionContext> executionContexts = new ConcurrentHashMap<String, ExecutionContext>();
+    private final ConcurrentMap<String, NodeStats> stats = new ConcurrentHashMap<String, NodeStats>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private ExecutionContext localExecutionContext;
+    private HashedWheelTimer hedgeTimer;
+
+    public EndpointRouter(ClusterManager clusterManager, EventTransportFactory eventTransportFactory, CommandStore commandStore) {
+        this.clusterManager = clusterManager;
+        this.eventTransportFactory = eventTransportFactory;
+        this.commandStore = commandStore;
+        this.remoteEndpoints = clusterManager.getMap(Constants.REMOTE_ENDPOINTS);
+        this.defaultStrategy = RoutingStrategy.parse(System.getProperty(STRATEGY), RoutingStrategy.ROUND_ROBIN);
+    }
+
+    /**
+     * Choose the node handling a call to an endpoint.
+     *
+     * @param endpointId the endpoint ID.
+     * @return the chosen node, or null if no node exports the endpoint.
+     */
+    public Node select(String endpointId) {
+        Route route = getRoute(endpointId);
+        if (route == null || route.nodes.isEmpty()) {
+            return null;
+        }
+        Node local = clusterManager.getNode();
+        if (localExecutionContext != null && local != null && route.nodes.contains(local)) {
+            return local;
+        }
+        return select(route.nodes, route.strategy);
+    }
+
+    /**
+     * Choose another node than the given one to handle a call to an endpoint, for a hedged call.
+     *
+     * @param endpointId the endpoint ID.
+     * @param excluded the node already handling the call.
+     * @return the chosen node, or null if no other node exports the endpoint.
+     */
+    public Node selectOther(String endpointId, Node excluded) {
+        Route route = getRoute(endpointId);
+        if (route == null) {
+            return null;
+        }
+        List<Node> nodes = new ArrayList<Node>(route.nodes);
+        nodes.remove(excluded);
+        return select(nodes, route.strategy);
+    }
+
+    /**
+     * Choose a node using the given strategy.
+     *
+     * @param nodes the candidate nodes.
+     * @param strategy the routing strategy.
+     * @return the chosen node, or null if there is no candidate.
+     */
+    public Node select(List<Node> nodes, RoutingStrategy strategy) {
+        int size = nodes.size();
+        if (size == 0) {
+            return null;
+        }
+        // the scan starts at a different node each time, so the ties are spread over the nodes
+        int start = (sequence.getAndIncrement() & Integer.MAX_VALUE) % size;
+        if (size == 1 || strategy == RoutingStrategy.ROUND_ROBIN) {
+            return nodes.get(start);
+        }
+        Node selected = null;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get((start + i) % size);
+            NodeStats nodeStats = getStats(node);
+            double score;
+            if (strategy == RoutingStrategy.LEAST_OUTSTANDING) {
+                score = nodeStats.getInFlight();
+            } else if (nodeStats.getCompleted() > 0) {
+                score = nodeStats.getLatency() * (nodeStats.getInFlight() + 1);
+            } else {
+                // a node without latency sample is probed by one call at a time
+                score = nodeStats.getInFlight() == 0 ? 0 : Double.MAX_VALUE / 2;
+            }
+            if (score < best) {
+                best = score;
+                selected = node;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Get the execution context sending the calls of an endpoint to the given node.
+     *
+     * @param endpointId the endpoint ID.
+     * @param node the node handling the calls.
+     * @return the execution context.
+     */
+    public ExecutionContext getExecutionContext(String endpointId, Node node) {
+        if (localExecutionContext != null && node.equals(clusterManager.getNode())) {
+            return localExecutionContext;
+        }
+        String key = endpointId + Constants.SEPARATOR + node.getId();
+        ExecutionContext executionContext = executionContexts.get(key);
+        if (executionContext == null) {
+            EventProducer producer = eventTransportFactory.getEventProducer(Constants.INTERFACE_PREFIX + Constants.SEPARATOR + key, Boolean.FALSE);
+            ExecutionContext created = new ClusteredExecutionContext(producer, commandStore);
+            executionContext = executionContexts.putIfAbsent(key, created);
+            if (executionContext == null) {
+                executionContext = created;
+            }
+        }
+        return executionContext;
+    }
+
+    /**
+     * Record the start of a call sent to a node.
+     *
+     * @param node the node handling the call.
+     * @return the start time of the call, to pass to {@link #completed(Node, long)}.
+     */
+    public long started(Node node) {
+        getStats(node).inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the completion (or the timeout) of a call sent to a node.
+     *
+     * @param node the node handling the call.
+     * @param start the start time returned by {@link #started(Node)}.
+     */
+    public void completed(Node node, long start) {
+        NodeStats nodeStats = getStats(node);
+        nodeStats.inFlight.decrementAndGet();
+        nodeStats.update(System.nanoTime() - start);
+    }
+
+    /**
+     * Get the latency histogram of the calls to a method of an endpoint.
+     *
+     * @param endpointId the endpoint ID.
+     * @param method the method name.
+     * @return the latency histogram.
+     */
+    public LatencyHistogram getHistogram(String endpointId, String method) {
+        String key = endpointId + HISTOGRAM_SEPARATOR + method;
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Get the latency histograms of the local calls.
+     *
+     * @return the latency histograms, by endpoint ID and method name separated by {@code #}.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<String, LatencyHistogram>(histograms);
+    }
+
+    /**
+     * Schedule the sending of a hedged call.
+     *
+     * @param task the task sending the hedged call.
+     * @param delay the delay in milliseconds.
+     */
+    public void schedule(Runnable task, long delay) {
+        HashedWheelTimer timer;
+        synchronized (this) {
+            if (hedgeTimer == null) {
+                hedgeTimer = new HashedWheelTimer(HEDGE_TICK_DURATION, HashedWheelTimer.DEFAULT_WHEEL_SIZE);
+            }
+            timer = hedgeTimer;
+        }
+        timer.newTimeout(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop waiting for the results of a call, when a hedged call already completed.
+     *
+     * @param command the call.
+     * @return true if the call was waiting for its results, false else.
+     */
+    public boolean cancel(Command command) {
+        return commandStore != null && commandStore.removePending(command.getId()) != null;
+    }
+
+    /**
+     * Get the call statistics of a node.
+     *
+     * @param node the node.
+     * @return the node statistics.
+     */
+    public NodeStats getStats(Node node) {
+        NodeStats nodeStats = stats.get(node.getId());
+        if (nodeStats == null) {
+            NodeStats created = new NodeStats();
+            nodeStats = stats.putIfAbsent(node.getId(), created);
+            if (nodeStats == null) {
+                nodeStats = created;
+            }
+        }
+        return nodeStats;
+    }
+
+    /**
+     * Forget the routes and execution contexts of an endpoint, when it is not imported anymore.
+     *
+     * @param endpointId the endpoint ID.
+     */
+    public void evict(String endpointId) {
+        routes.remove(endpointId);
+        String prefix = endpointId + Constants.SEPARATOR;
+        for (String key : executionContexts.keySet()) {
+            if (key.startsWith(prefix)) {
+                executionContexts.remove(key);
+            }
+        }
+    }
+
+    public void destroy() {
+        synchronized (this) {
+            if (hedgeTimer != null) {
+                hedgeTimer.stop();
+                hedgeTimer = null;
+            }
+        }
+        routes.clear();
+        executionContexts.clear();
+        stats.clear();
+        histograms.clear();
+    }
+
+    private Route getRoute(String endpointId) {
+        long now = System.nanoTime();
+        Route route = routes.get(endpointId);
+        if (route == null || now - route.loaded > REFRESH_INTERVAL) {
+            EndpointDescription endpoint = remoteEndpoints.get(endpointId);
+            if (endpoint == null) {
+                routes.remove(endpointId);
+                return null;
+            }
+            Object strategy = endpoint.getProperties().get(Constants.ROUTING);
+            route = new Route(endpoint.getNodes(), RoutingStrategy.parse(strategy != null ? strategy.toString() : null, defaultStrategy), now);
+            routes.put(endpointId, route);
+        }
+        return route;
+    }
+
+    public ExecutionContext getLocalExecutionContext() {
+        return localExecutionContext;
+    }
+
+    public void setLocalExecutionContext(ExecutionContext localExecutionContext) {
+        this.localExecutionContext = localExecutionContext;
+    }
+
+    /**
+     * Calls in flight and latency of a node.
+     */
+    public static class NodeStats {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private volatile double latency;
+
+        void update(long duration) {
+            double sample = duration / 1000000.0;
+            synchronized (this) {
+                latency = completed.getAndIncrement() == 0 ? sample : latency + EWMA_WEIGHT * (sample - latency);
+            }
+        }
+
+        /**
+         * @return the number of calls sent to the node and not yet completed.
+         */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return the number of completed calls.
+         */
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * @return the moving average of the call latency in milliseconds, 0 before the first completed call.
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+    }
+
+    private static class Route {
+
+        private final List<Node> nodes;
+        private final RoutingStrategy strategy;
+        private final long loaded;
+
+        private Route(Collection<Node> nodes, RoutingStrategy strategy, long loaded) {
+            this.nodes = new ArrayList<Node>(nodes);
+            this.strategy = strategy;
+            this.loaded = loaded;
+        }
+
+    }
+
+}
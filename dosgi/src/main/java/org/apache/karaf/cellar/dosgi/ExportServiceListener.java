@@ -132,6 +132,12 @@ public class ExportServiceListener implements ServiceListener {
                     } else {
                         endpoint = new EndpointDescription(endpointId, node);
                     }
+                    // the invocation modes, routing strategy and deadlines are chosen by the exported service
+                    for (String property : serviceReference.getPropertyKeys()) {
+                        if (property.startsWith(Constants.INTERFACE_PREFIX + ".")) {
+                            endpoint.getProperties().put(property, serviceReference.getProperty(property).toString());
+                        }
+                    }
 
                     remoteEndpoints.put(endpointId, endpoint);
 
@@ -143,6 +149,16 @@ public class ExportServiceListener implements ServiceListener {
                     } else if (!consumer.isConsuming()) {
                         consumer.start();
                     }
+
+                    // register the consumer of the calls routed to this node
+                    String nodeEndpointId = endpointId + Constants.SEPARATOR + node.getId();
+                    consumer = consumers.get(nodeEndpointId);
+                    if (consumer == null) {
+                        consumer = eventTransportFactory.getEventConsumer(Constants.INTERFACE_PREFIX + Constants.SEPARATOR + nodeEndpointId, false);
+                        consumers.put(nodeEndpointId, consumer);
+                    } else if (!consumer.isConsuming()) {
+                        consumer.start();
+                    }
                 }
             }
         } finally {
@@ -181,6 +197,10 @@ public class ExportServiceListener implements ServiceListener {
 
                     EventConsumer eventConsumer = consumers.remove(endpointId);
                     eventConsumer.stop();
+                    eventConsumer = consumers.remove(endpointId + Constants.SEPARATOR + node.getId());
+                    if (eventConsumer != null) {
+                        eventConsumer.stop();
+                    }
                 }
             }
         } finally {
@@ -14,6 +14,7 @@
 package org.apache.karaf.cellar.dosgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.ClusterMapListener;
 import org.apache.karaf.cellar.core.command.ClusteredExecutionContext;
 import org.apache.karaf.cellar.core.command.CommandStore;
 import org.apache.karaf.cellar.core.command.ExecutionContext;
@@ -21,25 +22,28 @@ import org.apache.karaf.cellar.core.event.EventConsumer;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.core.event.EventTransportFactory;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.hooks.service.ListenerHook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Listener for the service import.
+ * The remote endpoints are indexed locally and kept current by a listener of the cluster endpoints map: the service
+ * listeners waiting for a remote service are matched when they are added, and when an endpoint is added or updated.
  */
-public class ImportServiceListener implements ListenerHook, Runnable {
+public class ImportServiceListener implements ListenerHook, ClusterMapListener<String> {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(ImportServiceListener.class);
 
@@ -48,23 +52,36 @@ public class ImportServiceListener implements ListenerHook, Runnable {
     private CommandStore commandStore;
     private EventTransportFactory eventTransportFactory;
     private Map<String, EndpointDescription> remoteEndpoints;
+    private EndpointRouter endpointRouter;
 
-    private Set<ListenerInfo> pendingListeners = new LinkedHashSet<ListenerInfo>();
+    private final EndpointIndex endpointIndex = new EndpointIndex();
+    private String mapListenerRegistration;
+
+    // the service listeners waiting for a remote service, with their compiled filter
+    private final Map<ListenerInfo, Filter> pendingListeners = new LinkedHashMap<ListenerInfo, Filter>();
 
     private final Map<EndpointDescription, ServiceRegistration> registrations = new HashMap<EndpointDescription, ServiceRegistration>();
 
     private final Map<String, EventProducer> producers = new HashMap<String, EventProducer>();
     private final Map<String, EventConsumer> consumers = new HashMap<String, EventConsumer>();
 
-    private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
-
     public void init() {
         remoteEndpoints = clusterManager.getMap(Constants.REMOTE_ENDPOINTS);
-        service.scheduleAtFixedRate(this, 0, 5, TimeUnit.SECONDS);
+        mapListenerRegistration = clusterManager.addMapListener(Constants.REMOTE_ENDPOINTS, this);
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            endpointIndex.load(remoteEndpoints);
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
     }
 
-    public void destroy() {
-        service.shutdown();
+    public synchronized void destroy() {
+        if (mapListenerRegistration != null) {
+            clusterManager.removeMapListener(Constants.REMOTE_ENDPOINTS, mapListenerRegistration);
+            mapListenerRegistration = null;
+        }
         for (Map.Entry<EndpointDescription, ServiceRegistration> entry : registrations.entrySet()) {
             ServiceRegistration registration = entry.getValue();
             registration.unregister();
@@ -75,17 +92,56 @@ public class ImportServiceListener implements ListenerHook, Runnable {
         }
         consumers.clear();
         producers.clear();
+        pendingListeners.clear();
+    }
+
+    @Override
+    public void entryAdded(String endpointId) {
+        entryUpdated(endpointId);
     }
 
+    /**
+     * Update the index with the endpoint read from the cluster map, and import it for the waiting service listeners.
+     *
+     * @param endpointId the added or updated endpoint ID.
+     */
     @Override
-    public void run() {
-        for (ListenerInfo listener : pendingListeners) {
-            checkListener(listener);
+    public void entryUpdated(String endpointId) {
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            EndpointDescription endpoint = remoteEndpoints.get(endpointId);
+            if (endpoint == null) {
+                endpointIndex.remove(endpointId);
+                return;
+            }
+            endpointIndex.put(endpoint);
+            synchronized (this) {
+                for (Map.Entry<ListenerInfo, Filter> entry : new ArrayList<Map.Entry<ListenerInfo, Filter>>(pendingListeners.entrySet())) {
+                    if (endpoint.matches(entry.getValue()) && !endpoint.getNodes().contains(clusterManager.getNode().getId())) {
+                        importService(endpoint, entry.getKey());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR DOSGI: unable to import the remote endpoint {}", endpointId, e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
         }
     }
 
     @Override
-    public void added(Collection listeners) {
+    public void entryRemoved(String endpointId) {
+        endpointIndex.remove(endpointId);
+    }
+
+    @Override
+    public void mapCleared() {
+        endpointIndex.load(Collections.<String, EndpointDescription>emptyMap());
+    }
+
+    @Override
+    public synchronized void added(Collection listeners) {
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         try {
             Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
@@ -95,9 +151,16 @@ public class ImportServiceListener implements ListenerHook, Runnable {
                     continue;
                 }
 
-                pendingListeners.add(listenerInfo);
+                Filter filter;
+                try {
+                    filter = FrameworkUtil.createFilter(listenerInfo.getFilter());
+                } catch (InvalidSyntaxException e) {
+                    LOGGER.warn("CELLAR DOSGI: invalid service listener filter {}", listenerInfo.getFilter(), e);
+                    continue;
+                }
+                pendingListeners.put(listenerInfo, filter);
                 // make sure we only import remote services
-                checkListener(listenerInfo);
+                checkListener(listenerInfo, filter);
             }
         } finally {
             Thread.currentThread().setContextClassLoader(originalClassLoader);
@@ -105,7 +168,7 @@ public class ImportServiceListener implements ListenerHook, Runnable {
     }
 
     @Override
-    public void removed(Collection listeners) {
+    public synchronized void removed(Collection listeners) {
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         try {
             Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
@@ -116,16 +179,14 @@ public class ImportServiceListener implements ListenerHook, Runnable {
 
                 // make sure we only import remote services
                 String filter = "(&" + listenerInfo.getFilter() + "(!(" + Constants.ENDPOINT_FRAMEWORK_UUID + "=" + clusterManager.getNode().getId() + ")))";
-                // iterate through known services and import them if needed
-                Set<EndpointDescription> matches = new LinkedHashSet<EndpointDescription>();
-                for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
-                    EndpointDescription endpointDescription = entry.getValue();
-                    if (endpointDescription.matches(filter)) {
-                        matches.add(endpointDescription);
-                    }
+                Filter compiled;
+                try {
+                    compiled = FrameworkUtil.createFilter(filter);
+                } catch (InvalidSyntaxException e) {
+                    LOGGER.warn("CELLAR DOSGI: invalid service listener filter {}", listenerInfo.getFilter(), e);
+                    continue;
                 }
-
-                for (EndpointDescription endpoint : matches) {
+                for (EndpointDescription endpoint : endpointIndex.match(filter, compiled)) {
                     unImportService(endpoint);
                 }
 
@@ -140,25 +201,14 @@ public class ImportServiceListener implements ListenerHook, Runnable {
      * Check if there is a match for the current {@link ListenerInfo}.
      *
      * @param listenerInfo the listener info.
+     * @param filter the compiled filter of the listener.
      */
-    private void checkListener(ListenerInfo listenerInfo) {
-        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-        try {
-            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
-            // iterate through known services and import them if needed
-            Set<EndpointDescription> matches = new LinkedHashSet<EndpointDescription>();
-            for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
-                EndpointDescription endpointDescription = entry.getValue();
-                if (endpointDescription.matches(listenerInfo.getFilter()) && !endpointDescription.getNodes().contains(clusterManager.getNode().getId())) {
-                    matches.add(endpointDescription);
-                }
-            }
-
-            for (EndpointDescription endpoint : matches) {
+    private void checkListener(ListenerInfo listenerInfo, Filter filter) {
+        // look for the indexed endpoints and import them if needed
+        for (EndpointDescription endpoint : endpointIndex.match(listenerInfo.getFilter(), filter)) {
+            if (!endpoint.getNodes().contains(clusterManager.getNode().getId())) {
                 importService(endpoint, listenerInfo);
             }
-        } finally {
-            Thread.currentThread().setContextClassLoader(originalClassLoader);
         }
     }
 
@@ -190,7 +240,7 @@ public class ImportServiceListener implements ListenerHook, Runnable {
 
         ExecutionContext executionContext = new ClusteredExecutionContext(requestProducer, commandStore);
 
-        RemoteServiceFactory remoteServiceFactory = new RemoteServiceFactory(endpoint, clusterManager, executionContext);
+        RemoteServiceFactory remoteServiceFactory = new RemoteServiceFactory(endpoint, clusterManager, executionContext, endpointRouter);
         ServiceRegistration registration = listenerInfo.getBundleContext().registerService(endpoint.getServiceClass(),
                 remoteServiceFactory,
                 new Hashtable<String, Object>(endpoint.getProperties()));
@@ -208,6 +258,9 @@ public class ImportServiceListener implements ListenerHook, Runnable {
         registration.unregister();
 
         producers.remove(endpoint.getId());
+        if (endpointRouter != null) {
+            endpointRouter.evict(endpoint.getId());
+        }
         EventConsumer consumer = consumers.remove(endpoint.getId());
         if (consumer != null) {
             consumer.stop();
@@ -238,6 +291,14 @@ public class ImportServiceListener implements ListenerHook, Runnable {
         this.commandStore = commandStore;
     }
 
+    public EndpointRouter getEndpointRouter() {
+        return endpointRouter;
+    }
+
+    public void setEndpointRouter(EndpointRouter endpointRouter) {
+        this.endpointRouter = endpointRouter;
+    }
+
     public EventTransportFactory getEventTransportFactory() {
         return eventTransportFactory;
     }
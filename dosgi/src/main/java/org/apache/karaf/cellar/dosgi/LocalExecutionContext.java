@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.CommandFuture;
+import org.apache.karaf.cellar.core.command.CommandListener;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution context invoking the remote service calls in-process, on the services exported by the local node.
+ * The synchronous calls are executed by the calling thread, the asynchronous and one way calls by a pool of threads,
+ * without going through the cluster.
+ * The pool has {@code org.apache.karaf.cellar.dosgi.LocalExecutionContext.threads} threads at most and queues
+ * {@code org.apache.karaf.cellar.dosgi.LocalExecutionContext.queueSize} calls at most. When the pool is saturated, or
+ * stopped, the call is executed by the calling thread, slowing down the caller instead of dropping the call.
+ */
+public class LocalExecutionContext implements ExecutionContext {
+
+    private final RemoteServiceCallHandler remoteServiceCallHandler;
+    private final ClusterManager clusterManager;
+    public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * Time after which an idle thread of the pool stops, in seconds.
+     */
+    private static final long KEEP_ALIVE = 60;
+
+    private final ExecutorService executor;
+
+    public LocalExecutionContext(RemoteServiceCallHandler remoteServiceCallHandler, ClusterManager clusterManager) {
+        this.remoteServiceCallHandler = remoteServiceCallHandler;
+        this.clusterManager = clusterManager;
+        int threads = Math.max(1, Integer.getInteger(LocalExecutionContext.class.getName() + ".threads", DEFAULT_THREADS));
+        int queueSize = Math.max(1, Integer.getInteger(LocalExecutionContext.class.getName() + ".queueSize", DEFAULT_QUEUE_SIZE));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Cellar DOSGi local call " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws InterruptedException {
+        command.addResults((R) invoke(command));
+        return command.getResult();
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command) {
+        return executeAsync(command, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(final C command, CommandListener<R> listener) {
+        CommandFuture<R> future = command.getFuture();
+        if (listener != null) {
+            future.addListener(listener);
+        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                command.addResults((R) invoke(command));
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> void executeOneWay(final C command) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                invoke(command);
+            }
+        });
+    }
+
+    /**
+     * Execute a call in the pool of threads, or in the calling thread if the pool is saturated or stopped.
+     */
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private RemoteServiceResult invoke(Command command) {
+        RemoteServiceCall call = (RemoteServiceCall) command;
+        RemoteServiceResult result = remoteServiceCallHandler.invoke(call);
+        if (result == null) {
+            // the service has been unregistered since the endpoint was read
+            result = new RemoteServiceResult(call.getId());
+            result.setResult(new RemoteServiceInvocationException("Service " + call.getServiceClass() + " is not available locally"));
+        }
+        result.setSourceNode(clusterManager.getNode());
+        return result;
+    }
+
+}
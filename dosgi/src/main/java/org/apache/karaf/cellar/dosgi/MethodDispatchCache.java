@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the methods called by the remote service calls, per target class, method name and argument types.
+ * The matching method is resolved once, then invoked with a {@link MethodHandle} taking the target and the
+ * arguments array, without reflection scanning.
+ */
+public class MethodDispatchCache {
+
+    private final ConcurrentMap<Key, MethodHandle> handles = new ConcurrentHashMap<Key, MethodHandle>();
+
+    /**
+     * Get the method handle to call a method on a target service.
+     * The returned handle has the {@code (Object target, Object[] arguments)Object} type.
+     *
+     * @param targetClass the target service class.
+     * @param methodName the method name.
+     * @param argumentTypes the argument types, a {@code null} item for a {@code null} argument.
+     * @return the method handle.
+     * @throws NoSuchMethodException if no method matches the name and argument types.
+     * @throws IllegalAccessException if the method is not accessible.
+     */
+    public MethodHandle getMethodHandle(Class<?> targetClass, String methodName, Class<?>[] argumentTypes) throws NoSuchMethodException, IllegalAccessException {
+        Key key = new Key(targetClass, methodName, argumentTypes);
+        MethodHandle handle = handles.get(key);
+        if (handle == null) {
+            Method method = getMethod(targetClass, methodName, argumentTypes);
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                // public method declared by a non public class
+                method.setAccessible(true);
+            }
+            int count = argumentTypes.length;
+            handle = MethodHandles.lookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(count + 1))
+                    .asSpreader(Object[].class, count);
+            MethodHandle existing = handles.putIfAbsent(key, handle);
+            if (existing != null) {
+                handle = existing;
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * Invoke a method on a target service.
+     *
+     * @param target the target service.
+     * @param methodName the method name.
+     * @param arguments the method arguments.
+     * @return the value returned by the method, {@code null} for a {@code void} method.
+     * @throws NoSuchMethodException if no method matches the name and arguments.
+     * @throws IllegalAccessException if the method is not accessible.
+     * @throws Throwable the exception thrown by the method.
+     */
+    public Object invoke(Object target, String methodName, Object[] arguments) throws Throwable {
+        Class<?>[] argumentTypes = new Class<?>[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            argumentTypes[i] = arguments[i] != null ? arguments[i].getClass() : null;
+        }
+        MethodHandle handle = getMethodHandle(target.getClass(), methodName, argumentTypes);
+        return (Object) handle.invokeExact(target, arguments);
+    }
+
+    /**
+     * Remove the cached methods of a target class, for instance when the service is unregistered.
+     *
+     * @param targetClass the target service class.
+     */
+    public void evict(Class<?> targetClass) {
+        for (Key key : handles.keySet()) {
+            if (key.targetClass == targetClass) {
+                handles.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached methods.
+     *
+     * @return the number of cached methods.
+     */
+    public int size() {
+        return handles.size();
+    }
+
+    /**
+     * <p>Gets a matching method in the target class.<br/>
+     * Inheritance is supported.</p>
+     *
+     * @param targetClass the target service class.
+     * @param methodName the method name.
+     * @param argumentTypes the argument types.
+     * @return a method instance from the target class.
+     * @throws NoSuchMethodException if no method matches.
+     */
+    private Method getMethod(Class<?> targetClass, String methodName, Class<?>[] argumentTypes) throws NoSuchMethodException {
+
+        Method result = null;
+        if (argumentTypes.length > 0) {
+            for (Method remoteMethod : targetClass.getMethods()) {
+                //need to find a method with a matching name and with the same number of parameters
+                if (remoteMethod.getName().equals(methodName) && remoteMethod.getParameterTypes().length == argumentTypes.length) {
+                    boolean allParamsFound = true;
+                    for (int i = 0; i < remoteMethod.getParameterTypes().length; i++) {
+                        Class<?> parameterType = remoteMethod.getParameterTypes()[i];
+                        if (argumentTypes[i] == null) {
+                            allParamsFound = allParamsFound && !parameterType.isPrimitive();
+                        } else {
+                            allParamsFound = allParamsFound && ClassUtils.isAssignable(argumentTypes[i], parameterType);
+                        }
+                    }
+
+                    // if already found a matching method, no need to continue looking for one
+                    if (allParamsFound) {
+                        result = remoteMethod;
+                        break;
+                    }
+                }
+            }
+        } else {
+            result = targetClass.getMethod(methodName);
+        }
+
+        //if method was not found go out with a bang
+        if (result == null) {
+            throw new NoSuchMethodException(String.format("No match for method [%s] %s", methodName, Arrays.toString(argumentTypes)));
+        }
+
+        return result;
+    }
+
+    private static final class Key {
+
+        private final Class<?> targetClass;
+        private final String methodName;
+        private final Class<?>[] argumentTypes;
+        private final int hash;
+
+        Key(Class<?> targetClass, String methodName, Class<?>[] argumentTypes) {
+            this.targetClass = targetClass;
+            this.methodName = methodName;
+            this.argumentTypes = argumentTypes;
+            this.hash = 31 * (31 * targetClass.hashCode() + methodName.hashCode()) + Arrays.hashCode(argumentTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return targetClass == key.targetClass && methodName.equals(key.methodName) && Arrays.equals(argumentTypes, key.argumentTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -26,6 +26,7 @@ public class RemoteServiceCall extends Command<RemoteServiceResult> {
     private String method;
     private String serviceClass;
     private List<Object> arguments;
+    private boolean oneWay;
 
     public RemoteServiceCall(String id) {
         super(id);
@@ -63,4 +64,17 @@ public class RemoteServiceCall extends Command<RemoteServiceResult> {
         this.endpointId = endpointId;
     }
 
+    /**
+     * Check if the caller doesn't wait for the result of the call.
+     *
+     * @return true if no result has to be sent back, false else.
+     */
+    public boolean isOneWay() {
+        return oneWay;
+    }
+
+    public void setOneWay(boolean oneWay) {
+        this.oneWay = oneWay;
+    }
+
 }
@@ -13,10 +13,7 @@
  */
 package org.apache.karaf.cellar.dosgi;
 
-import org.apache.commons.lang3.ClassUtils;
 import org.apache.karaf.cellar.core.CellarSupport;
-import org.apache.karaf.cellar.core.Configurations;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
@@ -24,15 +21,20 @@ import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.core.event.EventTransportFactory;
 import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
-import org.osgi.service.cm.Configuration;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Handler for cluster remote service call event.
@@ -43,12 +45,13 @@ public class RemoteServiceCallHandler extends CellarSupport implements EventHand
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(RemoteServiceCallHandler.class);
 
-    private final Switch dosgiSwitch = new BasicSwitch(SWITCH_ID);
-
     private BundleContext bundleContext;
 
     private EventTransportFactory eventTransportFactory;
 
+    private final ConcurrentMap<String, ServiceTracker> trackers = new ConcurrentHashMap<String, ServiceTracker>();
+    private final MethodDispatchCache dispatchCache = new MethodDispatchCache();
+
     /**
      * Handle a cluster remote service call event.
      *
@@ -63,94 +66,112 @@ public class RemoteServiceCallHandler extends CellarSupport implements EventHand
             return;
         }
 
-        Object targetService = null;
-
         if (event != null) {
-            ServiceReference[] serviceReferences = null;
-            try {
-                serviceReferences = bundleContext.getServiceReferences(event.getServiceClass(), null);
-                if (serviceReferences != null && serviceReferences.length > 0) {
-                    targetService = bundleContext.getService(serviceReferences[0]);
-                    bundleContext.ungetService(serviceReferences[0]);
-                }
-            } catch (InvalidSyntaxException e) {
-                LOGGER.error("CELLAR DOSGI: failed to lookup service", e);
+            RemoteServiceResult result = invoke(event);
+
+            // the caller of a one-way call doesn't wait for the result
+            if (result != null && !event.isOneWay()) {
+                EventProducer producer = eventTransportFactory.getEventProducer(Constants.RESULT_PREFIX + Constants.SEPARATOR + event.getSourceNode().getId() + event.getEndpointId(), false);
+                producer.produce(result);
             }
+        }
+    }
 
-            if (targetService != null) {
-                Class[] classes = new Class[0];
-                if (event.getArguments() != null && event.getArguments().size() > 0) {
-                    classes = new Class[event.getArguments().size()];
-                    int i = 0;
-                    for (Object obj : event.getArguments()) {
-                        classes[i++] = obj.getClass();
-                    }
-                }
+    /**
+     * Invoke the local service targeted by a remote service call.
+     *
+     * @param call the remote service call.
+     * @return the result of the invocation, or null if the target service is not registered locally.
+     */
+    public RemoteServiceResult invoke(RemoteServiceCall call) {
+        Object targetService = getTargetService(call.getServiceClass());
+        if (targetService == null) {
+            return null;
+        }
+        Object[] arguments = call.getArguments() != null ? call.getArguments().toArray() : new Object[0];
 
-                RemoteServiceResult result = new RemoteServiceResult(event.getId());
-                EventProducer producer = eventTransportFactory.getEventProducer(Constants.RESULT_PREFIX + Constants.SEPARATOR + event.getSourceNode().getId() + event.getEndpointId(), false);
-                try {
-                    Method method = getMethod(classes, targetService, event);
-                    Object obj = method.invoke(targetService, event.getArguments().toArray());
-                    result.setResult(obj);
-                    producer.produce(result);
-
-                } catch (NoSuchMethodException e) {
-                    LOGGER.error("CELLAR DOSGI: unable to find remote method for service", e);
-                    result.setResult(new RemoteServiceInvocationException(e));
-                    producer.produce(result);
-                } catch (InvocationTargetException e) {
-                    LOGGER.error("CELLAR DOSGI: unable to invoke remote method for service", e);
-                    result.setResult(new RemoteServiceInvocationException(e.getCause()));
-                    producer.produce(result);
-                } catch (IllegalAccessException e) {
-                    LOGGER.error("CELLAR DOSGI: unable to access remote method for service", e);
-                    result.setResult(new RemoteServiceInvocationException(e));
-                    producer.produce(result);
-                }
+        RemoteServiceResult result = new RemoteServiceResult(call.getId());
+        try {
+            Object obj = dispatchCache.invoke(targetService, call.getMethod(), arguments);
+            if (obj instanceof Future) {
+                // the future can't be sent back to the caller, send its value instead
+                obj = ((Future) obj).get(call.getTimeout(), TimeUnit.MILLISECONDS);
             }
+            result.setResult(obj);
+        } catch (NoSuchMethodException e) {
+            LOGGER.error("CELLAR DOSGI: unable to find remote method for service", e);
+            result.setResult(new RemoteServiceInvocationException(e));
+        } catch (IllegalAccessException e) {
+            LOGGER.error("CELLAR DOSGI: unable to access remote method for service", e);
+            result.setResult(new RemoteServiceInvocationException(e));
+        } catch (ExecutionException e) {
+            LOGGER.error("CELLAR DOSGI: remote method for service completed exceptionally", e);
+            result.setResult(new RemoteServiceInvocationException(e.getCause()));
+        } catch (TimeoutException e) {
+            LOGGER.error("CELLAR DOSGI: remote method for service didn't complete in time", e);
+            result.setResult(new RemoteServiceInvocationException(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.setResult(new RemoteServiceInvocationException(e));
+        } catch (Throwable t) {
+            LOGGER.error("CELLAR DOSGI: unable to invoke remote method for service", t);
+            result.setResult(new RemoteServiceInvocationException(t));
         }
+        return result;
     }
 
     /**
-     * <p>Gets a matching method in the <code>Object targetService<code/>.<br/>
-     * Inheritance is supported.</p>
+     * Get the local service targeted by remote service calls, using a service tracker per service class.
+     * Only the exported services are tracked, not the proxies of the imported services.
      *
-     * @param eventParamTypes
-     * @param targetService
-     * @param event
-     * @return a method instance from the <code>Object targetService<code/>
-     * @throws NoSuchMethodException
+     * @param serviceClass the service class.
+     * @return the target service, or null if no service is registered.
      */
-    private Method getMethod(Class[] eventParamTypes, Object targetService, RemoteServiceCall event) throws NoSuchMethodException {
-
-        Method result = null;
-        if (eventParamTypes.length > 0) {
-            for (Method remoteMethod : targetService.getClass().getMethods()) {
-                //need to find a method with a matching name and with the same number of parameters
-                if (remoteMethod.getName().equals(event.getMethod()) && remoteMethod.getParameterTypes().length == eventParamTypes.length) {
-                    boolean allParamsFound = true;
-                    for (int i = 0; i < remoteMethod.getParameterTypes().length; i++) {
-                        allParamsFound = allParamsFound && ClassUtils.isAssignable(eventParamTypes[i], remoteMethod.getParameterTypes()[i]);
-                    }
-
-                    // if already found a matching method, no need to continue looking for one
-                    if (allParamsFound) {
-                        result = remoteMethod;
-                        break;
-                    }
+    private Object getTargetService(String serviceClass) {
+        ServiceTracker tracker = trackers.get(serviceClass);
+        if (tracker == null) {
+            Filter filter;
+            try {
+                filter = bundleContext.createFilter("(&(" + org.osgi.framework.Constants.OBJECTCLASS + "=" + serviceClass + ")("
+                        + Constants.EXPORTED_INTERFACES + "=*))");
+            } catch (InvalidSyntaxException e) {
+                LOGGER.error("CELLAR DOSGI: invalid service class {}", serviceClass, e);
+                return null;
+            }
+            ServiceTracker created = new ServiceTracker(bundleContext, filter, new ServiceTrackerCustomizer() {
+                @Override
+                public Object addingService(ServiceReference reference) {
+                    return bundleContext.getService(reference);
                 }
+
+                @Override
+                public void modifiedService(ServiceReference reference, Object service) {
+                    // nothing to do
+                }
+
+                @Override
+                public void removedService(ServiceReference reference, Object service) {
+                    dispatchCache.evict(service.getClass());
+                    bundleContext.ungetService(reference);
+                }
+            });
+            tracker = trackers.putIfAbsent(serviceClass, created);
+            if (tracker == null) {
+                tracker = created;
+                tracker.open();
             }
-        } else {
-            result = targetService.getClass().getMethod(event.getMethod());
         }
+        return tracker.getService();
+    }
 
-        //if method was not found go out with a bang
-        if (result == null) {
-            throw new NoSuchMethodException(String.format("No match for method [%s] %s", event.getMethod(), Arrays.toString(eventParamTypes)));
+    /**
+     * Close the service trackers of the target services.
+     */
+    public void destroy() {
+        for (ServiceTracker tracker : trackers.values()) {
+            tracker.close();
         }
-
-        return result;
+        trackers.clear();
     }
 
     /**
@@ -170,21 +191,7 @@ public class RemoteServiceCallHandler extends CellarSupport implements EventHand
      */
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    dosgiSwitch.turnOn();
-                } else {
-                    dosgiSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return dosgiSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
     public BundleContext getBundleContext() {
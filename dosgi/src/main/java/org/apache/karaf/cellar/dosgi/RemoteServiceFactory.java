@@ -31,11 +31,17 @@ public class RemoteServiceFactory implements ServiceFactory {
     private EndpointDescription description;
     private ClusterManager clusterManager;
     private ExecutionContext executionContext;
+    private EndpointRouter router;
 
     public RemoteServiceFactory(EndpointDescription description, ClusterManager clusterManager, ExecutionContext executionContext) {
+        this(description, clusterManager, executionContext, null);
+    }
+
+    public RemoteServiceFactory(EndpointDescription description, ClusterManager clusterManager, ExecutionContext executionContext, EndpointRouter router) {
         this.description = description;
         this.clusterManager = clusterManager;
         this.executionContext = executionContext;
+        this.router = router;
     }
 
     @Override
@@ -48,10 +54,17 @@ public class RemoteServiceFactory implements ServiceFactory {
             } catch (ClassNotFoundException e) {
                 // Ignore
             }
-        RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler(description.getId(), interfaceName,clusterManager,executionContext);
+        boolean oneWay = isEnabled(description.getProperties().get(Constants.ONE_WAY));
+        boolean async = isEnabled(description.getProperties().get(Constants.ASYNC));
+        RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler(description.getId(), interfaceName, clusterManager, executionContext, oneWay, async, router);
+        handler.setEndpointProperties(description.getProperties());
         return Proxy.newProxyInstance(classLoader, interfaces.toArray(new Class[interfaces.size()]), handler);
     }
 
+    private static boolean isEnabled(Object property) {
+        return property != null && Boolean.parseBoolean(property.toString());
+    }
+
     @Override
     public void ungetService(Bundle bundle, ServiceRegistration registration, Object service) {
         // nothing to do
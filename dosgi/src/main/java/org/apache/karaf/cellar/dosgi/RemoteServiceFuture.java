@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.CommandFuture;
+import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future returned by the asynchronous remote service calls, completed with the value returned by the remote service.
+ */
+public class RemoteServiceFuture implements Future<Object> {
+
+    private final CommandFuture<RemoteServiceResult> future;
+
+    public RemoteServiceFuture(CommandFuture<RemoteServiceResult> future) {
+        this.future = future;
+    }
+
+    /**
+     * Get the value returned by the remote service from the remote service call results.
+     *
+     * @param results the remote service call results.
+     * @param timedOut true if the remote service call timed out.
+     * @return the value returned by the remote service.
+     * @throws Throwable the exception raised by the remote service, or a timeout exception.
+     */
+    static Object getValue(Map<Node, RemoteServiceResult> results, boolean timedOut) throws Throwable {
+        if (timedOut) {
+            throw new TimeoutException("No result received for the remote service call");
+        }
+        if (results != null) {
+            for (Map.Entry<Node, RemoteServiceResult> entry : results.entrySet()) {
+                RemoteServiceResult result = entry.getValue();
+
+                // an exception being thrown by the remote service call must be raised locally
+                if (result != null && result.getResult() != null && result.getResult() instanceof RemoteServiceInvocationException) {
+                    RemoteServiceInvocationException ute = (RemoteServiceInvocationException) result.getResult();
+                    if (ute.getCause() != null) {
+                        throw ute.getCause();
+                    } else {
+                        throw ute;
+                    }
+                }
+
+                return result.getResult();
+            }
+        }
+        return null;
+    }
+
+    private Object getValue(Map<Node, RemoteServiceResult> results) throws ExecutionException {
+        try {
+            return getValue(results, future.isTimedOut());
+        } catch (Throwable t) {
+            throw new ExecutionException(t);
+        }
+    }
+
+    /**
+     * A remote service call can't be cancelled.
+     *
+     * @param mayInterruptIfRunning ignored.
+     * @return false.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+        return getValue(future.get());
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return getValue(future.get(timeout, unit));
+    }
+
+}
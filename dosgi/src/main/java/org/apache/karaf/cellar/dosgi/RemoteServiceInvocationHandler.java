@@ -15,37 +15,163 @@ package org.apache.karaf.cellar.dosgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.CommandFuture;
+import org.apache.karaf.cellar.core.command.CommandListener;
 import org.apache.karaf.cellar.core.command.ExecutionContext;
-import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * Handler for cluster remote service invocation event.
+ * Depending on the endpoint properties, {@code void} methods can be called one-way (without waiting for the remote
+ * invocation), and methods returning a {@link Future} or a {@code CompletionStage} can return immediately a future
+ * completed by the result of the remote invocation.
+ * With an {@link EndpointRouter}, each call is sent to the node chosen by the router, else to the endpoint queue
+ * shared by all exporting nodes.
+ * The endpoint properties can define the timeout of the calls, for all methods or per method, and the idempotent
+ * methods whose calls are hedged: if a routed call doesn't complete within a percentile of the method latency, the
+ * same call is sent to another node, and the first result is used.
  */
 public class RemoteServiceInvocationHandler implements InvocationHandler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteServiceInvocationHandler.class);
+
+    // CompletableFuture is used by reflection as the bundles still target Java 1.7
+    private static final Class<?> COMPLETABLE_FUTURE = loadClass("java.util.concurrent.CompletableFuture");
+
+    // number of latencies to record before hedging the calls of a method
+    static final int HEDGE_MIN_SAMPLES = 20;
+    static final double DEFAULT_HEDGE_PERCENTILE = 95;
+
     private String endpointId;
     private String serviceClass;
     private ClusterManager clusterManager;
     private ExecutionContext executionContext;
+    private boolean oneWay;
+    private boolean async;
+    private EndpointRouter router;
+    private Long defaultTimeout;
+    private Map<String, Long> methodTimeouts = Collections.emptyMap();
+    private Set<String> hedgedMethods = Collections.emptySet();
+    private boolean hedgeAll;
+    private double hedgePercentile;
 
     public RemoteServiceInvocationHandler(String endpointId,String serviceClass, ClusterManager clusterManager, ExecutionContext executionContext) {
+        this(endpointId, serviceClass, clusterManager, executionContext, false, false);
+    }
+
+    public RemoteServiceInvocationHandler(String endpointId, String serviceClass, ClusterManager clusterManager, ExecutionContext executionContext, boolean oneWay, boolean async) {
+        this(endpointId, serviceClass, clusterManager, executionContext, oneWay, async, null);
+    }
+
+    public RemoteServiceInvocationHandler(String endpointId, String serviceClass, ClusterManager clusterManager, ExecutionContext executionContext, boolean oneWay, boolean async, EndpointRouter router) {
         this.endpointId = endpointId;
         this.serviceClass = serviceClass;
         this.clusterManager = clusterManager;
         this.executionContext = executionContext;
+        this.oneWay = oneWay;
+        this.async = async;
+        this.router = router;
+    }
+
+    /**
+     * Read the timeouts and hedging of the calls from the endpoint properties.
+     *
+     * @param properties the endpoint properties.
+     */
+    public void setEndpointProperties(Map<String, Object> properties) {
+        Map<String, Long> methodTimeouts = new HashMap<String, Long>();
+        Set<String> hedgedMethods = new HashSet<String>();
+        String methodTimeoutPrefix = Constants.TIMEOUT + ".";
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            String key = entry.getKey();
+            String value = String.valueOf(entry.getValue()).trim();
+            try {
+                if (key.equals(Constants.TIMEOUT)) {
+                    defaultTimeout = Long.parseLong(value);
+                } else if (key.startsWith(methodTimeoutPrefix)) {
+                    methodTimeouts.put(key.substring(methodTimeoutPrefix.length()), Long.parseLong(value));
+                } else if (key.equals(Constants.HEDGE)) {
+                    for (String name : value.split(Constants.INTERFACE_SEPARATOR)) {
+                        if (Constants.ALL_INTERFACES.equals(name.trim())) {
+                            hedgeAll = true;
+                        } else if (name.trim().length() > 0) {
+                            hedgedMethods.add(name.trim());
+                        }
+                    }
+                } else if (key.equals(Constants.HEDGE_PERCENTILE)) {
+                    hedgePercentile = Double.parseDouble(value);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR DOSGI: invalid value {} of the endpoint property {}", value, key);
+            }
+        }
+        if ((hedgeAll || !hedgedMethods.isEmpty()) && hedgePercentile <= 0) {
+            hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+        }
+        this.methodTimeouts = methodTimeouts;
+        this.hedgedMethods = hedgedMethods;
     }
 
     @Override
     public Object invoke(Object o, Method method, Object[] arguments) throws Throwable {
+        RemoteServiceCall remoteServiceCall = createCall(method.getName(), arguments);
+
+        ExecutionContext executionContext = this.executionContext;
+        Node node = router != null ? router.select(endpointId) : null;
+        if (node != null) {
+            remoteServiceCall.setDestination(Collections.singleton(node));
+            executionContext = router.getExecutionContext(endpointId, node);
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (oneWay && returnType == Void.TYPE) {
+            remoteServiceCall.setOneWay(true);
+            executionContext.executeOneWay(remoteServiceCall);
+            return null;
+        }
+        boolean asyncFuture = async && returnType == Future.class;
+        boolean asyncStage = async && !asyncFuture && COMPLETABLE_FUTURE != null && returnType != Object.class && returnType.isAssignableFrom(COMPLETABLE_FUTURE);
+
+        if (node == null) {
+            if (asyncFuture) {
+                return new RemoteServiceFuture(executionContext.executeAsync(remoteServiceCall));
+            }
+            if (asyncStage) {
+                return toCompletableFuture(executionContext.executeAsync(remoteServiceCall));
+            }
+            Map<Node, RemoteServiceResult> results = executionContext.execute(remoteServiceCall);
+            return RemoteServiceFuture.getValue(results, false);
+        }
+
+        CommandFuture<RemoteServiceResult> future = executeRouted(remoteServiceCall, executionContext, node, true);
+        if (!future.isDone() && hedgePercentile > 0 && (hedgeAll || hedgedMethods.contains(method.getName()))) {
+            hedge(remoteServiceCall, node, arguments);
+        }
+        if (asyncFuture) {
+            return new RemoteServiceFuture(future);
+        }
+        if (asyncStage) {
+            return toCompletableFuture(future);
+        }
+        return RemoteServiceFuture.getValue(remoteServiceCall.getResult(), false);
+    }
+
+    private RemoteServiceCall createCall(String method, Object[] arguments) {
         RemoteServiceCall remoteServiceCall = new RemoteServiceCall(clusterManager.generateId());
         remoteServiceCall.setEndpointId(endpointId);
-        remoteServiceCall.setMethod(method.getName());
+        remoteServiceCall.setMethod(method);
         remoteServiceCall.setServiceClass(serviceClass);
         List argumentList = new LinkedList();
 
@@ -56,26 +182,143 @@ public class RemoteServiceInvocationHandler implements InvocationHandler {
         }
 
         remoteServiceCall.setArguments(argumentList);
-        Map<Node,RemoteServiceResult> results =  executionContext.execute(remoteServiceCall);
-
-        if(results != null) {
-            for(Map.Entry<Node,RemoteServiceResult> entry:results.entrySet()) {
-                RemoteServiceResult result = entry.getValue();
-
-                // an exception being thrown by the remote service call must be raised locally
-                if (result != null && result.getResult() != null && result.getResult() instanceof RemoteServiceInvocationException) {
-                    RemoteServiceInvocationException ute = (RemoteServiceInvocationException) result.getResult();
-                    if (ute.getCause() != null) {
-                        throw ute.getCause();
-                    } else {
-                        throw ute;
-                    }
+
+        Long timeout = methodTimeouts.get(method);
+        if (timeout == null) {
+            timeout = defaultTimeout;
+        }
+        if (timeout != null) {
+            remoteServiceCall.setTimeout(timeout);
+        }
+        return remoteServiceCall;
+    }
+
+    /**
+     * Execute a call routed to a node, recording the calls in flight and latency of the node.
+     *
+     * @param call the remote service call.
+     * @param executionContext the execution context of the node.
+     * @param node the node handling the call.
+     * @param primary true for the call made by the caller, false for a hedged call.
+     * @return the future of the call results.
+     */
+    private CommandFuture<RemoteServiceResult> executeRouted(final RemoteServiceCall call, ExecutionContext executionContext, final Node node, final boolean primary) throws Exception {
+        final long start = router.started(node);
+        return executionContext.executeAsync(call, new CommandListener<RemoteServiceResult>() {
+            @Override
+            public void onResult(RemoteServiceResult result) {
+                // nothing to do
+            }
+
+            @Override
+            public void onComplete(Map<Node, RemoteServiceResult> results, boolean timedOut) {
+                router.completed(node, start);
+                if (primary && !timedOut) {
+                    router.getHistogram(endpointId, call.getMethod()).record(System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    /**
+     * Send a copy of an idempotent call to another node if the call doesn't complete within the configured
+     * percentile of the method latency. The first result completes the call.
+     *
+     * @param call the remote service call.
+     * @param node the node handling the call.
+     * @param arguments the call arguments.
+     */
+    private void hedge(final RemoteServiceCall call, final Node node, final Object[] arguments) {
+        LatencyHistogram histogram = router.getHistogram(endpointId, call.getMethod());
+        if (histogram.getCount() < HEDGE_MIN_SAMPLES) {
+            // the latency distribution is not known yet
+            return;
+        }
+        long delay = Math.max(1, (long) Math.ceil(histogram.getPercentile(hedgePercentile)));
+        router.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (call.getFuture().isDone()) {
+                    return;
+                }
+                Node other = router.selectOther(endpointId, node);
+                if (other == null) {
+                    return;
                 }
+                try {
+                    final RemoteServiceCall hedgedCall = createCall(call.getMethod(), arguments);
+                    hedgedCall.setDestination(Collections.singleton(other));
+                    call.getFuture().addListener(new CommandListener<RemoteServiceResult>() {
+                        @Override
+                        public void onResult(RemoteServiceResult result) {
+                            // nothing to do
+                        }
+
+                        @Override
+                        public void onComplete(Map<Node, RemoteServiceResult> results, boolean timedOut) {
+                            router.cancel(hedgedCall);
+                        }
+                    });
+                    executeRouted(hedgedCall, router.getExecutionContext(endpointId, other), other, false).addListener(new CommandListener<RemoteServiceResult>() {
+                        @Override
+                        public void onResult(RemoteServiceResult result) {
+                            // nothing to do
+                        }
+
+                        @Override
+                        public void onComplete(Map<Node, RemoteServiceResult> results, boolean timedOut) {
+                            // the hedged call completes the call if it is still waiting for its result
+                            if (!timedOut && router.cancel(call)) {
+                                call.addResults(results.values().toArray(new RemoteServiceResult[results.size()]));
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    LOGGER.warn("CELLAR DOSGI: unable to send the hedged remote service call", e);
+                }
+            }
+        }, delay);
+    }
 
-                return result.getResult();
+    /**
+     * Create a {@code CompletableFuture} completed by the remote service call results.
+     * The dependent stages are executed by the thread handling the remote service result.
+     *
+     * @param future the remote service call future.
+     * @return the completable future.
+     */
+    private Object toCompletableFuture(CommandFuture<RemoteServiceResult> future) throws Exception {
+        final Object completableFuture = COMPLETABLE_FUTURE.getConstructor().newInstance();
+        final Method complete = COMPLETABLE_FUTURE.getMethod("complete", Object.class);
+        final Method completeExceptionally = COMPLETABLE_FUTURE.getMethod("completeExceptionally", Throwable.class);
+        future.addListener(new CommandListener<RemoteServiceResult>() {
+            @Override
+            public void onResult(RemoteServiceResult result) {
+                // nothing to do
             }
+
+            @Override
+            public void onComplete(Map<Node, RemoteServiceResult> results, boolean timedOut) {
+                try {
+                    try {
+                        complete.invoke(completableFuture, RemoteServiceFuture.getValue(results, timedOut));
+                    } catch (Throwable t) {
+                        completeExceptionally.invoke(completableFuture, t);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("CELLAR DOSGI: unable to complete the remote service call future", e);
+                }
+            }
+        });
+        return completableFuture;
+    }
+
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
         }
-        return null;
     }
 
 }
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+/**
+ * Strategy used by the {@link EndpointRouter} to choose the node exporting an endpoint which handles a call.
+ */
+public enum RoutingStrategy {
+
+    /**
+     * The exporting nodes are chosen in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The exporting node with the fewest calls in flight is chosen.
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * The exporting node with the lowest average latency (exponentially weighted moving average), weighted by its
+     * calls in flight, is chosen.
+     */
+    EWMA_LATENCY;
+
+    /**
+     * Get the strategy matching the given name, case insensitive.
+     *
+     * @param name the strategy name.
+     * @param defaultStrategy the strategy to use when the name is not defined or unknown.
+     * @return the matching strategy.
+     */
+    public static RoutingStrategy parse(String name, RoutingStrategy defaultStrategy) {
+        if (name != null) {
+            for (RoutingStrategy strategy : values()) {
+                if (strategy.name().equalsIgnoreCase(name.trim().replace('-', '_'))) {
+                    return strategy;
+                }
+            }
+        }
+        return defaultStrategy;
+    }
+
+}
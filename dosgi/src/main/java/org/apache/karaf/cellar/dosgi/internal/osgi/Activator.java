@@ -15,6 +15,7 @@ package org.apache.karaf.cellar.dosgi.internal.osgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.command.CommandStore;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventTransportFactory;
 import org.apache.karaf.cellar.dosgi.*;
@@ -42,7 +43,8 @@ import java.util.Hashtable;
                 @RequireService(ClusterManager.class),
                 @RequireService(EventTransportFactory.class),
                 @RequireService(CommandStore.class),
-                @RequireService(ConfigurationAdmin.class)
+                @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class)
         }
 )
 public class Activator extends BaseActivator {
@@ -52,6 +54,9 @@ public class Activator extends BaseActivator {
     private ImportServiceListener importServiceListener;
     private ExportServiceListener exportServiceListener;
     private RemovedNodeServiceTracker removedNodeServiceTracker;
+    private RemoteServiceCallHandler remoteServiceCallHandler;
+    private EndpointRouter endpointRouter;
+    private LocalExecutionContext localExecutionContext;
     private ServiceRegistration mbeanRegistration;
 
     @Override
@@ -69,13 +74,17 @@ public class Activator extends BaseActivator {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null)
             return;
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null)
+            return;
 
         LOGGER.debug("CELLAR DOSGI: init remote service call handler");
-        RemoteServiceCallHandler remoteServiceCallHandler = new RemoteServiceCallHandler();
+        remoteServiceCallHandler = new RemoteServiceCallHandler();
         remoteServiceCallHandler.setEventTransportFactory(eventTransportFactory);
         remoteServiceCallHandler.setClusterManager(clusterManager);
         remoteServiceCallHandler.setBundleContext(bundleContext);
         remoteServiceCallHandler.setConfigurationAdmin(configurationAdmin);
+        remoteServiceCallHandler.setSwitchRegistry(switchRegistry);
         Hashtable props = new Hashtable();
         props.put("managed", "true");
         register(EventHandler.class, remoteServiceCallHandler, props);
@@ -85,11 +94,17 @@ public class Activator extends BaseActivator {
         remoteServiceResultHandler.setCommandStore(commandStore);
         register(EventHandler.class, remoteServiceResultHandler);
 
+        LOGGER.debug("CELLAR DOSGI: init endpoint router");
+        endpointRouter = new EndpointRouter(clusterManager, eventTransportFactory, commandStore);
+        localExecutionContext = new LocalExecutionContext(remoteServiceCallHandler, clusterManager);
+        endpointRouter.setLocalExecutionContext(localExecutionContext);
+
         LOGGER.debug("CELLAR DOSGI: init import service listener");
         importServiceListener = new ImportServiceListener();
         importServiceListener.setClusterManager(clusterManager);
         importServiceListener.setEventTransportFactory(eventTransportFactory);
         importServiceListener.setCommandStore(commandStore);
+        importServiceListener.setEndpointRouter(endpointRouter);
         importServiceListener.setBundleContext(bundleContext);
         importServiceListener.init();
         register(ListenerHook.class, importServiceListener);
@@ -109,6 +124,7 @@ public class Activator extends BaseActivator {
         LOGGER.debug("CELLAR DOSGI: register MBean");
         ServiceMBeanImpl mbean = new ServiceMBeanImpl();
         mbean.setClusterManager(clusterManager);
+        mbean.setEndpointRouter(endpointRouter);
         props = new Hashtable();
         props.put("jmx.objectname", "org.apache.karaf.cellar:type=service,name=" + System.getProperty("karaf.name"));
         mbeanRegistration = bundleContext.registerService(getInterfaceNames(mbean), mbean, props);
@@ -136,6 +152,18 @@ public class Activator extends BaseActivator {
             importServiceListener.destroy();
             importServiceListener = null;
         }
+        if (endpointRouter != null) {
+            endpointRouter.destroy();
+            endpointRouter = null;
+        }
+        if (localExecutionContext != null) {
+            localExecutionContext.destroy();
+            localExecutionContext = null;
+        }
+        if (remoteServiceCallHandler != null) {
+            remoteServiceCallHandler.destroy();
+            remoteServiceCallHandler = null;
+        }
     }
 
 }
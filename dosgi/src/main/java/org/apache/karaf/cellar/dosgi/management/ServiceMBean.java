@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.dosgi.management;
 
+import javax.management.openmbean.TabularData;
 import java.util.List;
 import java.util.Map;
 
@@ -23,4 +24,12 @@ public interface ServiceMBean {
 
     public Map<String, List<String>> getServices();
 
+    /**
+     * Get the latencies of the remote service calls made by the local node, per endpoint and method.
+     *
+     * @return the latency count, mean, percentiles and maximum in milliseconds.
+     * @throws Exception in case of retrieval failure.
+     */
+    public TabularData latencies() throws Exception;
+
 }
@@ -17,15 +17,25 @@ import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.dosgi.Constants;
 import org.apache.karaf.cellar.dosgi.EndpointDescription;
+import org.apache.karaf.cellar.dosgi.EndpointRouter;
+import org.apache.karaf.cellar.dosgi.LatencyHistogram;
 import org.apache.karaf.cellar.dosgi.management.ServiceMBean;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 import java.util.*;
 
 public class ServiceMBeanImpl extends StandardMBean implements ServiceMBean {
 
     private ClusterManager clusterManager;
+    private EndpointRouter endpointRouter;
 
     public ServiceMBeanImpl() throws NotCompliantMBeanException {
         super(ServiceMBean.class);
@@ -55,6 +65,35 @@ public class ServiceMBeanImpl extends StandardMBean implements ServiceMBean {
         return services;
     }
 
+    public TabularData latencies() throws Exception {
+        String[] names = new String[]{"endpoint", "method", "count", "mean", "p50", "p95", "p99", "max"};
+        CompositeType compositeType = new CompositeType("Call Latency", "Latency of the remote service calls",
+                names,
+                new String[]{"Endpoint ID", "Method name", "Number of completed calls", "Mean latency in milliseconds",
+                        "Median latency in milliseconds", "95th percentile latency in milliseconds",
+                        "99th percentile latency in milliseconds", "Maximum latency in milliseconds"},
+                new OpenType[]{SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.DOUBLE,
+                        SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE});
+        TabularType tableType = new TabularType("Call Latencies", "Table of the remote service call latencies",
+                compositeType, new String[]{"endpoint", "method"});
+        TabularDataSupport table = new TabularDataSupport(tableType);
+
+        if (endpointRouter != null) {
+            for (Map.Entry<String, LatencyHistogram> entry : endpointRouter.getHistograms().entrySet()) {
+                String key = entry.getKey();
+                int index = key.lastIndexOf(EndpointRouter.HISTOGRAM_SEPARATOR);
+                LatencyHistogram histogram = entry.getValue();
+                CompositeDataSupport data = new CompositeDataSupport(compositeType, names,
+                        new Object[]{key.substring(0, index), key.substring(index + 1), histogram.getCount(),
+                                histogram.getMean(), histogram.getPercentile(50), histogram.getPercentile(95),
+                                histogram.getPercentile(99), histogram.getMax()});
+                table.put(data);
+            }
+        }
+
+        return table;
+    }
+
     public ClusterManager getClusterManager() {
         return this.clusterManager;
     }
@@ -63,4 +102,12 @@ public class ServiceMBeanImpl extends StandardMBean implements ServiceMBean {
         this.clusterManager = clusterManager;
     }
 
+    public EndpointRouter getEndpointRouter() {
+        return endpointRouter;
+    }
+
+    public void setEndpointRouter(EndpointRouter endpointRouter) {
+        this.endpointRouter = endpointRouter;
+    }
+
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+
+import java.util.List;
+
+public class EndpointIndexTest {
+
+    @Test
+    public void testGetObjectClass() {
+        Assert.assertEquals("org.foo.Service", EndpointIndex.getObjectClass("(objectClass=org.foo.Service)"));
+        Assert.assertEquals("org.foo.Service", EndpointIndex.getObjectClass("(&(service.ranking=1)(objectclass=org.foo.Service))"));
+        Assert.assertEquals("org.foo.Service", EndpointIndex.getObjectClass("(&(|(a=1)(b=2))(objectClass=org.foo.Service)(!(c=3)))"));
+        Assert.assertNull(EndpointIndex.getObjectClass("(objectClass=org.foo.*)"));
+        Assert.assertNull(EndpointIndex.getObjectClass("(|(objectClass=org.foo.Service)(objectClass=org.foo.Other))"));
+        Assert.assertNull(EndpointIndex.getObjectClass("(&(a=1)(!(objectClass=org.foo.Service)))"));
+        Assert.assertNull(EndpointIndex.getObjectClass(null));
+    }
+
+    @Test
+    public void testMatch() throws Exception {
+        EndpointIndex index = new EndpointIndex();
+        EndpointDescription service = new EndpointDescription("org.foo.Service" + Constants.SEPARATOR + "1", new EndpointRouterTest.TestNode("node1"));
+        EndpointDescription other = new EndpointDescription("org.foo.Other" + Constants.SEPARATOR + "1", new EndpointRouterTest.TestNode("node1"));
+        index.put(service);
+        index.put(other);
+        Assert.assertEquals(2, index.size());
+
+        String filter = "(objectClass=org.foo.Service)";
+        List<EndpointDescription> matches = index.match(filter, FrameworkUtil.createFilter(filter));
+        Assert.assertEquals(1, matches.size());
+        Assert.assertSame(service, matches.get(0));
+
+        filter = "(objectClass=org.foo.*)";
+        Assert.assertEquals(2, index.match(filter, FrameworkUtil.createFilter(filter)).size());
+
+        Assert.assertSame(service, index.remove("org.foo.Service" + Constants.SEPARATOR + "1"));
+        filter = "(objectClass=org.foo.Service)";
+        Filter compiled = FrameworkUtil.createFilter(filter);
+        Assert.assertTrue(index.match(filter, compiled).isEmpty());
+        Assert.assertNull(index.remove("org.foo.Service" + Constants.SEPARATOR + "1"));
+    }
+
+}
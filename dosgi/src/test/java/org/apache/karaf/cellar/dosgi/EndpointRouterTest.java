@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EndpointRouterTest {
+
+    private Node local = new TestNode("local");
+    private Node node1 = new TestNode("node1");
+    private Node node2 = new TestNode("node2");
+    private List<Node> nodes = Arrays.asList(node1, node2);
+
+    private Map<String, EndpointDescription> remoteEndpoints = new HashMap<String, EndpointDescription>();
+    private List<String> producers = new ArrayList<String>();
+    private EndpointRouter router;
+
+    @Before
+    public void setUp() {
+        ClusterManager clusterManager = (ClusterManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ClusterManager.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getMap".equals(method.getName())) {
+                    return remoteEndpoints;
+                }
+                return "getNode".equals(method.getName()) ? local : null;
+            }
+        });
+        EventTransportFactory eventTransportFactory = (EventTransportFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{EventTransportFactory.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                producers.add((String) args[0]);
+                return null;
+            }
+        });
+        router = new EndpointRouter(clusterManager, eventTransportFactory, null);
+    }
+
+    @Test
+    public void testRoundRobin() {
+        Map<Node, Integer> counts = new HashMap<Node, Integer>();
+        for (int i = 0; i < 10; i++) {
+            Node node = router.select(nodes, RoutingStrategy.ROUND_ROBIN);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+        Assert.assertEquals(Integer.valueOf(5), counts.get(node1));
+        Assert.assertEquals(Integer.valueOf(5), counts.get(node2));
+    }
+
+    @Test
+    public void testLeastOutstanding() {
+        router.started(node1);
+        router.started(node1);
+        router.started(node2);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(node2, router.select(nodes, RoutingStrategy.LEAST_OUTSTANDING));
+        }
+        router.started(node2);
+        router.started(node2);
+        Assert.assertSame(node1, router.select(nodes, RoutingStrategy.LEAST_OUTSTANDING));
+    }
+
+    @Test
+    public void testEwmaLatency() {
+        // nodes without latency sample are probed first
+        long start = router.started(node1);
+        Assert.assertSame(node2, router.select(nodes, RoutingStrategy.EWMA_LATENCY));
+        router.completed(node1, start - 50000000L);
+        router.completed(node2, router.started(node2) - 10000000L);
+
+        Assert.assertEquals(1, router.getStats(node1).getCompleted());
+        Assert.assertEquals(0, router.getStats(node1).getInFlight());
+        Assert.assertTrue(router.getStats(node1).getLatency() >= 50);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(node2, router.select(nodes, RoutingStrategy.EWMA_LATENCY));
+        }
+
+        // the calls in flight weight the latency
+        for (int i = 0; i < 6; i++) {
+            router.started(node2);
+        }
+        Assert.assertSame(node1, router.select(nodes, RoutingStrategy.EWMA_LATENCY));
+    }
+
+    @Test
+    public void testSelectEndpoint() {
+        Assert.assertNull(router.select("unknown"));
+
+        EndpointDescription endpoint = new EndpointDescription("endpoint", node1);
+        endpoint.getNodes().add(node2);
+        endpoint.getProperties().put(Constants.ROUTING, "least_outstanding");
+        remoteEndpoints.put("endpoint", endpoint);
+        router.started(node1);
+        Assert.assertSame(node2, router.select("endpoint"));
+
+        router.getExecutionContext("endpoint", node2);
+        router.getExecutionContext("endpoint", node2);
+        Assert.assertEquals(Arrays.asList(Constants.INTERFACE_PREFIX + Constants.SEPARATOR + "endpoint" + Constants.SEPARATOR + "node2"), producers);
+    }
+
+    @Test
+    public void testLocalShortCircuit() {
+        EndpointDescription endpoint = new EndpointDescription("endpoint", node1);
+        endpoint.getNodes().add(local);
+        remoteEndpoints.put("endpoint", endpoint);
+        RemoteServiceInvocationHandlerTest.TestExecutionContext localExecutionContext = new RemoteServiceInvocationHandlerTest.TestExecutionContext();
+
+        router.setLocalExecutionContext(localExecutionContext);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(local, router.select("endpoint"));
+        }
+        Assert.assertSame(localExecutionContext, router.getExecutionContext("endpoint", local));
+        Assert.assertTrue(producers.isEmpty());
+    }
+
+    static class TestNode implements Node {
+
+        private final String id;
+
+        TestNode(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getHost() {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort() {
+            return 5701;
+        }
+
+        @Override
+        public String getAlias() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TestNode && id.equals(((TestNode) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+    }
+
+}
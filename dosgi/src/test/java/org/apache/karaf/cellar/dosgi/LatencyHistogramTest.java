@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(99), 0);
+        Assert.assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 to 100 milliseconds
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(50.5, histogram.getMean(), 0.01);
+        Assert.assertEquals(100, histogram.getMax(), 0);
+        assertWithin(50, histogram.getPercentile(50));
+        assertWithin(95, histogram.getPercentile(95));
+        assertWithin(99, histogram.getPercentile(99));
+        Assert.assertEquals(100, histogram.getPercentile(100), 0);
+    }
+
+    @Test
+    public void testBuckets() {
+        int previous = -1;
+        for (long micros : new long[]{0, 7, 8, 9, 15, 16, 17, 1000, 123456, 1L << 33}) {
+            int index = LatencyHistogram.index(micros);
+            Assert.assertTrue(index >= previous);
+            Assert.assertTrue(LatencyHistogram.upperBound(index) >= micros);
+            Assert.assertTrue(LatencyHistogram.upperBound(index) <= micros * 1.125 + 1);
+            previous = index;
+        }
+        Assert.assertEquals(LatencyHistogram.index(16), LatencyHistogram.index(17));
+        // the too large latencies are counted in the last bucket
+        Assert.assertEquals(LatencyHistogram.index(1L << 40), LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    private static void assertWithin(double expected, double actual) {
+        // the percentiles are the upper bounds of the buckets
+        Assert.assertTrue("expected " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.125);
+    }
+
+}
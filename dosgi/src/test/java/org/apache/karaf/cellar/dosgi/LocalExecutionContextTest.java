@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.CommandFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class LocalExecutionContextTest {
+
+    private final Node local = new EndpointRouterTest.TestNode("local");
+    private final CountDownLatch invoked = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Map<String, Thread> invokers = new ConcurrentHashMap<String, Thread>();
+    private volatile Thread invoker;
+    private ClusterManager clusterManager;
+    private RemoteServiceCallHandler remoteServiceCallHandler;
+
+    private LocalExecutionContext executionContext;
+
+    @Before
+    public void setUp() {
+        clusterManager = (ClusterManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ClusterManager.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "getNode".equals(method.getName()) ? local : null;
+            }
+        });
+        remoteServiceCallHandler = new RemoteServiceCallHandler() {
+            @Override
+            public RemoteServiceResult invoke(RemoteServiceCall call) {
+                invoker = Thread.currentThread();
+                invokers.put(call.getId(), invoker);
+                invoked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                RemoteServiceResult result = new RemoteServiceResult(call.getId());
+                result.setResult("done");
+                return result;
+            }
+        };
+        executionContext = new LocalExecutionContext(remoteServiceCallHandler, clusterManager);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executionContext.destroy();
+    }
+
+    @Test
+    public void testExecuteAsyncReturnsImmediately() throws Exception {
+        CommandFuture<RemoteServiceResult> future = executionContext.executeAsync(new RemoteServiceCall("1"));
+        Assert.assertTrue(invoked.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(future.isDone());
+        Assert.assertNotSame(Thread.currentThread(), invoker);
+
+        release.countDown();
+        Map<Node, RemoteServiceResult> results = future.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("done", results.get(local).getResult());
+    }
+
+    @Test
+    public void testExecuteInCallingThread() throws Exception {
+        release.countDown();
+        Map<Node, RemoteServiceResult> results = executionContext.execute(new RemoteServiceCall("1"));
+        Assert.assertSame(Thread.currentThread(), invoker);
+        Assert.assertEquals("done", results.get(local).getResult());
+    }
+
+    @Test
+    public void testSaturatedPoolExecutesInCallingThread() throws Exception {
+        String prefix = LocalExecutionContext.class.getName();
+        System.setProperty(prefix + ".threads", "1");
+        System.setProperty(prefix + ".queueSize", "1");
+        LocalExecutionContext boundedContext;
+        try {
+            boundedContext = new LocalExecutionContext(remoteServiceCallHandler, clusterManager);
+        } finally {
+            System.clearProperty(prefix + ".threads");
+            System.clearProperty(prefix + ".queueSize");
+        }
+        try {
+            // the first call occupies the thread, the second one fills the queue
+            boundedContext.executeOneWay(new RemoteServiceCall("1"));
+            Assert.assertTrue(invoked.await(10, TimeUnit.SECONDS));
+            boundedContext.executeOneWay(new RemoteServiceCall("2"));
+
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    release.countDown();
+                }
+            }.start();
+            CommandFuture<RemoteServiceResult> future = boundedContext.executeAsync(new RemoteServiceCall("3"));
+            Assert.assertSame(Thread.currentThread(), invokers.get("3"));
+            Assert.assertTrue(future.isDone());
+        } finally {
+            boundedContext.destroy();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MethodDispatchCacheTest {
+
+    public static class TestService {
+
+        private final List<String> received = new ArrayList<String>();
+
+        public String echo(String message) {
+            return message;
+        }
+
+        public long add(long a, long b) {
+            return a + b;
+        }
+
+        public void receive(List<String> messages) {
+            received.addAll(messages);
+        }
+
+        public int count() {
+            return received.size();
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+    }
+
+    private MethodDispatchCache cache = new MethodDispatchCache();
+    private TestService service = new TestService();
+
+    @Test
+    public void testInvoke() throws Throwable {
+        Assert.assertEquals("hello", cache.invoke(service, "echo", new Object[]{"hello"}));
+        Assert.assertEquals(3L, cache.invoke(service, "add", new Object[]{1, 2}));
+        List<String> messages = new ArrayList<String>();
+        messages.add("hello");
+        Assert.assertNull(cache.invoke(service, "receive", new Object[]{messages}));
+        Assert.assertEquals(1, cache.invoke(service, "count", new Object[0]));
+        Assert.assertNull(cache.invoke(service, "echo", new Object[]{null}));
+    }
+
+    @Test
+    public void testCache() throws Throwable {
+        cache.invoke(service, "echo", new Object[]{"hello"});
+        cache.invoke(service, "echo", new Object[]{"world"});
+        Assert.assertEquals(1, cache.size());
+        cache.invoke(service, "count", new Object[0]);
+        Assert.assertEquals(2, cache.size());
+        cache.evict(TestService.class);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testException() throws Throwable {
+        try {
+            cache.invoke(service, "fail", new Object[]{"failure"});
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failure", e.getMessage());
+        }
+        try {
+            cache.invoke(service, "echo", new Object[]{1});
+            Assert.fail("NoSuchMethodException expected");
+        } catch (NoSuchMethodException e) {
+            // expected
+        }
+    }
+
+}
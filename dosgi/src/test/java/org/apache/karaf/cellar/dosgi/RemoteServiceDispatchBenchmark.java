@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the remote service calls per second on the receiving node, for a small payload, with the
+ * {@link MethodDispatchCache} and with the previous behaviour, scanning the target methods and invoking the
+ * matching one by reflection on each call.
+ *
+ * Run the {@code main} method with the module test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoteServiceDispatchBenchmark {
+
+    private final MethodDispatchCacheTest.TestService service = new MethodDispatchCacheTest.TestService();
+    private final MethodDispatchCache cache = new MethodDispatchCache();
+    private final Object[] arguments = new Object[]{"hello"};
+
+    @Benchmark
+    public Object cached() throws Throwable {
+        return cache.invoke(service, "echo", arguments);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        Class[] classes = new Class[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            classes[i] = arguments[i].getClass();
+        }
+        return getMethod(classes, service, "echo").invoke(service, arguments);
+    }
+
+    /**
+     * Previous behaviour of the remote service call handler.
+     */
+    private Method getMethod(Class[] eventParamTypes, Object targetService, String methodName) throws NoSuchMethodException {
+        for (Method remoteMethod : targetService.getClass().getMethods()) {
+            if (remoteMethod.getName().equals(methodName) && remoteMethod.getParameterTypes().length == eventParamTypes.length) {
+                boolean allParamsFound = true;
+                for (int i = 0; i < remoteMethod.getParameterTypes().length; i++) {
+                    allParamsFound = allParamsFound && ClassUtils.isAssignable(eventParamTypes[i], remoteMethod.getParameterTypes()[i]);
+                }
+                if (allParamsFound) {
+                    return remoteMethod;
+                }
+            }
+        }
+        throw new NoSuchMethodException(methodName);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RemoteServiceDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.CommandFuture;
+import org.apache.karaf.cellar.core.command.CommandListener;
+import org.apache.karaf.cellar.core.command.CommandStore;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RemoteServiceInvocationHandlerTest {
+
+    public interface TestService {
+
+        void notify(String message);
+
+        Future<String> compute();
+
+    }
+
+    private TestExecutionContext executionContext = new TestExecutionContext();
+
+    private TestService proxy(boolean oneWay, boolean async) {
+        ClusterManager clusterManager = (ClusterManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ClusterManager.class}, new InvocationHandler() {
+            private int id;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "generateId".equals(method.getName()) ? String.valueOf(++id) : null;
+            }
+        });
+        RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler("endpoint", TestService.class.getName(), clusterManager, executionContext, oneWay, async);
+        return (TestService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{TestService.class}, handler);
+    }
+
+    @Test
+    public void testOneWay() throws Exception {
+        proxy(true, false).notify("test");
+        Assert.assertEquals(1, executionContext.oneWay.size());
+        Assert.assertTrue(((RemoteServiceCall) executionContext.oneWay.get(0)).isOneWay());
+        Assert.assertTrue(executionContext.async.isEmpty());
+    }
+
+    @Test
+    public void testDefaultIsSynchronous() throws Exception {
+        proxy(false, false).notify("test");
+        Assert.assertTrue(executionContext.oneWay.isEmpty());
+        Assert.assertEquals(1, executionContext.sync.size());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        Future<String> future = proxy(false, true).compute();
+        Assert.assertFalse(future.isDone());
+        RemoteServiceCall call = (RemoteServiceCall) executionContext.async.get(0);
+
+        RemoteServiceResult result = new RemoteServiceResult(call.getId());
+        result.setResult("done");
+        call.addResults(result);
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals("done", future.get());
+    }
+
+    @Test
+    public void testAsyncException() throws Exception {
+        Future<String> future = proxy(false, true).compute();
+        RemoteServiceCall call = (RemoteServiceCall) executionContext.async.get(0);
+
+        RemoteServiceResult result = new RemoteServiceResult(call.getId());
+        result.setResult(new RemoteServiceInvocationException(new IllegalStateException("failure")));
+        call.addResults(result);
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testMethodTimeout() throws Exception {
+        RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler("endpoint", TestService.class.getName(), clusterManager(null), executionContext, false, true);
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(Constants.TIMEOUT, "1000");
+        properties.put(Constants.TIMEOUT + ".compute", "200");
+        handler.setEndpointProperties(properties);
+        TestService service = (TestService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{TestService.class}, handler);
+
+        service.compute();
+        service.notify("test");
+        Assert.assertEquals(200, executionContext.async.get(0).getTimeout());
+        Assert.assertEquals(1000, executionContext.sync.get(0).getTimeout());
+    }
+
+    @Test
+    public void testHedge() throws Exception {
+        final Node node1 = new EndpointRouterTest.TestNode("node1");
+        final Node node2 = new EndpointRouterTest.TestNode("node2");
+        Map<String, EndpointDescription> remoteEndpoints = new HashMap<String, EndpointDescription>();
+        EndpointDescription endpoint = new EndpointDescription("endpoint", node1);
+        endpoint.getNodes().add(node2);
+        remoteEndpoints.put("endpoint", endpoint);
+        final Map<Node, TestExecutionContext> executionContexts = new HashMap<Node, TestExecutionContext>();
+        executionContexts.put(node1, new TestExecutionContext());
+        executionContexts.put(node2, new TestExecutionContext());
+        CommandStore commandStore = (CommandStore) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{CommandStore.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                // the calls are always pending
+                return "removePending".equals(method.getName()) ? new Command<Result>((String) args[0]) : null;
+            }
+        });
+        EndpointRouter router = new EndpointRouter(clusterManager(remoteEndpoints), null, commandStore) {
+            @Override
+            public ExecutionContext getExecutionContext(String endpointId, Node node) {
+                return executionContexts.get(node);
+            }
+        };
+        try {
+            RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler("endpoint", TestService.class.getName(), clusterManager(remoteEndpoints), executionContext, false, true, router);
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(Constants.HEDGE, "compute");
+            handler.setEndpointProperties(properties);
+            TestService service = (TestService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{TestService.class}, handler);
+
+            // no hedging before the latency distribution is known
+            service.compute();
+            Thread.sleep(50);
+            Assert.assertEquals(1, executionContexts.get(node1).async.size() + executionContexts.get(node2).async.size());
+            executionContexts.get(node1).async.clear();
+            executionContexts.get(node2).async.clear();
+
+            for (int i = 0; i < RemoteServiceInvocationHandler.HEDGE_MIN_SAMPLES; i++) {
+                router.getHistogram("endpoint", "compute").record(1000000L);
+            }
+            Future<String> future = service.compute();
+            long timeout = System.currentTimeMillis() + 5000;
+            while ((executionContexts.get(node1).async.isEmpty() || executionContexts.get(node2).async.isEmpty()) && System.currentTimeMillis() < timeout) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(1, executionContexts.get(node1).async.size());
+            Assert.assertEquals(1, executionContexts.get(node2).async.size());
+            RemoteServiceCall call = (RemoteServiceCall) executionContexts.get(node1).async.get(0);
+            RemoteServiceCall hedgedCall = (RemoteServiceCall) executionContexts.get(node2).async.get(0);
+            if (Integer.parseInt(call.getId()) > Integer.parseInt(hedgedCall.getId())) {
+                // the call has been routed to the second node
+                RemoteServiceCall swap = call;
+                call = hedgedCall;
+                hedgedCall = swap;
+            }
+            Assert.assertEquals(call.getMethod(), hedgedCall.getMethod());
+            Assert.assertFalse(call.getDestination().equals(hedgedCall.getDestination()));
+
+            // the first result completes the call
+            RemoteServiceResult result = new RemoteServiceResult(hedgedCall.getId());
+            result.setSourceNode(hedgedCall.getDestination().iterator().next());
+            result.setResult("hedged");
+            hedgedCall.addResults(result);
+            Assert.assertEquals("hedged", future.get(5, TimeUnit.SECONDS));
+        } finally {
+            router.destroy();
+        }
+    }
+
+    private ClusterManager clusterManager(final Map<String, EndpointDescription> remoteEndpoints) {
+        return (ClusterManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ClusterManager.class}, new InvocationHandler() {
+            private AtomicInteger id = new AtomicInteger();
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getMap".equals(method.getName())) {
+                    return remoteEndpoints;
+                }
+                return "generateId".equals(method.getName()) ? String.valueOf(id.incrementAndGet()) : null;
+            }
+        });
+    }
+
+    static class TestExecutionContext implements ExecutionContext {
+
+        final List<Command> sync = new CopyOnWriteArrayList<Command>();
+        final List<Command> async = new CopyOnWriteArrayList<Command>();
+        final List<Command> oneWay = new CopyOnWriteArrayList<Command>();
+
+        @Override
+        public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) {
+            sync.add(command);
+            return null;
+        }
+
+        @Override
+        public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command) {
+            async.add(command);
+            return command.getFuture();
+        }
+
+        @Override
+        public <R extends Result, C extends Command<R>> CommandFuture<R> executeAsync(C command, CommandListener<R> listener) {
+            CommandFuture<R> future = executeAsync(command);
+            future.addListener(listener);
+            return future;
+        }
+
+        @Override
+        public <R extends Result, C extends Command<R>> void executeOneWay(C command) {
+            oneWay.add(command);
+        }
+
+    }
+
+}
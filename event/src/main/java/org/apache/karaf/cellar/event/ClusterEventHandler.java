@@ -13,13 +13,10 @@
  */
 package org.apache.karaf.cellar.event;
 
-import org.apache.karaf.cellar.core.Configurations;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventType;
-import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,7 +31,6 @@ public class ClusterEventHandler extends EventSupport implements EventHandler<Cl
     private static final transient Logger LOGGER = LoggerFactory.getLogger(ClusterEventHandler.class);
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.event.handler";
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
 
     @Override
     public void handle(ClusterEvent event) {
@@ -91,21 +87,7 @@ public class ClusterEventHandler extends EventSupport implements EventHandler<Cl
      */
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
     /**
@@ -14,7 +14,9 @@
 package org.apache.karaf.cellar.event.internal.osgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.GroupFilterIndex;
 import org.apache.karaf.cellar.core.GroupManager;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.event.ClusterEventHandler;
@@ -39,6 +41,8 @@ import java.util.Hashtable;
                 @RequireService(ClusterManager.class),
                 @RequireService(GroupManager.class),
                 @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class),
+                @RequireService(GroupFilterIndex.class),
                 @RequireService(EventAdmin.class),
                 @RequireService(EventProducer.class)
         }
@@ -62,6 +66,12 @@ public class Activator extends BaseActivator {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null)
             return;
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null)
+            return;
+        GroupFilterIndex groupFilterIndex = getTrackedService(GroupFilterIndex.class);
+        if (groupFilterIndex == null)
+            return;
         EventAdmin eventAdmin = getTrackedService(EventAdmin.class);
         if (eventAdmin == null)
             return;
@@ -72,6 +82,8 @@ public class Activator extends BaseActivator {
         LOGGER.debug("CELLAR EVENT: init event handler");
         clusterEventHandler = new ClusterEventHandler();
         clusterEventHandler.setConfigurationAdmin(configurationAdmin);
+        clusterEventHandler.setGroupFilterIndex(groupFilterIndex);
+        clusterEventHandler.setSwitchRegistry(switchRegistry);
         clusterEventHandler.setGroupManager(groupManager);
         clusterEventHandler.setClusterManager(clusterManager);
         clusterEventHandler.setEventAdmin(eventAdmin);
@@ -85,6 +97,7 @@ public class Activator extends BaseActivator {
         localEventListener.setClusterManager(clusterManager);
         localEventListener.setGroupManager(groupManager);
         localEventListener.setConfigurationAdmin(configurationAdmin);
+        localEventListener.setGroupFilterIndex(groupFilterIndex);
         localEventListener.setEventProducer(eventProducer);
         localEventListener.init();
         props = new Hashtable();
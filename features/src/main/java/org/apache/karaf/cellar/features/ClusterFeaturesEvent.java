@@ -13,14 +13,21 @@
  */
 package org.apache.karaf.cellar.features;
 
+import org.apache.karaf.cellar.core.CompactSerializable;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.event.Event;
 import org.apache.karaf.features.FeatureEvent.EventType;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 /**
  * Cluster features event.
  */
-public class ClusterFeaturesEvent extends Event {
+public class ClusterFeaturesEvent extends Event implements CompactSerializable {
+
+    private static final long serialVersionUID = 9029460663136155143L;
 
     private static final String separator = "/";
 
@@ -55,6 +62,10 @@ public class ClusterFeaturesEvent extends Event {
         this.type = type;
     }
 
+    protected ClusterFeaturesEvent() {
+        // used by the compact serialization
+    }
+
     public String getName() {
         return name;
     }
@@ -90,4 +101,32 @@ public class ClusterFeaturesEvent extends Event {
     public void setLocal(Node local) {
         this.local = local;
     }
+
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        writeEvent(out);
+        out.writeObject(name);
+        out.writeObject(version);
+        out.writeObject(noRefresh);
+        out.writeObject(noStart);
+        out.writeObject(noManage);
+        out.writeObject(upgrade);
+        out.writeObject(type != null ? type.name() : null);
+        out.writeObject(local);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        readEvent(in);
+        name = (String) in.readObject();
+        version = (String) in.readObject();
+        noRefresh = (Boolean) in.readObject();
+        noStart = (Boolean) in.readObject();
+        noManage = (Boolean) in.readObject();
+        upgrade = (Boolean) in.readObject();
+        String typeName = (String) in.readObject();
+        type = typeName != null ? EventType.valueOf(typeName) : null;
+        local = (Node) in.readObject();
+    }
+
 }
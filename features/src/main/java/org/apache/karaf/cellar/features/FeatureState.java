@@ -13,12 +13,18 @@
  */
 package org.apache.karaf.cellar.features;
 
-import java.io.Serializable;
+import org.apache.karaf.cellar.core.CompactSerializable;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Feature info to store in the cluster.
  */
-public class FeatureState implements Serializable {
+public class FeatureState implements CompactSerializable {
+
+    private static final long serialVersionUID = 6730738891483630059L;
 
     private String name;
     private String version;
@@ -50,4 +56,18 @@ public class FeatureState implements Serializable {
         this.installed = installed;
     }
 
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeObject(name);
+        out.writeObject(version);
+        out.writeObject(installed);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        name = (String) in.readObject();
+        version = (String) in.readObject();
+        installed = (Boolean) in.readObject();
+    }
+
 }
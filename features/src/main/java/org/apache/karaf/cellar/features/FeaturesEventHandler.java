@@ -13,8 +13,6 @@
  */
 package org.apache.karaf.cellar.features;
 
-import org.apache.karaf.cellar.core.Configurations;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
@@ -22,14 +20,27 @@ import org.apache.karaf.cellar.core.event.EventType;
 import org.apache.karaf.features.FeatureEvent;
 import org.apache.karaf.features.FeaturesService;
 import org.osgi.framework.BundleContext;
-import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handler for cluster features event.
+ * The features events received during a window are coalesced by cluster group and options, and applied with a single
+ * install or uninstall call, so the node resolves and refreshes the bundles once per batch instead of once per feature.
  */
 public class FeaturesEventHandler extends FeaturesSupport implements EventHandler<ClusterFeaturesEvent> {
 
@@ -37,15 +48,56 @@ public class FeaturesEventHandler extends FeaturesSupport implements EventHandle
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.event.features.handler";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
+    public static final long DEFAULT_WINDOW = 500;
+
+    /**
+     * Maximum time to wait for a running flush when the handler is destroyed, in milliseconds.
+     */
+    private static final long FLUSH_TIMEOUT = 60000;
+
+    private long window = DEFAULT_WINDOW;
+    private final List<FeaturesBatch> pending = new ArrayList<FeaturesBatch>();
+    private ScheduledExecutorService flushScheduler;
+    private ScheduledFuture flushTask;
 
     @Override
     public void init(BundleContext bundleContext) {
         super.init(bundleContext);
+        window = Long.getLong(FeaturesEventHandler.class.getName() + ".window", window);
+        if (window > 0) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Cellar features handler flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
     }
 
+    /**
+     * Stop the flush scheduler, waiting for a running flush, then apply the pending batches.
+     */
     @Override
     public void destroy() {
+        if (flushScheduler != null) {
+            synchronized (this) {
+                if (flushTask != null) {
+                    flushTask.cancel(false);
+                    flushTask = null;
+                }
+            }
+            flushScheduler.shutdown();
+            try {
+                if (!flushScheduler.awaitTermination(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("CELLAR FEATURE: features events flush still running");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
         super.destroy();
     }
 
@@ -83,51 +135,179 @@ public class FeaturesEventHandler extends FeaturesSupport implements EventHandle
         String version = event.getVersion();
         if (isAllowed(event.getSourceGroup(), Constants.CATEGORY, name, EventType.INBOUND) || event.getForce()) {
             FeatureEvent.EventType type = event.getType();
-            Boolean isInstalled = isFeatureInstalledLocally(name, version);
+            EnumSet<FeaturesService.Option> options = EnumSet.noneOf(FeaturesService.Option.class);
+            if (event.getNoRefresh()) {
+                options.add(FeaturesService.Option.NoAutoRefreshBundles);
+            }
+            boolean install = FeatureEvent.EventType.FeatureInstalled.equals(type);
+            if (install) {
+                if (event.getNoStart()) {
+                    options.add(FeaturesService.Option.NoAutoStartBundles);
+                }
+                if (event.getNoManage()) {
+                    options.add(FeaturesService.Option.NoAutoManageBundles);
+                }
+                if (event.getUpgrade()) {
+                    options.add(FeaturesService.Option.Upgrade);
+                }
+            } else if (!FeatureEvent.EventType.FeatureUninstalled.equals(type)) {
+                return;
+            }
+            String feature = (version != null) ? name + "/" + version : name;
+            FeaturesBatch batch;
+            synchronized (this) {
+                batch = add(install, event.getSourceGroup().getName(), options, feature);
+            }
+            if (batch != null) {
+                apply(batch);
+            }
+        } else LOGGER.trace("CELLAR FEATURE: feature {} is marked BLOCKED INBOUND for cluster group {}", name, event.getSourceGroup().getName());
+    }
+
+    /**
+     * Add a feature to the pending batches, in the last batch with the same action, cluster group and options,
+     * unless a later batch contains the same feature (the order of the actions on a feature is kept).
+     *
+     * @return the batch to apply immediately when coalescing is disabled, null else.
+     */
+    private FeaturesBatch add(boolean install, String group, EnumSet<FeaturesService.Option> options, String feature) {
+        FeaturesBatch batch = null;
+        if (window > 0) {
+            for (int i = pending.size() - 1; i >= 0; i--) {
+                FeaturesBatch candidate = pending.get(i);
+                if (candidate.install == install && candidate.group.equals(group) && candidate.options.equals(options)) {
+                    batch = candidate;
+                    break;
+                }
+                if (candidate.contains(feature)) {
+                    break;
+                }
+            }
+        }
+        if (batch == null) {
+            batch = new FeaturesBatch(install, group, options);
+            if (window <= 0) {
+                batch.add(feature);
+                return batch;
+            }
+            pending.add(batch);
+        }
+        batch.add(feature);
+        if (flushTask == null) {
             try {
-                if (FeatureEvent.EventType.FeatureInstalled.equals(type)) {
-                    boolean noRefresh = event.getNoRefresh();
-                    boolean noStart = event.getNoStart();
-                    boolean noManage = event.getNoManage();
-                    boolean upgrade = event.getUpgrade();
-                    EnumSet<FeaturesService.Option> options = EnumSet.noneOf(FeaturesService.Option.class);
-                    if (noRefresh) {
-                        options.add(FeaturesService.Option.NoAutoRefreshBundles);
+                flushTask = flushScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
                     }
-                    if (noStart) {
-                        options.add(FeaturesService.Option.NoAutoStartBundles);
-                    }
-                    if (noManage) {
-                        options.add(FeaturesService.Option.NoAutoManageBundles);
-                    }
-                    if (upgrade) {
-                        options.add(FeaturesService.Option.Upgrade);
-                    }
-                    if (version != null) {
-                        LOGGER.debug("CELLAR FEATURE: installing feature {}/{}", name, version);
-                        featuresService.installFeature(name, version, options);
-                    } else {
-                        LOGGER.debug("CELLAR FEATURE: installing feature {}", name);
-                        featuresService.installFeature(name, options);
-                    }
-                } else if (FeatureEvent.EventType.FeatureUninstalled.equals(type) && isInstalled) {
-                    boolean noRefresh = event.getNoRefresh();
-                    EnumSet<FeaturesService.Option> options = EnumSet.noneOf(FeaturesService.Option.class);
-                    if (noRefresh) {
-                        options.add(FeaturesService.Option.NoAutoRefreshBundles);
-                    }
-                    if (version != null) {
-                        LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", name, version);
-                        featuresService.uninstallFeature(name, version, options);
-                    } else {
-                        LOGGER.debug("CELLAR FEATURE: uninstalling feature {}", name);
-                        featuresService.uninstallFeature(name, options);
-                    }
-                }
-            } catch (Exception e) {
+                }, window, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the handler is destroyed, the pending batches are applied by the final flush
+                LOGGER.debug("CELLAR FEATURE: flush scheduler is stopped");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Apply the pending batches, in the order of the cluster events.
+     */
+    public void flush() {
+        List<FeaturesBatch> batches;
+        synchronized (this) {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            batches = new ArrayList<FeaturesBatch>(pending);
+            pending.clear();
+        }
+        for (FeaturesBatch batch : batches) {
+            apply(batch);
+        }
+    }
+
+    /**
+     * Install or uninstall the features of a batch with a single call, so the features service resolves and
+     * refreshes the bundles once. If the call fails, the features are retried one by one.
+     *
+     * @param batch the features batch.
+     */
+    private void apply(FeaturesBatch batch) {
+        Set<String> features = new LinkedHashSet<String>();
+        for (String feature : batch.features) {
+            // the uninstall is checked when applied, the feature may have been installed by a previous batch
+            if (batch.install || isFeatureInstalledLocally(getName(feature), getVersion(feature))) {
+                features.add(feature);
+            }
+        }
+        if (features.isEmpty()) {
+            return;
+        }
+        try {
+            apply(batch, features);
+        } catch (Exception e) {
+            if (features.size() == 1) {
                 LOGGER.error("CELLAR FEATURE: failed to handle cluster feature event", e);
+                return;
             }
-        } else LOGGER.trace("CELLAR FEATURE: feature {} is marked BLOCKED INBOUND for cluster group {}", name, event.getSourceGroup().getName());
+            LOGGER.warn("CELLAR FEATURE: failed to handle cluster features events {} at once, retrying one by one", features, e);
+            for (String feature : features) {
+                try {
+                    apply(batch, Collections.singleton(feature));
+                } catch (Exception ex) {
+                    LOGGER.error("CELLAR FEATURE: failed to handle cluster feature event", ex);
+                }
+            }
+        }
+    }
+
+    private void apply(FeaturesBatch batch, Set<String> features) throws Exception {
+        if (batch.install) {
+            LOGGER.debug("CELLAR FEATURE: installing features {}", features);
+            featuresService.installFeatures(features, batch.options);
+        } else {
+            LOGGER.debug("CELLAR FEATURE: uninstalling features {}", features);
+            featuresService.uninstallFeatures(features, batch.options);
+        }
+    }
+
+    private static String getName(String feature) {
+        int index = feature.indexOf('/');
+        return index < 0 ? feature : feature.substring(0, index);
+    }
+
+    private static String getVersion(String feature) {
+        int index = feature.indexOf('/');
+        return index < 0 ? null : feature.substring(index + 1);
+    }
+
+    /**
+     * Features to install or uninstall with the same options.
+     */
+    private static class FeaturesBatch {
+
+        private final boolean install;
+        private final String group;
+        private final EnumSet<FeaturesService.Option> options;
+        private final Set<String> features = new LinkedHashSet<String>();
+        private final Set<String> names = new HashSet<String>();
+
+        FeaturesBatch(boolean install, String group, EnumSet<FeaturesService.Option> options) {
+            this.install = install;
+            this.group = group;
+            this.options = options;
+        }
+
+        void add(String feature) {
+            features.add(feature);
+            names.add(getName(feature));
+        }
+
+        boolean contains(String feature) {
+            return names.contains(getName(feature));
+        }
+
     }
 
     /**
@@ -147,21 +327,7 @@ public class FeaturesEventHandler extends FeaturesSupport implements EventHandle
      */
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
 }
@@ -22,17 +22,16 @@ import org.apache.karaf.cellar.core.event.EventType;
 import org.apache.karaf.cellar.core.utils.CellarUtils;
 import org.apache.karaf.features.*;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
 import org.osgi.service.cm.Configuration;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URI;
-import java.util.Dictionary;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Features synchronizer.
@@ -41,6 +40,8 @@ public class FeaturesSynchronizer extends FeaturesSupport implements Synchronize
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(FeaturesSynchronizer.class);
 
+    private static final String FEATURE_REQUIREMENT_PREFIX = "feature:";
+
     private EventProducer eventProducer;
 
     public void setEventProducer(EventProducer eventProducer) {
@@ -121,93 +122,191 @@ public class FeaturesSynchronizer extends FeaturesSupport implements Synchronize
             try {
                 Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
+                long start = System.currentTimeMillis();
                 Map<String, String> clusterRepositories = clusterManager.getMap(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + groupName);
                 Map<String, FeatureState> clusterFeatures = clusterManager.getMap(Constants.FEATURES_MAP + Configurations.SEPARATOR + groupName);
                 Map<String, Boolean> synchronizers = getSynchronizerMap();
 
-                if (clusterRepositories != null && !clusterRepositories.isEmpty()) {
-                    // get the features repositories from the cluster to update locally
-                    for (String url : clusterRepositories.keySet()) {
-                        try {
-                            if (!isRepositoryRegisteredLocally(url)) {
-                                LOGGER.debug("CELLAR FEATURE: adding repository {}", url);
-                                featuresService.addRepository(new URI(url));
-                            }
-                        } catch (MalformedURLException e) {
-                            LOGGER.error("CELLAR FEATURE: failed to add repository URL {} (malformed)", url, e);
-                        } catch (Exception e) {
-                            LOGGER.error("CELLAR FEATURE: failed to add repository URL {}", url, e);
-                        }
+                // current local state
+                Set<URI> localRepositories = new LinkedHashSet<URI>();
+                Set<String> localFeatures = new HashSet<String>();
+                Set<String> localFeatureNames = new HashSet<String>();
+                Map<String, Set<String>> requirements = new HashMap<String, Set<String>>();
+                try {
+                    // only the repositories added on the node, not the ones referenced by other repositories
+                    for (Repository repository : featuresService.listRequiredRepositories()) {
+                        localRepositories.add(repository.getURI());
+                    }
+                    for (Feature feature : featuresService.listInstalledFeatures()) {
+                        localFeatures.add(feature.getName() + "/" + feature.getVersion());
+                        localFeatureNames.add(feature.getName());
                     }
-                    // cleanup the local features repositories not present on the cluster if the node is not the first one in the cluster group
+                    for (Map.Entry<String, Set<String>> entry : featuresService.listRequirements().entrySet()) {
+                        requirements.put(entry.getKey(), new LinkedHashSet<String>(entry.getValue()));
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("CELLAR FEATURE: can't get local features state", e);
+                    return;
+                }
+                long read = System.currentTimeMillis();
 
-                    if (synchronizers.containsKey(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + groupName)) {
+                // desired features repositories, the ones of the cluster group
+                Set<URI> repositories = new LinkedHashSet<URI>();
+                if (clusterRepositories != null) {
+                    for (String url : clusterRepositories.keySet()) {
                         try {
-                            for (Repository repository : featuresService.listRepositories()) {
-                                URI uri = repository.getURI();
-                                boolean found = false;
-                                for (String clusterRepository : clusterRepositories.keySet()) {
-                                    if (clusterRepository.equals(uri.toString())) {
-                                        found = true;
-                                        break;
-                                    }
-                                }
-                                if (!found) {
-                                    LOGGER.debug("CELLAR FEATURE: removing repository {}", uri);
-                                    featuresService.removeRepository(uri);
-                                }
-                            }
+                            repositories.add(new URI(url));
                         } catch (Exception e) {
-                            LOGGER.warn("Can't get local features repositories", e);
+                            LOGGER.error("CELLAR FEATURE: failed to add repository URL {} (malformed)", url, e);
                         }
                     }
                 }
+                // keep the local features repositories if the node is the first one in the cluster group (they are pushed after)
+                if (repositories.isEmpty() || !synchronizers.containsKey(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + groupName)) {
+                    repositories.addAll(localRepositories);
+                }
 
+                // desired features, as requirements of the root region
+                Set<String> rootRequirements = requirements.get(FeaturesService.ROOT_REGION);
+                if (rootRequirements == null) {
+                    rootRequirements = new LinkedHashSet<String>();
+                    requirements.put(FeaturesService.ROOT_REGION, rootRequirements);
+                }
+                List<FeatureState> toInstall = new ArrayList<FeatureState>();
+                List<FeatureState> toUninstall = new ArrayList<FeatureState>();
                 if (clusterFeatures != null && !clusterFeatures.isEmpty()) {
                     boolean doUninstallFeaturesNotPresentInCluster = CellarUtils.doCleanupResourcesNotPresentInCluster(configurationAdmin) && synchronizers.containsKey(Constants.FEATURES_MAP + Configurations.SEPARATOR + groupName);
-                    // get the features from the cluster group and update locally
                     for (FeatureState state : clusterFeatures.values()) {
                         String name = state.getName();
                         // check if feature is blocked
                         if (isAllowed(group, Constants.CATEGORY, name, EventType.INBOUND)) {
-                            Boolean clusterInstalled = state.getInstalled();
-                            Boolean locallyInstalled = isFeatureInstalledLocally(state.getName(), state.getVersion());
-
-                            // prevent NPE
-                            if (clusterInstalled == null) {
-                                clusterInstalled = false;
-                            }
-                            if (locallyInstalled == null) {
-                                locallyInstalled = false;
-                            }
+                            boolean clusterInstalled = state.getInstalled();
+                            boolean locallyInstalled = (state.getVersion() == null) ? localFeatureNames.contains(name) : localFeatures.contains(name + "/" + state.getVersion());
 
                             // if feature has to be installed locally
                             if (clusterInstalled && !locallyInstalled) {
-                                try {
-                                    LOGGER.debug("CELLAR FEATURE: installing feature {}/{}", state.getName(), state.getVersion());
-                                    featuresService.installFeature(state.getName(), state.getVersion());
-                                } catch (Exception e) {
-                                    LOGGER.error("CELLAR FEATURE: failed to install feature {}/{} ", new Object[]{state.getName(), state.getVersion()}, e);
-                                }
+                                LOGGER.debug("CELLAR FEATURE: installing feature {}/{}", name, state.getVersion());
+                                rootRequirements.add(getRequirement(name, state.getVersion()));
+                                toInstall.add(state);
                             }
                             // if feature has to be uninstalled locally (and node is not the first one in the cluster group)
                             if (doUninstallFeaturesNotPresentInCluster && !clusterInstalled && locallyInstalled) {
-                                try {
-                                    LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", state.getName(), state.getVersion());
-                                    featuresService.uninstallFeature(state.getName(), state.getVersion());
-                                } catch (Exception e) {
-                                    LOGGER.error("CELLAR FEATURE: failed to uninstall feature {}/{}", new Object[]{state.getName(), state.getVersion()}, e);
-                                }
+                                LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", name, state.getVersion());
+                                removeRequirement(rootRequirements, name, state.getVersion());
+                                toUninstall.add(state);
                             }
                         } else LOGGER.trace("CELLAR FEATURE: feature {} is marked BLOCKED INBOUND for cluster group {}", name, groupName);
                     }
                 }
+                long planned = System.currentTimeMillis();
+
+                // apply the desired state at once, so the node resolves once
+                boolean changed = !repositories.equals(localRepositories) || !toInstall.isEmpty() || !toUninstall.isEmpty();
+                if (changed) {
+                    try {
+                        featuresService.updateReposAndRequirements(repositories, requirements, EnumSet.noneOf(FeaturesService.Option.class));
+                    } catch (Exception e) {
+                        LOGGER.warn("CELLAR FEATURE: failed to update features state of cluster group {} at once, applying the changes one by one", groupName, e);
+                        applyOneByOne(localRepositories, repositories, toInstall, toUninstall);
+                    }
+                }
+                long applied = System.currentTimeMillis();
+
+                LOGGER.debug("CELLAR FEATURE: pulled features from cluster group {}: {} repositories, {} installed and {} uninstalled features; read in {} ms, planned in {} ms, applied in {} ms",
+                        groupName, repositories.size(), toInstall.size(), toUninstall.size(), read - start, planned - read, applied - planned);
             } finally {
                 Thread.currentThread().setContextClassLoader(originalClassLoader);
             }
         }
     }
 
+    /**
+     * Apply the changes on the features repositories and features one by one, when they can't be applied at once.
+     */
+    private void applyOneByOne(Set<URI> localRepositories, Set<URI> repositories, List<FeatureState> toInstall, List<FeatureState> toUninstall) {
+        for (URI uri : repositories) {
+            if (!localRepositories.contains(uri)) {
+                try {
+                    LOGGER.debug("CELLAR FEATURE: adding repository {}", uri);
+                    featuresService.addRepository(uri);
+                } catch (Exception e) {
+                    LOGGER.error("CELLAR FEATURE: failed to add repository URL {}", uri, e);
+                }
+            }
+        }
+        for (URI uri : localRepositories) {
+            if (!repositories.contains(uri)) {
+                try {
+                    LOGGER.debug("CELLAR FEATURE: removing repository {}", uri);
+                    featuresService.removeRepository(uri);
+                } catch (Exception e) {
+                    LOGGER.warn("CELLAR FEATURE: failed to remove repository URL {}", uri, e);
+                }
+            }
+        }
+        for (FeatureState state : toInstall) {
+            try {
+                featuresService.installFeature(state.getName(), state.getVersion());
+            } catch (Exception e) {
+                LOGGER.error("CELLAR FEATURE: failed to install feature {}/{} ", new Object[]{state.getName(), state.getVersion()}, e);
+            }
+        }
+        for (FeatureState state : toUninstall) {
+            try {
+                featuresService.uninstallFeature(state.getName(), state.getVersion());
+            } catch (Exception e) {
+                LOGGER.error("CELLAR FEATURE: failed to uninstall feature {}/{}", new Object[]{state.getName(), state.getVersion()}, e);
+            }
+        }
+    }
+
+    /**
+     * Get the requirement on a feature, as stored by the features service.
+     *
+     * @param name the feature name.
+     * @param version the feature version, or null for any version.
+     * @return the feature requirement.
+     */
+    static String getRequirement(String name, String version) {
+        if (version == null || version.isEmpty() || "0.0.0".equals(version)) {
+            return FEATURE_REQUIREMENT_PREFIX + name;
+        }
+        return FEATURE_REQUIREMENT_PREFIX + name + "/[" + version + "," + version + "]";
+    }
+
+    /**
+     * Remove the requirements on a feature version.
+     *
+     * @param requirements the requirements.
+     * @param name the feature name.
+     * @param version the feature version.
+     */
+    static void removeRequirement(Set<String> requirements, String name, String version) {
+        Iterator<String> iterator = requirements.iterator();
+        while (iterator.hasNext()) {
+            String requirement = iterator.next();
+            if (!requirement.startsWith(FEATURE_REQUIREMENT_PREFIX)) {
+                continue;
+            }
+            String feature = requirement.substring(FEATURE_REQUIREMENT_PREFIX.length());
+            int index = feature.indexOf('/');
+            String requiredName = index < 0 ? feature : feature.substring(0, index);
+            if (!requiredName.equals(name)) {
+                continue;
+            }
+            String range = index < 0 ? null : feature.substring(index + 1);
+            boolean matches;
+            try {
+                matches = range == null || version == null || new VersionRange(range).includes(Version.parseVersion(version));
+            } catch (IllegalArgumentException e) {
+                matches = range.equals(version);
+            }
+            if (matches) {
+                iterator.remove();
+            }
+        }
+    }
+
     /**
      * Push features repositories and features local states to a cluster group.
      *
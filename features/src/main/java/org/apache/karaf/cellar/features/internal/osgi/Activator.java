@@ -14,8 +14,10 @@
 package org.apache.karaf.cellar.features.internal.osgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.GroupFilterIndex;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.features.FeaturesEventHandler;
@@ -49,6 +51,8 @@ import java.util.Hashtable;
                 @RequireService(GroupManager.class),
                 @RequireService(EventProducer.class),
                 @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class),
+                @RequireService(GroupFilterIndex.class),
                 @RequireService(FeaturesService.class)
         }
 )
@@ -68,6 +72,12 @@ public class Activator extends BaseActivator {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null)
             return;
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null)
+            return;
+        GroupFilterIndex groupFilterIndex = getTrackedService(GroupFilterIndex.class);
+        if (groupFilterIndex == null)
+            return;
         ClusterManager clusterManager = getTrackedService(ClusterManager.class);
         if (clusterManager == null)
             return;
@@ -84,6 +94,7 @@ public class Activator extends BaseActivator {
         LOGGER.debug("CELLAR FEATURE: init repository event handler");
         repositoryEventHandler = new RepositoryEventHandler();
         repositoryEventHandler.setConfigurationAdmin(configurationAdmin);
+        repositoryEventHandler.setGroupFilterIndex(groupFilterIndex);
         repositoryEventHandler.setFeaturesService(featuresService);
         repositoryEventHandler.setClusterManager(clusterManager);
         repositoryEventHandler.setGroupManager(groupManager);
@@ -98,6 +109,8 @@ public class Activator extends BaseActivator {
         featuresEventHandler.setClusterManager(clusterManager);
         featuresEventHandler.setGroupManager(groupManager);
         featuresEventHandler.setConfigurationAdmin(configurationAdmin);
+        featuresEventHandler.setGroupFilterIndex(groupFilterIndex);
+        featuresEventHandler.setSwitchRegistry(switchRegistry);
         featuresEventHandler.init(bundleContext);
         register(new Class[]{ EventHandler.class }, featuresEventHandler, props);
 
@@ -107,6 +120,7 @@ public class Activator extends BaseActivator {
         localFeaturesListener.setGroupManager(groupManager);
         localFeaturesListener.setEventProducer(eventProducer);
         localFeaturesListener.setConfigurationAdmin(configurationAdmin);
+        localFeaturesListener.setGroupFilterIndex(groupFilterIndex);
         localFeaturesListener.setFeaturesService(featuresService);
         localFeaturesListener.init(bundleContext);
         register(FeaturesListener.class, localFeaturesListener);
@@ -117,6 +131,7 @@ public class Activator extends BaseActivator {
         featuresSynchronizer.setGroupManager(groupManager);
         featuresSynchronizer.setEventProducer(eventProducer);
         featuresSynchronizer.setConfigurationAdmin(configurationAdmin);
+        featuresSynchronizer.setGroupFilterIndex(groupFilterIndex);
         featuresSynchronizer.setFeaturesService(featuresService);
         featuresSynchronizer.init(bundleContext);
         props = new Hashtable();
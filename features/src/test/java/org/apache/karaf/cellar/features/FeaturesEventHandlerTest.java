@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.GroupManager;
+import org.apache.karaf.cellar.core.Handler;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.apache.karaf.cellar.core.control.SwitchStatus;
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.FeatureEvent;
+import org.apache.karaf.features.FeaturesService;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class FeaturesEventHandlerTest {
+
+    private static final String WINDOW = FeaturesEventHandler.class.getName() + ".window";
+
+    private Group group = new Group("default");
+
+    private final List<String> calls = new CopyOnWriteArrayList<String>();
+    private final List<String> threads = new CopyOnWriteArrayList<String>();
+    private final List<Feature> installed = new CopyOnWriteArrayList<Feature>();
+
+    private FeaturesEventHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        Hashtable<String, Object> groups = new Hashtable<String, Object>();
+        groups.put("default.feature.whitelist.inbound", "*");
+        groups.put("default.feature.blacklist.inbound", "blocked");
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andReturn(groups).anyTimes();
+        ConfigurationAdmin configurationAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.GROUP, null)).andReturn(configuration).anyTimes();
+        GroupManager groupManager = EasyMock.createMock(GroupManager.class);
+        EasyMock.expect(groupManager.isLocalGroup("default")).andReturn(true).anyTimes();
+        SwitchRegistry switchRegistry = EasyMock.createMock(SwitchRegistry.class);
+        EasyMock.expect(switchRegistry.getHandlerSwitch(EasyMock.eq(FeaturesEventHandler.SWITCH_ID), EasyMock.anyObject(Handler.class)))
+                .andReturn(new BasicSwitch(FeaturesEventHandler.SWITCH_ID, SwitchStatus.ON)).anyTimes();
+        EasyMock.replay(configuration, configurationAdmin, groupManager, switchRegistry);
+
+        FeaturesService featuresService = (FeaturesService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{FeaturesService.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("listInstalledFeatures".equals(method.getName())) {
+                    return installed.toArray(new Feature[installed.size()]);
+                }
+                if ("installFeatures".equals(method.getName()) || "uninstallFeatures".equals(method.getName())) {
+                    calls.add(method.getName() + " " + args[0] + " " + args[1]);
+                    threads.add(Thread.currentThread().getName());
+                }
+                return null;
+            }
+        });
+
+        handler = new FeaturesEventHandler();
+        handler.setConfigurationAdmin(configurationAdmin);
+        handler.setGroupManager(groupManager);
+        handler.setSwitchRegistry(switchRegistry);
+        handler.setFeaturesService(featuresService);
+    }
+
+    @After
+    public void tearDown() {
+        handler.destroy();
+        System.clearProperty(WINDOW);
+    }
+
+    @Test
+    public void testCoalesceEvents() {
+        init(60000);
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+        handler.handle(event("bar", FeatureEvent.EventType.FeatureInstalled));
+        handler.handle(event("blocked", FeatureEvent.EventType.FeatureInstalled));
+        handler.handle(event("baz", FeatureEvent.EventType.FeatureInstalled));
+        Assert.assertTrue(calls.isEmpty());
+
+        handler.flush();
+        Assert.assertEquals(Arrays.asList("installFeatures [foo/1.0.0, bar/1.0.0, baz/1.0.0] []"), calls);
+    }
+
+    @Test
+    public void testCoalesceKeepsOrderPerFeature() {
+        init(60000);
+        installed.add(feature("foo"));
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureUninstalled));
+        handler.handle(event("bar", FeatureEvent.EventType.FeatureInstalled));
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+
+        handler.flush();
+        // bar joins the first install batch, the second install of foo stays after its uninstall
+        Assert.assertEquals(Arrays.asList(
+                "installFeatures [foo/1.0.0, bar/1.0.0] []",
+                "uninstallFeatures [foo/1.0.0] []",
+                "installFeatures [foo/1.0.0] []"), calls);
+    }
+
+    @Test
+    public void testBatchPerOptions() {
+        init(60000);
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+        ClusterFeaturesEvent noRefresh = new ClusterFeaturesEvent("bar", "1.0.0", true, false, false, false, FeatureEvent.EventType.FeatureInstalled);
+        noRefresh.setSourceGroup(group);
+        handler.handle(noRefresh);
+
+        handler.flush();
+        Assert.assertEquals(Arrays.asList(
+                "installFeatures [foo/1.0.0] []",
+                "installFeatures [bar/1.0.0] [NoAutoRefreshBundles]"), calls);
+    }
+
+    @Test
+    public void testScheduledFlush() throws Exception {
+        init(50);
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (calls.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(Arrays.asList("installFeatures [foo/1.0.0] []"), calls);
+        Assert.assertEquals("Cellar features handler flush", threads.get(0));
+    }
+
+    @Test
+    public void testDestroyFlushesPendingEvents() {
+        init(60000);
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+
+        handler.destroy();
+        Assert.assertEquals(Arrays.asList("installFeatures [foo/1.0.0] []"), calls);
+    }
+
+    @Test
+    public void testWithoutWindow() {
+        init(0);
+        handler.handle(event("foo", FeatureEvent.EventType.FeatureInstalled));
+        handler.handle(event("bar", FeatureEvent.EventType.FeatureInstalled));
+        Assert.assertEquals(Arrays.asList("installFeatures [foo/1.0.0] []", "installFeatures [bar/1.0.0] []"), calls);
+    }
+
+    private void init(long window) {
+        System.setProperty(WINDOW, Long.toString(window));
+        handler.init(null);
+    }
+
+    private ClusterFeaturesEvent event(String name, FeatureEvent.EventType type) {
+        ClusterFeaturesEvent event = new ClusterFeaturesEvent(name, "1.0.0", type);
+        event.setSourceGroup(group);
+        return event;
+    }
+
+    private static Feature feature(final String name) {
+        return (Feature) Proxy.newProxyInstance(FeaturesEventHandlerTest.class.getClassLoader(), new Class[]{Feature.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getName".equals(method.getName())) {
+                    return name;
+                }
+                if ("getVersion".equals(method.getName())) {
+                    return "1.0.0";
+                }
+                return null;
+            }
+        });
+    }
+
+}
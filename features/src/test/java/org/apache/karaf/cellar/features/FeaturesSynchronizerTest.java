@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.FeaturesService;
+import org.apache.karaf.features.Repository;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class FeaturesSynchronizerTest {
+
+    private Group group = new Group("default");
+
+    private Map<String, String> clusterRepositories = new HashMap<String, String>();
+    private Map<String, FeatureState> clusterFeatures = new HashMap<String, FeatureState>();
+    private Map<String, Boolean> synchronizers = new HashMap<String, Boolean>();
+
+    private FeaturesService featuresService;
+    private FeaturesSynchronizer synchronizer;
+
+    @Before
+    public void setUp() throws Exception {
+        Hashtable<String, Object> groups = new Hashtable<String, Object>();
+        groups.put("default.feature.whitelist.inbound", "*");
+        groups.put("default.feature.blacklist.inbound", "blocked");
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andReturn(groups).anyTimes();
+        Configuration node = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(node.getProperties()).andReturn(null).anyTimes();
+        ConfigurationAdmin configurationAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.GROUP, null)).andReturn(configuration).anyTimes();
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.NODE, null)).andReturn(node).anyTimes();
+
+        ClusterManager clusterManager = EasyMock.createMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getMap(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + "default")).andReturn((Map) clusterRepositories).anyTimes();
+        EasyMock.expect(clusterManager.getMap(Constants.FEATURES_MAP + Configurations.SEPARATOR + "default")).andReturn((Map) clusterFeatures).anyTimes();
+        EasyMock.expect(clusterManager.getMap("org.apache.karaf.cellar.synchronizers")).andReturn((Map) synchronizers).anyTimes();
+        EasyMock.replay(configuration, node, configurationAdmin, clusterManager);
+
+        featuresService = EasyMock.createMock(FeaturesService.class);
+
+        synchronizer = new FeaturesSynchronizer();
+        synchronizer.setConfigurationAdmin(configurationAdmin);
+        synchronizer.setClusterManager(clusterManager);
+        synchronizer.setFeaturesService(featuresService);
+    }
+
+    @Test
+    public void testGetRequirement() {
+        Assert.assertEquals("feature:foo", FeaturesSynchronizer.getRequirement("foo", null));
+        Assert.assertEquals("feature:foo", FeaturesSynchronizer.getRequirement("foo", ""));
+        Assert.assertEquals("feature:foo", FeaturesSynchronizer.getRequirement("foo", "0.0.0"));
+        Assert.assertEquals("feature:foo/[1.2.0,1.2.0]", FeaturesSynchronizer.getRequirement("foo", "1.2.0"));
+    }
+
+    @Test
+    public void testRemoveRequirement() {
+        Set<String> requirements = new LinkedHashSet<String>(Arrays.asList(
+                "feature:foo/[1.0.0,1.0.0]", "feature:foo/[2.0.0,2.0.0]", "feature:foobar", "bundle:foo"));
+        FeaturesSynchronizer.removeRequirement(requirements, "foo", "1.0.0");
+        Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("feature:foo/[2.0.0,2.0.0]", "feature:foobar", "bundle:foo")), requirements);
+
+        // a requirement without version matches any version
+        requirements = new LinkedHashSet<String>(Arrays.asList("feature:foo", "feature:bar/[1,2)"));
+        FeaturesSynchronizer.removeRequirement(requirements, "foo", "3.0.0");
+        FeaturesSynchronizer.removeRequirement(requirements, "bar", "1.5.0");
+        Assert.assertTrue(requirements.isEmpty());
+
+        // a version which is not an OSGi version is compared as is
+        requirements = new LinkedHashSet<String>(Arrays.asList("feature:foo/snapshot"));
+        FeaturesSynchronizer.removeRequirement(requirements, "foo", "other");
+        Assert.assertEquals(1, requirements.size());
+        FeaturesSynchronizer.removeRequirement(requirements, "foo", "snapshot");
+        Assert.assertTrue(requirements.isEmpty());
+    }
+
+    @Test
+    public void testPullInstallsAndUninstalls() throws Exception {
+        synchronizers.put(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + "default", true);
+        synchronizers.put(Constants.FEATURES_MAP + Configurations.SEPARATOR + "default", true);
+        clusterRepositories.put("mvn:org/foo/features", "foo");
+        clusterFeatures.put("foo/1.0.0", state("foo", "1.0.0", true));
+        clusterFeatures.put("bar/1.0.0", state("bar", "1.0.0", false));
+        clusterFeatures.put("blocked/1.0.0", state("blocked", "1.0.0", true));
+        clusterFeatures.put("local/1.0.0", state("local", "1.0.0", true));
+
+        Map<String, Set<String>> requirements = new HashMap<String, Set<String>>();
+        requirements.put(FeaturesService.ROOT_REGION, new LinkedHashSet<String>(Arrays.asList("feature:bar/[1.0.0,1.0.0]", "feature:local/[1.0.0,1.0.0]")));
+        EasyMock.expect(featuresService.listRequiredRepositories()).andReturn(new Repository[]{repository("mvn:org/bar/features")});
+        EasyMock.expect(featuresService.listInstalledFeatures()).andReturn(new Feature[]{feature("bar", "1.0.0"), feature("local", "1.0.0")});
+        EasyMock.expect(featuresService.listRequirements()).andReturn(requirements);
+        Capture<Set<URI>> repositories = EasyMock.newCapture();
+        Capture<Map<String, Set<String>>> desired = EasyMock.newCapture();
+        featuresService.updateReposAndRequirements(EasyMock.capture(repositories), EasyMock.capture(desired), EasyMock.eq(EnumSet.noneOf(FeaturesService.Option.class)));
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(featuresService);
+
+        synchronizer.pull(group);
+
+        EasyMock.verify(featuresService);
+        // the local repository not present on the cluster is removed
+        Assert.assertEquals(Collections.singleton(new URI("mvn:org/foo/features")), repositories.getValue());
+        Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("feature:local/[1.0.0,1.0.0]", "feature:foo/[1.0.0,1.0.0]")),
+                desired.getValue().get(FeaturesService.ROOT_REGION));
+    }
+
+    @Test
+    public void testPullKeepsLocalStateOnFirstNode() throws Exception {
+        clusterRepositories.put("mvn:org/foo/features", "foo");
+        clusterFeatures.put("bar/1.0.0", state("bar", "1.0.0", false));
+
+        Map<String, Set<String>> requirements = new HashMap<String, Set<String>>();
+        requirements.put(FeaturesService.ROOT_REGION, new LinkedHashSet<String>(Arrays.asList("feature:bar/[1.0.0,1.0.0]")));
+        EasyMock.expect(featuresService.listRequiredRepositories()).andReturn(new Repository[]{repository("mvn:org/bar/features")});
+        EasyMock.expect(featuresService.listInstalledFeatures()).andReturn(new Feature[]{feature("bar", "1.0.0")});
+        EasyMock.expect(featuresService.listRequirements()).andReturn(requirements);
+        Capture<Set<URI>> repositories = EasyMock.newCapture();
+        Capture<Map<String, Set<String>>> desired = EasyMock.newCapture();
+        featuresService.updateReposAndRequirements(EasyMock.capture(repositories), EasyMock.capture(desired), EasyMock.eq(EnumSet.noneOf(FeaturesService.Option.class)));
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(featuresService);
+
+        synchronizer.pull(group);
+
+        EasyMock.verify(featuresService);
+        Assert.assertEquals(new LinkedHashSet<URI>(Arrays.asList(new URI("mvn:org/foo/features"), new URI("mvn:org/bar/features"))), repositories.getValue());
+        Assert.assertEquals(Collections.singleton("feature:bar/[1.0.0,1.0.0]"), desired.getValue().get(FeaturesService.ROOT_REGION));
+    }
+
+    @Test
+    public void testPullWithoutChange() throws Exception {
+        synchronizers.put(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + "default", true);
+        clusterRepositories.put("mvn:org/foo/features", "foo");
+        clusterFeatures.put("foo/1.0.0", state("foo", "1.0.0", true));
+
+        EasyMock.expect(featuresService.listRequiredRepositories()).andReturn(new Repository[]{repository("mvn:org/foo/features")});
+        EasyMock.expect(featuresService.listInstalledFeatures()).andReturn(new Feature[]{feature("foo", "1.0.0")});
+        EasyMock.expect(featuresService.listRequirements()).andReturn(new HashMap<String, Set<String>>());
+        EasyMock.replay(featuresService);
+
+        synchronizer.pull(group);
+
+        // no update of the features service
+        EasyMock.verify(featuresService);
+    }
+
+    @Test
+    public void testPullFallsBackOneByOne() throws Exception {
+        synchronizers.put(Constants.REPOSITORIES_MAP + Configurations.SEPARATOR + "default", true);
+        clusterRepositories.put("mvn:org/foo/features", "foo");
+        clusterFeatures.put("foo/1.0.0", state("foo", "1.0.0", true));
+
+        EasyMock.expect(featuresService.listRequiredRepositories()).andReturn(new Repository[0]);
+        EasyMock.expect(featuresService.listInstalledFeatures()).andReturn(new Feature[0]);
+        EasyMock.expect(featuresService.listRequirements()).andReturn(new HashMap<String, Set<String>>());
+        featuresService.updateReposAndRequirements(EasyMock.<Set<URI>>anyObject(), EasyMock.<Map<String, Set<String>>>anyObject(), EasyMock.<EnumSet<FeaturesService.Option>>anyObject());
+        EasyMock.expectLastCall().andThrow(new Exception("resolution failed"));
+        featuresService.addRepository(new URI("mvn:org/foo/features"));
+        featuresService.installFeature("foo", "1.0.0");
+        EasyMock.replay(featuresService);
+
+        synchronizer.pull(group);
+
+        EasyMock.verify(featuresService);
+    }
+
+    private static FeatureState state(String name, String version, boolean installed) {
+        FeatureState state = new FeatureState();
+        state.setName(name);
+        state.setVersion(version);
+        state.setInstalled(installed);
+        return state;
+    }
+
+    private static Feature feature(String name, String version) {
+        return new org.apache.karaf.features.internal.model.Feature(name, version);
+    }
+
+    private static Repository repository(String uri) throws Exception {
+        Repository repository = EasyMock.createMock(Repository.class);
+        EasyMock.expect(repository.getURI()).andReturn(new URI(uri)).anyTimes();
+        EasyMock.replay(repository);
+        return repository;
+    }
+
+}
@@ -14,28 +14,39 @@
 package org.apache.karaf.cellar.hazelcast;
 
 import com.hazelcast.core.Cluster;
-import com.hazelcast.core.IdGenerator;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryListener;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.MapEvent;
 import com.hazelcast.core.Member;
+import com.hazelcast.query.PagingPredicate;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+import com.hazelcast.query.TruePredicate;
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.ClusterMapListener;
 import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.MapQuery;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.utils.CombinedClassLoader;
 import org.osgi.service.cm.ConfigurationAdmin;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Cluster manager implementation powered by Hazelcast.
  */
 public class HazelcastClusterManager extends HazelcastInstanceAware implements ClusterManager {
 
-    private static final String GENERATOR_ID = "org.apache.karaf.cellar.idgen";
-
-    private IdGenerator idgenerator;
+    private final AtomicLong idCounter = new AtomicLong();
 
     private ConfigurationAdmin configurationAdmin;
     private CombinedClassLoader combinedClassLoader;
@@ -51,6 +62,144 @@ public class HazelcastClusterManager extends HazelcastInstanceAware implements C
         return instance.getMap(mapName);
     }
 
+    /**
+     * Register a listener on a Map in Hazelcast. The events don't include the values, so they are not deserialized
+     * by the Hazelcast event threads.
+     *
+     * @param mapName the Map name.
+     * @param listener the listener.
+     * @return the listener registration ID.
+     */
+    @Override
+    public String addMapListener(String mapName, final ClusterMapListener listener) {
+        return instance.getMap(mapName).addEntryListener(new EntryListener<Object, Object>() {
+            @Override
+            public void entryAdded(EntryEvent<Object, Object> event) {
+                listener.entryAdded(event.getKey());
+            }
+
+            @Override
+            public void entryUpdated(EntryEvent<Object, Object> event) {
+                listener.entryUpdated(event.getKey());
+            }
+
+            @Override
+            public void entryRemoved(EntryEvent<Object, Object> event) {
+                listener.entryRemoved(event.getKey());
+            }
+
+            @Override
+            public void entryEvicted(EntryEvent<Object, Object> event) {
+                listener.entryRemoved(event.getKey());
+            }
+
+            @Override
+            public void mapCleared(MapEvent event) {
+                listener.mapCleared();
+            }
+
+            @Override
+            public void mapEvicted(MapEvent event) {
+                listener.mapCleared();
+            }
+        }, false);
+    }
+
+    /**
+     * Unregister a listener of a Map in Hazelcast.
+     *
+     * @param mapName the Map name.
+     * @param registrationId the listener registration ID.
+     */
+    @Override
+    public void removeMapListener(String mapName, String registrationId) {
+        instance.getMap(mapName).removeEntryListener(registrationId);
+    }
+
+    /**
+     * Query a Map in Hazelcast. The query is translated to Hazelcast predicates, evaluated by the members owning the
+     * entries, and paged with a {@link PagingPredicate}.
+     *
+     * @param mapName the Map name.
+     * @param query the query.
+     * @return the matching entries.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> List<Map.Entry<K, V>> queryMap(String mapName, MapQuery<K, V> query) {
+        IMap<K, V> map = instance.getMap(mapName);
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        for (MapQuery.Criterion criterion : query.getCriteria()) {
+            predicates.add(toPredicate(criterion));
+        }
+        Predicate predicate;
+        if (predicates.isEmpty()) {
+            predicate = TruePredicate.INSTANCE;
+        } else if (predicates.size() == 1) {
+            predicate = predicates.get(0);
+        } else {
+            predicate = Predicates.and(predicates.toArray(new Predicate[predicates.size()]));
+        }
+        Collection<Map.Entry<K, V>> entries;
+        if (query.getPageSize() > 0) {
+            // the paging predicate is kept in the query, so the next pages start from the anchors of the previous ones
+            PagingPredicate<K, V> pagingPredicate;
+            if (query.getCursor() instanceof PagingPredicate) {
+                pagingPredicate = (PagingPredicate<K, V>) query.getCursor();
+            } else {
+                pagingPredicate = new PagingPredicate<K, V>(predicate, query.getComparator(), query.getPageSize());
+                query.setCursor(pagingPredicate);
+            }
+            pagingPredicate.setPage(query.getPage());
+            entries = map.entrySet(pagingPredicate);
+        } else {
+            entries = map.entrySet(predicate);
+        }
+        // copy the entries to deserialize them with the caller class loader
+        List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>(entries.size());
+        for (Map.Entry<K, V> entry : entries) {
+            result.add(new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), entry.getValue()));
+        }
+        if (query.getPageSize() <= 0 && query.getComparator() != null) {
+            Collections.sort(result, query.getComparator());
+        }
+        return result;
+    }
+
+    private Predicate toPredicate(MapQuery.Criterion criterion) {
+        Comparable[] values = criterion.getValues();
+        switch (criterion.getOperator()) {
+            case EQUAL:
+                return Predicates.equal(criterion.getAttribute(), values[0]);
+            case IN:
+                return Predicates.in(criterion.getAttribute(), values);
+            case BETWEEN:
+                if (values[0] == null) {
+                    return Predicates.lessEqual(criterion.getAttribute(), values[1]);
+                }
+                if (values[1] == null) {
+                    return Predicates.greaterEqual(criterion.getAttribute(), values[0]);
+                }
+                return Predicates.between(criterion.getAttribute(), values[0], values[1]);
+            case LIKE:
+                return Predicates.like(criterion.getAttribute(), (String) values[0]);
+            default:
+                throw new IllegalArgumentException("Unsupported query criterion " + criterion);
+        }
+    }
+
+    /**
+     * Index an attribute of a Map in Hazelcast. Adding an existing index has no effect.
+     *
+     * @param mapName the Map name.
+     * @param attribute the attribute name.
+     * @param ordered true for a sorted index (used by range queries), false for a hash index.
+     */
+    @Override
+    public void addMapIndex(String mapName, String attribute, boolean ordered) {
+        instance.getMap(mapName).addIndex(attribute, ordered);
+    }
+
     /**
      * Get a List in Hazelcast.
      *
@@ -199,16 +348,15 @@ public class HazelcastClusterManager extends HazelcastInstanceAware implements C
     }
 
     /**
-     * Generate an unique ID.
+     * Generate an unique ID, composed of the local member UUID and a local counter.
+     * The ID is generated without lock and without cluster round-trip.
      *
      * @return the generated unique ID.
      */
     @Override
-    public synchronized String generateId() {
-        if (idgenerator == null) {
-            idgenerator = instance.getIdGenerator(GENERATOR_ID);
-        }
-        return String.valueOf(idgenerator.newId());
+    public String generateId() {
+        String uuid = instance.getCluster().getLocalMember().getUuid();
+        return uuid + "-" + idCounter.incrementAndGet();
     }
 
     @Override
@@ -16,20 +16,36 @@ package org.apache.karaf.cellar.hazelcast;
 import com.hazelcast.core.IQueue;
 import com.hazelcast.core.ITopic;
 import org.apache.karaf.cellar.core.Dispatcher;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventConsumer;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.core.event.EventTransportFactory;
 import org.apache.karaf.cellar.core.utils.CombinedClassLoader;
-import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.util.concurrent.ExecutorService;
 
 /**
  * An event transport factory powered by Hazelcast.
+ * The queue consumers share a pool of threads, of {@code org.apache.karaf.cellar.hazelcast.QueueConsumer.threads}
+ * threads at most.
  */
 public class HazelcastEventTransportFactory extends HazelcastInstanceAware implements EventTransportFactory {
 
     private Dispatcher dispatcher;
     private CombinedClassLoader combinedClassLoader;
-    private ConfigurationAdmin configurationAdmin;
+    private SwitchRegistry switchRegistry;
+    private ExecutorService workPool;
+
+    public void init() {
+        int threads = Math.max(1, Integer.getInteger(QueueConsumer.class.getName() + ".threads", QueueConsumer.DEFAULT_THREADS));
+        workPool = QueueConsumer.createWorkPool(threads);
+    }
+
+    public void destroy() {
+        if (workPool != null) {
+            workPool.shutdown();
+        }
+    }
 
     @Override
     public EventProducer getEventProducer(String name, Boolean pubsub) {
@@ -39,7 +55,7 @@ public class HazelcastEventTransportFactory extends HazelcastInstanceAware imple
             producer.setInstance(instance);
             producer.setTopic(topic);
             producer.setNode(getNode());
-            producer.setConfigurationAdmin(configurationAdmin);
+            producer.setSwitchRegistry(switchRegistry);
             producer.init();
             return producer;
         } else {
@@ -47,7 +63,7 @@ public class HazelcastEventTransportFactory extends HazelcastInstanceAware imple
             QueueProducer producer = new QueueProducer();
             producer.setQueue(queue);
             producer.setNode(getNode());
-            producer.setConfigurationAdmin(configurationAdmin);
+            producer.setSwitchRegistry(switchRegistry);
             producer.init();
             return producer;
         }
@@ -62,7 +78,7 @@ public class HazelcastEventTransportFactory extends HazelcastInstanceAware imple
             consumer.setInstance(instance);
             consumer.setNode(getNode());
             consumer.setDispatcher(dispatcher);
-            consumer.setConfigurationAdmin(configurationAdmin);
+            consumer.setSwitchRegistry(switchRegistry);
             consumer.init();
             return consumer;
         } else {
@@ -72,7 +88,8 @@ public class HazelcastEventTransportFactory extends HazelcastInstanceAware imple
             consumer.setQueue(queue);
             consumer.setNode(getNode());
             consumer.setDispatcher(dispatcher);
-            consumer.setConfigurationAdmin(configurationAdmin);
+            consumer.setSwitchRegistry(switchRegistry);
+            consumer.setWorkPool(workPool);
             consumer.init();
             return consumer;
         }
@@ -94,12 +111,12 @@ public class HazelcastEventTransportFactory extends HazelcastInstanceAware imple
         this.combinedClassLoader = combinedClassLoader;
     }
 
-    public ConfigurationAdmin getConfigurationAdmin() {
-        return configurationAdmin;
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
     }
 
-    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
-        this.configurationAdmin = configurationAdmin;
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
     }
 
 }
@@ -14,15 +14,21 @@
 package org.apache.karaf.cellar.hazelcast;
 
 import com.hazelcast.core.Member;
+import org.apache.karaf.cellar.core.CompactSerializable;
 import org.apache.karaf.cellar.core.Node;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 
 /**
  * Cluster node powered by Hazelcast.
  */
-public class HazelcastNode implements Node {
+public class HazelcastNode implements Node, CompactSerializable {
+
+    private static final long serialVersionUID = 3844131889706537882L;
 
     private String id;
     private String host;
@@ -38,6 +44,10 @@ public class HazelcastNode implements Node {
         this.alias = member.getStringAttribute("alias");
     }
 
+    protected HazelcastNode() {
+        // used by the compact serialization
+    }
+
     static String getHostString(InetSocketAddress socketAddress) {
         InetAddress address = socketAddress.getAddress();
         return (address != null && address.toString().startsWith("/")) ? address.getHostAddress() : socketAddress.getHostName();
@@ -75,6 +85,20 @@ public class HazelcastNode implements Node {
         this.alias = alias;
     }
 
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeObject(id);
+        out.writeObject(host);
+        out.writeInt(port);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        id = (String) in.readObject();
+        host = (String) in.readObject();
+        port = in.readInt();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -17,42 +17,70 @@ import com.hazelcast.core.*;
 import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Dispatcher;
 import org.apache.karaf.cellar.core.Node;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.Event;
 import org.apache.karaf.cellar.core.event.EventConsumer;
+import org.apache.karaf.cellar.core.event.EventHandlerRegistryDispatcher;
 import org.apache.karaf.cellar.core.utils.CombinedClassLoader;
-import org.osgi.service.cm.Configuration;
-import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Consumes cluster events from the Hazelcast {@code IQueue} and calls the {@code EventDispatcher}.
+ * A single thread takes the events from the queue, in batches, and hands them to a pool of threads which dispatch
+ * them. The pool is shared by the queue consumers created by the {@link HazelcastEventTransportFactory}, a consumer
+ * created without pool has its own. The events taken from the queue and not yet handled are limited to twice the
+ * number of threads, leaving the other events to the other nodes consuming the same queue.
+ * The number of threads and the maximum batch size are defined by the
+ * {@code org.apache.karaf.cellar.hazelcast.QueueConsumer.threads} and
+ * {@code org.apache.karaf.cellar.hazelcast.QueueConsumer.batchSize} system properties, the number of threads can be
+ * limited per queue with the {@code org.apache.karaf.cellar.hazelcast.QueueConsumer.threads.<queue name>} system
+ * property.
  */
-public class QueueConsumer<E extends Event> implements EventConsumer<E>, ItemListener<E>, Runnable {
+public class QueueConsumer<E extends Event> implements EventConsumer<E>, Runnable {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(QueueConsumer.class);
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.queue.consumer";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Time after which an idle thread of the work pool stops, in seconds.
+     */
+    private static final long KEEP_ALIVE = 60;
+
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ExecutorService workPool;
+    private boolean ownWorkPool;
+    private Semaphore permits;
+
+    private volatile Boolean isConsuming = Boolean.TRUE;
 
-    private Boolean isConsuming = Boolean.TRUE;
+    private int threads = DEFAULT_THREADS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
 
-    private String registrationId;
     private HazelcastInstance instance;
     private IQueue queue;
     private Dispatcher dispatcher;
     private Node node;
     private CombinedClassLoader combinedClassLoader;
-    private ConfigurationAdmin configurationAdmin;
+    private SwitchRegistry switchRegistry;
 
     public QueueConsumer() {
         // nothing to do
@@ -63,56 +91,141 @@ public class QueueConsumer<E extends Event> implements EventConsumer<E>, ItemLis
     }
 
     public void init() {
-        if (queue != null) {
-            registrationId = queue.addItemListener(this, true);
-        } else {
+        if (queue == null) {
             queue = instance.getQueue(Constants.QUEUE);
-            registrationId = queue.addItemListener(this, true);
+        }
+        String prefix = QueueConsumer.class.getName();
+        threads = Integer.getInteger(prefix + ".threads." + queue.getName(), Integer.getInteger(prefix + ".threads", threads));
+        batchSize = Integer.getInteger(prefix + ".batchSize", batchSize);
+        threads = Math.max(1, threads);
+        batchSize = Math.max(1, batchSize);
+        permits = new Semaphore(threads * 2);
+        if (workPool == null) {
+            workPool = createWorkPool(threads);
+            ownWorkPool = true;
         }
         executorService.execute(this);
     }
 
     public void destroy() {
         isConsuming = false;
-        if (queue != null) {
-            queue.removeItemListener(registrationId);
-        }
         executorService.shutdown();
+        if (ownWorkPool) {
+            workPool.shutdown();
+        }
+    }
+
+    /**
+     * Create a pool of threads dispatching the events taken from the queues. The idle threads stop after a while.
+     * The pool queue is not bounded, the consumers bound the events they hand to the pool.
+     *
+     * @param threads the maximum number of threads.
+     * @return the work pool.
+     */
+    public static ExecutorService createWorkPool(int threads) {
+        ThreadPoolExecutor workPool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Cellar queue consumer " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        workPool.allowCoreThreadTimeOut(true);
+        return workPool;
     }
 
     @Override
     public void run() {
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-        E e;
-        while (isConsuming) {
-            if (combinedClassLoader != null) {
-                Thread.currentThread().setContextClassLoader(combinedClassLoader);
-            } else Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
-            e = null;
+        List<E> batch = new ArrayList<E>(batchSize);
+        boolean active = true;
+        while (isConsuming && active) {
+            // the events are deserialized by the polling thread
+            setContextClassLoader();
+            int taken = 0;
             try {
-                e = getQueue().poll(10, TimeUnit.SECONDS);
+                taken = acquire();
+                E e = getQueue().poll(10, TimeUnit.SECONDS);
+                if (e != null) {
+                    batch.add(e);
+                    if (taken > 1) {
+                        getQueue().drainTo(batch, taken - 1);
+                    }
+                }
             } catch (InterruptedException e1) {
                 LOGGER.warn("CELLAR HAZELCAST: consume task interrupted");
+            } catch (HazelcastInstanceNotActiveException hex) {
+                LOGGER.debug("CELLAR HAZELCAST: instance not active, stop consuming", hex);
+                active = false;
             } catch (Exception e2) {
                 // catch everything from Hazelcast to prevent the death of Queue Consumer task
                 LOGGER.warn("CELLAR HAZELCAST: consumer task failed to poll the queue", e2);
             }
-            
-            try {
-                if (e != null) {
-                    consume(e);
-                }
-            } catch (HazelcastInstanceNotActiveException hex) {
-                LOGGER.debug("CELLAR HAZELCAST: instance not active, stop consuming", hex);
-                break;
-            } catch (Exception e1) {
-                LOGGER.error("CELLAR HAZELCAST: failed to consume from queue", e1);
+
+            // give back the permits of the events not found in the queue
+            permits.release(taken - batch.size());
+            for (E e : batch) {
+                submit(e);
             }
+            batch.clear();
         }
-        
+
         Thread.currentThread().setContextClassLoader(originalClassLoader);
     }
 
+    private void setContextClassLoader() {
+        if (combinedClassLoader != null) {
+            Thread.currentThread().setContextClassLoader(combinedClassLoader);
+        } else Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+    }
+
+    /**
+     * Wait for at least one permit, and take the available permits up to the batch size.
+     *
+     * @return the number of permits taken.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private int acquire() throws InterruptedException {
+        permits.acquire();
+        int taken = 1;
+        while (taken < batchSize && permits.tryAcquire()) {
+            taken++;
+        }
+        return taken;
+    }
+
+    /**
+     * Hand an event taken from the queue to the work pool.
+     *
+     * @param event the cluster event.
+     */
+    private void submit(final E event) {
+        try {
+            workPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+                    try {
+                        setContextClassLoader();
+                        consume(event);
+                    } catch (Exception e) {
+                        LOGGER.error("CELLAR HAZELCAST: failed to consume from queue", e);
+                    } finally {
+                        Thread.currentThread().setContextClassLoader(originalClassLoader);
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            LOGGER.warn("CELLAR HAZELCAST: consumer is stopped, cluster event {} not consumed", event.getClass().getName());
+        }
+    }
+
     /**
      * Consume a cluster event.
      *
@@ -121,9 +234,14 @@ public class QueueConsumer<E extends Event> implements EventConsumer<E>, ItemLis
     @Override
     public void consume(E event) {
         if (event != null && (this.getSwitch().getStatus().equals(SwitchStatus.ON) || event.getForce())) {
-            dispatcher.dispatch(event);
+            if (dispatcher instanceof EventHandlerRegistryDispatcher) {
+                // the events are already handled by the consumer pool, and don't need to be ordered
+                ((EventHandlerRegistryDispatcher) dispatcher).dispatchNow(event);
+            } else {
+                dispatcher.dispatch(event);
+            }
         } else {
-            if (eventSwitch.getStatus().equals(SwitchStatus.OFF)) {
+            if (this.getSwitch().getStatus().equals(SwitchStatus.OFF)) {
                 LOGGER.debug("CELLAR HAZELCAST: {} switch is OFF, cluster event is not consumed", SWITCH_ID);
             }
         }
@@ -145,16 +263,6 @@ public class QueueConsumer<E extends Event> implements EventConsumer<E>, ItemLis
         return isConsuming;
     }
 
-    @Override
-    public void itemAdded(ItemEvent<E> event) {
-        // nothing to do
-    }
-
-    @Override
-    public void itemRemoved(ItemEvent<E> event) {
-        // nothing to do
-    }
-
     public Dispatcher getDispatcher() {
         return dispatcher;
     }
@@ -179,23 +287,33 @@ public class QueueConsumer<E extends Event> implements EventConsumer<E>, ItemLis
         this.queue = queue;
     }
 
+    public ExecutorService getWorkPool() {
+        return workPool;
+    }
+
+    public void setWorkPool(ExecutorService workPool) {
+        this.workPool = workPool;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.CONSUMER));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getSwitch(SWITCH_ID, Configurations.CONSUMER);
     }
 
     public Node getNode() {
@@ -206,12 +324,12 @@ public class QueueConsumer<E extends Event> implements EventConsumer<E>, ItemLis
         this.node = node;
     }
 
-    public ConfigurationAdmin getConfigurationAdmin() {
-        return configurationAdmin;
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
     }
 
-    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
-        this.configurationAdmin = configurationAdmin;
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
     }
 
 }
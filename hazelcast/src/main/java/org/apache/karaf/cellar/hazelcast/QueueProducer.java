@@ -33,13 +33,11 @@ import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.command.Command;
 import org.apache.karaf.cellar.core.command.Result;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.Event;
 import org.apache.karaf.cellar.core.event.EventProducer;
-import org.osgi.service.cm.Configuration;
-import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,12 +50,10 @@ public class QueueProducer<E extends Event> implements EventProducer<E> {
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.queue.producer";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     private HazelcastInstance instance;
     private IQueue<E> queue;
     private Node node;
-    private ConfigurationAdmin configurationAdmin;
+    private SwitchRegistry switchRegistry;
 
     public void init() {
         if (queue == null) {
@@ -80,7 +76,7 @@ public class QueueProducer<E extends Event> implements EventProducer<E> {
                 LOGGER.error("CELLAR HAZELCAST: queue producer interrupted", e);
             }
         } else {
-            if (eventSwitch.getStatus().equals(SwitchStatus.OFF)) {
+            if (this.getSwitch().getStatus().equals(SwitchStatus.OFF)) {
                 LOGGER.debug("CELLAR HAZELCAST: {} switch is OFF, don't produce the cluster event", SWITCH_ID);
             }
         }
@@ -88,21 +84,7 @@ public class QueueProducer<E extends Event> implements EventProducer<E> {
 
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.PRODUCER));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getSwitch(SWITCH_ID, Configurations.PRODUCER);
     }
 
     public IQueue<E> getQueue() {
@@ -129,12 +111,12 @@ public class QueueProducer<E extends Event> implements EventProducer<E> {
         this.node = node;
     }
 
-    public ConfigurationAdmin getConfigurationAdmin() {
-        return this.configurationAdmin;
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
     }
 
-    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
-        this.configurationAdmin = configurationAdmin;
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
     }
 
 }
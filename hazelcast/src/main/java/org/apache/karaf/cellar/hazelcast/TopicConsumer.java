@@ -20,18 +20,17 @@ import com.hazelcast.core.MessageListener;
 import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Dispatcher;
 import org.apache.karaf.cellar.core.Node;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.Event;
 import org.apache.karaf.cellar.core.event.EventConsumer;
-import org.osgi.service.cm.Configuration;
-import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Consumes messages from the Hazelcast {@code ITopic} and calls the {@code EventDispatcher}.
+ * The consumer also listens on the topic dedicated to the local node, where the events with a destination are published.
  */
 public class TopicConsumer<E extends Event> implements EventConsumer<E>, MessageListener<E> {
 
@@ -39,14 +38,14 @@ public class TopicConsumer<E extends Event> implements EventConsumer<E>, Message
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.topic.consumer";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     private String registrationId;
+    private String nodeRegistrationId;
     private HazelcastInstance instance;
     private ITopic topic;
+    private ITopic nodeTopic;
     private Dispatcher dispatcher;
     private Node node;
-    private ConfigurationAdmin configurationAdmin;
+    private SwitchRegistry switchRegistry;
 
     private boolean isConsuming;
 
@@ -67,7 +66,7 @@ public class TopicConsumer<E extends Event> implements EventConsumer<E>, Message
         if ((event.getDestination() == null || event.getDestination().contains(node)) && (this.getSwitch().getStatus().equals(SwitchStatus.ON) || event.getForce())) {
             dispatcher.dispatch(event);
         } else {
-            if (eventSwitch.getStatus().equals(SwitchStatus.OFF)) {
+            if (this.getSwitch().getStatus().equals(SwitchStatus.OFF)) {
                 LOGGER.debug("CELLAR HAZELCAST: {} switch is OFF, cluster event is not consumed", SWITCH_ID);
             }
         }
@@ -82,7 +81,12 @@ public class TopicConsumer<E extends Event> implements EventConsumer<E>, Message
             topic = instance.getTopic(Constants.TOPIC);
             registrationId = topic.addMessageListener(this);
         }
-
+        if (nodeTopic == null && node != null) {
+            nodeTopic = instance.getTopic(topic.getName() + Constants.SEPARATOR + Constants.NODE + Constants.SEPARATOR + node.getId());
+        }
+        if (nodeTopic != null) {
+            nodeRegistrationId = nodeTopic.addMessageListener(this);
+        }
     }
 
     @Override
@@ -91,6 +95,9 @@ public class TopicConsumer<E extends Event> implements EventConsumer<E>, Message
         if (topic != null) {
             topic.removeMessageListener(registrationId);
         }
+        if (nodeTopic != null) {
+            nodeTopic.removeMessageListener(nodeRegistrationId);
+        }
     }
 
     @Override
@@ -127,23 +134,17 @@ public class TopicConsumer<E extends Event> implements EventConsumer<E>, Message
         this.topic = topic;
     }
 
+    public ITopic getNodeTopic() {
+        return nodeTopic;
+    }
+
+    public void setNodeTopic(ITopic nodeTopic) {
+        this.nodeTopic = nodeTopic;
+    }
+
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.CONSUMER));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getSwitch(SWITCH_ID, Configurations.CONSUMER);
     }
 
     public Node getNode() {
@@ -154,12 +155,12 @@ public class TopicConsumer<E extends Event> implements EventConsumer<E>, Message
         this.node = node;
     }
 
-    public ConfigurationAdmin getConfigurationAdmin() {
-        return configurationAdmin;
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
     }
 
-    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
-        this.configurationAdmin = configurationAdmin;
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
     }
 
 }
@@ -15,44 +15,58 @@ package org.apache.karaf.cellar.hazelcast;
 
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.ITopic;
+import com.hazelcast.core.MemberAttributeEvent;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
 import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.command.Command;
 import org.apache.karaf.cellar.core.command.Result;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.Event;
 import org.apache.karaf.cellar.core.event.EventProducer;
-import org.osgi.service.cm.Configuration;
-import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Produces cluster {@code Event}s into the distributed {@code ITopic}.
+ * The events with a single destination node (for instance the command {@code Result}s) are published on the node topic
+ * of this node only, instead of being broadcasted to all nodes. The events with several destinations are published once
+ * on the cluster topic, the consumers ignore the events not targeting their node.
  */
-public class TopicProducer<E extends Event> implements EventProducer<E> {
+public class TopicProducer<E extends Event> implements EventProducer<E>, MembershipListener {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(TopicProducer.class);
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.topic.producer";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     private HazelcastInstance instance;
     private ITopic topic;
     private Node node;
-    private ConfigurationAdmin configurationAdmin;
+    private SwitchRegistry switchRegistry;
+    private final ConcurrentMap<String, ITopic> nodeTopics = new ConcurrentHashMap<String, ITopic>();
+    private String membershipRegistrationId;
 
     public void init() {
         if (topic == null) {
             topic = instance.getTopic(Constants.TOPIC);
         }
+        membershipRegistrationId = instance.getCluster().addMembershipListener(this);
     }
 
     public void destroy() {
-        // nothing to do
+        if (membershipRegistrationId != null) {
+            instance.getCluster().removeMembershipListener(membershipRegistrationId);
+            membershipRegistrationId = null;
+        }
+        nodeTopics.clear();
     }
 
     @Override
@@ -60,31 +74,59 @@ public class TopicProducer<E extends Event> implements EventProducer<E> {
         if (this.getSwitch().getStatus().equals(SwitchStatus.ON) || event.getForce() || event instanceof Result) {
             if (event instanceof Result || event instanceof Command)
                 event.setSourceNode(node);
-            topic.publish(event);
+            Set<Node> destination = event.getDestination();
+            if (destination != null && destination.size() == 1) {
+                getNodeTopic(destination.iterator().next()).publish(event);
+            } else {
+                topic.publish(event);
+            }
         } else {
-            if (eventSwitch.getStatus().equals(SwitchStatus.OFF)) {
+            if (this.getSwitch().getStatus().equals(SwitchStatus.OFF)) {
                 LOGGER.debug("CELLAR HAZELCAST: {} switch is OFF, don't produce the cluster event", SWITCH_ID);
             }
         }
     }
 
+    /**
+     * Get the topic consumed only by the given node.
+     *
+     * @param destination the destination node.
+     * @return the node topic.
+     */
+    private ITopic getNodeTopic(Node destination) {
+        ITopic nodeTopic = nodeTopics.get(destination.getId());
+        if (nodeTopic == null) {
+            nodeTopic = instance.getTopic(topic.getName() + Constants.SEPARATOR + Constants.NODE + Constants.SEPARATOR + destination.getId());
+            nodeTopics.putIfAbsent(destination.getId(), nodeTopic);
+        }
+        return nodeTopic;
+    }
+
+    /**
+     * Forget the node topic of a node leaving the cluster.
+     */
+    @Override
+    public void memberRemoved(MembershipEvent membershipEvent) {
+        nodeTopics.remove(new HazelcastNode(membershipEvent.getMember()).getId());
+    }
+
+    @Override
+    public void memberAdded(MembershipEvent membershipEvent) {
+        // nothing to do
+    }
+
+    @Override
+    public void memberAttributeChanged(MemberAttributeEvent memberAttributeEvent) {
+        // nothing to do
+    }
+
+    Map<String, ITopic> getNodeTopics() {
+        return nodeTopics;
+    }
+
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.PRODUCER));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getSwitch(SWITCH_ID, Configurations.PRODUCER);
     }
 
     public ITopic<? extends Event> getTopic() {
@@ -111,12 +153,12 @@ public class TopicProducer<E extends Event> implements EventProducer<E> {
         this.node = node;
     }
 
-    public ConfigurationAdmin getConfigurationAdmin() {
-        return configurationAdmin;
+    public SwitchRegistry getSwitchRegistry() {
+        return switchRegistry;
     }
 
-    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
-        this.configurationAdmin = configurationAdmin;
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
     }
 
 }
@@ -17,9 +17,11 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
+import com.hazelcast.config.Config;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import org.apache.karaf.cellar.core.utils.CombinedClassLoader;
+import org.apache.karaf.cellar.hazelcast.serialization.CompactSerializer;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -80,7 +82,9 @@ public class HazelcastServiceFactory {
         if (combinedClassLoader != null) {
             Thread.currentThread().setContextClassLoader(combinedClassLoader);
         }
-        return Hazelcast.newHazelcastInstance(configurationManager.getHazelcastConfig());
+        Config config = configurationManager.getHazelcastConfig();
+        CompactSerializer.register(config);
+        return Hazelcast.newHazelcastInstance(config);
     }
 
     public BundleContext getBundleContext() {
@@ -16,6 +16,7 @@ package org.apache.karaf.cellar.hazelcast.internal.osgi;
 import com.hazelcast.core.HazelcastInstance;
 import org.apache.aries.proxy.ProxyManager;
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.GroupFilterIndex;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.Synchronizer;
@@ -45,6 +46,7 @@ import org.apache.karaf.util.tracker.annotation.Services;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedService;
 import org.osgi.service.cm.SynchronousConfigurationListener;
 import org.osgi.util.tracker.ServiceTracker;
@@ -66,7 +68,9 @@ import java.util.*;
                 @ProvideService(CommandStore.class),
                 @ProvideService(CellarMBean.class),
                 @ProvideService(CellarNodeMBean.class),
-                @ProvideService(CellarGroupMBean.class)
+                @ProvideService(CellarGroupMBean.class),
+                @ProvideService(SwitchRegistry.class),
+                @ProvideService(GroupFilterIndex.class)
         },
         requires = {
                 @RequireService(ConfigurationAdmin.class),
@@ -88,7 +92,10 @@ public class Activator extends BaseActivator implements ManagedService {
     private DiscoveryTask discoveryTask;
     private CellarExtender extender;
     private TopicProducer producer;
+    private BatchingEventProducer batchingProducer;
     private TopicConsumer consumer;
+    private BasicSwitchRegistry switchRegistry;
+    private HazelcastEventTransportFactory eventTransportFactory;
     private ServiceTracker<DiscoveryService, DiscoveryService> discoveryServiceTracker;
     private ServiceTracker<Synchronizer, Synchronizer> synchronizerServiceTracker;
 
@@ -145,6 +152,17 @@ public class Activator extends BaseActivator implements ManagedService {
         extender.setBundleContext(bundleContext);
         extender.init();
 
+        LOGGER.debug("CELLAR HAZELCAST: init switch registry");
+        switchRegistry = new BasicSwitchRegistry();
+        switchRegistry.setConfigurationAdmin(configurationAdmin);
+        switchRegistry.init();
+        register(new Class[]{SwitchRegistry.class, ConfigurationListener.class}, switchRegistry);
+
+        LOGGER.debug("CELLAR HAZELCAST: init group filter index");
+        GroupFilterIndex groupFilterIndex = new GroupFilterIndex();
+        groupFilterIndex.setConfigurationAdmin(configurationAdmin);
+        register(new Class[]{GroupFilterIndex.class, ConfigurationListener.class}, groupFilterIndex);
+
         LOGGER.debug("CELLAR HAZELCAST: init dispatcher");
         dispatcher = new EventHandlerRegistryDispatcher();
         dispatcher.setHandlerRegistry(eventHandlerRegistry);
@@ -184,11 +202,12 @@ public class Activator extends BaseActivator implements ManagedService {
         register(ClusterManager.class, clusterManager);
 
         LOGGER.debug("CELLAR HAZELCAST: create Hazelcast event transport factory");
-        HazelcastEventTransportFactory eventTransportFactory = new HazelcastEventTransportFactory();
+        eventTransportFactory = new HazelcastEventTransportFactory();
         eventTransportFactory.setCombinedClassLoader(combinedClassLoader);
-        eventTransportFactory.setConfigurationAdmin(configurationAdmin);
+        eventTransportFactory.setSwitchRegistry(switchRegistry);
         eventTransportFactory.setInstance(hazelcastInstance);
         eventTransportFactory.setDispatcher(dispatcher);
+        eventTransportFactory.init();
         register(EventTransportFactory.class, eventTransportFactory);
 
         LOGGER.debug("CELLAR HAZELCAST: init Hazelcast group manager");
@@ -213,16 +232,24 @@ public class Activator extends BaseActivator implements ManagedService {
         consumer.setInstance(hazelcastInstance);
         consumer.setDispatcher(dispatcher);
         consumer.setNode(node);
-        consumer.setConfigurationAdmin(configurationAdmin);
+        consumer.setSwitchRegistry(switchRegistry);
         consumer.init();
 
         LOGGER.debug("CELLAR HAZELCAST: init topic producer");
         producer = new TopicProducer();
         producer.setInstance(hazelcastInstance);
         producer.setNode(node);
-        producer.setConfigurationAdmin(configurationAdmin);
+        producer.setSwitchRegistry(switchRegistry);
         producer.init();
-        register(EventProducer.class, producer);
+        if (BatchingEventProducer.isEnabled()) {
+            LOGGER.debug("CELLAR HAZELCAST: init batching producer");
+            batchingProducer = new BatchingEventProducer();
+            batchingProducer.setProducer(producer);
+            batchingProducer.init();
+            register(EventProducer.class, batchingProducer);
+        } else {
+            register(EventProducer.class, producer);
+        }
 
         LOGGER.debug("CELLAR HAZELCAST: register basic command store");
         CommandStore commandStore = new BasicCommandStore();
@@ -322,6 +349,8 @@ public class Activator extends BaseActivator implements ManagedService {
         cellarMBean.setClusterManager(clusterManager);
         cellarMBean.setGroupManager(groupManager);
         cellarMBean.setExecutionContext(executionContext);
+        cellarMBean.setDispatcher(dispatcher);
+        cellarMBean.setCommandStore(commandStore);
         Hashtable props = new Hashtable();
         props.put("jmx.objectname", "org.apache.karaf.cellar:type=core,name=" + System.getProperty("karaf.name"));
         coreMBeanRegistration = bundleContext.registerService(getInterfaceNames(cellarMBean), cellarMBean, props);
@@ -364,6 +393,10 @@ public class Activator extends BaseActivator implements ManagedService {
             synchronizerServiceTracker.close();
             synchronizerServiceTracker = null;
         }
+        if (batchingProducer != null) {
+            batchingProducer.destroy();
+            batchingProducer = null;
+        }
         if (groupManager != null) {
             try {
                 groupManager.destroy();
@@ -372,6 +405,10 @@ public class Activator extends BaseActivator implements ManagedService {
             }
             groupManager = null;
         }
+        if (eventTransportFactory != null) {
+            eventTransportFactory.destroy();
+            eventTransportFactory = null;
+        }
         if (hazelcastServiceFactory != null) {
             hazelcastServiceFactory.destroy();
             hazelcastServiceFactory = null;
@@ -408,6 +445,10 @@ public class Activator extends BaseActivator implements ManagedService {
             dispatcher.destroy();
             dispatcher = null;
         }
+        if (switchRegistry != null) {
+            switchRegistry.destroy();
+            switchRegistry = null;
+        }
     }
 
     @Override
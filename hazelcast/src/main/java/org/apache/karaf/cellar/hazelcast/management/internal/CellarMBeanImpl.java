@@ -28,8 +28,12 @@
 package org.apache.karaf.cellar.hazelcast.management.internal;
 
 import org.apache.karaf.cellar.core.*;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.CommandStore;
 import org.apache.karaf.cellar.core.command.ExecutionContext;
 import org.apache.karaf.cellar.core.control.*;
+import org.apache.karaf.cellar.core.event.EventHandlerRegistry;
+import org.apache.karaf.cellar.core.event.EventHandlerRegistryDispatcher;
 import org.apache.karaf.cellar.core.management.CellarMBean;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
@@ -49,6 +53,8 @@ public class CellarMBeanImpl extends StandardMBean implements CellarMBean {
     private ClusterManager clusterManager;
     private ExecutionContext executionContext;
     private GroupManager groupManager;
+    private EventHandlerRegistryDispatcher<?> dispatcher;
+    private CommandStore commandStore;
 
     public CellarMBeanImpl() throws NotCompliantMBeanException {
         super(CellarMBean.class);
@@ -86,6 +92,22 @@ public class CellarMBeanImpl extends StandardMBean implements CellarMBean {
         this.groupManager = groupManager;
     }
 
+    public EventHandlerRegistryDispatcher<?> getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(EventHandlerRegistryDispatcher<?> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public CommandStore getCommandStore() {
+        return commandStore;
+    }
+
+    public void setCommandStore(CommandStore commandStore) {
+        this.commandStore = commandStore;
+    }
+
     @Override
     public void sync() throws Exception {
         Set<Group> localGroups = groupManager.listLocalGroups();
@@ -349,4 +371,90 @@ public class CellarMBeanImpl extends StandardMBean implements CellarMBean {
         executionContext.execute(command);
     }
 
+    @Override
+    public TabularData dispatcherStatus() throws Exception {
+        CompositeType compositeType = new CompositeType("Event Dispatcher Lane", "Karaf Cellar cluster event dispatcher lane",
+                new String[]{"group", "type", "pending", "dispatched", "dropped", "averageLatency", "maxLatency"},
+                new String[]{"Cluster group of the events", "Type of the events", "Number of events queued or being handled",
+                        "Number of events handled", "Number of events dropped because the dispatcher queue was full",
+                        "Average latency (dispatch to handled) in milliseconds", "Maximum latency (dispatch to handled) in milliseconds"},
+                new OpenType[]{SimpleType.STRING, SimpleType.STRING, SimpleType.INTEGER, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE, SimpleType.DOUBLE});
+        TabularType tableType = new TabularType("Event Dispatcher Lanes", "Table of Karaf Cellar cluster event dispatcher lanes",
+                compositeType, new String[]{"group", "type"});
+        TabularDataSupport table = new TabularDataSupport(tableType);
+
+        if (dispatcher != null) {
+            for (EventHandlerRegistryDispatcher.Lane lane : dispatcher.getLanes()) {
+                CompositeDataSupport data = new CompositeDataSupport(compositeType,
+                        new String[]{"group", "type", "pending", "dispatched", "dropped", "averageLatency", "maxLatency"},
+                        new Object[]{lane.getGroup(), lane.getType(), lane.getPending(), lane.getDispatched(), lane.getDropped(), lane.getAverageLatency(), lane.getMaxLatency()});
+                table.put(data);
+            }
+        }
+
+        return table;
+    }
+
+    @Override
+    public TabularData awaitingEventStatus() throws Exception {
+        CompositeType compositeType = new CompositeType("Awaiting Event", "Karaf Cellar cluster events waiting for a handler",
+                new String[]{"type", "awaiting", "expired"},
+                new String[]{"Type of the events", "Number of events waiting for a handler", "Number of events dropped because no handler has been registered in time"},
+                new OpenType[]{SimpleType.STRING, SimpleType.INTEGER, SimpleType.LONG});
+        TabularType tableType = new TabularType("Awaiting Events", "Table of Karaf Cellar cluster events waiting for a handler",
+                compositeType, new String[]{"type"});
+        TabularDataSupport table = new TabularDataSupport(tableType);
+
+        if (dispatcher != null && dispatcher.getHandlerRegistry() != null) {
+            EventHandlerRegistry<?> registry = dispatcher.getHandlerRegistry();
+            Map<String, Integer> awaiting = registry.getAwaitingEvents();
+            Map<String, Long> expired = registry.getExpiredEvents();
+            Set<String> types = new TreeSet<String>(awaiting.keySet());
+            types.addAll(expired.keySet());
+            for (String type : types) {
+                Integer awaitingCount = awaiting.get(type);
+                Long expiredCount = expired.get(type);
+                CompositeDataSupport data = new CompositeDataSupport(compositeType,
+                        new String[]{"type", "awaiting", "expired"},
+                        new Object[]{type, awaitingCount != null ? awaitingCount : 0, expiredCount != null ? expiredCount : 0L});
+                table.put(data);
+            }
+        }
+
+        return table;
+    }
+
+    @Override
+    public TabularData commandStatus() throws Exception {
+        CompositeType compositeType = new CompositeType("Pending Command", "Karaf Cellar cluster commands waiting for results",
+                new String[]{"type", "pending", "expired"},
+                new String[]{"Type of the commands", "Number of commands waiting for results", "Number of commands expired before all results have been received"},
+                new OpenType[]{SimpleType.STRING, SimpleType.INTEGER, SimpleType.LONG});
+        TabularType tableType = new TabularType("Pending Commands", "Table of Karaf Cellar cluster commands waiting for results",
+                compositeType, new String[]{"type"});
+        TabularDataSupport table = new TabularDataSupport(tableType);
+
+        if (commandStore != null) {
+            Map<String, Integer> pending = new TreeMap<String, Integer>();
+            for (Command command : commandStore.getPending().values()) {
+                String type = command.getClass().getName();
+                Integer count = pending.get(type);
+                pending.put(type, count != null ? count + 1 : 1);
+            }
+            Map<String, Long> expired = commandStore.getExpired();
+            Set<String> types = new TreeSet<String>(pending.keySet());
+            types.addAll(expired.keySet());
+            for (String type : types) {
+                Integer pendingCount = pending.get(type);
+                Long expiredCount = expired.get(type);
+                CompositeDataSupport data = new CompositeDataSupport(compositeType,
+                        new String[]{"type", "pending", "expired"},
+                        new Object[]{type, pendingCount != null ? pendingCount : 0, expiredCount != null ? expiredCount : 0L});
+                table.put(data);
+            }
+        }
+
+        return table;
+    }
+
 }
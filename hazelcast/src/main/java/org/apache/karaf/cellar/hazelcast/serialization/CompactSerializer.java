@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast.serialization;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.ClassLoaderUtil;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import org.apache.karaf.cellar.core.CompactSerializable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hazelcast serializer for the {@link CompactSerializable} objects (cluster events, groups, nodes, resource states).
+ * The payload is the class (an index for the Cellar classes, the class name else) followed by the fields written by
+ * the object itself, nested objects (strings, nodes, collections) are written with the Hazelcast serializers.
+ * The classes not declaring their own {@code writeCompact} method (subclasses of a compact class) are written with
+ * Java serialization. The payloads written by a node using Java serialization for these classes are still readable
+ * as Hazelcast identifies the serializer used in each payload.
+ */
+public class CompactSerializer implements StreamSerializer<CompactSerializable> {
+
+    public static final int TYPE_ID = 1001;
+
+    /**
+     * The Cellar classes identified by their index in the payload. New classes must be added at the end.
+     */
+    private static final String[] CLASSES = {
+            "org.apache.karaf.cellar.hazelcast.HazelcastNode",
+            "org.apache.karaf.cellar.core.Group",
+            "org.apache.karaf.cellar.bundle.ClusterBundleEvent",
+            "org.apache.karaf.cellar.bundle.BundleState",
+            "org.apache.karaf.cellar.features.ClusterFeaturesEvent",
+            "org.apache.karaf.cellar.features.FeatureState",
+            "org.apache.karaf.cellar.log.ClusterLogKey",
+            "org.apache.karaf.cellar.log.ClusterLogRecord",
+            "org.apache.karaf.cellar.dosgi.EndpointDescription"
+    };
+    private static final Map<String, Integer> CLASS_INDEXES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < CLASSES.length; i++) {
+            CLASS_INDEXES.put(CLASSES[i], i);
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, Boolean> compactClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+    private final ConcurrentMap<String, Constructor<?>> constructors = new ConcurrentHashMap<String, Constructor<?>>();
+
+    /**
+     * Register the serializer in a Hazelcast configuration.
+     *
+     * @param config the Hazelcast configuration.
+     */
+    public static void register(Config config) {
+        config.getSerializationConfig().addSerializerConfig(new SerializerConfig()
+                .setTypeClass(CompactSerializable.class)
+                .setImplementation(new CompactSerializer()));
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void write(ObjectDataOutput out, CompactSerializable object) throws IOException {
+        boolean compact = isCompact(object.getClass());
+        String className = object.getClass().getName();
+        Integer index = CLASS_INDEXES.get(className);
+        if (index != null) {
+            out.writeByte(index);
+        } else {
+            out.writeByte(-1);
+            out.writeUTF(className);
+        }
+        out.writeBoolean(compact);
+        if (compact) {
+            object.writeCompact(new ObjectDataOutputAdapter(out));
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream stream = new ObjectOutputStream(bytes);
+            stream.writeObject(object);
+            stream.close();
+            out.writeByteArray(bytes.toByteArray());
+        }
+    }
+
+    @Override
+    public CompactSerializable read(ObjectDataInput in) throws IOException {
+        byte index = in.readByte();
+        String className = index >= 0 ? CLASSES[index] : in.readUTF();
+        boolean compact = in.readBoolean();
+        try {
+            if (compact) {
+                CompactSerializable object = (CompactSerializable) getConstructor(in.getClassLoader(), className).newInstance();
+                object.readCompact(new ObjectDataInputAdapter(in));
+                return object;
+            }
+            ObjectInputStream stream = new ClassLoaderObjectInputStream(new ByteArrayInputStream(in.readByteArray()), in.getClassLoader());
+            try {
+                return (CompactSerializable) stream.readObject();
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Can't read " + className, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        compactClasses.clear();
+        constructors.clear();
+    }
+
+    /**
+     * Check if a class declares its own compact serialization, a subclass inheriting the methods would lose its
+     * own fields.
+     */
+    private boolean isCompact(Class<?> type) {
+        Boolean compact = compactClasses.get(type);
+        if (compact == null) {
+            try {
+                type.getDeclaredMethod("writeCompact", java.io.ObjectOutput.class);
+                type.getDeclaredMethod("readCompact", java.io.ObjectInput.class);
+                compact = true;
+            } catch (NoSuchMethodException e) {
+                compact = false;
+            }
+            compactClasses.put(type, compact);
+        }
+        return compact;
+    }
+
+    private Constructor<?> getConstructor(ClassLoader classLoader, String className) throws Exception {
+        Constructor<?> constructor = constructors.get(className);
+        if (constructor == null) {
+            Class<?> type = ClassLoaderUtil.loadClass(classLoader, className);
+            if (!CompactSerializable.class.isAssignableFrom(type)) {
+                throw new IOException(className + " is not a compact serializable class");
+            }
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            constructors.put(className, constructor);
+        }
+        return constructor;
+    }
+
+    /**
+     * Object input stream resolving the classes with the Hazelcast class loader.
+     */
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return ClassLoaderUtil.loadClass(classLoader, desc.getName());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster manager ID generation test.
+ */
+public class HazelcastClusterManagerTest {
+
+    private HazelcastInstance instance;
+    private HazelcastClusterManager clusterManager;
+
+    @Before
+    public void setUp() {
+        Config config = new Config();
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+        instance = Hazelcast.newHazelcastInstance(config);
+        clusterManager = new HazelcastClusterManager();
+        clusterManager.setInstance(instance);
+    }
+
+    @After
+    public void tearDown() {
+        instance.shutdown();
+    }
+
+    @Test
+    public void testGenerateId() throws Exception {
+        final int threads = 8;
+        final int ids = 10000;
+        final Set<String> generated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < ids; j++) {
+                        generated.add(clusterManager.generateId());
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(threads * ids, generated.size());
+
+        String id = clusterManager.generateId();
+        Assert.assertTrue(id.startsWith(instance.getCluster().getLocalMember().getUuid() + "-"));
+        // the cluster-wide ID generator is not used anymore
+        Assert.assertTrue(instance.getDistributedObjects().isEmpty());
+    }
+
+}
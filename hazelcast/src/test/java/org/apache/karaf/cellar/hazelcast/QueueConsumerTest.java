@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IQueue;
+import org.apache.karaf.cellar.core.Dispatcher;
+import org.apache.karaf.cellar.core.Handler;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.apache.karaf.cellar.core.event.Event;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue consumer concurrency test.
+ */
+public class QueueConsumerTest {
+
+    private HazelcastInstance instance;
+    private QueueConsumer<Event> consumer;
+    private SwitchRegistry switchRegistry = new SwitchRegistry() {
+        @Override
+        public Switch getSwitch(String name, String property) {
+            BasicSwitch eventSwitch = new BasicSwitch(name);
+            eventSwitch.turnOn();
+            return eventSwitch;
+        }
+
+        @Override
+        public Switch getHandlerSwitch(String name, Handler handler) {
+            return getSwitch(name, null);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Config config = new Config();
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @After
+    public void tearDown() {
+        if (consumer != null) {
+            consumer.destroy();
+        }
+        instance.shutdown();
+    }
+
+    @Test
+    public void testConcurrentConsumption() throws Exception {
+        final int events = 16;
+        final CountDownLatch consumed = new CountDownLatch(events);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        IQueue<Event> queue = instance.getQueue(Constants.QUEUE + Constants.SEPARATOR + "test");
+        consumer = new QueueConsumer<Event>();
+        consumer.setQueue(queue);
+        consumer.setThreads(4);
+        consumer.setSwitchRegistry(switchRegistry);
+        consumer.setDispatcher(new Dispatcher<Event>() {
+            @Override
+            public void dispatch(Event event) {
+                int current = running.incrementAndGet();
+                int max = maxRunning.get();
+                while (current > max && !maxRunning.compareAndSet(max, current)) {
+                    max = maxRunning.get();
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                consumed.countDown();
+            }
+        });
+        consumer.init();
+
+        for (int i = 0; i < events; i++) {
+            queue.offer(new Event(String.valueOf(i)));
+        }
+
+        Assert.assertTrue(consumed.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(maxRunning.get() > 1);
+        Assert.assertTrue(maxRunning.get() <= 4);
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testSharedWorkPool() throws Exception {
+        final int events = 16;
+        final CountDownLatch consumed = new CountDownLatch(2 * events);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Dispatcher<Event> dispatcher = new Dispatcher<Event>() {
+            @Override
+            public void dispatch(Event event) {
+                int current = running.incrementAndGet();
+                int max = maxRunning.get();
+                while (current > max && !maxRunning.compareAndSet(max, current)) {
+                    max = maxRunning.get();
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                consumed.countDown();
+            }
+        };
+
+        ExecutorService workPool = QueueConsumer.createWorkPool(2);
+        IQueue<Event> queue = instance.getQueue(Constants.QUEUE + Constants.SEPARATOR + "test");
+        IQueue<Event> otherQueue = instance.getQueue(Constants.QUEUE + Constants.SEPARATOR + "other");
+        consumer = new QueueConsumer<Event>();
+        consumer.setQueue(queue);
+        consumer.setThreads(4);
+        consumer.setSwitchRegistry(switchRegistry);
+        consumer.setDispatcher(dispatcher);
+        consumer.setWorkPool(workPool);
+        consumer.init();
+        QueueConsumer<Event> otherConsumer = new QueueConsumer<Event>();
+        otherConsumer.setQueue(otherQueue);
+        otherConsumer.setThreads(4);
+        otherConsumer.setSwitchRegistry(switchRegistry);
+        otherConsumer.setDispatcher(dispatcher);
+        otherConsumer.setWorkPool(workPool);
+        otherConsumer.init();
+
+        try {
+            for (int i = 0; i < events; i++) {
+                queue.offer(new Event(String.valueOf(i)));
+                otherQueue.offer(new Event(String.valueOf(i)));
+            }
+
+            Assert.assertTrue(consumed.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(maxRunning.get() <= 2);
+            otherConsumer.destroy();
+            Assert.assertFalse(workPool.isShutdown());
+        } finally {
+            otherConsumer.destroy();
+            workPool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.core.ITopic;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Dispatcher;
+import org.apache.karaf.cellar.core.Handler;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.BasicSwitchRegistry;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.apache.karaf.cellar.core.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the produce/consume throughput with the cached switch registry and with the
+ * previous behaviour, reading the node configuration from ConfigurationAdmin on each switch check.
+ * The topic is a loopback delivering the published events directly to the consumer.
+ *
+ * Run the {@code main} method with the module test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SwitchRegistryBenchmark {
+
+    @Param({"cached", "configurationadmin"})
+    public String registry;
+
+    private TopicProducer<Event> producer;
+    private TopicConsumer<Event> consumer;
+    private Event event;
+
+    @Setup
+    public void setup() {
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(Configurations.PRODUCER, "true");
+        properties.put(Configurations.CONSUMER, "true");
+        ConfigurationAdmin configurationAdmin = configurationAdmin(properties);
+
+        SwitchRegistry switchRegistry;
+        if ("cached".equals(registry)) {
+            BasicSwitchRegistry basicSwitchRegistry = new BasicSwitchRegistry();
+            basicSwitchRegistry.setConfigurationAdmin(configurationAdmin);
+            basicSwitchRegistry.init();
+            switchRegistry = basicSwitchRegistry;
+        } else {
+            switchRegistry = new ConfigurationAdminSwitchRegistry(configurationAdmin);
+        }
+
+        consumer = new TopicConsumer<Event>();
+        consumer.setSwitchRegistry(switchRegistry);
+        consumer.setDispatcher(new Dispatcher<Event>() {
+            @Override
+            public void dispatch(Event event) {
+                // nothing to do
+            }
+        });
+
+        producer = new TopicProducer<Event>();
+        producer.setSwitchRegistry(switchRegistry);
+        producer.setTopic(loopback(consumer));
+
+        event = new Event("benchmark");
+    }
+
+    @Benchmark
+    public void produceConsume() {
+        producer.produce(event);
+    }
+
+    @Benchmark
+    public void switchStatus(Blackhole blackhole) {
+        blackhole.consume(producer.getSwitch().getStatus());
+        blackhole.consume(consumer.getSwitch().getStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ITopic<Event> loopback(final TopicConsumer<Event> consumer) {
+        return (ITopic<Event>) Proxy.newProxyInstance(ITopic.class.getClassLoader(), new Class[]{ITopic.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("publish".equals(method.getName())) {
+                    consumer.consume((Event) args[0]);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * ConfigurationAdmin returning a copy of the configuration properties, under a lock, as the Felix implementation does.
+     */
+    private static ConfigurationAdmin configurationAdmin(final Hashtable<String, Object> properties) {
+        final Configuration configuration = (Configuration) Proxy.newProxyInstance(Configuration.class.getClassLoader(), new Class[]{Configuration.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getProperties".equals(method.getName())) {
+                    synchronized (properties) {
+                        return new Hashtable<String, Object>(properties);
+                    }
+                }
+                if ("getPid".equals(method.getName())) {
+                    return Configurations.NODE;
+                }
+                return null;
+            }
+        });
+        return (ConfigurationAdmin) Proxy.newProxyInstance(ConfigurationAdmin.class.getClassLoader(), new Class[]{ConfigurationAdmin.class}, new InvocationHandler() {
+            @Override
+            public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getConfiguration".equals(method.getName())) {
+                    return configuration;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Switch registry reloading the switch status from ConfigurationAdmin on each call (previous behaviour).
+     */
+    private static class ConfigurationAdminSwitchRegistry implements SwitchRegistry {
+
+        private final ConcurrentMap<String, Switch> switches = new ConcurrentHashMap<String, Switch>();
+        private final ConfigurationAdmin configurationAdmin;
+
+        ConfigurationAdminSwitchRegistry(ConfigurationAdmin configurationAdmin) {
+            this.configurationAdmin = configurationAdmin;
+        }
+
+        @Override
+        public Switch getSwitch(String name, String property) {
+            Switch eventSwitch = switches.get(name);
+            if (eventSwitch == null) {
+                switches.putIfAbsent(name, new BasicSwitch(name));
+                eventSwitch = switches.get(name);
+            }
+            try {
+                Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
+                if (configuration != null) {
+                    Dictionary<String, Object> properties = configuration.getProperties();
+                    boolean status = Boolean.parseBoolean((String) properties.get(property));
+                    if (status) {
+                        eventSwitch.turnOn();
+                    } else {
+                        eventSwitch.turnOff();
+                    }
+                }
+            } catch (Exception e) {
+                // ignore
+            }
+            return eventSwitch;
+        }
+
+        @Override
+        public Switch getHandlerSwitch(String name, Handler handler) {
+            return getSwitch(name, Configurations.HANDLER + Configurations.SEPARATOR + handler.getClass().getName());
+        }
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SwitchRegistryBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
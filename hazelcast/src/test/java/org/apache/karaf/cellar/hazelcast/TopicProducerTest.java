@@ -0,0 +1,261 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import org.apache.karaf.cellar.core.Dispatcher;
+import org.apache.karaf.cellar.core.Handler;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
+import org.apache.karaf.cellar.core.event.Event;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Topic producer routing test.
+ */
+public class TopicProducerTest {
+
+    private HazelcastInstance instance;
+    private SwitchRegistry switchRegistry = new SwitchRegistry() {
+        @Override
+        public Switch getSwitch(String name, String property) {
+            BasicSwitch eventSwitch = new BasicSwitch(name);
+            eventSwitch.turnOn();
+            return eventSwitch;
+        }
+
+        @Override
+        public Switch getHandlerSwitch(String name, Handler handler) {
+            return getSwitch(name, null);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Config config = new Config();
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @After
+    public void tearDown() {
+        instance.shutdown();
+    }
+
+    @Test
+    public void testResultPublishedOnDestinationNodeTopic() throws Exception {
+        Node source = new TestNode("source");
+        Node target = new TestNode("target");
+        Node other = new TestNode("other");
+
+        List<Event> targetEvents = new CopyOnWriteArrayList<Event>();
+        List<Event> otherEvents = new CopyOnWriteArrayList<Event>();
+        consumer(target, targetEvents);
+        consumer(other, otherEvents);
+
+        final AtomicInteger broadcasted = new AtomicInteger();
+        instance.getTopic(Constants.TOPIC).addMessageListener(new MessageListener<Object>() {
+            @Override
+            public void onMessage(Message<Object> message) {
+                broadcasted.incrementAndGet();
+            }
+        });
+        final CountDownLatch delivered = new CountDownLatch(1);
+        instance.getTopic(Constants.TOPIC + Constants.SEPARATOR + Constants.NODE + Constants.SEPARATOR + target.getId()).addMessageListener(new MessageListener<Object>() {
+            @Override
+            public void onMessage(Message<Object> message) {
+                delivered.countDown();
+            }
+        });
+
+        TopicProducer<Event> producer = new TopicProducer<Event>();
+        producer.setInstance(instance);
+        producer.setNode(source);
+        producer.setSwitchRegistry(switchRegistry);
+        producer.init();
+
+        Result result = new Result("result");
+        result.setDestination(Collections.singleton(target));
+        producer.produce(result);
+
+        Assert.assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        // let the other listeners a chance to get a wrongly routed event
+        Thread.sleep(500);
+        Assert.assertEquals(1, targetEvents.size());
+        Assert.assertEquals(0, otherEvents.size());
+        Assert.assertEquals(0, broadcasted.get());
+    }
+
+    @Test
+    public void testEventWithoutDestinationBroadcasted() throws Exception {
+        List<Event> targetEvents = new CopyOnWriteArrayList<Event>();
+        List<Event> otherEvents = new CopyOnWriteArrayList<Event>();
+        consumer(new TestNode("target"), targetEvents);
+        consumer(new TestNode("other"), otherEvents);
+
+        TopicProducer<Event> producer = new TopicProducer<Event>();
+        producer.setInstance(instance);
+        producer.setNode(new TestNode("source"));
+        producer.setSwitchRegistry(switchRegistry);
+        producer.init();
+        producer.produce(new Event("event"));
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while ((targetEvents.size() < 1 || otherEvents.size() < 1) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(1, targetEvents.size());
+        Assert.assertEquals(1, otherEvents.size());
+    }
+
+    @Test
+    public void testEventWithDestinationsPublishedOnce() throws Exception {
+        Node target = new TestNode("target");
+        Node other = new TestNode("other");
+        Node ignored = new TestNode("ignored");
+        List<Event> targetEvents = new CopyOnWriteArrayList<Event>();
+        List<Event> otherEvents = new CopyOnWriteArrayList<Event>();
+        List<Event> ignoredEvents = new CopyOnWriteArrayList<Event>();
+        consumer(target, targetEvents);
+        consumer(other, otherEvents);
+        consumer(ignored, ignoredEvents);
+
+        final AtomicInteger broadcasted = new AtomicInteger();
+        instance.getTopic(Constants.TOPIC).addMessageListener(new MessageListener<Object>() {
+            @Override
+            public void onMessage(Message<Object> message) {
+                broadcasted.incrementAndGet();
+            }
+        });
+
+        TopicProducer<Event> producer = new TopicProducer<Event>();
+        producer.setInstance(instance);
+        producer.setNode(new TestNode("source"));
+        producer.setSwitchRegistry(switchRegistry);
+        producer.init();
+        Event event = new Event("event");
+        event.setDestination(new HashSet<Node>(Arrays.asList(target, other)));
+        producer.produce(event);
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while ((targetEvents.size() < 1 || otherEvents.size() < 1) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(500);
+        Assert.assertEquals(1, targetEvents.size());
+        Assert.assertEquals(1, otherEvents.size());
+        Assert.assertEquals(0, ignoredEvents.size());
+        Assert.assertEquals(1, broadcasted.get());
+        Assert.assertTrue(producer.getNodeTopics().isEmpty());
+    }
+
+    @Test
+    public void testNodeTopicRemovedWithMember() {
+        Member member = instance.getCluster().getLocalMember();
+        TopicProducer<Event> producer = new TopicProducer<Event>();
+        producer.setInstance(instance);
+        producer.setNode(new TestNode("source"));
+        producer.setSwitchRegistry(switchRegistry);
+        producer.init();
+
+        Result result = new Result("result");
+        result.setDestination(Collections.<Node>singleton(new HazelcastNode(member)));
+        producer.produce(result);
+        Assert.assertEquals(1, producer.getNodeTopics().size());
+
+        producer.memberRemoved(new MembershipEvent(instance.getCluster(), member, MembershipEvent.MEMBER_REMOVED, Collections.<Member>emptySet()));
+        Assert.assertTrue(producer.getNodeTopics().isEmpty());
+        producer.destroy();
+    }
+
+    private void consumer(Node node, final List<Event> events) {
+        TopicConsumer<Event> consumer = new TopicConsumer<Event>();
+        consumer.setInstance(instance);
+        consumer.setNode(node);
+        consumer.setSwitchRegistry(switchRegistry);
+        consumer.setDispatcher(new Dispatcher<Event>() {
+            @Override
+            public void dispatch(Event event) {
+                events.add(event);
+            }
+        });
+        consumer.init();
+    }
+
+    private static class TestNode implements Node {
+
+        private final String id;
+
+        TestNode(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getHost() {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort() {
+            return 5701;
+        }
+
+        @Override
+        public String getAlias() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TestNode && id.equals(((TestNode) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+    }
+
+}
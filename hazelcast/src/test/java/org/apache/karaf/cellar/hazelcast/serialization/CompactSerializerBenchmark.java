@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast.serialization;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import org.apache.karaf.cellar.bundle.BundleState;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.dosgi.EndpointDescription;
+import org.apache.karaf.cellar.features.ClusterFeaturesEvent;
+import org.apache.karaf.cellar.log.ClusterLogKey;
+import org.apache.karaf.cellar.log.ClusterLogRecord;
+import org.apache.karaf.features.FeatureEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the encoding/decoding time of the hot cluster messages with Java serialization and with the compact
+ * serializer. The {@code main} method prints the payload sizes before running the benchmark.
+ *
+ * Run the {@code main} method with the module test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactSerializerBenchmark {
+
+    private static final String[] MESSAGES = {"bundleEvent", "featuresEvent", "bundleState", "group", "logRecord", "endpoint"};
+
+    @Param({"java", "compact"})
+    public String serialization;
+
+    @Param({"bundleEvent", "featuresEvent", "bundleState", "group", "logRecord", "endpoint"})
+    public String message;
+
+    private InternalSerializationService serializationService;
+    private Object object;
+    private Data data;
+
+    @Setup
+    public void setup() throws Exception {
+        serializationService = serializationService(serialization);
+        object = message(message);
+        data = serializationService.toData(object);
+    }
+
+    @Benchmark
+    public Data encode() {
+        return serializationService.toData(object);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializationService.toObject(data);
+    }
+
+    static InternalSerializationService serializationService(String serialization) {
+        if ("compact".equals(serialization)) {
+            return CompactSerializerTest.compactSerializationService();
+        }
+        return new DefaultSerializationServiceBuilder().build();
+    }
+
+    static Object message(String message) throws Exception {
+        if ("bundleEvent".equals(message)) {
+            return CompactSerializerTest.bundleEvent();
+        }
+        if ("featuresEvent".equals(message)) {
+            ClusterFeaturesEvent event = new ClusterFeaturesEvent("feature", "1.0.0", false, false, false, false, FeatureEvent.EventType.FeatureInstalled);
+            event.setSourceGroup(new Group("default"));
+            event.setSourceNode(CompactSerializerTest.node(5701));
+            return event;
+        }
+        if ("bundleState".equals(message)) {
+            BundleState state = new BundleState();
+            state.setId(42);
+            state.setName("Example Bundle");
+            state.setSymbolicName("org.example.bundle");
+            state.setVersion("1.0.0");
+            state.setLocation("mvn:org.example/bundle/1.0.0");
+            state.setStartLevel(80);
+            state.setStatus(32);
+            return state;
+        }
+        if ("group".equals(message)) {
+            Group group = new Group("default");
+            for (int i = 0; i < 5; i++) {
+                group.getNodes().add(CompactSerializerTest.node(5701 + i));
+            }
+            return group;
+        }
+        if ("logRecord".equals(message)) {
+            ClusterLogKey key = new ClusterLogKey();
+            key.setNodeId("127.0.0.1:5701");
+            key.setTimeStamp(System.currentTimeMillis());
+            key.setId("8d4a2f3e-0d8b-4a57-9a0f-2c4d1f7b9e11");
+            ClusterLogRecord record = new ClusterLogRecord();
+            record.setLevel("INFO");
+            record.setLoggerName("org.example.Service");
+            record.setMessage("Service started");
+            record.setRenderedMessage("Service started");
+            record.setThreadName("main");
+            return record;
+        }
+        if ("endpoint".equals(message)) {
+            return new EndpointDescription("org.example.Service|1.0.0", CompactSerializerTest.node(5701));
+        }
+        throw new IllegalArgumentException(message);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String message : MESSAGES) {
+            Object object = message(message);
+            System.out.println(message + ": java " + serializationService("java").toData(object).totalSize()
+                    + " bytes, compact " + serializationService("compact").toData(object).totalSize() + " bytes");
+        }
+        run();
+    }
+
+    private static void run() throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompactSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast.serialization;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.instance.MemberImpl;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.Address;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.version.MemberVersion;
+import org.apache.karaf.cellar.bundle.BundleState;
+import org.apache.karaf.cellar.bundle.ClusterBundleEvent;
+import org.apache.karaf.cellar.core.CompactSerializable;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.dosgi.EndpointDescription;
+import org.apache.karaf.cellar.features.ClusterFeaturesEvent;
+import org.apache.karaf.cellar.hazelcast.HazelcastNode;
+import org.apache.karaf.cellar.log.ClusterLogKey;
+import org.apache.karaf.cellar.log.ClusterLogRecord;
+import org.apache.karaf.features.FeatureEvent;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactSerializerTest {
+
+    private final InternalSerializationService compact = compactSerializationService();
+    private final InternalSerializationService java = new DefaultSerializationServiceBuilder().build();
+
+    static InternalSerializationService compactSerializationService() {
+        SerializationConfig config = new SerializationConfig();
+        config.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(CompactSerializable.class)
+                .setImplementation(new CompactSerializer()));
+        return new DefaultSerializationServiceBuilder().setConfig(config).build();
+    }
+
+    static HazelcastNode node(int port) throws Exception {
+        return new HazelcastNode(new MemberImpl(new Address("127.0.0.1", port), MemberVersion.of("3.12.8"), true));
+    }
+
+    static ClusterBundleEvent bundleEvent() throws Exception {
+        ClusterBundleEvent event = new ClusterBundleEvent("org.example.bundle", "1.0.0", "mvn:org.example/bundle/1.0.0", 80, 32);
+        event.setSourceGroup(new Group("default"));
+        event.getSourceGroup().getNodes().add(node(5701));
+        event.setSourceNode(node(5701));
+        event.setDestination(Collections.<Node>singleton(node(5702)));
+        event.setLocal(node(5701));
+        return event;
+    }
+
+    @Test
+    public void testBundleEvent() throws Exception {
+        ClusterBundleEvent event = bundleEvent();
+        Data data = compact.toData(event);
+        assertEquals(CompactSerializer.TYPE_ID, data.getType());
+
+        ClusterBundleEvent read = compact.toObject(data);
+        assertEquals(event.getId(), read.getId());
+        assertEquals(event.getSymbolicName(), read.getSymbolicName());
+        assertEquals(event.getVersion(), read.getVersion());
+        assertEquals(event.getLocation(), read.getLocation());
+        assertEquals(event.getStartLevel(), read.getStartLevel());
+        assertEquals(event.getType(), read.getType());
+        assertEquals(event.getSourceNode(), read.getSourceNode());
+        assertEquals("127.0.0.1", read.getSourceNode().getHost());
+        assertEquals(5701, read.getSourceNode().getPort());
+        assertEquals(event.getSourceGroup(), read.getSourceGroup());
+        assertEquals(event.getSourceGroup().getNodes(), read.getSourceGroup().getNodes());
+        assertEquals(event.getDestination(), read.getDestination());
+        assertEquals(event.getLocal(), read.getLocal());
+        assertEquals(event.getForce(), read.getForce());
+        assertEquals(event.getPostPublish(), read.getPostPublish());
+    }
+
+    @Test
+    public void testFeaturesEvent() throws Exception {
+        ClusterFeaturesEvent event = new ClusterFeaturesEvent("feature", "1.0.0", false, true, false, true, FeatureEvent.EventType.FeatureInstalled);
+        event.setSourceNode(node(5701));
+
+        ClusterFeaturesEvent read = compact.toObject(compact.toData(event));
+        assertEquals("feature", read.getName());
+        assertEquals("1.0.0", read.getVersion());
+        assertEquals(false, read.getNoRefresh());
+        assertEquals(true, read.getNoStart());
+        assertEquals(false, read.getNoManage());
+        assertEquals(true, read.getUpgrade());
+        assertEquals(FeatureEvent.EventType.FeatureInstalled, read.getType());
+        assertNull(read.getDestination());
+    }
+
+    @Test
+    public void testStates() throws Exception {
+        BundleState state = new BundleState();
+        state.setId(42);
+        state.setName("bundle");
+        state.setSymbolicName("org.example.bundle");
+        state.setVersion("1.0.0");
+        state.setLocation("mvn:org.example/bundle/1.0.0");
+        state.setStartLevel(80);
+        state.setStatus(32);
+        state.setData(new byte[]{1, 2, 3});
+        BundleState readState = compact.toObject(compact.toData(state));
+        assertEquals(42, readState.getId());
+        assertEquals("org.example.bundle", readState.getSymbolicName());
+        assertEquals(Integer.valueOf(80), readState.getStartLevel());
+        assertEquals(32, readState.getStatus());
+        assertArrayEquals(new byte[]{1, 2, 3}, readState.getData());
+
+        ClusterLogKey key = new ClusterLogKey();
+        key.setNodeId("127.0.0.1:5701");
+        key.setTimeStamp(1234L);
+        key.setId("id");
+        ClusterLogKey readKey = compact.toObject(compact.toData(key));
+        assertEquals("127.0.0.1:5701", readKey.getNodeId());
+        assertNull(readKey.getNodeAlias());
+        assertEquals(1234L, readKey.getTimeStamp());
+
+        ClusterLogRecord record = new ClusterLogRecord();
+        record.setMessage("message");
+        record.setThrowableStringRep(new String[]{"java.lang.Exception", "\tat Test"});
+        ClusterLogRecord readRecord = compact.toObject(compact.toData(record));
+        assertEquals("message", readRecord.getMessage());
+        assertArrayEquals(record.getThrowableStringRep(), readRecord.getThrowableStringRep());
+
+        EndpointDescription endpoint = new EndpointDescription("org.example.Service|1.0.0", node(5701));
+        EndpointDescription readEndpoint = compact.toObject(compact.toData(endpoint));
+        assertEquals(endpoint, readEndpoint);
+        assertEquals(endpoint.getNodes(), readEndpoint.getNodes());
+        assertEquals(endpoint.getProperties(), readEndpoint.getProperties());
+    }
+
+    @Test
+    public void testJavaSerializedPayload() throws Exception {
+        // payload published by a node without the compact serializer
+        ClusterBundleEvent event = bundleEvent();
+        Data data = java.toData(event);
+        assertTrue(data.getType() != CompactSerializer.TYPE_ID);
+
+        ClusterBundleEvent read = compact.toObject(data);
+        assertEquals(event.getId(), read.getId());
+        assertEquals(event.getSymbolicName(), read.getSymbolicName());
+        assertEquals(event.getSourceNode(), read.getSourceNode());
+        assertEquals(event.getSourceGroup().getNodes(), read.getSourceGroup().getNodes());
+    }
+
+    @Test
+    public void testSubclassFallback() throws Exception {
+        ExtendedBundleEvent event = new ExtendedBundleEvent("extra");
+        assertTrue(compact.toData(event).totalSize() > 0);
+
+        ExtendedBundleEvent read = compact.toObject(compact.toData(event));
+        assertEquals("extra", read.extra);
+        assertEquals("org.example.bundle", read.getSymbolicName());
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        ClusterBundleEvent event = bundleEvent();
+        assertTrue(compact.toData(event).totalSize() < java.toData(event).totalSize() / 2);
+    }
+
+    /**
+     * Subclass not declaring its own compact serialization.
+     */
+    static class ExtendedBundleEvent extends ClusterBundleEvent {
+
+        private final String extra;
+
+        ExtendedBundleEvent(String extra) {
+            super("org.example.bundle", "1.0.0", "mvn:org.example/bundle/1.0.0", 80, 32);
+            this.extra = extra;
+        }
+
+    }
+
+}
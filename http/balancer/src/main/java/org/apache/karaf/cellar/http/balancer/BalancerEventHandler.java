@@ -14,15 +14,13 @@
 package org.apache.karaf.cellar.http.balancer;
 
 import org.apache.karaf.cellar.core.ClusterManager;
-import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.GroupManager;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
-import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,11 +34,10 @@ public class BalancerEventHandler implements EventHandler<ClusterBalancerEvent>
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.event.http.balancer.handler";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     private ClusterManager clusterManager;
     private GroupManager groupManager;
     private ConfigurationAdmin configurationAdmin;
+    private SwitchRegistry switchRegistry;
     private BundleContext bundleContext;
     private ProxyServletRegistry proxyRegistry;
 
@@ -99,27 +96,17 @@ public class BalancerEventHandler implements EventHandler<ClusterBalancerEvent>
 
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return eventSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
     public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
         this.configurationAdmin = configurationAdmin;
     }
 
+    public void setSwitchRegistry(SwitchRegistry switchRegistry) {
+        this.switchRegistry = switchRegistry;
+    }
+
     public void setClusterManager(ClusterManager clusterManager) {
         this.clusterManager = clusterManager;
     }
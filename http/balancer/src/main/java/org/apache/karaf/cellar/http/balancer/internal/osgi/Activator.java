@@ -16,6 +16,7 @@ package org.apache.karaf.cellar.http.balancer.internal.osgi;
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.http.balancer.BalancerEventHandler;
@@ -47,6 +48,7 @@ import java.util.Hashtable;
                 @RequireService(ClusterManager.class),
                 @RequireService(GroupManager.class),
                 @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class),
                 @RequireService(EventProducer.class)
         }
 )
@@ -72,6 +74,10 @@ public class Activator extends BaseActivator {
         if (configurationAdmin == null) {
             return;
         }
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null) {
+            return;
+        }
         EventProducer eventProducer = getTrackedService(EventProducer.class);
         if (eventProducer == null) {
             return;
@@ -86,6 +92,7 @@ public class Activator extends BaseActivator {
         balancerEventHandler.setClusterManager(clusterManager);
         balancerEventHandler.setBundleContext(bundleContext);
         balancerEventHandler.setConfigurationAdmin(configurationAdmin);
+        balancerEventHandler.setSwitchRegistry(switchRegistry);
         balancerEventHandler.setGroupManager(groupManager);
         balancerEventHandler.setProxyRegistry(proxyRegistry);
         Hashtable props = new Hashtable();
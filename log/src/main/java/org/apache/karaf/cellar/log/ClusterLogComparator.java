@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.log;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Order the cluster log entries by time stamp. The comparator is sent to the cluster members to sort the query pages.
+ */
+public class ClusterLogComparator implements Comparator<Map.Entry<ClusterLogKey, ClusterLogRecord>>, Serializable {
+
+    private static final long serialVersionUID = 4305478317582127353L;
+
+    private final boolean descending;
+
+    public ClusterLogComparator(boolean descending) {
+        this.descending = descending;
+    }
+
+    @Override
+    public int compare(Map.Entry<ClusterLogKey, ClusterLogRecord> entry1, Map.Entry<ClusterLogKey, ClusterLogRecord> entry2) {
+        int result = entry1.getKey().compareTo(entry2.getKey());
+        return descending ? -result : result;
+    }
+
+}
@@ -16,9 +16,15 @@
  */
 package org.apache.karaf.cellar.log;
 
-import java.io.Serializable;
+import org.apache.karaf.cellar.core.CompactSerializable;
 
-public class ClusterLogKey implements Serializable, Comparable<ClusterLogKey> {
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+public class ClusterLogKey implements CompactSerializable, Comparable<ClusterLogKey> {
+
+    private static final long serialVersionUID = -1935452188443709671L;
 
     private String nodeId;
     private String nodeAlias;
@@ -59,7 +65,37 @@ public class ClusterLogKey implements Serializable, Comparable<ClusterLogKey> {
 
     @Override
     public int compareTo(ClusterLogKey o) {
-        return new Long(this.timeStamp - o.timeStamp).intValue();
+        int result = Long.compare(this.timeStamp, o.timeStamp);
+        if (result == 0) {
+            result = compare(this.nodeId, o.nodeId);
+        }
+        if (result == 0) {
+            result = compare(this.id, o.id);
+        }
+        return result;
+    }
+
+    private static int compare(String s1, String s2) {
+        if (s1 == null) {
+            return s2 == null ? 0 : -1;
+        }
+        return s2 == null ? 1 : s1.compareTo(s2);
+    }
+
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeObject(nodeId);
+        out.writeObject(nodeAlias);
+        out.writeLong(timeStamp);
+        out.writeObject(id);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        nodeId = (String) in.readObject();
+        nodeAlias = (String) in.readObject();
+        timeStamp = in.readLong();
+        id = (String) in.readObject();
     }
 
 }
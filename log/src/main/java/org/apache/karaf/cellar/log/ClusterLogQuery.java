@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.log;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.MapQuery;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query on the cluster log, evaluated by the cluster members owning the log records.
+ * The records are filtered by node, minimum level, logger, time range and optionally throwable, and returned by page
+ * sorted by time.
+ */
+public class ClusterLogQuery {
+
+    public static final String TIMESTAMP = MapQuery.KEY_PREFIX + "timeStamp";
+    public static final String NODE = MapQuery.KEY_PREFIX + "nodeId";
+    public static final String LEVEL = "level";
+    public static final String LOGGER = "loggerName";
+    public static final String THROWABLE = "withThrowable";
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final String TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+    private final MapQuery<ClusterLogKey, ClusterLogRecord> query = new MapQuery<ClusterLogKey, ClusterLogRecord>();
+
+    /**
+     * Create a query.
+     *
+     * @param nodeId the node ID, or null for all nodes.
+     * @param level the minimum level, or null for all levels.
+     * @param logger a part of the logger name, or null (or ALL) for all loggers.
+     * @param from the minimum time stamp, or 0.
+     * @param to the maximum time stamp, or 0.
+     * @param descending true to get the most recent records first.
+     */
+    public ClusterLogQuery(String nodeId, String level, String logger, long from, long to, boolean descending) {
+        if (nodeId != null) {
+            query.equal(NODE, nodeId);
+        }
+        if (level != null) {
+            int rank = LogAppender.getLevel(level);
+            if (rank < 0) {
+                throw new IllegalArgumentException("Incorrect level value " + level);
+            }
+            if (rank > 0) {
+                List<String> levels = Arrays.asList(LogAppender.LEVELS).subList(rank, LogAppender.LEVELS.length);
+                query.in(LEVEL, levels.toArray(new String[levels.size()]));
+            }
+        }
+        if (logger != null && !logger.equals("ALL")) {
+            query.like(LOGGER, "%" + MapQuery.escapeLike(logger) + "%");
+        }
+        query.between(TIMESTAMP, from > 0 ? from : null, to > 0 ? to : null);
+        query.orderBy(new ClusterLogComparator(descending));
+    }
+
+    /**
+     * Match only the records with a throwable.
+     *
+     * @return this query.
+     */
+    public ClusterLogQuery withThrowable() {
+        query.equal(THROWABLE, true);
+        return this;
+    }
+
+    /**
+     * Index the queried attributes of the cluster log.
+     *
+     * @param clusterManager the cluster manager.
+     */
+    public static void addIndexes(ClusterManager clusterManager) {
+        clusterManager.addMapIndex(LogAppender.LOG_MAP, TIMESTAMP, true);
+        clusterManager.addMapIndex(LogAppender.LOG_MAP, NODE, false);
+        clusterManager.addMapIndex(LogAppender.LOG_MAP, LEVEL, false);
+    }
+
+    /**
+     * Get a page of the matching records. The pages are expected to be read in order, the query keeps the position
+     * of the previous page.
+     *
+     * @param clusterManager the cluster manager.
+     * @param pageSize the number of records in a page.
+     * @param page the page index, starting from 0.
+     * @return the records of the page.
+     */
+    public List<Map.Entry<ClusterLogKey, ClusterLogRecord>> getPage(ClusterManager clusterManager, int pageSize, int page) {
+        query.page(pageSize, page);
+        return clusterManager.queryMap(LogAppender.LOG_MAP, query);
+    }
+
+    /**
+     * Get the most recent matching records.
+     *
+     * @param clusterManager the cluster manager.
+     * @param nodeId the node ID, or null for all nodes.
+     * @param level the minimum level, or null for all levels.
+     * @param logger a part of the logger name, or null (or ALL) for all loggers.
+     * @param from the minimum time stamp, or 0.
+     * @param to the maximum time stamp, or 0.
+     * @param entries the number of records.
+     * @return the records, oldest first.
+     */
+    public static List<Map.Entry<ClusterLogKey, ClusterLogRecord>> getLast(ClusterManager clusterManager, String nodeId, String level,
+                                                                          String logger, long from, long to, int entries) {
+        List<Map.Entry<ClusterLogKey, ClusterLogRecord>> records = new ClusterLogQuery(nodeId, level, logger, from, to, true)
+                .getPage(clusterManager, entries, 0);
+        Collections.reverse(records);
+        return records;
+    }
+
+    /**
+     * Parse a time given as a number of milliseconds or as a local date and time (yyyy-MM-dd'T'HH:mm:ss).
+     *
+     * @param time the time, or null.
+     * @return the time in milliseconds, or 0 if the time is null.
+     */
+    public static long parseTime(String time) {
+        if (time == null || time.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(time.trim());
+        } catch (NumberFormatException e) {
+            try {
+                return new SimpleDateFormat(TIME_FORMAT).parse(time.trim()).getTime();
+            } catch (ParseException pe) {
+                throw new IllegalArgumentException("Incorrect time " + time + ", expected milliseconds or " + TIME_FORMAT);
+            }
+        }
+    }
+
+}
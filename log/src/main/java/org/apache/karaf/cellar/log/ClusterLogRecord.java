@@ -16,9 +16,15 @@
  */
 package org.apache.karaf.cellar.log;
 
-import java.io.Serializable;
+import org.apache.karaf.cellar.core.CompactSerializable;
 
-public class ClusterLogRecord implements Serializable {
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+public class ClusterLogRecord implements CompactSerializable {
+
+    private static final long serialVersionUID = 1870816991521632070L;
 
     private String level;
     private String loggerName;
@@ -84,4 +90,33 @@ public class ClusterLogRecord implements Serializable {
         this.throwableStringRep = throwableStringRep;
     }
 
+    /**
+     * @return true if the record has a throwable, used to query the cluster log.
+     */
+    public boolean isWithThrowable() {
+        return throwableStringRep != null && throwableStringRep.length > 0;
+    }
+
+    @Override
+    public void writeCompact(ObjectOutput out) throws IOException {
+        out.writeObject(level);
+        out.writeObject(loggerName);
+        out.writeObject(message);
+        out.writeObject(renderedMessage);
+        out.writeObject(threadName);
+        out.writeObject(FQNOfLoggerClass);
+        out.writeObject(throwableStringRep);
+    }
+
+    @Override
+    public void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        level = (String) in.readObject();
+        loggerName = (String) in.readObject();
+        message = (String) in.readObject();
+        renderedMessage = (String) in.readObject();
+        threadName = (String) in.readObject();
+        FQNOfLoggerClass = (String) in.readObject();
+        throwableStringRep = (String[]) in.readObject();
+    }
+
 }
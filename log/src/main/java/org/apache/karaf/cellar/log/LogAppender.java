@@ -20,28 +20,114 @@ import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.Node;
 import org.ops4j.pax.logging.spi.PaxAppender;
 import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-public class LogAppender implements PaxAppender {
+/**
+ * Appender storing the log records in the cluster log map.
+ * The logging threads only add the records to a {@link RingBuffer}, dropping the records when it is full: a
+ * background thread writes them in batches to the cluster map, and removes the oldest records written by the local
+ * node beyond the maximum number of entries or the time to live.
+ */
+public class LogAppender implements PaxAppender, Runnable {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(LogAppender.class);
 
     public static final String LOG_MAP = "org.apache.karaf.cellar.log";
 
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final String DEFAULT_THRESHOLD = "TRACE";
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_TTL = 0;
+
+    static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+
     private ClusterManager clusterManager;
 
+    private int capacity = DEFAULT_CAPACITY;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private int threshold = getLevel(DEFAULT_THRESHOLD);
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long ttl = DEFAULT_TTL;
+
+    private RingBuffer<Map.Entry<ClusterLogKey, ClusterLogRecord>> buffer;
+    private final String idPrefix = UUID.randomUUID().toString() + "-";
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+
+    // keys written by the local node, oldest first, only tracked with a limit and only used by the flush thread
+    private final Deque<ClusterLogKey> written = new ArrayDeque<ClusterLogKey>();
+    private volatile Thread flushThread;
+    private volatile boolean running;
+
+    public void init() {
+        String prefix = LogAppender.class.getName();
+        capacity = Integer.getInteger(prefix + ".capacity", capacity);
+        batchSize = Math.max(1, Integer.getInteger(prefix + ".batchSize", batchSize));
+        flushInterval = Math.max(1, Long.getLong(prefix + ".flushInterval", flushInterval));
+        maxEntries = Integer.getInteger(prefix + ".maxEntries", maxEntries);
+        ttl = Long.getLong(prefix + ".ttl", ttl);
+        String level = System.getProperty(prefix + ".threshold");
+        if (level != null) {
+            if (getLevel(level) < 0) {
+                LOGGER.warn("CELLAR LOG: unknown threshold level {}, using {}", level, LEVELS[threshold]);
+            } else {
+                threshold = getLevel(level);
+            }
+        }
+        buffer = new RingBuffer<Map.Entry<ClusterLogKey, ClusterLogRecord>>(capacity);
+        flushThread = new Thread(this, "Cellar log appender");
+        flushThread.setDaemon(true);
+        running = true;
+        flushThread.start();
+    }
+
+    public void destroy() {
+        running = false;
+        Thread thread = flushThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(flushInterval + 5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushThread = null;
+        }
+    }
+
     @Override
     public void doAppend(PaxLoggingEvent event) {
-
-        Map<ClusterLogKey, ClusterLogRecord> clusterLog = clusterManager.getMap(LOG_MAP);
+        // the records logged while writing to the cluster are ignored to avoid a feedback loop
+        if (!running || Thread.currentThread() == flushThread) {
+            return;
+        }
+        int level = getLevel(event.getLevel().toString());
+        if (level >= 0 && level < threshold) {
+            return;
+        }
 
         ClusterLogRecord record = new ClusterLogRecord();
         ClusterLogKey key = new ClusterLogKey();
 
-        Node node = clusterManager.getNode();
-        key.setNodeId(node.getId());
-        key.setNodeAlias(node.getAlias());
         key.setTimeStamp(event.getTimeStamp());
-        key.setId(clusterManager.generateId());
+        key.setId(idPrefix + sequence.incrementAndGet());
 
         record.setFQNOfLoggerClass(event.getFQNOfLoggerClass());
         record.setLevel(event.getLevel().toString());
@@ -51,7 +137,126 @@ public class LogAppender implements PaxAppender {
         record.setThreadName(event.getThreadName());
         record.setThrowableStringRep(event.getThrowableStrRep());
 
-        clusterLog.put(key, record);
+        if (!buffer.offer(new AbstractMap.SimpleImmutableEntry<ClusterLogKey, ClusterLogRecord>(key, record))) {
+            dropped.incrementAndGet();
+        } else if (buffer.size() == batchSize) {
+            LockSupport.unpark(flushThread);
+        }
+    }
+
+    /**
+     * Write the buffered records to the cluster map, until the appender is destroyed.
+     */
+    @Override
+    public void run() {
+        List<Map.Entry<ClusterLogKey, ClusterLogRecord>> batch = new ArrayList<Map.Entry<ClusterLogKey, ClusterLogRecord>>(batchSize);
+        while (running) {
+            int count = buffer.drainTo(batch, batchSize);
+            if (count > 0) {
+                flush(batch);
+                batch.clear();
+            }
+            evict();
+            if (count < batchSize) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(flushInterval));
+            }
+        }
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Map.Entry<ClusterLogKey, ClusterLogRecord>> batch) {
+        try {
+            Node node = clusterManager.getNode();
+            Map<ClusterLogKey, ClusterLogRecord> records = new LinkedHashMap<ClusterLogKey, ClusterLogRecord>();
+            for (Map.Entry<ClusterLogKey, ClusterLogRecord> entry : batch) {
+                ClusterLogKey key = entry.getKey();
+                key.setNodeId(node.getId());
+                key.setNodeAlias(node.getAlias());
+                records.put(key, entry.getValue());
+            }
+            Map<ClusterLogKey, ClusterLogRecord> clusterLog = clusterManager.getMap(LOG_MAP);
+            clusterLog.putAll(records);
+            flushed.addAndGet(records.size());
+            if (maxEntries > 0 || ttl > 0) {
+                written.addAll(records.keySet());
+            }
+        } catch (Exception e) {
+            dropped.addAndGet(batch.size());
+            LOGGER.debug("CELLAR LOG: unable to write {} log records to the cluster", batch.size(), e);
+        }
+    }
+
+    /**
+     * Remove from the cluster map the oldest records written by the local node, beyond the maximum number of
+     * entries or the time to live.
+     */
+    private void evict() {
+        long expiration = ttl > 0 ? System.currentTimeMillis() - ttl : Long.MIN_VALUE;
+        List<ClusterLogKey> evicted = new ArrayList<ClusterLogKey>();
+        while (!written.isEmpty()
+                && ((maxEntries > 0 && written.size() > maxEntries) || written.peekFirst().getTimeStamp() < expiration)) {
+            evicted.add(written.pollFirst());
+        }
+        if (evicted.isEmpty()) {
+            return;
+        }
+        try {
+            Map<ClusterLogKey, ClusterLogRecord> clusterLog = clusterManager.getMap(LOG_MAP);
+            for (ClusterLogKey key : evicted) {
+                clusterLog.remove(key);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("CELLAR LOG: unable to remove {} log records from the cluster", evicted.size(), e);
+        }
+    }
+
+    /**
+     * Get the rank of a log level.
+     *
+     * @param level the level name.
+     * @return the level rank (from 0 for TRACE to 5 for FATAL), or -1 for an unknown level.
+     */
+    static int getLevel(String level) {
+        if (level == null) {
+            return -1;
+        }
+        String name = level.trim().toUpperCase();
+        if ("ALL".equals(name)) {
+            return 0;
+        }
+        if ("WARNING".equals(name)) {
+            name = "WARN";
+        }
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of records written to the cluster map.
+     */
+    public long getFlushed() {
+        return flushed.get();
+    }
+
+    /**
+     * @return the number of records dropped, because the buffer was full or the cluster map write failed.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of records waiting to be written to the cluster map.
+     */
+    public int getPending() {
+        return buffer != null ? buffer.size() : 0;
     }
 
     public ClusterManager getClusterManager() {
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.log;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer for many producers and a single consumer, without lock.
+ * The producers claim a slot with a compare-and-set on the tail and fail instead of waiting when the buffer is full.
+ */
+public class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only written by the consumer
+    private volatile long head;
+
+    /**
+     * @param capacity the minimum capacity, rounded up to a power of two.
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity " + capacity);
+        }
+        int rounded = 1;
+        while (rounded < capacity) {
+            rounded <<= 1;
+        }
+        this.capacity = rounded;
+        this.mask = rounded - 1;
+        this.slots = new AtomicReferenceArray<E>(rounded);
+    }
+
+    /**
+     * Add an element, from any thread.
+     *
+     * @param element the element to add.
+     * @return true if the element has been added, false if the buffer is full.
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long current;
+        do {
+            current = tail.get();
+            if (current - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(current, current + 1));
+        slots.lazySet((int) current & mask, element);
+        return true;
+    }
+
+    /**
+     * Remove the available elements, from the consumer thread only.
+     *
+     * @param target the collection receiving the elements.
+     * @param max the maximum number of elements to remove.
+     * @return the number of removed elements.
+     */
+    public int drainTo(Collection<? super E> target, int max) {
+        long current = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) current & mask;
+            E element = slots.get(index);
+            if (element == null) {
+                // empty, or the slot is claimed but not yet written
+                break;
+            }
+            slots.lazySet(index, null);
+            target.add(element);
+            head = ++current;
+            count++;
+        }
+        return count;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+}
@@ -55,6 +55,7 @@ public class Activator extends BaseActivator {
     private final static Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
     private ServiceRegistration mbeanRegistration;
+    private LogAppender paxAppender;
 
     @Override
     public void doStart() throws Exception {
@@ -94,9 +95,13 @@ public class Activator extends BaseActivator {
             return;
         }
 
+        LOGGER.debug("CELLAR LOG: index the cluster log");
+        ClusterLogQuery.addIndexes(clusterManager);
+
         LOGGER.debug("CELLAR LOG: init PaxAppender");
-        LogAppender paxAppender = new LogAppender();
+        paxAppender = new LogAppender();
         paxAppender.setClusterManager(clusterManager);
+        paxAppender.init();
         Hashtable props = new Hashtable();
         props.put("org.ops4j.pax.logging.appender.name", "CellarLogAppender");
         register(PaxAppender.class, paxAppender, props);
@@ -129,6 +134,7 @@ public class Activator extends BaseActivator {
         CellarLogMBeanImpl mbean = new CellarLogMBeanImpl();
         mbean.setClusterManager(clusterManager);
         mbean.setExecutionContext(executionContext);
+        mbean.setLogAppender(paxAppender);
         props = new Hashtable();
         props.put("jmx.objectname", "org.apache.karaf.cellar:type=log,name=" + System.getProperty("karaf.name"));
         mbeanRegistration = bundleContext.registerService(getInterfaceNames(mbean), mbean, props);
@@ -142,6 +148,10 @@ public class Activator extends BaseActivator {
             mbeanRegistration.unregister();
             mbeanRegistration = null;
         }
+        if (paxAppender != null) {
+            paxAppender.destroy();
+            paxAppender = null;
+        }
     }
 
 }
@@ -31,6 +31,19 @@ public interface CellarLogMBean {
      */
     List<String> displayLog(String logger, String nodeId, int entries);
 
+    /**
+     * Query the cluster log messages. The messages are filtered by the cluster members owning them.
+     *
+     * @param logger The part of the logger name to filter or null.
+     * @param nodeId The node ID or alias to filter or null for all nodes.
+     * @param level The minimum level to filter or null for all levels.
+     * @param from The minimum time (milliseconds or yyyy-MM-dd'T'HH:mm:ss) or null.
+     * @param to The maximum time (milliseconds or yyyy-MM-dd'T'HH:mm:ss) or null.
+     * @param entries The number of most recent entries to display (0 means no limit).
+     * @return The list of log messages, sorted by time.
+     */
+    List<String> queryLog(String logger, String nodeId, String level, String from, String to, int entries);
+
     /**
      * Add a log message on the cluster.
      *
@@ -58,4 +71,19 @@ public interface CellarLogMBean {
      */
     TabularData getLevel(String logger, String nodeId) throws Exception;
 
+    /**
+     * Get the number of log records written to the cluster by the local node.
+     *
+     * @return The number of written log records.
+     */
+    long getFlushedRecords();
+
+    /**
+     * Get the number of log records dropped by the local node, because the appender buffer was full or the
+     * cluster write failed.
+     *
+     * @return The number of dropped log records.
+     */
+    long getDroppedRecords();
+
 }
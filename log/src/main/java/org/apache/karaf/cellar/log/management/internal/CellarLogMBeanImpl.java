@@ -29,6 +29,7 @@ public class CellarLogMBeanImpl extends StandardMBean implements CellarLogMBean
 
     private ClusterManager clusterManager;
     private ExecutionContext executionContext;
+    private LogAppender logAppender;
 
     public CellarLogMBeanImpl() throws NotCompliantMBeanException {
         super(CellarLogMBean.class);
@@ -50,39 +51,47 @@ public class CellarLogMBeanImpl extends StandardMBean implements CellarLogMBean
         this.executionContext = executionContext;
     }
 
+    public LogAppender getLogAppender() {
+        return logAppender;
+    }
+
+    public void setLogAppender(LogAppender logAppender) {
+        this.logAppender = logAppender;
+    }
+
     @Override
     public List<String> displayLog(String logger, String nodeId, int entries) {
+        return queryLog(logger, nodeId, null, null, null, entries);
+    }
+
+    @Override
+    public List<String> queryLog(String logger, String nodeId, String level, String from, String to, int entries) {
         List<String> result = new ArrayList<String>();
 
         String node = null;
-        if (nodeId != null && clusterManager.findNodeByIdOrAlias(nodeId) == null) {
-            throw new IllegalArgumentException("Node " + nodeId + " doesn't exist");
-        }
-        if (nodeId != null && clusterManager.findNodeByIdOrAlias(nodeId) != null) {
-            node = clusterManager.findNodeByIdOrAlias(nodeId).getId();
+        if (nodeId != null) {
+            Node clusterNode = clusterManager.findNodeByIdOrAlias(nodeId);
+            if (clusterNode == null) {
+                throw new IllegalArgumentException("Node " + nodeId + " doesn't exist");
+            }
+            node = clusterNode.getId();
         }
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
         try {
-            Map<ClusterLogKey, ClusterLogRecord> clusterLog = clusterManager.getMap(LogAppender.LOG_MAP);
-            int index = 0;
-            for (ClusterLogKey key : clusterLog.keySet()) {
-                if (entries == 0 || (entries != 0 && index < entries)) {
-                    ClusterLogRecord record = clusterLog.get(key);
-                    if (node == null || (node != null && key.getNodeId().equals(node))) {
-                        if (logger == null || (logger != null && logger.equals("ALL")) || (logger != null && record.getLoggerName() != null && record.getLoggerName().contains(logger))) {
-                            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-                            String message = key.getNodeId() + " | "
-                                    + dateFormat.format(new Date(key.getTimeStamp())) + " | "
-                                    + record.getLevel() + " | "
-                                    + record.getThreadName() + " | "
-                                    + record.getLoggerName() + " | "
-                                    + record.getMessage();
-                            result.add(message);
-                            index++;
-                        }
-                    }
-                }
+            long fromTime = ClusterLogQuery.parseTime(from);
+            long toTime = ClusterLogQuery.parseTime(to);
+            List<Map.Entry<ClusterLogKey, ClusterLogRecord>> records;
+            if (entries > 0) {
+                records = ClusterLogQuery.getLast(clusterManager, node, level, logger, fromTime, toTime, entries);
+                format(records, result);
+            } else {
+                ClusterLogQuery query = new ClusterLogQuery(node, level, logger, fromTime, toTime, false);
+                int page = 0;
+                do {
+                    records = query.getPage(clusterManager, ClusterLogQuery.DEFAULT_PAGE_SIZE, page++);
+                    format(records, result);
+                } while (records.size() == ClusterLogQuery.DEFAULT_PAGE_SIZE);
             }
         } finally {
             Thread.currentThread().setContextClassLoader(originalClassLoader);
@@ -91,6 +100,20 @@ public class CellarLogMBeanImpl extends StandardMBean implements CellarLogMBean
         return result;
     }
 
+    private void format(List<Map.Entry<ClusterLogKey, ClusterLogRecord>> records, List<String> result) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        for (Map.Entry<ClusterLogKey, ClusterLogRecord> entry : records) {
+            ClusterLogKey key = entry.getKey();
+            ClusterLogRecord record = entry.getValue();
+            result.add(key.getNodeId() + " | "
+                    + dateFormat.format(new Date(key.getTimeStamp())) + " | "
+                    + record.getLevel() + " | "
+                    + record.getThreadName() + " | "
+                    + record.getLoggerName() + " | "
+                    + record.getMessage());
+        }
+    }
+
     @Override
     public void logMessage(String message, String nodeId, String level) {
         if (message == null) {
@@ -209,4 +232,14 @@ public class CellarLogMBeanImpl extends StandardMBean implements CellarLogMBean
         return tabularData;
     }
 
+    @Override
+    public long getFlushedRecords() {
+        return logAppender != null ? logAppender.getFlushed() : 0;
+    }
+
+    @Override
+    public long getDroppedRecords() {
+        return logAppender != null ? logAppender.getDropped() : 0;
+    }
+
 }
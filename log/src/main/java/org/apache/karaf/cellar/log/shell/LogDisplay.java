@@ -16,8 +16,8 @@ package org.apache.karaf.cellar.log.shell;
 import org.apache.karaf.cellar.core.shell.CellarCommandSupport;
 import org.apache.karaf.cellar.core.shell.completer.AllNodeCompleter;
 import org.apache.karaf.cellar.log.ClusterLogKey;
+import org.apache.karaf.cellar.log.ClusterLogQuery;
 import org.apache.karaf.cellar.log.ClusterLogRecord;
-import org.apache.karaf.cellar.log.LogAppender;
 import org.apache.karaf.shell.api.action.Argument;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.Completion;
@@ -26,6 +26,7 @@ import org.apache.karaf.shell.api.action.lifecycle.Service;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 @Command(scope = "cluster", name = "log-display", description = "Display the cluster log messages")
@@ -39,9 +40,18 @@ public class LogDisplay extends CellarCommandSupport {
     @Completion(AllNodeCompleter.class)
     String nodeIdOrAlias;
 
-    @Option(name = "-n", description = "Number of entries to display", required = false, multiValued = false)
+    @Option(name = "-n", description = "Number of entries to display (the most recent ones)", required = false, multiValued = false)
     int entries;
 
+    @Option(name = "--level", description = "Minimum level of the entries to display", required = false, multiValued = false)
+    String level;
+
+    @Option(name = "--from", description = "Display the entries logged from this time (milliseconds or yyyy-MM-dd'T'HH:mm:ss)", required = false, multiValued = false)
+    String from;
+
+    @Option(name = "--to", description = "Display the entries logged until this time (milliseconds or yyyy-MM-dd'T'HH:mm:ss)", required = false, multiValued = false)
+    String to;
+
     @Override
     public Object doExecute() throws Exception {
         String nodeId = null;
@@ -55,29 +65,39 @@ public class LogDisplay extends CellarCommandSupport {
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
         try {
-            Map<ClusterLogKey, ClusterLogRecord> clusterLog = clusterManager.getMap(LogAppender.LOG_MAP);
-            int index = 0;
-            for (ClusterLogKey key : clusterLog.keySet()) {
-                if (entries == 0 || (entries != 0 && index < entries)) {
-                    ClusterLogRecord record = clusterLog.get(key);
-                    if (nodeId == null || (nodeId != null && key.getNodeId().equals(nodeId))) {
-                        if (logger == null || (logger != null && logger.equals("ALL")) || (logger != null && record.getLoggerName() != null && record.getLoggerName().contains(logger))) {
-                            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-                            System.out.println(key.getNodeId() + " | "
-                                    + dateFormat.format(new Date(key.getTimeStamp())) + " | "
-                                    + record.getLevel() + " | "
-                                    + record.getThreadName() + " | "
-                                    + record.getLoggerName() + " | "
-                                    + record.getMessage());
-                            index++;
-                        }
-                    }
-                }
+            long fromTime = ClusterLogQuery.parseTime(from);
+            long toTime = ClusterLogQuery.parseTime(to);
+            if (entries > 0) {
+                print(ClusterLogQuery.getLast(clusterManager, nodeId, level, logger, fromTime, toTime, entries));
+            } else {
+                ClusterLogQuery query = new ClusterLogQuery(nodeId, level, logger, fromTime, toTime, false);
+                List<Map.Entry<ClusterLogKey, ClusterLogRecord>> records;
+                int page = 0;
+                do {
+                    records = query.getPage(clusterManager, ClusterLogQuery.DEFAULT_PAGE_SIZE, page++);
+                    print(records);
+                } while (records.size() == ClusterLogQuery.DEFAULT_PAGE_SIZE);
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
         } finally {
             Thread.currentThread().setContextClassLoader(originalClassLoader);
         }
         return null;
     }
 
+    private void print(List<Map.Entry<ClusterLogKey, ClusterLogRecord>> records) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        for (Map.Entry<ClusterLogKey, ClusterLogRecord> entry : records) {
+            ClusterLogKey key = entry.getKey();
+            ClusterLogRecord record = entry.getValue();
+            System.out.println(key.getNodeId() + " | "
+                    + dateFormat.format(new Date(key.getTimeStamp())) + " | "
+                    + record.getLevel() + " | "
+                    + record.getThreadName() + " | "
+                    + record.getLoggerName() + " | "
+                    + record.getMessage());
+        }
+    }
+
 }
@@ -17,13 +17,14 @@ import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.shell.CellarCommandSupport;
 import org.apache.karaf.cellar.core.shell.completer.AllNodeCompleter;
 import org.apache.karaf.cellar.log.ClusterLogKey;
+import org.apache.karaf.cellar.log.ClusterLogQuery;
 import org.apache.karaf.cellar.log.ClusterLogRecord;
-import org.apache.karaf.cellar.log.LogAppender;
 import org.apache.karaf.shell.api.action.Argument;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.Completion;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 
+import java.util.List;
 import java.util.Map;
 
 @Command(scope = "cluster", name = "log-exception-display", description = "Display the last occurred exception from the cluster log")
@@ -51,20 +52,18 @@ public class LogDisplayException extends CellarCommandSupport {
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
         try {
-            Map<ClusterLogKey, ClusterLogRecord> clusterLog = clusterManager.getMap(LogAppender.LOG_MAP);
-            for (ClusterLogKey key : clusterLog.keySet()) {
-                ClusterLogRecord record = clusterLog.get(key);
-                if (record.getThrowableStringRep() != null && record.getThrowableStringRep().length > 0) {
-                    if (nodeId == null || (nodeId != null && key.getNodeId().equals(nodeId))) {
-                        if (logger == null || (logger != null && record.getLoggerName().contains(logger))) {
-                            for (String throwable : record.getThrowableStringRep()) {
-                                System.out.println(throwable);
-                            }
-                            System.out.println();
-                        }
+            ClusterLogQuery query = new ClusterLogQuery(nodeId, null, logger, 0, 0, false).withThrowable();
+            List<Map.Entry<ClusterLogKey, ClusterLogRecord>> records;
+            int page = 0;
+            do {
+                records = query.getPage(clusterManager, ClusterLogQuery.DEFAULT_PAGE_SIZE, page++);
+                for (Map.Entry<ClusterLogKey, ClusterLogRecord> entry : records) {
+                    for (String throwable : entry.getValue().getThrowableStringRep()) {
+                        System.out.println(throwable);
                     }
+                    System.out.println();
                 }
-            }
+            } while (records.size() == ClusterLogQuery.DEFAULT_PAGE_SIZE);
         } finally {
             Thread.currentThread().setContextClassLoader(originalClassLoader);
         }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.log;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.MapQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ClusterLogQueryTest {
+
+    private final List<Map.Entry<ClusterLogKey, ClusterLogRecord>> log = new ArrayList<Map.Entry<ClusterLogKey, ClusterLogRecord>>();
+    private MapQuery<ClusterLogKey, ClusterLogRecord> lastQuery;
+
+    private final ClusterManager clusterManager = (ClusterManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ClusterManager.class}, new InvocationHandler() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            lastQuery = (MapQuery<ClusterLogKey, ClusterLogRecord>) args[1];
+            List<Map.Entry<ClusterLogKey, ClusterLogRecord>> sorted = new ArrayList<Map.Entry<ClusterLogKey, ClusterLogRecord>>(log);
+            Collections.sort(sorted, lastQuery.getComparator());
+            int from = Math.min(sorted.size(), lastQuery.getPage() * lastQuery.getPageSize());
+            return new ArrayList<Map.Entry<ClusterLogKey, ClusterLogRecord>>(sorted.subList(from, Math.min(sorted.size(), from + lastQuery.getPageSize())));
+        }
+    });
+
+    @Test
+    public void testCompareKeys() {
+        // time stamps too far apart for an int difference
+        Assert.assertTrue(key("node", 0L, "1").compareTo(key("node", 1L << 32, "1")) < 0);
+        Assert.assertTrue(key("node", 1L << 32, "1").compareTo(key("node", 0L, "1")) > 0);
+        Assert.assertTrue(key("node1", 10L, "2").compareTo(key("node2", 10L, "1")) < 0);
+        Assert.assertTrue(key("node1", 10L, "1").compareTo(key("node1", 10L, "2")) < 0);
+        Assert.assertEquals(0, key("node1", 10L, "1").compareTo(key("node1", 10L, "1")));
+    }
+
+    @Test
+    public void testCriteria() {
+        new ClusterLogQuery("node1", "WARN", "org.foo", 10L, 0L, false).getPage(clusterManager, 10, 0);
+        List<MapQuery.Criterion> criteria = lastQuery.getCriteria();
+        Assert.assertEquals(4, criteria.size());
+        Assert.assertEquals(ClusterLogQuery.NODE, criteria.get(0).getAttribute());
+        Assert.assertEquals(MapQuery.Operator.EQUAL, criteria.get(0).getOperator());
+        Assert.assertEquals(ClusterLogQuery.LEVEL, criteria.get(1).getAttribute());
+        Assert.assertEquals(Arrays.asList("WARN", "ERROR", "FATAL"), Arrays.asList(criteria.get(1).getValues()));
+        Assert.assertEquals(MapQuery.Operator.LIKE, criteria.get(2).getOperator());
+        Assert.assertEquals("%org.foo%", criteria.get(2).getValues()[0]);
+        Assert.assertEquals(ClusterLogQuery.TIMESTAMP, criteria.get(3).getAttribute());
+        Assert.assertEquals(Arrays.asList(10L, null), Arrays.asList(criteria.get(3).getValues()));
+
+        new ClusterLogQuery(null, "TRACE", "ALL", 0L, 0L, false).getPage(clusterManager, 10, 0);
+        Assert.assertTrue(lastQuery.getCriteria().isEmpty());
+    }
+
+    @Test
+    public void testEscapeLogger() {
+        new ClusterLogQuery(null, null, "org.foo_bar%", 0L, 0L, false).getPage(clusterManager, 10, 0);
+        Assert.assertEquals("%org.foo\\_bar\\%%", lastQuery.getCriteria().get(0).getValues()[0]);
+    }
+
+    @Test
+    public void testWithThrowable() {
+        new ClusterLogQuery(null, null, null, 0L, 0L, false).withThrowable().getPage(clusterManager, 10, 0);
+        Assert.assertEquals(1, lastQuery.getCriteria().size());
+        Assert.assertEquals(ClusterLogQuery.THROWABLE, lastQuery.getCriteria().get(0).getAttribute());
+        Assert.assertEquals(true, lastQuery.getCriteria().get(0).getValues()[0]);
+
+        ClusterLogRecord record = new ClusterLogRecord();
+        Assert.assertFalse(record.isWithThrowable());
+        record.setThrowableStringRep(new String[0]);
+        Assert.assertFalse(record.isWithThrowable());
+        record.setThrowableStringRep(new String[]{"java.lang.Exception"});
+        Assert.assertTrue(record.isWithThrowable());
+    }
+
+    @Test
+    public void testGetLast() {
+        for (int i = 0; i < 10; i++) {
+            log.add(new AbstractMap.SimpleImmutableEntry<ClusterLogKey, ClusterLogRecord>(key("node", 1000L - i, String.valueOf(i)), new ClusterLogRecord()));
+        }
+        List<Map.Entry<ClusterLogKey, ClusterLogRecord>> last = ClusterLogQuery.getLast(clusterManager, null, null, null, 0L, 0L, 3);
+        Assert.assertEquals(3, last.size());
+        Assert.assertEquals(998L, last.get(0).getKey().getTimeStamp());
+        Assert.assertEquals(1000L, last.get(2).getKey().getTimeStamp());
+    }
+
+    private static ClusterLogKey key(String nodeId, long timeStamp, String id) {
+        ClusterLogKey key = new ClusterLogKey();
+        key.setNodeId(nodeId);
+        key.setTimeStamp(timeStamp);
+        key.setId(id);
+        return key;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.log;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RingBufferTest {
+
+    @Test
+    public void testOfferAndDrain() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+        Assert.assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        // full
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<Integer>();
+        Assert.assertEquals(3, buffer.drainTo(drained, 3));
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertTrue(buffer.offer(5));
+        Assert.assertEquals(2, buffer.drainTo(drained, 10));
+        Assert.assertEquals(0, buffer.drainTo(drained, 10));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 5), drained);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(64);
+        final int producers = 4;
+        final int perProducer = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!buffer.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        Set<Integer> received = new HashSet<Integer>();
+        List<Integer> drained = new ArrayList<Integer>();
+        long deadline = System.currentTimeMillis() + 30000;
+        while (received.size() < producers * perProducer && System.currentTimeMillis() < deadline) {
+            buffer.drainTo(drained, 16);
+            received.addAll(drained);
+            drained.clear();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(producers * perProducer, received.size());
+        Assert.assertEquals(0, buffer.size());
+    }
+
+}
@@ -13,14 +13,11 @@
  */
 package org.apache.karaf.cellar.obr;
 
-import org.apache.karaf.cellar.core.Configurations;
-import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventType;
 import org.osgi.framework.BundleContext;
-import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,8 +30,6 @@ public class ObrUrlEventHandler extends ObrSupport implements EventHandler<Clust
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.event.obr.urls.handler";
 
-    private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
-
     @Override
     public void init(BundleContext bundleContext) {
         super.init(bundleContext);
@@ -104,21 +99,7 @@ public class ObrUrlEventHandler extends ObrSupport implements EventHandler<Clust
 
     @Override
     public Switch getSwitch() {
-        // load the switch status from the config
-        try {
-            Configuration configuration = configurationAdmin.getConfiguration(Configurations.NODE, null);
-            if (configuration != null) {
-                Boolean status = new Boolean((String) configuration.getProperties().get(Configurations.HANDLER + "." + this.getClass().getName()));
-                if (status) {
-                    eventSwitch.turnOn();
-                } else {
-                    eventSwitch.turnOff();
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return this.eventSwitch;
+        return switchRegistry.getHandlerSwitch(SWITCH_ID, this);
     }
 
 }
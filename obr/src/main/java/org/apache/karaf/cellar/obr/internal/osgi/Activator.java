@@ -15,8 +15,10 @@ package org.apache.karaf.cellar.obr.internal.osgi;
 
 import org.apache.felix.bundlerepository.RepositoryAdmin;
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.GroupFilterIndex;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.control.SwitchRegistry;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.obr.ObrBundleEventHandler;
@@ -46,6 +48,8 @@ import java.util.Hashtable;
                 @RequireService(ClusterManager.class),
                 @RequireService(GroupManager.class),
                 @RequireService(ConfigurationAdmin.class),
+                @RequireService(SwitchRegistry.class),
+                @RequireService(GroupFilterIndex.class),
                 @RequireService(EventProducer.class)
         }
 )
@@ -73,6 +77,12 @@ public class Activator extends BaseActivator {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null)
             return;
+        SwitchRegistry switchRegistry = getTrackedService(SwitchRegistry.class);
+        if (switchRegistry == null)
+            return;
+        GroupFilterIndex groupFilterIndex = getTrackedService(GroupFilterIndex.class);
+        if (groupFilterIndex == null)
+            return;
         EventProducer eventProducer = getTrackedService(EventProducer.class);
         if (eventProducer == null)
             return;
@@ -82,6 +92,8 @@ public class Activator extends BaseActivator {
         urlEventHandler.setClusterManager(clusterManager);
         urlEventHandler.setGroupManager(groupManager);
         urlEventHandler.setConfigurationAdmin(configurationAdmin);
+        urlEventHandler.setGroupFilterIndex(groupFilterIndex);
+        urlEventHandler.setSwitchRegistry(switchRegistry);
         urlEventHandler.setObrService(repositoryAdmin);
         urlEventHandler.init(bundleContext);
         Hashtable props = new Hashtable();
@@ -94,6 +106,8 @@ public class Activator extends BaseActivator {
         bundleEventHandler.setClusterManager(clusterManager);
         bundleEventHandler.setGroupManager(groupManager);
         bundleEventHandler.setConfigurationAdmin(configurationAdmin);
+        bundleEventHandler.setGroupFilterIndex(groupFilterIndex);
+        bundleEventHandler.setSwitchRegistry(switchRegistry);
         bundleEventHandler.init(bundleContext);
         register(EventHandler.class, bundleEventHandler, props);
 
@@ -104,6 +118,7 @@ public class Activator extends BaseActivator {
         urlSynchronizer.setGroupManager(groupManager);
         urlSynchronizer.setEventProducer(eventProducer);
         urlSynchronizer.setConfigurationAdmin(configurationAdmin);
+        urlSynchronizer.setGroupFilterIndex(groupFilterIndex);
         urlSynchronizer.init(bundleContext);
         props = new Hashtable();
         props.put("resource", "obr.urls");